@@ -0,0 +1,66 @@
+package com.obfuscator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// Входы JMH-бенчмарков: small и medium - файлы из test_files/input,
+// huge - синтетический класс с тысячами членов (ниже порога потокового движка)
+public final class BenchmarkInputs {
+
+    private static final Path CORPUS = Paths.get("test_files/input");
+    private static final int HUGE_MEMBERS = 2_000;
+
+    private BenchmarkInputs() {
+    }
+
+    public static String fileName(String size) {
+        switch (size) {
+            case "small":
+                return "HelloWorld.java";
+            case "medium":
+                return "ComplexApp.java";
+            case "huge":
+                return "Generated.java";
+            default:
+                throw new IllegalArgumentException("Unknown input size: " + size);
+        }
+    }
+
+    public static String source(String size) {
+        if (size.equals("huge")) {
+            return generateSource(HUGE_MEMBERS);
+        }
+        try {
+            return Files.readString(CORPUS.resolve(fileName(size)));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read benchmark input " + CORPUS.resolve(fileName(size)), e);
+        }
+    }
+
+    private static String generateSource(int members) {
+        StringBuilder source = new StringBuilder();
+        source.append("import java.util.List;\n\n");
+        source.append("public class Generated {\n");
+
+        for (int i = 0; i < members; i++) {
+            source.append("    private int field").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        for (int i = 0; i < members; i++) {
+            source.append("    public int operation").append(i).append("(int input) {\n");
+            source.append("        Generated other = new Generated();\n");
+            source.append("        int result = field").append(i).append(" + other.field").append(i).append(" + input;\n");
+            if (i > 0) {
+                source.append("        result += operation").append(i - 1).append("(result);\n");
+            }
+            source.append("        return result;\n");
+            source.append("    }\n");
+        }
+
+        source.append("}\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,73 @@
+package com.obfuscator;
+
+import com.obfuscator.corpus.CorpusGenerator;
+import com.obfuscator.corpus.CorpusShape;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Кривая масштабирования ObfuscationService.processDirectory на синтетических проектах
+// формы monorepo: один прогон на замер, время прогона целиком
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ProcessDirectoryBenchmark {
+
+    @Param({"1000", "10000"})
+    public int files;
+
+    @Param({"0.5", "1.5"})
+    public double crossReferenceDensity;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private Path workDir;
+    private Path srcDir;
+    private int run;
+
+    @Setup
+    public void setUp() throws IOException {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+        workDir = Files.createTempDirectory("obfuscator-corpus");
+        srcDir = workDir.resolve("src");
+        CorpusShape shape = CorpusShape.monorepo(files).withCrossReferenceDensity(crossReferenceDensity);
+        new CorpusGenerator(42, shape).writeTo(srcDir);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(workDir)) {
+            for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public List<Path> processDirectory() {
+        return new ObfuscationService(threads, 42L).processDirectory(srcDir, workDir.resolve("out" + run++));
+    }
+}
@@ -0,0 +1,70 @@
+package com.obfuscator.fileprocessor;
+
+import com.obfuscator.BenchmarkInputs;
+import com.obfuscator.obfuscator.CodeObfuscator;
+import com.obfuscator.obfuscator.NameGenerator;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Полный путь одного файла: чтение, обфускация и запись результата на диск
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ProcessSingleFileBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String input;
+
+    private Path workDir;
+    private Path inputDir;
+    private Path outputDir;
+    private Path javaFile;
+    private FileProcessor processor;
+
+    @Setup
+    public void setUp() throws IOException {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+        workDir = Files.createTempDirectory("obfuscator-jmh");
+        inputDir = Files.createDirectories(workDir.resolve("input"));
+        outputDir = workDir.resolve("output");
+        javaFile = inputDir.resolve(BenchmarkInputs.fileName(input));
+        Files.writeString(javaFile, BenchmarkInputs.source(input));
+        processor = new FileProcessor(new CodeObfuscator(new NameGenerator(42)));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(workDir)) {
+            for (Path path : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Benchmark
+    public Path processSingleFile() throws IOException {
+        return processor.processSingleFile(javaFile, inputDir, outputDir);
+    }
+}
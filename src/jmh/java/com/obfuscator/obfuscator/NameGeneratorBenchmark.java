@@ -0,0 +1,45 @@
+package com.obfuscator.obfuscator;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Генерация имён: случайный режим (множество занятых имён), счётчик и поток имён файла.
+// Случайный генератор сбрасывается на каждой итерации, иначе множество растёт весь замер
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NameGeneratorBenchmark {
+
+    @Param({"random", "counter", "stream"})
+    public String mode;
+
+    private NameGenerator generator;
+    private NameSource names;
+    private long stream;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        generator = mode.equals("random") ? new NameGenerator() : new NameGenerator(42);
+        names = mode.equals("stream") ? generator.newStream(stream++) : generator;
+    }
+
+    @Benchmark
+    public String generateMethodName() {
+        return names.generateMethodName();
+    }
+}
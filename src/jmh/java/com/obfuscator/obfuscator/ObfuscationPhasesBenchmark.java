@@ -0,0 +1,130 @@
+package com.obfuscator.obfuscator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.obfuscator.BenchmarkInputs;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+// Этапы CodeObfuscator по отдельности: разбор, три прохода переименования,
+// обновление ссылок, печать и весь obfuscateCode целиком.
+// Проходы меняют дерево, поэтому каждый вызов получает свежий разобранный файл.
+// gc.alloc.rate.norm проходов включает эту подготовку - сравнивать с parse
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ObfuscationPhasesBenchmark {
+
+    @Param({"small", "medium", "huge"})
+    public String input;
+
+    private String source;
+    private String fileName;
+    private String className;
+    private CodeObfuscator obfuscator;
+
+    private CompilationUnit transformed;
+
+    // Деревья для проходов: разобраны заново перед каждым вызовом, для обновления
+    // ссылок - уже после разрешения обращений и трёх проходов переименования
+    @State(Scope.Thread)
+    public static class Trees {
+        private CompilationUnit parsed;
+        private CompilationUnit renamed;
+
+        @Setup(org.openjdk.jmh.annotations.Level.Invocation)
+        public void prepare(ObfuscationPhasesBenchmark benchmark) {
+            CodeObfuscator obfuscator = benchmark.obfuscator;
+            obfuscator.resetFileStatistics();
+            parsed = obfuscator.parse(benchmark.source, benchmark.fileName);
+            renamed = obfuscator.parse(benchmark.source, benchmark.fileName);
+            obfuscator.bindReferences(renamed);
+            obfuscator.renameClasses(renamed, benchmark.className);
+            obfuscator.renameMethods(renamed);
+            obfuscator.renameVariables(renamed);
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+        source = BenchmarkInputs.source(input);
+        fileName = BenchmarkInputs.fileName(input);
+        className = fileName.substring(0, fileName.length() - ".java".length());
+        // Счётчики вместо множества имён: память генератора не растёт за время замера
+        obfuscator = new CodeObfuscator(new NameGenerator(42));
+        transformed = transform(obfuscator.parse(source, fileName));
+    }
+
+    @Benchmark
+    public CompilationUnit parse() {
+        return obfuscator.parse(source, fileName);
+    }
+
+    @Benchmark
+    public CompilationUnit bindPass(Trees trees) {
+        obfuscator.bindReferences(trees.parsed);
+        return trees.parsed;
+    }
+
+    @Benchmark
+    public CompilationUnit classPass(Trees trees) {
+        obfuscator.renameClasses(trees.parsed, className);
+        return trees.parsed;
+    }
+
+    @Benchmark
+    public CompilationUnit methodPass(Trees trees) {
+        obfuscator.renameMethods(trees.parsed);
+        return trees.parsed;
+    }
+
+    @Benchmark
+    public CompilationUnit variablePass(Trees trees) {
+        obfuscator.renameVariables(trees.parsed);
+        return trees.parsed;
+    }
+
+    @Benchmark
+    public CompilationUnit referenceUpdate(Trees trees) {
+        obfuscator.updateReferences(trees.renamed);
+        obfuscator.updateImports(trees.renamed);
+        return trees.renamed;
+    }
+
+    @Benchmark
+    public String print() {
+        return obfuscator.print(transformed);
+    }
+
+    @Benchmark
+    public String obfuscateCode() {
+        return obfuscator.obfuscateCode(source, fileName);
+    }
+
+    private CompilationUnit transform(CompilationUnit compilationUnit) {
+        obfuscator.resetFileStatistics();
+        obfuscator.bindReferences(compilationUnit);
+        obfuscator.renameClasses(compilationUnit, className);
+        obfuscator.renameMethods(compilationUnit);
+        obfuscator.renameVariables(compilationUnit);
+        obfuscator.updateReferences(compilationUnit);
+        obfuscator.updateImports(compilationUnit);
+        return compilationUnit;
+    }
+}
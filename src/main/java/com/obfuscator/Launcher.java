@@ -0,0 +1,23 @@
+package com.obfuscator;
+
+import com.obfuscator.cli.CommandLineRunner;
+import com.obfuscator.cli.DaemonClient;
+
+// Точка входа: с --connect - тонкий клиент демона, с другими аргументами - пакетный
+// режим без JavaFX, без аргументов - GUI. MainApplication наследует
+// javafx.application.Application, поэтому загружается только в ветке GUI
+public final class Launcher {
+
+    private Launcher() {
+    }
+
+    public static void main(String[] args) {
+        if (DaemonClient.isClientCall(args)) {
+            DaemonClient.main(args);
+        } else if (args.length > 0) {
+            CommandLineRunner.main(args);
+        } else {
+            MainApplication.main(args);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.obfuscator;
 
+import com.obfuscator.cli.CommandLineRunner;
 import com.obfuscator.gui.MainController;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -19,8 +20,7 @@ public class MainApplication extends Application {
             logger.info("Starting Java Obfuscator application");
 
             if (args.length > 0) {
-                obfuscationService = new ObfuscationService();
-                runCLI(args);
+                CommandLineRunner.main(args);
             } else {
                 logger.info("Launching GUI mode");
                 launch(args);
@@ -33,13 +33,6 @@ public class MainApplication extends Application {
         }
     }
 
-    private static void runCLI(String[] args) {
-        try {
-
-        } catch (Exception e) {
-        }
-    }
-
     @Override
     public void start(Stage primaryStage) {
         try {
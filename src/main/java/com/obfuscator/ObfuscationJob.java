@@ -0,0 +1,186 @@
+package com.obfuscator;
+
+import com.obfuscator.fileprocessor.FileProcessor;
+import com.obfuscator.fileprocessor.FileReport;
+import com.obfuscator.fileprocessor.FileWalker;
+import com.obfuscator.fileprocessor.OutputSink;
+import com.obfuscator.obfuscator.CodeObfuscator;
+import com.obfuscator.obfuscator.ObfuscationException;
+import com.obfuscator.util.Metrics;
+import com.obfuscator.util.ValidationUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+// Задача обфускации со своим контекстом: генератор имён, переименования классов
+// и счётчики не делятся с другими задачами. Общие у задач одного сервиса только
+// пул потоков, правила сохранения и кэш, поэтому задачи можно выполнять одновременно.
+// Каталог обрабатывается в пакетной очереди пула, одиночный файл - в интерактивной
+public class ObfuscationJob {
+
+    private static final Logger logger = LogManager.getLogger(ObfuscationJob.class);
+
+    private final CodeObfuscator codeObfuscator;
+    private final FileProcessor fileProcessor;
+    private final ValidationUtil validationUtil;
+
+    ObfuscationJob(CodeObfuscator codeObfuscator, FileProcessor fileProcessor) {
+        this.codeObfuscator = codeObfuscator;
+        this.fileProcessor = fileProcessor;
+        this.validationUtil = new ValidationUtil();
+    }
+
+    public List<Path> processDirectory(Path inputDir, Path outputDir) throws ObfuscationException {
+        try {
+            logger.info("Starting directory processing: {} -> {}", inputDir, outputDir);
+
+            validateInput(inputDir);
+            validateOutput(outputDir);
+
+            List<Path> processedFiles = fileProcessor.processDirectory(inputDir, outputDir);
+
+            logger.info("Directory processing completed. {} files processed.", processedFiles.size());
+            return processedFiles;
+
+        } catch (Exception e) {
+            logger.error("Error processing directory: {}", e.getMessage(), e);
+            throw new ObfuscationException("Failed to process directory: " + e.getMessage(), e);
+        }
+    }
+
+    // Потоковый вариант: готовые файлы отдаются в outputs по мере записи, без общего списка
+    public int processDirectory(Path inputDir, Path outputDir, Consumer<Path> outputs) throws ObfuscationException {
+        try {
+            logger.info("Starting directory processing: {} -> {}", inputDir, outputDir);
+
+            validateInput(inputDir);
+            validateOutput(outputDir);
+
+            int processedFiles = fileProcessor.processDirectory(inputDir, outputDir, outputs);
+
+            logger.info("Directory processing completed. {} files processed.", processedFiles);
+            return processedFiles;
+
+        } catch (Exception e) {
+            logger.error("Error processing directory: {}", e.getMessage(), e);
+            throw new ObfuscationException("Failed to process directory: " + e.getMessage(), e);
+        }
+    }
+
+    // Вывод в произвольный sink (память, поток); закрывает sink вызывающий
+    public int processDirectory(Path inputDir, OutputSink sink, Consumer<Path> outputs) throws ObfuscationException {
+        try {
+            logger.info("Starting directory processing: {} -> {}", inputDir, sink.getClass().getSimpleName());
+
+            validateInput(inputDir);
+
+            int processedFiles = fileProcessor.processDirectory(inputDir, sink, outputs);
+
+            logger.info("Directory processing completed. {} files processed.", processedFiles);
+            return processedFiles;
+
+        } catch (Exception e) {
+            logger.error("Error processing directory: {}", e.getMessage(), e);
+            throw new ObfuscationException("Failed to process directory: " + e.getMessage(), e);
+        }
+    }
+
+    public Path processSingleFile(Path inputFile, Path outputDir) throws ObfuscationException {
+        try {
+            logger.info("Processing single file: {} -> {}", inputFile, outputDir);
+
+            validationUtil.validateJavaFile(inputFile);
+            validateOutput(outputDir);
+
+            Path processedFile = fileProcessor.processSingleFile(inputFile, inputFile.getParent(), outputDir);
+
+            logger.info("File processing completed: {}", processedFile);
+            return processedFile;
+
+        } catch (Exception e) {
+            logger.error("Error processing file: {}", e.getMessage(), e);
+            throw new ObfuscationException("Failed to process file: " + e.getMessage(), e);
+        }
+    }
+
+    public Path processSingleFile(Path inputFile, OutputSink sink) throws ObfuscationException {
+        try {
+            logger.info("Processing single file: {} -> {}", inputFile, sink.getClass().getSimpleName());
+
+            validationUtil.validateJavaFile(inputFile);
+
+            Path processedFile = fileProcessor.processSingleFile(inputFile, inputFile.getParent(), sink);
+
+            logger.info("File processing completed: {}", processedFile);
+            return processedFile;
+
+        } catch (Exception e) {
+            logger.error("Error processing file: {}", e.getMessage(), e);
+            throw new ObfuscationException("Failed to process file: " + e.getMessage(), e);
+        }
+    }
+
+    // Каталог или архив исходников (-sources.jar): архив читается без распаковки
+    private void validateInput(Path input) throws ObfuscationException {
+        if (input != null && FileProcessor.isSourceArchive(input)) {
+            validationUtil.validateInputArchive(input);
+        } else {
+            validationUtil.validateInputDirectory(input);
+        }
+    }
+
+    // Архив .zip/.jar проверяется как создаваемый файл, остальное - как каталог
+    private void validateOutput(Path output) throws ObfuscationException {
+        if (output != null && OutputSink.isArchive(output)) {
+            validationUtil.validateCanCreateFile(output);
+        } else {
+            validationUtil.validateOutputDirectory(output);
+        }
+    }
+
+    // Слушатель готовых файлов (исходный, результат); вызывается из потоков-воркеров
+    public void setFileListener(BiConsumer<Path, Path> fileListener) {
+        fileProcessor.setFileListener(fileListener);
+    }
+
+    // Какие файлы каталога обрабатывать; по умолчанию FileWalker.defaults()
+    public void setFileWalker(FileWalker fileWalker) {
+        fileProcessor.setFileWalker(fileWalker);
+    }
+
+    public int getParallelism() {
+        return fileProcessor.getWorkerPool() != null
+                ? fileProcessor.getWorkerPool().getThreads()
+                : fileProcessor.getParallelism();
+    }
+
+    // Замеры этапов (Metrics); включаются до запуска обработки, снимок - getMetrics().snapshot()
+    public void enableMetrics() {
+        codeObfuscator.setMetrics(new Metrics());
+    }
+
+    public Metrics getMetrics() {
+        return codeObfuscator.getMetrics();
+    }
+
+    // Отчёт по файлам (FileReport): строка на файл по мере готовности; закрывает отчёт вызывающий
+    public void setReport(FileReport report) {
+        fileProcessor.setReport(report);
+    }
+
+    public String getStatistics() {
+        return codeObfuscator.getStatistics();
+    }
+
+    public String getFileStatistics() {
+        return fileProcessor.getStatistics();
+    }
+
+    public int getFailedFileCount() {
+        return fileProcessor.getFilesFailed();
+    }
+}
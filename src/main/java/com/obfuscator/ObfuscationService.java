@@ -1,72 +1,168 @@
 package com.obfuscator;
 
 import com.obfuscator.fileprocessor.FileProcessor;
+import com.obfuscator.fileprocessor.ObfuscationCache;
+import com.obfuscator.fileprocessor.WorkerPool;
+import com.obfuscator.obfuscator.ClasspathIndex;
 import com.obfuscator.obfuscator.CodeObfuscator;
+import com.obfuscator.obfuscator.KeepRules;
+import com.obfuscator.obfuscator.NameGenerator;
 import com.obfuscator.obfuscator.ObfuscationException;
-import com.obfuscator.util.ValidationUtil;
+import com.obfuscator.obfuscator.SymbolResolver;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.util.List;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
 
+// Настройки обфускации и общий пул потоков. Каждый вызов processDirectory/processSingleFile -
+// отдельная задача (ObfuscationJob) со своим контекстом, поэтому вызывать их можно
+// из нескольких потоков одновременно. Статистика сервиса - статистика последней
+// завершённой задачи; для одновременных задач её нужно брать из самой задачи (newJob)
 public class ObfuscationService {
 
     private static final Logger logger = LogManager.getLogger(ObfuscationService.class);
 
-    private final CodeObfuscator codeObfuscator;
-    private final FileProcessor fileProcessor;
-    private final ValidationUtil validationUtil;
+    private final Long nameSeed;
+    private final WorkerPool workerPool;
+    private volatile KeepRules keepRules = KeepRules.defaults();
+    private volatile ObfuscationCache cache;
+    private volatile SymbolResolver symbolResolver;
+    private volatile BiConsumer<Path, Path> fileListener;
+    private volatile ObfuscationJob lastJob;
 
     public ObfuscationService() {
-        this.codeObfuscator = new CodeObfuscator();
-        this.fileProcessor = new FileProcessor(codeObfuscator);
-        this.validationUtil = new ValidationUtil();
-        logger.debug("ObfuscationService initialized");
+        this(1);
     }
 
-    public List<Path> processDirectory(Path inputDir, Path outputDir) throws ObfuscationException {
-        try {
-            logger.info("Starting directory processing: {} -> {}", inputDir, outputDir);
+    public ObfuscationService(int parallelism) {
+        this(parallelism, null);
+    }
 
-            validationUtil.validateInputDirectory(inputDir);
-            validationUtil.validateOutputDirectory(outputDir);
+    // nameSeed != null - детерминированные имена: одинаковый seed даёт одинаковый вывод
+    public ObfuscationService(int parallelism, Long nameSeed) {
+        this.nameSeed = nameSeed;
+        this.workerPool = new WorkerPool(parallelism);
+        this.lastJob = newJob();
+        logger.debug("ObfuscationService initialized");
+    }
 
-            List<Path> processedFiles = fileProcessor.processDirectory(inputDir, outputDir);
+    // Новая задача с текущими настройками сервиса
+    public ObfuscationJob newJob() {
+        CodeObfuscator codeObfuscator = new CodeObfuscator(
+                nameSeed != null ? new NameGenerator(nameSeed) : new NameGenerator(), keepRules);
+        FileProcessor fileProcessor = new FileProcessor(codeObfuscator, workerPool.getThreads());
+        fileProcessor.setWorkerPool(workerPool);
+        fileProcessor.setCache(cache);
+        // Кэши резолвера общие для задач сервиса, статистика у каждой задачи своя
+        if (symbolResolver != null) {
+            codeObfuscator.setSymbolResolver(symbolResolver.forJob());
+        }
+        return new ObfuscationJob(codeObfuscator, fileProcessor);
+    }
 
-            logger.info("Directory processing completed. {} files processed.", processedFiles.size());
-            return processedFiles;
+    public List<Path> processDirectory(Path inputDir, Path outputDir) throws ObfuscationException {
+        ObfuscationJob job = newJob();
+        job.setFileListener(fileListener);
+        try {
+            return job.processDirectory(inputDir, outputDir);
+        } finally {
+            lastJob = job;
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("Error processing directory: {}", e.getMessage(), e);
-            throw new ObfuscationException("Failed to process directory: " + e.getMessage(), e);
+    public int processDirectory(Path inputDir, Path outputDir, Consumer<Path> outputs) throws ObfuscationException {
+        ObfuscationJob job = newJob();
+        job.setFileListener(fileListener);
+        try {
+            return job.processDirectory(inputDir, outputDir, outputs);
+        } finally {
+            lastJob = job;
         }
     }
 
     public Path processSingleFile(Path inputFile, Path outputDir) throws ObfuscationException {
+        ObfuscationJob job = newJob();
+        job.setFileListener(fileListener);
         try {
-            logger.info("Processing single file: {} -> {}", inputFile, outputDir);
+            return job.processSingleFile(inputFile, outputDir);
+        } finally {
+            lastJob = job;
+        }
+    }
+
+    public void setParallelism(int parallelism) {
+        workerPool.setThreads(parallelism);
+        logger.debug("Parallelism set to {}", workerPool.getThreads());
+    }
 
-            validationUtil.validateJavaFile(inputFile);
-            validationUtil.validateOutputDirectory(outputDir);
+    public int getParallelism() {
+        return workerPool.getThreads();
+    }
 
-            Path processedFile = fileProcessor.processSingleFile(inputFile, inputFile.getParent(), outputDir);
+    public void setCacheDirectory(Path cacheDir) {
+        this.cache = cacheDir != null ? new ObfuscationCache(cacheDir) : null;
+        logger.debug("Obfuscation cache {}", cache != null ? "enabled: " + cache.getCacheDir() : "disabled");
+    }
 
-            logger.info("File processing completed: {}", processedFile);
-            return processedFile;
+    // Библиотеки проекта (JAR или каталоги с JAR) для разрешения символов; индекс их классов
+    // хранится в indexDir (null - ClasspathIndex.DEFAULT_DIRECTORY) и строится один раз на JAR.
+    // Пустой classpath - только JDK. Действует на задачи, созданные после вызова
+    public void setClasspath(List<Path> classpath, Path indexDir) throws ObfuscationException {
+        if (classpath.isEmpty()) {
+            this.symbolResolver = null;
+            return;
+        }
+        try {
+            ClasspathIndex index = ClasspathIndex.open(classpath, indexDir != null ? indexDir : ClasspathIndex.DEFAULT_DIRECTORY);
+            this.symbolResolver = new SymbolResolver(index);
+        } catch (IOException e) {
+            throw new ObfuscationException("Failed to index classpath: " + e.getMessage(), e);
+        }
+    }
 
-        } catch (Exception e) {
-            logger.error("Error processing file: {}", e.getMessage(), e);
-            throw new ObfuscationException("Failed to process file: " + e.getMessage(), e);
+    // Правила действуют на задачи, созданные после вызова
+    public void setKeepRulesFile(Path rulesFile) throws ObfuscationException {
+        try {
+            this.keepRules = rulesFile != null ? KeepRules.load(rulesFile) : KeepRules.defaults();
+        } catch (IOException e) {
+            throw new ObfuscationException("Failed to read keep rules: " + rulesFile, e);
         }
     }
 
+    // Слушатель готовых файлов (исходный, результат) для processDirectory/processSingleFile;
+    // вызывается из потоков-воркеров
+    public void setFileListener(BiConsumer<Path, Path> fileListener) {
+        this.fileListener = fileListener;
+    }
+
     public String getStatistics() {
-        return codeObfuscator.getStatistics();
+        return lastJob.getStatistics();
+    }
+
+    public String getFileStatistics() {
+        return lastJob.getFileStatistics();
+    }
+
+    public int getFailedFileCount() {
+        return lastJob.getFailedFileCount();
     }
 
     public void reset() {
-        codeObfuscator.reset();
+        lastJob = newJob();
         logger.debug("ObfuscationService reset");
     }
+
+    // Останавливает пул потоков сервиса; незавершённые задачи прерываются, новые запускать нельзя
+    public void shutdown() {
+        workerPool.shutdown();
+        logger.debug("ObfuscationService shut down");
+    }
+
+    public boolean isShutdown() {
+        return workerPool.isShutdown();
+    }
 }
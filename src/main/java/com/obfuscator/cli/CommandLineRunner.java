@@ -0,0 +1,409 @@
+package com.obfuscator.cli;
+
+import com.obfuscator.ObfuscationJob;
+import com.obfuscator.ObfuscationService;
+import com.obfuscator.fileprocessor.FileProcessedEvent;
+import com.obfuscator.fileprocessor.FileProcessor;
+import com.obfuscator.fileprocessor.FileReport;
+import com.obfuscator.fileprocessor.FileWalker;
+import com.obfuscator.fileprocessor.StreamSink;
+import com.obfuscator.obfuscator.ObfuscateCodeEvent;
+import com.obfuscator.obfuscator.ObfuscationException;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Пакетный режим без GUI. Класс не должен ссылаться на JavaFX ни прямо, ни через
+// MainApplication: иначе JavaFX загружается при старте и нужен дисплей
+public final class CommandLineRunner {
+
+    private static final Logger logger = LogManager.getLogger(CommandLineRunner.class);
+
+    public static final int EXIT_OK = 0;
+    public static final int EXIT_FILES_FAILED = 1;
+    public static final int EXIT_USAGE = 2;
+    public static final int EXIT_ERROR = 3;
+
+    public static final String USAGE = "Usage: <input> <output> [--threads N] [--cache DIR] [--seed N]"
+            + " [--classpath JARS] [--index-dir DIR] [--keep-rules FILE] [--include GLOB]... [--exclude GLOB]... [--gitignore]"
+            + " [--stats] [--metrics] [--report FILE] [--jfr FILE] [--jfr-threshold MS] [--verbose] [--connect PORT]\n"
+            + "       --daemon [--port PORT]\n"
+            + "Input: a directory, a .zip/.jar source archive, or a .java file\n"
+            + "Output: a directory, a .zip/.jar archive, or - for stdout\n"
+            + "Classpath: library JARs or directories of JARs, separated by " + File.pathSeparator + "\n"
+            + "Report: one JSON line per file, or CSV when FILE ends with .csv\n"
+            + "JFR: per-file events slower than the threshold (default 20 ms) are recorded to FILE";
+
+    static final long DEFAULT_JFR_THRESHOLD_MILLIS = 20;
+
+    // Вывод в stdout: отчёт о работе тогда идёт в stderr
+    static final Path STDOUT = Path.of("-");
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    // Пути уже разрешены относительно рабочего каталога вызывающего
+    // Пустые includes/excludes - шаблоны FileWalker по умолчанию
+    record Options(Path input, Path output, int threads, Path cacheDir, Long nameSeed,
+                   List<Path> classpath, Path indexDir, Path keepRulesFile, List<String> includes, List<String> excludes, boolean gitignore,
+                   boolean stats, boolean metrics, Path reportFile, Path jfrFile, long jfrThresholdMillis,
+                   boolean verbose, boolean daemon, int port) {
+
+        FileWalker fileWalker() {
+            if (includes.isEmpty() && excludes.isEmpty() && !gitignore) {
+                return FileWalker.defaults();
+            }
+            return new FileWalker(includes.isEmpty() ? FileWalker.DEFAULT_INCLUDES : includes,
+                    excludes.isEmpty() ? FileWalker.DEFAULT_EXCLUDES : excludes, gitignore);
+        }
+    }
+
+    public CommandLineRunner(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    public static void main(String[] args) {
+        if (DaemonClient.isClientCall(args)) {
+            DaemonClient.main(args);
+            return;
+        }
+        System.exit(new CommandLineRunner(System.out, System.err).run(args));
+    }
+
+    // Возвращает код завершения: 0 - успех, 1 - часть файлов не обработана,
+    // 2 - неверные аргументы, 3 - ошибка запуска или ввода-вывода
+    public int run(String[] args) {
+        long start = System.nanoTime();
+        Options options;
+        try {
+            options = parse(args, Path.of("").toAbsolutePath());
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+        if (options == null) {
+            out.println(USAGE);
+            return EXIT_OK;
+        }
+
+        // Отладочный лог на каждый файл заметно замедляет пакетную обработку.
+        // initialize() перечитывает конфигурацию, поэтому вызывается до смены уровня -
+        // иначе первый ValidationUtil вернёт debug
+        if (STDOUT.equals(options.output())) {
+            LoggerUtil.redirectConsoleToStderr();
+        }
+        LoggerUtil.initialize();
+        LoggerUtil.setLogLevel("com.obfuscator", options.verbose() ? Level.DEBUG : Level.INFO);
+
+        if (options.daemon()) {
+            return runDaemon(options.port());
+        }
+
+        try {
+            ObfuscationService service = new ObfuscationService(options.threads(), options.nameSeed());
+            service.setCacheDirectory(options.cacheDir());
+            service.setClasspath(options.classpath(), options.indexDir());
+            service.setKeepRulesFile(options.keepRulesFile());
+            return execute(service.newJob(), options, start, true, out, err);
+        } catch (Exception e) {
+            logger.error("CLI error: {}", e.getMessage(), e);
+            err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    // Одна задача: общая часть CLI и демона. coldStart - задача запущена
+    // вместе с JVM, и время её старта имеет смысл показать отдельно
+    static int execute(ObfuscationJob job, Options options, long start, boolean coldStart,
+                       PrintStream out, PrintStream err) {
+        if (!Files.exists(options.input())) {
+            err.println("Error: Input not found: " + options.input());
+            return EXIT_USAGE;
+        }
+
+        boolean toStdout = STDOUT.equals(options.output());
+        PrintStream report = toStdout ? err : out;
+        Recording recording = null;
+        FileReport fileReport = null;
+        try {
+            logger.info("Running CLI mode: {} -> {} (threads={})",
+                    options.input(), options.output(), job.getParallelism());
+
+            if (options.metrics()) {
+                job.enableMetrics();
+            }
+            if (options.reportFile() != null) {
+                fileReport = FileReport.open(options.reportFile());
+                job.setReport(fileReport);
+            }
+            if (options.jfrFile() != null) {
+                recording = startRecording(options.jfrFile(), Duration.ofMillis(options.jfrThresholdMillis()));
+            }
+
+            int exitCode = EXIT_OK;
+            if (Files.isDirectory(options.input()) || FileProcessor.isSourceArchive(options.input())) {
+                job.setFileWalker(options.fileWalker());
+                // Пути результатов не копятся: хватает счётчика
+                int processedFiles;
+                if (toStdout) {
+                    try (StreamSink sink = new StreamSink(out)) {
+                        processedFiles = job.processDirectory(options.input(), sink, output -> { });
+                    }
+                } else {
+                    processedFiles = job.processDirectory(options.input(), options.output(), output -> { });
+                }
+                report.println("Processed " + processedFiles + " files");
+                if (job.getFailedFileCount() > 0) {
+                    err.println("Failed " + job.getFailedFileCount() + " files");
+                    exitCode = EXIT_FILES_FAILED;
+                }
+            } else {
+                try {
+                    Path processedFile;
+                    if (toStdout) {
+                        try (StreamSink sink = new StreamSink(out)) {
+                            processedFile = job.processSingleFile(options.input(), sink);
+                        }
+                    } else {
+                        processedFile = job.processSingleFile(options.input(), options.output());
+                    }
+                    report.println("Processed file: " + processedFile);
+                } catch (ObfuscationException e) {
+                    err.println("Error: " + e.getMessage());
+                    exitCode = EXIT_FILES_FAILED;
+                }
+            }
+
+            if (options.stats()) {
+                report.println(job.getStatistics());
+                report.println(job.getFileStatistics());
+                long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+                if (coldStart) {
+                    long uptimeMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+                    report.printf("Elapsed: %d ms (JVM startup: %d ms)%n", elapsedMillis, uptimeMillis - elapsedMillis);
+                } else {
+                    report.printf("Elapsed: %d ms%n", elapsedMillis);
+                }
+            }
+            if (options.metrics()) {
+                report.println(job.getMetrics().dump());
+            }
+            if (fileReport != null) {
+                report.println(fileReport.describe());
+            }
+            return exitCode;
+
+        } catch (Exception e) {
+            logger.error("CLI error: {}", e.getMessage(), e);
+            err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        } finally {
+            closeReport(job, fileReport, err);
+            if (recording != null) {
+                // stop дописывает запись в файл назначения
+                recording.stop();
+                recording.close();
+                report.println("Flight recording: " + options.jfrFile());
+            }
+        }
+    }
+
+    private static void closeReport(ObfuscationJob job, FileReport fileReport, PrintStream err) {
+        if (fileReport == null) {
+            return;
+        }
+        job.setReport(null);
+        try {
+            fileReport.close();
+        } catch (IOException e) {
+            logger.error("Failed to close file report: {}", e.getMessage(), e);
+            err.println("Error: Failed to write report: " + e.getMessage());
+        }
+    }
+
+    // Запись JFR с настройками "default" и событиями обфускатора выше порога
+    private static Recording startRecording(Path jfrFile, Duration threshold) throws Exception {
+        Recording recording = new Recording(Configuration.getConfiguration("default"));
+        try {
+            recording.setName("java-obfuscator");
+            recording.enable(FileProcessedEvent.NAME).withThreshold(threshold);
+            recording.enable(ObfuscateCodeEvent.NAME).withThreshold(threshold);
+            recording.setDestination(jfrFile);
+            recording.start();
+            return recording;
+        } catch (Exception e) {
+            recording.close();
+            throw e;
+        }
+    }
+
+    private int runDaemon(int port) {
+        try {
+            ObfuscationDaemon daemon = new ObfuscationDaemon(port);
+            daemon.start();
+            out.println("Obfuscation daemon listening on 127.0.0.1:" + daemon.getPort());
+            out.println("Daemon token: " + daemon.getTokenFile());
+            daemon.awaitShutdown();
+            return EXIT_OK;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return EXIT_OK;
+        } catch (Exception e) {
+            logger.error("Daemon error: {}", e.getMessage(), e);
+            err.println("Error: " + e.getMessage());
+            return EXIT_ERROR;
+        }
+    }
+
+    // null - запрошена справка. Относительные пути разрешаются от workingDir
+    static Options parse(String[] args, Path workingDir) {
+        Path input = null;
+        Path output = null;
+        int threads = 1;
+        Path cacheDir = null;
+        Long nameSeed = null;
+        List<Path> classpath = new ArrayList<>();
+        Path indexDir = null;
+        Path keepRulesFile = null;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        boolean gitignore = false;
+        boolean stats = false;
+        boolean metrics = false;
+        Path reportFile = null;
+        Path jfrFile = null;
+        long jfrThresholdMillis = DEFAULT_JFR_THRESHOLD_MILLIS;
+        boolean verbose = false;
+        boolean daemon = false;
+        int port = ObfuscationDaemon.DEFAULT_PORT;
+
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            switch (arg) {
+                case "--help":
+                case "-h":
+                    return null;
+                case "--threads":
+                case "-t":
+                    threads = parseInt(arg, value(args, ++i, arg));
+                    if (threads < 1) {
+                        throw new IllegalArgumentException("Thread count must be positive: " + threads);
+                    }
+                    break;
+                case "--cache":
+                    cacheDir = workingDir.resolve(value(args, ++i, arg));
+                    break;
+                case "--seed":
+                    nameSeed = parseLong(arg, value(args, ++i, arg));
+                    break;
+                case "--classpath":
+                case "-cp":
+                    for (String element : value(args, ++i, arg).split(File.pathSeparator)) {
+                        if (!element.isEmpty()) {
+                            classpath.add(workingDir.resolve(element));
+                        }
+                    }
+                    break;
+                case "--index-dir":
+                    indexDir = workingDir.resolve(value(args, ++i, arg));
+                    break;
+                case "--keep-rules":
+                    keepRulesFile = workingDir.resolve(value(args, ++i, arg));
+                    break;
+                case "--include":
+                    includes.add(value(args, ++i, arg));
+                    break;
+                case "--exclude":
+                    excludes.add(value(args, ++i, arg));
+                    break;
+                case "--gitignore":
+                    gitignore = true;
+                    break;
+                case "--stats":
+                    stats = true;
+                    break;
+                case "--metrics":
+                    metrics = true;
+                    break;
+                case "--report":
+                    reportFile = workingDir.resolve(value(args, ++i, arg));
+                    break;
+                case "--jfr":
+                    jfrFile = workingDir.resolve(value(args, ++i, arg));
+                    break;
+                case "--jfr-threshold":
+                    jfrThresholdMillis = parseLong(arg, value(args, ++i, arg));
+                    if (jfrThresholdMillis < 0) {
+                        throw new IllegalArgumentException("JFR threshold must not be negative: " + jfrThresholdMillis);
+                    }
+                    break;
+                case "--verbose":
+                case "-v":
+                    verbose = true;
+                    break;
+                case "--daemon":
+                    daemon = true;
+                    break;
+                case "--port":
+                    port = parseInt(arg, value(args, ++i, arg));
+                    break;
+                default:
+                    if (arg.startsWith("-") && !arg.equals(STDOUT.toString())) {
+                        throw new IllegalArgumentException("Unknown option: " + arg);
+                    } else if (input == null) {
+                        input = workingDir.resolve(arg);
+                    } else if (output == null) {
+                        output = arg.equals(STDOUT.toString()) ? STDOUT : workingDir.resolve(arg);
+                    } else {
+                        throw new IllegalArgumentException("Unexpected argument: " + arg);
+                    }
+            }
+        }
+
+        if (!daemon && (input == null || output == null)) {
+            throw new IllegalArgumentException("Input and output paths are required");
+        }
+        return new Options(input, output, threads, cacheDir, nameSeed, List.copyOf(classpath), indexDir, keepRulesFile,
+                List.copyOf(includes), List.copyOf(excludes), gitignore, stats, metrics, reportFile, jfrFile, jfrThresholdMillis,
+                verbose, daemon, port);
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int parseInt(String option, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+        }
+    }
+
+    private static long parseLong(String option, String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid number for " + option + ": " + value);
+        }
+    }
+}
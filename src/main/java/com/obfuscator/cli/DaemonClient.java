@@ -0,0 +1,164 @@
+package com.obfuscator.cli;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.ConnectException;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+// Тонкий клиент демона: отправляет аргументы и рабочий каталог и печатает ответ
+// по мере поступления. Не загружает ни log4j, ни JavaParser - вызов стоит только
+// старта небольшой JVM. Формат запроса и ответа - строки текста, так что задачу
+// можно отправить и curl'ом с заголовком "Authorization: Bearer $(cat <файл токена>)"
+public final class DaemonClient {
+
+    static final String CONNECT_OPTION = "--connect";
+    static final String AUTHORIZATION_HEADER = "Authorization";
+
+    private final PrintStream out;
+    private final PrintStream err;
+    private final Path tokenDir;
+
+    public DaemonClient(PrintStream out, PrintStream err) {
+        this(out, err, defaultTokenDir());
+    }
+
+    // tokenDir - каталог, в который демон пишет файл с токеном (ObfuscationDaemon)
+    public DaemonClient(PrintStream out, PrintStream err, Path tokenDir) {
+        this.out = out;
+        this.err = err;
+        this.tokenDir = tokenDir;
+    }
+
+    public static Path defaultTokenDir() {
+        return Path.of(System.getProperty("user.home"), ".java-obfuscator", "daemon");
+    }
+
+    // Файл токена демона на порту port; пишет демон при старте и удаляет при остановке
+    public static Path tokenFile(Path tokenDir, int port) {
+        return tokenDir.resolve("daemon-" + port + ".token");
+    }
+
+    static String authorization(String token) {
+        return "Bearer " + token;
+    }
+
+    public static boolean isClientCall(String[] args) {
+        for (String arg : args) {
+            if (arg.equals(CONNECT_OPTION)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public static void main(String[] args) {
+        System.exit(new DaemonClient(System.out, System.err).run(args));
+    }
+
+    public int run(String[] args) {
+        int port = -1;
+        List<String> jobArgs = new ArrayList<>();
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals(CONNECT_OPTION)) {
+                if (i + 1 >= args.length) {
+                    err.println("Error: Missing value for " + CONNECT_OPTION);
+                    return CommandLineRunner.EXIT_USAGE;
+                }
+                try {
+                    port = Integer.parseInt(args[++i]);
+                } catch (NumberFormatException e) {
+                    err.println("Error: Invalid number for " + CONNECT_OPTION + ": " + args[i]);
+                    return CommandLineRunner.EXIT_USAGE;
+                }
+            } else {
+                jobArgs.add(args[i]);
+            }
+        }
+
+        String token;
+        Path tokenFile = tokenFile(tokenDir, port);
+        try {
+            token = Files.readString(tokenFile, StandardCharsets.UTF_8).trim();
+        } catch (NoSuchFileException e) {
+            err.println("Error: Daemon is not running on port " + port + " (no token file " + tokenFile + ")");
+            return CommandLineRunner.EXIT_ERROR;
+        } catch (IOException e) {
+            err.println("Error: Cannot read daemon token " + tokenFile + ": " + e.getMessage());
+            return CommandLineRunner.EXIT_ERROR;
+        }
+
+        try {
+            return submit(port, token, Path.of("").toAbsolutePath(), jobArgs);
+        } catch (ConnectException e) {
+            err.println("Error: Daemon is not running on port " + port);
+            return CommandLineRunner.EXIT_ERROR;
+        } catch (IOException e) {
+            err.println("Error: " + e.getMessage());
+            return CommandLineRunner.EXIT_ERROR;
+        }
+    }
+
+    private int submit(int port, String token, Path workingDir, List<String> jobArgs) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create("http://127.0.0.1:" + port + "/jobs")
+                .toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setRequestProperty("Content-Type", "text/plain; charset=utf-8");
+        connection.setRequestProperty(AUTHORIZATION_HEADER, authorization(token));
+
+        try (OutputStream body = connection.getOutputStream()) {
+            body.write(encodeJob(workingDir, jobArgs).getBytes(StandardCharsets.UTF_8));
+        }
+
+        if (connection.getResponseCode() != HttpURLConnection.HTTP_OK) {
+            err.println("Error: Daemon rejected job: HTTP " + connection.getResponseCode());
+            return CommandLineRunner.EXIT_ERROR;
+        }
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                if (line.startsWith("out ")) {
+                    out.println(line.substring(4));
+                } else if (line.startsWith("err ")) {
+                    err.println(line.substring(4));
+                } else if (line.startsWith("exit ")) {
+                    return Integer.parseInt(line.substring(5).trim());
+                }
+            }
+        }
+        err.println("Error: Daemon closed the connection before the job finished");
+        return CommandLineRunner.EXIT_ERROR;
+    }
+
+    // Первая строка - рабочий каталог, далее по аргументу на строку (URL-кодирование)
+    static String encodeJob(Path workingDir, List<String> args) {
+        StringBuilder body = new StringBuilder(URLEncoder.encode(workingDir.toString(), StandardCharsets.UTF_8));
+        for (String arg : args) {
+            body.append('\n').append(URLEncoder.encode(arg, StandardCharsets.UTF_8));
+        }
+        return body.append('\n').toString();
+    }
+
+    static List<String> decodeJob(String body) {
+        List<String> lines = new ArrayList<>();
+        for (String line : body.split("\n")) {
+            if (!line.isEmpty()) {
+                lines.add(URLDecoder.decode(line, StandardCharsets.UTF_8));
+            }
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,364 @@
+package com.obfuscator.cli;
+
+import com.obfuscator.ObfuscationJob;
+import com.obfuscator.ObfuscationService;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Долгоживущий процесс обфускации: JIT, загруженные классы, пулы парсеров и правила
+// сохранения остаются прогретыми между задачами. Слушает только 127.0.0.1.
+//   POST /jobs     - задача: рабочий каталог и аргументы CLI (см. DaemonClient);
+//                    ответ построчно: "out ...", "err ...", последней - "exit <код>"
+//   GET  /status   - число выполненных задач и прогретых сервисов
+//   POST /shutdown - остановка
+// Задачу с путями пользователя и остановку принимаем только с заголовком
+// "Authorization: Bearer <токен>": токен при старте пишется в файл, который может
+// прочитать только владелец (DaemonClient.tokenFile), - другие локальные пользователи
+// порт видят, а токен нет.
+// Задачи выполняются одновременно (до JOB_THREADS), каждая в своём контексте;
+// файлы задач с одинаковыми настройками делят пул потоков их сервиса
+public final class ObfuscationDaemon implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(ObfuscationDaemon.class);
+
+    public static final int DEFAULT_PORT = 7878;
+    private static final int MAX_WARM_SERVICES = 8;
+    private static final int JOB_THREADS = 4;
+
+    // Настройки, с которыми создан сервис; изменённый файл правил даёт новый ключ
+    private record ServiceKey(int threads, Long nameSeed, Path keepRulesFile, FileTime keepRulesModified,
+                              Path cacheDir, List<Path> classpath, List<FileTime> classpathModified,
+                              Path indexDir) {
+    }
+
+    // Прогретый сервис и число выполняющихся на нём задач: вытесненный сервис
+    // останавливается, когда закончится последняя его задача
+    private static final class WarmService {
+        private final ObfuscationService service;
+        private int activeJobs;
+        private boolean evicted;
+
+        private WarmService(ObfuscationService service) {
+            this.service = service;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService jobExecutor;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+    private final AtomicLong completedJobs = new AtomicLong();
+    private final Path tokenDir;
+    private final byte[] authorization;
+    private final String token;
+    private volatile Path tokenFile;
+
+    // Доступ под synchronized (acquireService, releaseService, handleStatus, close)
+    private final Map<ServiceKey, WarmService> services =
+            new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<ServiceKey, WarmService> eldest) {
+                    if (size() <= MAX_WARM_SERVICES) {
+                        return false;
+                    }
+                    WarmService warm = eldest.getValue();
+                    warm.evicted = true;
+                    if (warm.activeJobs == 0) {
+                        warm.service.shutdown();
+                    }
+                    logger.info("Evicted warm service for {}", eldest.getKey());
+                    return true;
+                }
+            };
+
+    public ObfuscationDaemon(int port) throws IOException {
+        this(port, DaemonClient.defaultTokenDir());
+    }
+
+    // tokenDir - каталог файла с токеном; клиент ищет его там же
+    public ObfuscationDaemon(int port, Path tokenDir) throws IOException {
+        this.tokenDir = tokenDir;
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        this.token = HexFormat.of().formatHex(secret);
+        this.authorization = DaemonClient.authorization(token).getBytes(StandardCharsets.UTF_8);
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        AtomicLong threadCounter = new AtomicLong();
+        this.jobExecutor = Executors.newFixedThreadPool(JOB_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "obfuscation-daemon-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        server.setExecutor(jobExecutor);
+        server.createContext("/jobs", this::handleJob);
+        server.createContext("/status", this::handleStatus);
+        server.createContext("/shutdown", this::handleShutdown);
+    }
+
+    // Токен пишется до того, как сервер начнёт принимать запросы
+    public void start() throws IOException {
+        tokenFile = writeTokenFile();
+        server.start();
+        logger.info("Obfuscation daemon listening on {}, token in {}", server.getAddress(), tokenFile);
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public Path getTokenFile() {
+        return tokenFile;
+    }
+
+    // Временный файл создаётся с правами только для владельца (rw------- на POSIX)
+    // и переносится на место целиком: клиент не прочитает половину токена
+    private Path writeTokenFile() throws IOException {
+        Files.createDirectories(tokenDir);
+        Path file = DaemonClient.tokenFile(tokenDir, getPort());
+        Path temp = Files.createTempFile(tokenDir, "daemon-", ".tmp");
+        try {
+            Files.writeString(temp, token, StandardCharsets.UTF_8);
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        return file;
+    }
+
+    // Сравнение за постоянное время: по времени ответа токен не подобрать
+    private boolean authorized(HttpExchange exchange) {
+        String header = exchange.getRequestHeaders().getFirst(DaemonClient.AUTHORIZATION_HEADER);
+        return header != null && MessageDigest.isEqual(authorization, header.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public long getCompletedJobs() {
+        return completedJobs.get();
+    }
+
+    public void awaitShutdown() throws InterruptedException {
+        stopped.await();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        jobExecutor.shutdownNow();
+        synchronized (this) {
+            services.values().forEach(warm -> warm.service.shutdown());
+            services.clear();
+        }
+        Path file = tokenFile;
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                logger.warn("Cannot delete daemon token file {}: {}", file, e.getMessage());
+            }
+        }
+        stopped.countDown();
+        logger.info("Obfuscation daemon stopped after {} jobs", completedJobs.get());
+    }
+
+    private void handleJob(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "POST required\n");
+            return;
+        }
+        if (!authorized(exchange)) {
+            respond(exchange, 401, "Daemon token required\n");
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<String> lines = DaemonClient.decodeJob(
+                new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(200, 0);
+        try (OutputStream body = exchange.getResponseBody()) {
+            PrintStream out = new PrintStream(new PrefixedLines("out ", body), true, StandardCharsets.UTF_8);
+            PrintStream err = new PrintStream(new PrefixedLines("err ", body), true, StandardCharsets.UTF_8);
+
+            int exitCode = runJob(lines, start, out, err);
+
+            out.close();
+            err.close();
+            // Задача учтена до того, как клиент получит код выхода
+            completedJobs.incrementAndGet();
+            body.write(("exit " + exitCode + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private int runJob(List<String> lines, long start, PrintStream out, PrintStream err) {
+        if (lines.isEmpty()) {
+            err.println("Error: Empty job");
+            return CommandLineRunner.EXIT_USAGE;
+        }
+
+        CommandLineRunner.Options options;
+        try {
+            Path workingDir = Path.of(lines.get(0));
+            options = CommandLineRunner.parse(lines.subList(1, lines.size()).toArray(new String[0]), workingDir);
+            if (options != null && options.daemon()) {
+                throw new IllegalArgumentException("--daemon is not allowed in a job");
+            }
+        } catch (IllegalArgumentException e) {
+            err.println("Error: " + e.getMessage());
+            err.println(CommandLineRunner.USAGE);
+            return CommandLineRunner.EXIT_USAGE;
+        }
+        if (options == null) {
+            out.println(CommandLineRunner.USAGE);
+            return CommandLineRunner.EXIT_OK;
+        }
+
+        WarmService warm;
+        try {
+            warm = acquireService(options);
+        } catch (Exception e) {
+            logger.error("Cannot prepare service for job: {}", e.getMessage(), e);
+            err.println("Error: " + e.getMessage());
+            return CommandLineRunner.EXIT_ERROR;
+        }
+
+        try {
+            // Имена и счётчики - на задачу; правила, кэш и прогретые классы остаются
+            ObfuscationJob job = warm.service.newJob();
+            job.setFileListener((source, output) -> out.println("Processed file: " + output));
+            return CommandLineRunner.execute(job, options, start, false, out, err);
+        } finally {
+            releaseService(warm);
+        }
+    }
+
+    private synchronized WarmService acquireService(CommandLineRunner.Options options) throws IOException {
+        Path keepRulesFile = options.keepRulesFile();
+        FileTime keepRulesModified = keepRulesFile != null && Files.exists(keepRulesFile)
+                ? Files.getLastModifiedTime(keepRulesFile)
+                : null;
+        List<FileTime> classpathModified = new ArrayList<>();
+        for (Path element : options.classpath()) {
+            classpathModified.add(Files.exists(element) ? Files.getLastModifiedTime(element) : null);
+        }
+        ServiceKey key = new ServiceKey(options.threads(), options.nameSeed(), keepRulesFile, keepRulesModified,
+                options.cacheDir(), options.classpath(), classpathModified, options.indexDir());
+
+        WarmService warm = services.get(key);
+        if (warm == null) {
+            logger.info("Creating warm service for {}", key);
+            ObfuscationService service = new ObfuscationService(options.threads(), options.nameSeed());
+            try {
+                service.setCacheDirectory(options.cacheDir());
+                service.setClasspath(options.classpath(), options.indexDir());
+                service.setKeepRulesFile(keepRulesFile);
+            } catch (RuntimeException e) {
+                service.shutdown();
+                throw e;
+            }
+            warm = new WarmService(service);
+            services.put(key, warm);
+        }
+        warm.activeJobs++;
+        return warm;
+    }
+
+    private synchronized void releaseService(WarmService warm) {
+        warm.activeJobs--;
+        if (warm.evicted && warm.activeJobs == 0) {
+            warm.service.shutdown();
+        }
+    }
+
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        int warmServices;
+        synchronized (this) {
+            warmServices = services.size();
+        }
+        respond(exchange, 200, "ok jobs=" + completedJobs.get() + " services=" + warmServices + "\n");
+    }
+
+    private void handleShutdown(HttpExchange exchange) throws IOException {
+        if (!exchange.getRequestMethod().equals("POST")) {
+            respond(exchange, 405, "POST required\n");
+            return;
+        }
+        if (!authorized(exchange)) {
+            respond(exchange, 401, "Daemon token required\n");
+            return;
+        }
+        respond(exchange, 200, "ok\n");
+        // Остановка ждёт завершения обработчиков, поэтому не из потока обработчика
+        new Thread(this::close, "obfuscation-daemon-shutdown").start();
+    }
+
+    private static void respond(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream body = exchange.getResponseBody()) {
+            body.write(bytes);
+        }
+    }
+
+    // Поток строк с префиксом: вывод задачи уходит клиенту построчно, по мере появления.
+    // Слушатель файлов пишет из потоков-воркеров, поэтому запись строки синхронизирована.
+    // close() не закрывает тело ответа - после вывода задачи идёт строка exit
+    private static final class PrefixedLines extends OutputStream {
+        private final byte[] prefix;
+        private final OutputStream target;
+        private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+
+        private PrefixedLines(String prefix, OutputStream target) {
+            this.prefix = prefix.getBytes(StandardCharsets.UTF_8);
+            this.target = target;
+        }
+
+        @Override
+        public synchronized void write(int b) throws IOException {
+            if (b == '\n') {
+                synchronized (target) {
+                    target.write(prefix);
+                    line.writeTo(target);
+                    target.write('\n');
+                    target.flush();
+                }
+                line.reset();
+            } else if (b != '\r') {
+                line.write(b);
+            }
+        }
+
+        // PrintStream сбрасывает буфер и посреди строки (print, printf), поэтому
+        // незавершённая строка отправляется только при закрытии
+        @Override
+        public synchronized void close() throws IOException {
+            if (line.size() > 0) {
+                write('\n');
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.obfuscator.fileprocessor;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+// Пул буферов вывода: результат каждого файла пишется в буфер, освобождённый
+// предыдущим файлом, и массивы не перевыделяются под каждый файл заново.
+// Очень большие буферы не возвращаются в пул, чтобы один огромный файл
+// не держал память до конца обработки
+final class BufferPool {
+
+    private static final int MAX_POOLED_CAPACITY = 4 * 1024 * 1024;
+
+    private final ConcurrentLinkedQueue<Buffer> buffers = new ConcurrentLinkedQueue<>();
+
+    // Буфер с доступом к содержимому без копии
+    static final class Buffer extends ByteArrayOutputStream {
+
+        private Buffer(int size) {
+            super(size);
+        }
+
+        // Действителен до следующей записи в буфер и до его возврата в пул
+        ByteBuffer contents() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    Buffer acquire(int sizeHint) {
+        Buffer buffer = buffers.poll();
+        if (buffer == null) {
+            return new Buffer(Math.max(32, sizeHint));
+        }
+        buffer.reset();
+        return buffer;
+    }
+
+    void release(Buffer buffer) {
+        if (buffer != null && buffer.capacity() <= MAX_POOLED_CAPACITY) {
+            buffers.offer(buffer);
+        }
+    }
+}
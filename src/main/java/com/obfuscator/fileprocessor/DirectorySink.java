@@ -0,0 +1,61 @@
+package com.obfuscator.fileprocessor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Вывод в дерево каталогов. Каждый файл пишется во временный рядом с результатом
+// и атомарно переименовывается. Созданные каталоги запоминаются: для файлов
+// одного пакета createDirectories вызывается один раз
+public class DirectorySink implements OutputSink {
+
+    private static final Logger logger = LogManager.getLogger(DirectorySink.class);
+
+    private final Path root;
+    private final Set<Path> createdDirectories = ConcurrentHashMap.newKeySet();
+
+    public DirectorySink(Path root) {
+        this.root = root;
+        logger.debug("DirectorySink initialized: {}", root);
+    }
+
+    public Path getRoot() {
+        return root;
+    }
+
+    @Override
+    public Path write(Path relativePath, ByteBuffer content) throws IOException {
+        Path target = root.resolve(relativePath);
+        Path directory = target.getParent();
+        if (!createdDirectories.contains(directory)) {
+            Files.createDirectories(directory);
+            createdDirectories.add(directory);
+        }
+
+        Path tempFile = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer bytes = content.duplicate();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        logger.debug("File saved: {}", target);
+        return target;
+    }
+}
@@ -0,0 +1,205 @@
+package com.obfuscator.fileprocessor;
+
+import com.obfuscator.obfuscator.ObfuscationException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.FileSystem;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+// Список файлов проекта между фазами. Записи копятся в памяти порциями по runSize:
+// заполненная порция сортируется и сбрасывается во временный файл, чтение сливает
+// отсортированные порции. В куче одновременно не больше одной порции и по записи
+// от каждой сброшенной, сколько бы файлов ни было в проекте
+final class FileList implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(FileList.class);
+
+    // key == null - файл не прочитан или не проиндексирован; copied - у файла есть
+    // побайтно одинаковые копии, его результат нужен для них
+    record Item(Path path, String key, boolean copied) {
+    }
+
+    static final Comparator<Item> BY_PATH = Comparator.comparing(Item::path);
+    // Копии идут подряд, первой - копия с меньшим путём
+    static final Comparator<Item> BY_KEY = Comparator.comparing(Item::key,
+            Comparator.nullsFirst(Comparator.<String>naturalOrder())).thenComparing(Item::path);
+
+    // Чтение записей по порядку; next() == null - записи кончились
+    interface Cursor extends Closeable {
+        Item next() throws IOException;
+
+        @Override
+        default void close() throws IOException {
+        }
+    }
+
+    private final FileSystem fileSystem;
+    private final Comparator<Item> order;
+    private final int runSize;
+    private final List<Item> run = new ArrayList<>();
+    private final List<Path> spills = new ArrayList<>();
+    private long size;
+
+    // fileSystem - файловая система путей списка: из неё пути восстанавливаются при чтении
+    FileList(FileSystem fileSystem, Comparator<Item> order, int runSize) {
+        this.fileSystem = fileSystem;
+        this.order = order;
+        this.runSize = Math.max(1, runSize);
+    }
+
+    // Вызывается из потоков записи конвейера
+    synchronized void add(Item item) {
+        run.add(item);
+        size++;
+        if (run.size() >= runSize) {
+            try {
+                spill();
+            } catch (IOException e) {
+                throw new ObfuscationException("Cannot spill file list: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    synchronized long size() {
+        return size;
+    }
+
+    private void spill() throws IOException {
+        run.sort(order);
+        Path spill = Files.createTempFile("obfuscator-files-", ".spill");
+        spills.add(spill);
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(spill)))) {
+            for (Item item : run) {
+                out.writeUTF(item.path().toString());
+                out.writeBoolean(item.key() != null);
+                if (item.key() != null) {
+                    out.writeUTF(item.key());
+                }
+                out.writeBoolean(item.copied());
+            }
+        }
+        logger.debug("Spilled {} files of the file list to {}", run.size(), spill);
+        run.clear();
+    }
+
+    // Все записи в порядке order; добавлять записи во время чтения нельзя
+    synchronized Cursor open() throws IOException {
+        run.sort(order);
+        List<Cursor> sources = new ArrayList<>(spills.size() + 1);
+        Iterator<Item> memory = run.iterator();
+        sources.add(() -> memory.hasNext() ? memory.next() : null);
+        try {
+            for (Path spill : spills) {
+                sources.add(spillCursor(spill));
+            }
+        } catch (IOException e) {
+            closeAll(sources);
+            throw e;
+        }
+        if (sources.size() == 1) {
+            return sources.get(0);
+        }
+        return mergeCursor(sources);
+    }
+
+    private Cursor spillCursor(Path spill) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(spill)));
+        return new Cursor() {
+            @Override
+            public Item next() throws IOException {
+                String path;
+                try {
+                    path = in.readUTF();
+                } catch (EOFException e) {
+                    return null;
+                }
+                String key = in.readBoolean() ? in.readUTF() : null;
+                return new Item(fileSystem.getPath(path), key, in.readBoolean());
+            }
+
+            @Override
+            public void close() throws IOException {
+                in.close();
+            }
+        };
+    }
+
+    private record Head(Item item, Cursor source) {
+    }
+
+    // Слияние отсортированных порций: в очереди по текущей записи от каждой порции
+    private Cursor mergeCursor(List<Cursor> sources) throws IOException {
+        PriorityQueue<Head> heads = new PriorityQueue<>(sources.size(), Comparator.comparing(Head::item, order));
+        try {
+            for (Cursor source : sources) {
+                Item item = source.next();
+                if (item != null) {
+                    heads.add(new Head(item, source));
+                }
+            }
+        } catch (IOException e) {
+            closeAll(sources);
+            throw e;
+        }
+        return new Cursor() {
+            @Override
+            public Item next() throws IOException {
+                Head head = heads.poll();
+                if (head == null) {
+                    return null;
+                }
+                Item following = head.source().next();
+                if (following != null) {
+                    heads.add(new Head(following, head.source()));
+                }
+                return head.item();
+            }
+
+            @Override
+            public void close() throws IOException {
+                closeAll(sources);
+            }
+        };
+    }
+
+    private static void closeAll(List<Cursor> sources) throws IOException {
+        IOException failure = null;
+        for (Cursor source : sources) {
+            try {
+                source.close();
+            } catch (IOException e) {
+                failure = e;
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        run.clear();
+        for (Path spill : spills) {
+            try {
+                Files.deleteIfExists(spill);
+            } catch (IOException e) {
+                logger.warn("Cannot delete file list spill {}: {}", spill, e.getMessage());
+            }
+        }
+        spills.clear();
+    }
+}
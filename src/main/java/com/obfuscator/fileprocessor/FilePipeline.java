@@ -0,0 +1,112 @@
+package com.obfuscator.fileprocessor;
+
+import com.obfuscator.obfuscator.ObfuscationException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+// Конвейер обработки файлов: чтение -> преобразование -> запись. Чтение и запись идут
+// на своих пулах потоков (потоков записи столько, сколько просит OutputSink), преобразование -
+// на переданном исполнителе (очередь общего WorkerPool или пул FileProcessor), так что диск
+// работает одновременно с разбором.
+// Число файлов в конвейере ограничено capacity: submit блокирует обход каталога, пока
+// место не освободится, поэтому в памяти одновременно не больше capacity содержимых и
+// результатов, сколько бы файлов ни было в проекте
+final class FilePipeline implements AutoCloseable {
+
+    private static final Logger logger = LogManager.getLogger(FilePipeline.class);
+
+    private static final int READ_THREADS = 2;
+    private static final AtomicInteger PIPELINE_COUNTER = new AtomicInteger();
+
+    private final ExecutorService readers;
+    private final ExecutorService writers;
+    private final Executor transformers;
+    private final int capacity;
+    private final Semaphore slots;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+
+    FilePipeline(Executor transformers, int capacity, int writeThreads) {
+        int pipelineId = PIPELINE_COUNTER.incrementAndGet();
+        this.readers = Executors.newFixedThreadPool(READ_THREADS, threadFactory("file-reader-" + pipelineId));
+        this.writers = Executors.newFixedThreadPool(Math.max(1, writeThreads), threadFactory("file-writer-" + pipelineId));
+        this.transformers = transformers;
+        this.capacity = Math.max(1, capacity);
+        this.slots = new Semaphore(this.capacity);
+        logger.debug("FilePipeline created (capacity={}, writers={})", this.capacity, writeThreads);
+    }
+
+    // Ставит файл в конвейер; ждёт, пока в конвейере не освободится место
+    <R, T> void submit(Callable<R> read, Function<R, T> transform, Consumer<T> write) {
+        checkFailure();
+        try {
+            slots.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ObfuscationException("Directory processing interrupted", e);
+        }
+
+        CompletableFuture
+                .supplyAsync(() -> {
+                    try {
+                        return read.call();
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    }
+                }, readers)
+                .thenApplyAsync(transform, transformers)
+                .thenAcceptAsync(write, writers)
+                .whenComplete((ignored, error) -> {
+                    if (error != null) {
+                        failure.compareAndSet(null, error instanceof CompletionException ? error.getCause() : error);
+                    }
+                    slots.release();
+                });
+    }
+
+    // Ждёт, пока все поставленные файлы пройдут конвейер: все места свободны
+    void await() {
+        try {
+            slots.acquire(capacity);
+            slots.release(capacity);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ObfuscationException("Directory processing interrupted", e);
+        }
+        checkFailure();
+    }
+
+    @Override
+    public void close() {
+        readers.shutdownNow();
+        writers.shutdownNow();
+    }
+
+    private void checkFailure() {
+        Throwable error = failure.get();
+        if (error != null) {
+            throw new ObfuscationException("Parallel processing failed: " + error.getMessage(), error);
+        }
+    }
+
+    private static ThreadFactory threadFactory(String prefix) {
+        AtomicInteger threadCounter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
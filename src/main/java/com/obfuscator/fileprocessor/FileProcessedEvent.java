@@ -0,0 +1,99 @@
+package com.obfuscator.fileprocessor;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+import java.nio.file.Path;
+
+// Событие JFR на файл FileProcessor: путь, размеры и время чтения, преобразования
+// и записи. В каталоге стадии файла идут в разных потоках конвейера, поэтому
+// длительность события включает и ожидание в очередях между стадиями.
+// Заодно событие переносит данные файла для строки FileReport, даже без записи JFR
+@Name(FileProcessedEvent.NAME)
+@Label("File Processed")
+@Category("Obfuscator")
+@Description("One source file read, obfuscated and written")
+@StackTrace(false)
+@Threshold(FileProcessedEvent.DEFAULT_THRESHOLD)
+public final class FileProcessedEvent extends Event {
+
+    public static final String NAME = "com.obfuscator.FileProcessed";
+    public static final String DEFAULT_THRESHOLD = "20 ms";
+
+    @Label("Path")
+    String path;
+
+    @Label("Input Size")
+    @DataAmount
+    long inputSize;
+
+    @Label("Output Size")
+    @DataAmount
+    long outputSize;
+
+    @Label("Renames")
+    int renames;
+
+    @Label("Classes Renamed")
+    int classesRenamed;
+
+    @Label("Methods Renamed")
+    int methodsRenamed;
+
+    @Label("Variables Renamed")
+    int variablesRenamed;
+
+    @Label("From Cache")
+    boolean cached;
+
+    @Label("Read")
+    @Timespan
+    long readTime;
+
+    @Label("Parse")
+    @Timespan
+    long parseTime;
+
+    @Label("Transform")
+    @Timespan
+    long transformTime;
+
+    @Label("Write")
+    @Timespan
+    long writeTime;
+
+    // Время стадий нужно отчёту; transient-поля JFR не записывает
+    private transient boolean timed;
+
+    static FileProcessedEvent start(boolean timed) {
+        FileProcessedEvent event = new FileProcessedEvent();
+        event.timed = timed;
+        event.begin();
+        return event;
+    }
+
+    // Отметка времени для стадий; без записи JFR и отчёта nanoTime не вызывается
+    long now() {
+        return timed || isEnabled() ? System.nanoTime() : 0;
+    }
+
+    // Время файла без ожидания в очередях конвейера
+    long serviceTime() {
+        return readTime + transformTime + writeTime;
+    }
+
+    void finish(Path javaFile) {
+        end();
+        if (shouldCommit()) {
+            path = javaFile.toString();
+            commit();
+        }
+    }
+}
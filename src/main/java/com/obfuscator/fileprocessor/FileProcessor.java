@@ -2,157 +2,744 @@ package com.obfuscator.fileprocessor;
 
 import com.obfuscator.obfuscator.CodeObfuscator;
 import com.obfuscator.obfuscator.ObfuscationException;
+import com.obfuscator.obfuscator.SymbolIndex;
+import com.obfuscator.util.Metrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import java.io.IOException;
-import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
-import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class FileProcessor {
 
     private static final Logger logger = LogManager.getLogger(FileProcessor.class);
 
+    // Файлов в конвейере на один поток преобразования: ограничивает память под содержимое
+    private static final int IN_FLIGHT_PER_WORKER = 4;
+    private static final int OUTPUT_SLACK = 1024;
+    private static final int DEFAULT_MAPPING_THRESHOLD = 1024 * 1024;
+    private static final int DEFAULT_FILE_LIST_RUN_SIZE = 16 * 1024;
+
     private final CodeObfuscator obfuscator;
+    private final BufferPool outputBuffers = new BufferPool();
+    private volatile int parallelism;
+    private volatile ObfuscationCache cache;
+    // Общий пул нескольких задач; без него каждая обработка каталога создаёт свои потоки
+    private volatile WorkerPool workerPool;
+    private volatile FileWalker fileWalker = FileWalker.defaults();
+    private volatile int mappingThreshold = DEFAULT_MAPPING_THRESHOLD;
+    private volatile int fileListRunSize = DEFAULT_FILE_LIST_RUN_SIZE;
 
     private final AtomicInteger filesProcessed = new AtomicInteger(0);
     private final AtomicInteger filesSkipped = new AtomicInteger(0);
     private final AtomicInteger filesFailed = new AtomicInteger(0);
 
+    // Вызывается из потоков-воркеров для каждого готового файла: (исходный, результат)
+    private volatile BiConsumer<Path, Path> fileListener;
+    private volatile FileReport report;
+
     public FileProcessor(CodeObfuscator obfuscator) {
+        this(obfuscator, 1);
+    }
+
+    public FileProcessor(CodeObfuscator obfuscator, int parallelism) {
         this.obfuscator = obfuscator;
-        logger.debug("FileProcessor initialized");
+        setParallelism(parallelism);
+        logger.debug("FileProcessor initialized (parallelism={})", this.parallelism);
+    }
+
+    public void setParallelism(int parallelism) {
+        // 0 и меньше - по числу доступных ядер
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public void setCache(ObfuscationCache cache) {
+        this.cache = cache;
+        logger.debug("Obfuscation cache {}", cache != null ? "enabled: " + cache.getCacheDir() : "disabled");
+    }
+
+    public void setFileListener(BiConsumer<Path, Path> fileListener) {
+        this.fileListener = fileListener;
+    }
+
+    // Строка отчёта на каждый обработанный или неудачный файл; закрывает отчёт вызывающий
+    public void setReport(FileReport report) {
+        this.report = report;
+        obfuscator.setFileTiming(report != null);
+    }
+
+    public FileReport getReport() {
+        return report;
+    }
+
+    public void setWorkerPool(WorkerPool workerPool) {
+        this.workerPool = workerPool;
+    }
+
+    public WorkerPool getWorkerPool() {
+        return workerPool;
+    }
+
+    public void setFileWalker(FileWalker fileWalker) {
+        this.fileWalker = fileWalker;
+    }
+
+    public FileWalker getFileWalker() {
+        return fileWalker;
+    }
+
+    // Файлы от threshold байт отображаются в память, меньшие читаются целиком в кучу
+    public void setMappingThreshold(int threshold) {
+        this.mappingThreshold = threshold;
+    }
+
+    public int getMappingThreshold() {
+        return mappingThreshold;
+    }
+
+    // Сколько файлов списка между фазами держится в куче, прежде чем порция уйдёт на диск
+    public void setFileListRunSize(int runSize) {
+        this.fileListRunSize = Math.max(1, runSize);
+    }
+
+    public int getFileListRunSize() {
+        return fileListRunSize;
+    }
+
+    public static boolean isSourceArchive(Path input) {
+        return OutputSink.isArchive(input) && Files.isRegularFile(input);
+    }
+
+    public ObfuscationCache getCache() {
+        return cache;
+    }
+
+    private record SourceFile(Path path, String key) {
+    }
+
+    // Содержимое файла между чтением и преобразованием; cached - результат можно взять из кэша.
+    // event - событие JFR файла, идёт по стадиям вместе с ним (null при сборе объявлений)
+    private record SourceContent(SourceFile source, ByteBuffer content, ObfuscationCache.Entry cached,
+                                 FileProcessedEvent event) {
+    }
+
+    // Записанный результат файла, у которого есть побайтно одинаковые копии
+    private record KeptOutput(Path output, byte[] content) {
+    }
+
+    // Результат преобразования, ожидающий записи. output == null - результат берётся из кэша
+    private record TransformedFile(SourceFile source, String newFileName, BufferPool.Buffer output,
+                                   List<SymbolIndex.Declaration> declarations,
+                                   Collection<SymbolIndex.Reference> references,
+                                   List<String> localNames, List<SymbolIndex.TypeSource> typeSources,
+                                   FileProcessedEvent event) {
     }
 
     public List<Path> processDirectory(Path inputDir, Path outputDir) throws IOException {
-        try {
-            logger.info("Processing directory: {}", inputDir);
+        List<Path> processedFiles = Collections.synchronizedList(new ArrayList<>());
+        processDirectory(inputDir, outputDir, processedFiles::add);
+        // Файлы записываются в порядке готовности; список упорядочен, чтобы вывод не зависел от потоков
+        Collections.sort(processedFiles);
+        return processedFiles;
+    }
 
-            List<Path> javaFiles = findJavaFiles(inputDir);
-            logger.info("Found {} Java files", javaFiles.size());
+    // Потоковый вариант: каждый записанный файл отдаётся в outputs из потока записи,
+    // сразу по готовности. Возвращает число записанных файлов. outputDir - каталог
+    // или архив .zip/.jar (OutputSink.forPath)
+    public int processDirectory(Path inputDir, Path outputDir, Consumer<Path> outputs) throws IOException {
+        try (OutputSink sink = OutputSink.forPath(outputDir)) {
+            try {
+                return processDirectory(inputDir, sink, outputs);
+            } catch (Throwable e) {
+                abort(sink, e);
+                throw e;
+            }
+        }
+    }
 
-            if (javaFiles.isEmpty()) {
-                logger.warn("No Java files found in directory: {}", inputDir);
-                return new ArrayList<>();
+    // Результаты уходят в sink; закрывает sink вызывающий. inputDir - каталог или архив
+    // исходников (isSourceArchive): архив обходится как каталог через zip-файловую систему,
+    // без распаковки на диск, а пути внутри него становятся путями вывода
+    public int processDirectory(Path inputDir, OutputSink sink, Consumer<Path> outputs) throws IOException {
+        if (isSourceArchive(inputDir)) {
+            try (FileSystem archive = FileSystems.newFileSystem(inputDir)) {
+                logger.info("Reading sources from archive: {}", inputDir);
+                return processDirectory(archive.getPath("/"), sink, outputs);
             }
+        }
 
-            Files.createDirectories(outputDir);
-            logger.info("Output directory created/verified: {}", outputDir);
+        WorkerPool pool = workerPool;
+        WorkerPool.Lane lane = pool != null
+                ? pool.openLane(WorkerPool.Priority.BATCH, "batch-" + System.identityHashCode(this))
+                : null;
+        int workers = pool != null ? pool.getThreads() : parallelism;
+        ExecutorService ownWorkers = lane == null ? Executors.newFixedThreadPool(workers) : null;
+        // Преобразование - в пакетной очереди общего пула или на своём пуле из parallelism потоков
+        Executor transformers = lane != null ? command -> lane.submit(Executors.callable(command)) : ownWorkers;
+
+        try (FilePipeline pipeline = new FilePipeline(transformers, workers * IN_FLIGHT_PER_WORKER,
+                sink.writeThreads())) {
+            logger.info("Processing directory: {}", inputDir);
+            if (pool != null) {
+                logger.info("Processing files on shared worker pool ({} threads)", workers);
+            } else if (workers > 1) {
+                logger.info("Processing files in parallel with {} workers", workers);
+            }
 
-            List<Path> processedFiles = new ArrayList<>();
+            // Фаза 1: параллельный обход каталога сразу подаёт файлы в конвейер, объявления собираются
+            // в общий индекс проекта. Файлы из кэша не разбираются: их объявления и имена
+            // берутся из записи кэша. Для разрешения символов в индекс пишется файл
+            // основного типа каждого исходника - его находит лексер, без разбора.
+            // Список файлов (путь и ключ) уходит на диск порциями: в куче на файл остаются
+            // только ключ в indexedKeys и его объявления в индексе проекта
+            SymbolIndex.Builder indexBuilder = new SymbolIndex.Builder();
+            String settingsFingerprint = obfuscator.getSettingsFingerprint();
+            Set<String> indexedKeys = ConcurrentHashMap.newKeySet();
+            Queue<CodeObfuscator> indexWorkers = new ConcurrentLinkedQueue<>();
+            FileSystem fileSystem = inputDir.getFileSystem();
+            int runSize = fileListRunSize;
+
+            try (FileList walked = new FileList(fileSystem, FileList.BY_KEY, runSize);
+                 FileList rewrites = new FileList(fileSystem, FileList.BY_PATH, runSize);
+                 FileList duplicates = new FileList(fileSystem, FileList.BY_PATH, runSize)) {
+
+                fileWalker.walk(inputDir, javaFile -> pipeline.submit(
+                        () -> new SourceContent(new SourceFile(javaFile, null), readContentOrNull(javaFile), null, null),
+                        content -> withWorker(indexWorkers, obfuscator::createWorker,
+                                worker -> indexSourceFile(worker, content, settingsFingerprint,
+                                        indexBuilder, indexedKeys)),
+                        sourceFile -> walked.add(new FileList.Item(sourceFile.path(), sourceFile.key(), false))));
+                pipeline.await();
+                logger.info("Found {} Java files", walked.size());
+
+                if (walked.size() == 0) {
+                    logger.warn("No Java files found in directory: {}", inputDir);
+                    return 0;
+                }
 
-            for (Path javaFile : javaFiles) {
-                try {
-                    logger.debug("Processing file: {}", javaFile);
-                    Path processedFile = processSingleFile(javaFile, inputDir, outputDir);
-                    processedFiles.add(processedFile);
-                    filesProcessed.incrementAndGet();
-                    logger.info("✅ Processed file: {} -> {}", javaFile.getFileName(), processedFile.getFileName());
-                } catch (ObfuscationException e) {
-                    filesFailed.incrementAndGet();
-                    logger.error("❌ Failed to process file {}: {}", javaFile, e.getMessage());
-                } catch (Exception e) {
-                    filesSkipped.incrementAndGet();
-                    logger.warn("⚠️ Skipped file {} due to unexpected error: {}", javaFile, e.getMessage());
+                SymbolIndex symbolIndex = obfuscator.buildSymbolIndex(indexBuilder);
+
+                // Побайтно одинаковые файлы (например, вендорные копии) обрабатываем один раз:
+                // в порядке ключей копии идут подряд, переписывается первая по пути
+                try (FileList.Cursor cursor = walked.open()) {
+                    FileList.Item original = null;
+                    boolean copied = false;
+                    for (FileList.Item item = cursor.next(); ; item = cursor.next()) {
+                        if (item != null && original != null && item.key() != null
+                                && item.key().equals(original.key())) {
+                            duplicates.add(item);
+                            copied = true;
+                            continue;
+                        }
+                        if (original != null) {
+                            rewrites.add(new FileList.Item(original.path(), original.key(), copied));
+                        }
+                        if (item == null) {
+                            break;
+                        }
+                        original = item;
+                        copied = false;
+                    }
                 }
-            }
 
-            logger.info("Directory processing completed. " +
-                            "✅ Processed: {}, ❌ Failed: {}, ⚠️ Skipped: {}",
-                    filesProcessed.get(), filesFailed.get(), filesSkipped.get());
+                // Фаза 2: переписываем файлы по замороженному индексу в порядке путей - порядок обхода
+                // зависит от потоков. Номер потока имён - позиция файла в этом порядке: локальные
+                // имена файла не зависят от того, какой воркер и в каком порядке его обработает
+                AtomicInteger written = new AtomicInteger();
+                Map<String, KeptOutput> originalOutputs = new ConcurrentHashMap<>();
+                Queue<CodeObfuscator> rewriteWorkers = new ConcurrentLinkedQueue<>();
+                try (FileList.Cursor cursor = rewrites.open()) {
+                    int nameStream = 0;
+                    for (FileList.Item item = cursor.next(); item != null; item = cursor.next(), nameStream++) {
+                        SourceFile sourceFile = new SourceFile(item.path(), item.key());
+                        boolean copied = item.copied();
+                        int fileNameStream = nameStream;
+                        pipeline.submit(
+                                () -> readForRewrite(sourceFile, symbolIndex),
+                                content -> withWorker(rewriteWorkers, () -> obfuscator.createWorker(symbolIndex),
+                                        worker -> transformSafely(worker, content, fileNameStream)),
+                                transformed -> {
+                                    Path output = writeSafely(transformed, inputDir, sink,
+                                            copied ? originalOutputs : null);
+                                    if (output != null) {
+                                        written.incrementAndGet();
+                                        outputs.accept(output);
+                                    }
+                                });
+                    }
+                }
+                pipeline.await();
+
+                try (FileList.Cursor cursor = duplicates.open()) {
+                    for (FileList.Item item = cursor.next(); item != null; item = cursor.next()) {
+                        SourceFile duplicate = new SourceFile(item.path(), item.key());
+                        Path output = copyDuplicate(duplicate, originalOutputs.get(duplicate.key()), inputDir, sink);
+                        if (output != null) {
+                            written.incrementAndGet();
+                            outputs.accept(output);
+                        }
+                    }
+                }
 
-            return processedFiles;
+                logStatistics();
+                return written.get();
+            }
 
         } catch (IOException e) {
             logger.error("IO error processing directory: {}", e.getMessage(), e);
             throw new ObfuscationException("IO error: " + e.getMessage(), e);
+        } finally {
+            if (lane != null) {
+                lane.cancel();
+            }
+            if (ownWorkers != null) {
+                ownWorkers.shutdownNow();
+            }
         }
     }
 
-    public Path processSingleFile(Path javaFile, Path inputDir, Path outputDir)
-            throws IOException, ObfuscationException {
+    private void logStatistics() {
+        if (cache != null) {
+            logger.info("{}", cache.getStatistics());
+        }
+        if (obfuscator.getSymbolResolver() != null) {
+            logger.info("{}", obfuscator.getSymbolResolver().getStatistics());
+        }
+        if (obfuscator.getMetrics().isEnabled()) {
+            logger.info("{}", obfuscator.getMetrics().dump());
+        }
+        if (report != null) {
+            logger.info("{}", report.describe());
+        }
 
-        logger.debug("Processing single file: {}", javaFile);
+        logger.info("Directory processing completed. " +
+                        "✅ Processed: {}, ❌ Failed: {}, ⚠️ Skipped: {}",
+                filesProcessed.get(), filesFailed.get(), filesSkipped.get());
+    }
 
-        String content;
+    // У каждого одновременно работающего файла свой CodeObfuscator: JavaParser и visitor'ы
+    // не потокобезопасны. Освободившиеся воркеры переиспользуются следующими файлами
+    private static <T> T withWorker(Queue<CodeObfuscator> idleWorkers, Supplier<CodeObfuscator> workerFactory,
+                                    Function<CodeObfuscator, T> task) {
+        CodeObfuscator worker = idleWorkers.poll();
+        if (worker == null) {
+            worker = workerFactory.get();
+        }
         try {
-            // Читаем файл старым способом (работает в Java 8+)
-            content = new String(Files.readAllBytes(javaFile), StandardCharsets.UTF_8);
-        } catch (IOException e) {
-            throw new ObfuscationException("Failed to read file: " + javaFile, e);
+            return task.apply(worker);
+        } finally {
+            idleWorkers.offer(worker);
         }
+    }
 
-        String fileName = javaFile.getFileName().toString();
+    private ByteBuffer readContentOrNull(Path javaFile) {
+        try {
+            return readContent(javaFile);
+        } catch (ObfuscationException e) {
+            // Ошибку по этому файлу посчитает вторая фаза
+            logger.debug("Cannot read file {}: {}", javaFile, e.getMessage());
+            return null;
+        }
+    }
 
-        String obfuscatedContent = obfuscator.obfuscateCode(content, fileName);
+    private SourceFile indexSourceFile(CodeObfuscator worker, SourceContent sourceContent, String settingsFingerprint,
+                                       SymbolIndex.Builder indexBuilder, Set<String> indexedKeys) {
+        Path javaFile = sourceContent.source().path();
+        ByteBuffer content = sourceContent.content();
+        if (content == null) {
+            return new SourceFile(javaFile, null);
+        }
 
-        // Проверяем, изменился ли код
-        if (content.equals(obfuscatedContent)) {
-            logger.warn("File {} was not obfuscated (identical to original)", fileName);
-        } else {
-            logger.debug("File {} successfully obfuscated", fileName);
+        try {
+            String fileName = javaFile.getFileName().toString();
+            String key = ObfuscationCache.computeKey(content, fileName, settingsFingerprint);
+
+            if (!indexedKeys.add(key)) {
+                return new SourceFile(javaFile, key);
+            }
+
+            ObfuscationCache.Entry cached = cache != null ? cache.load(key) : null;
+            if (cached != null) {
+                cached.declarations().forEach(indexBuilder::add);
+                for (SymbolIndex.Reference reference : cached.references()) {
+                    if (reference.newName() != null) {
+                        indexBuilder.pin(reference.kind(), reference.name(), reference.newName());
+                    }
+                }
+                cached.localNames().forEach(indexBuilder::reserve);
+            }
+            boolean resolving = worker.getSymbolResolver() != null;
+            CharSequence sourceCode = cached == null || resolving ? worker.decode(content) : null;
+            if (cached == null) {
+                worker.collectDeclarations(sourceCode, fileName, indexBuilder);
+            }
+            if (resolving) {
+                worker.collectSource(sourceCode, fileName, javaFile, key, indexBuilder);
+            }
+            return new SourceFile(javaFile, key);
+
+        } catch (Exception e) {
+            // Ошибку по этому файлу посчитает вторая фаза
+            logger.debug("Cannot index file {}: {}", javaFile, e.getMessage());
+            return new SourceFile(javaFile, null);
         }
+    }
 
-        String newFileName = obfuscator.getNewFileName(fileName);
+    // Файл с актуальной записью кэша не читается: результат копируется из кэша при записи
+    // Запись кэша читается заново, а не хранится с первой фазы: записи всех файлов проекта
+    // заняли бы в куче больше, чем сам список файлов
+    private SourceContent readForRewrite(SourceFile sourceFile, SymbolIndex symbolIndex) {
+        FileProcessedEvent event = FileProcessedEvent.start(report != null);
+        ObfuscationCache.Entry cached = cache != null && sourceFile.key() != null ? cache.reload(sourceFile.key()) : null;
+        if (cached != null && symbolIndex.matches(cached.references())
+                && symbolIndex.matchesSources(cached.typeSources())) {
+            event.cached = true;
+            return new SourceContent(sourceFile, null, cached, event);
+        }
+        try {
+            long start = event.now();
+            ByteBuffer content = readContent(sourceFile.path());
+            event.readTime = event.now() - start;
+            event.inputSize = content.remaining();
+            return new SourceContent(sourceFile, content, null, event);
+        } catch (ObfuscationException e) {
+            countFailure(sourceFile.path(), e);
+            return null;
+        }
+    }
 
-        Path relativePath = inputDir.relativize(javaFile.getParent());
-        Path outputPath = outputDir.resolve(relativePath).resolve(newFileName);
+    private TransformedFile transformSafely(CodeObfuscator worker, SourceContent content, int nameStream) {
+        if (content == null) {
+            return null;
+        }
+        if (content.cached() != null) {
+            return new TransformedFile(content.source(), content.cached().outputFileName(), null,
+                    List.of(), List.of(), List.of(), List.of(), content.event());
+        }
+        try {
+            logger.debug("Processing file: {}", content.source().path());
+            worker.useNameStream(nameStream);
+            return transform(worker, content.source(), content.content(), content.event());
+        } catch (ObfuscationException e) {
+            countFailure(content.source().path(), e);
+        } catch (Exception e) {
+            countSkip(content.source().path(), e);
+        }
+        return null;
+    }
 
+    // keptOutputs != null - у файла есть копии: его результат сохраняется для copyDuplicate
+    private Path writeSafely(TransformedFile transformed, Path inputDir, OutputSink sink,
+                             Map<String, KeptOutput> keptOutputs) {
+        if (transformed == null) {
+            return null;
+        }
+        Path javaFile = transformed.source().path();
         try {
-            Files.createDirectories(outputPath.getParent());
-        } catch (IOException e) {
-            throw new ObfuscationException("Failed to create directories: " + outputPath.getParent(), e);
+            Path processedFile;
+            if (transformed.output() == null) {
+                long start = transformed.event().now();
+                byte[] content = cache.readOutput(transformed.source().key());
+                processedFile = writeOutput(sink, relativeOutputPath(javaFile, inputDir, transformed.newFileName()),
+                        ByteBuffer.wrap(content));
+                transformed.event().writeTime = transformed.event().now() - start;
+                transformed.event().outputSize = content.length;
+                logger.debug("File {} restored from cache", javaFile.getFileName());
+                if (keptOutputs != null) {
+                    keptOutputs.put(transformed.source().key(), new KeptOutput(processedFile, content));
+                }
+            } else {
+                // Буфер вернётся в пул после записи, поэтому копия снимается заранее
+                byte[] content = keptOutputs != null ? transformed.output().toByteArray() : null;
+                processedFile = write(transformed, inputDir, sink);
+                if (keptOutputs != null) {
+                    keptOutputs.put(transformed.source().key(), new KeptOutput(processedFile, content));
+                }
+            }
+
+            transformed.event().finish(javaFile);
+            reportFile(javaFile, transformed.output() == null ? FileReport.CACHED : FileReport.OK, transformed.event());
+            filesProcessed.incrementAndGet();
+            logger.info("✅ Processed file: {} -> {}", javaFile.getFileName(), processedFile.getFileName());
+            notifyListener(javaFile, processedFile);
+            return processedFile;
+        } catch (ObfuscationException e) {
+            countFailure(javaFile, e);
+        } catch (Exception e) {
+            countSkip(javaFile, e);
         }
+        return null;
+    }
+
+    private void reportFile(Path javaFile, String status, FileProcessedEvent event) {
+        FileReport currentReport = report;
+        if (currentReport != null) {
+            currentReport.fileDone(javaFile, status, event);
+        }
+    }
+
+    private void reportFailure(Path javaFile, String status) {
+        FileReport currentReport = report;
+        if (currentReport != null) {
+            currentReport.fileFailed(javaFile, status);
+        }
+    }
+
+    private void countFailure(Path javaFile, Exception e) {
+        filesFailed.incrementAndGet();
+        reportFailure(javaFile, FileReport.FAILED);
+        logger.error("❌ Failed to process file {}: {}", javaFile, e.getMessage());
+    }
+
+    private void countSkip(Path javaFile, Exception e) {
+        filesSkipped.incrementAndGet();
+        reportFailure(javaFile, FileReport.SKIPPED);
+        logger.warn("⚠️ Skipped file {} due to unexpected error: {}", javaFile, e.getMessage());
+    }
+
+    private Path copyDuplicate(SourceFile duplicate, KeptOutput original, Path inputDir, OutputSink sink) {
+        if (original == null) {
+            filesFailed.incrementAndGet();
+            reportFailure(duplicate.path(), FileReport.FAILED);
+            logger.error("❌ Failed to process file {}: identical file failed", duplicate.path());
+            return null;
+        }
+
+        try {
+            FileProcessedEvent event = FileProcessedEvent.start(report != null);
+            long start = event.now();
+            Path outputPath = writeOutput(sink, relativeOutputPath(duplicate.path(), inputDir,
+                    original.output().getFileName().toString()), ByteBuffer.wrap(original.content()));
+            event.writeTime = event.now() - start;
+            event.outputSize = original.content().length;
+            event.finish(duplicate.path());
+            reportFile(duplicate.path(), FileReport.DUPLICATE, event);
+            filesProcessed.incrementAndGet();
+            logger.info("✅ Processed file: {} -> {} (identical to {})",
+                    duplicate.path().getFileName(), outputPath.getFileName(), original.output());
+            notifyListener(duplicate.path(), outputPath);
+            return outputPath;
+        } catch (Exception e) {
+            countSkip(duplicate.path(), e);
+            return null;
+        }
+    }
+
+    private void notifyListener(Path source, Path output) {
+        BiConsumer<Path, Path> listener = fileListener;
+        if (listener != null) {
+            listener.accept(source, output);
+        }
+    }
+
+    public Path processSingleFile(Path javaFile, Path inputDir, Path outputDir)
+            throws IOException, ObfuscationException {
+        try (OutputSink sink = OutputSink.forPath(outputDir)) {
+            try {
+                return processSingleFile(javaFile, inputDir, sink);
+            } catch (Throwable e) {
+                abort(sink, e);
+                throw e;
+            }
+        }
+    }
 
+    // Прерванный запуск не оставляет недописанный архив: close после abort ничего не делает
+    private static void abort(OutputSink sink, Throwable failure) {
         try {
-            // Пишем файл старым способом
-            Files.write(outputPath, obfuscatedContent.getBytes(StandardCharsets.UTF_8),
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-            logger.debug("File saved: {}", outputPath);
+            sink.abort();
         } catch (IOException e) {
-            throw new ObfuscationException("Failed to write file: " + outputPath, e);
+            failure.addSuppressed(e);
+        }
+    }
+
+    // С общим пулом одиночный файл идёт в интерактивную очередь и обгоняет
+    // ожидающие файлы пакетных задач
+    public Path processSingleFile(Path javaFile, Path inputDir, OutputSink sink)
+            throws IOException, ObfuscationException {
+        WorkerPool pool = workerPool;
+        if (pool == null) {
+            return processSingleFile(obfuscator, javaFile, inputDir, sink);
         }
 
+        WorkerPool.Lane lane = pool.openLane(WorkerPool.Priority.INTERACTIVE, javaFile.getFileName().toString());
+        Future<Path> result = lane.submit(() -> processSingleFile(obfuscator, javaFile, inputDir, sink));
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            lane.cancel();
+            Thread.currentThread().interrupt();
+            throw new ObfuscationException("File processing interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new ObfuscationException("File processing failed: " + e.getCause().getMessage(), e.getCause());
+        }
+    }
+
+    private Path processSingleFile(CodeObfuscator worker, Path javaFile, Path inputDir, OutputSink sink)
+            throws ObfuscationException {
+        logger.debug("Processing single file: {}", javaFile);
+        FileProcessedEvent event = FileProcessedEvent.start(report != null);
+        Path outputPath;
+        try {
+            long start = event.now();
+            ByteBuffer content = readContent(javaFile);
+            event.readTime = event.now() - start;
+            event.inputSize = content.remaining();
+            outputPath = write(transform(worker, new SourceFile(javaFile, null), content, event), inputDir, sink);
+        } catch (ObfuscationException e) {
+            reportFailure(javaFile, FileReport.FAILED);
+            throw e;
+        }
+        event.finish(javaFile);
+        reportFile(javaFile, FileReport.OK, event);
         return outputPath;
     }
 
-    private List<Path> findJavaFiles(Path directory) throws IOException {
-        List<Path> javaFiles = new ArrayList<>();
+    // Обфускация в буфер памяти: запись на диск - отдельная стадия конвейера
+    private TransformedFile transform(CodeObfuscator worker, SourceFile source, ByteBuffer content,
+                                      FileProcessedEvent event) throws ObfuscationException {
+        String fileName = source.path().getFileName().toString();
+        BufferPool.Buffer output = outputBuffers.acquire(content.remaining() + OUTPUT_SLACK);
+        int renames;
+        try {
+            long start = event.now();
+            renames = worker.obfuscateCode(worker.decode(content), fileName, Channels.newChannel(output));
+            event.transformTime = event.now() - start;
+            event.renames = renames;
+            event.classesRenamed = worker.getFileClassesRenamed();
+            event.methodsRenamed = worker.getFileMethodsRenamed();
+            event.variablesRenamed = worker.getFileVariablesRenamed();
+            event.parseTime = worker.getFilePhaseNanos(Metrics.Phase.PARSE);
+        } catch (IOException e) {
+            outputBuffers.release(output);
+            throw new ObfuscationException("Failed to encode output: " + fileName, e);
+        } catch (RuntimeException e) {
+            outputBuffers.release(output);
+            throw e;
+        }
+
+        // Проверяем, изменился ли код: без переименований вывод совпадает с исходником по смыслу
+        if (renames == 0) {
+            logger.warn("File {} was not obfuscated (no names renamed)", fileName);
+        } else {
+            logger.debug("File {} successfully obfuscated ({} renames)", fileName, renames);
+        }
 
-        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
-            @Override
-            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                if (file.toString().toLowerCase().endsWith(".java")) {
-                    javaFiles.add(file);
-                }
-                return FileVisitResult.CONTINUE;
+        // Метаданные для кэша снимаются сразу: следующий файл воркера их сбросит
+        if (cache != null && source.key() != null) {
+            return new TransformedFile(source, worker.getNewFileName(fileName), output,
+                    worker.getFileDeclarations(), worker.getFileReferences(), worker.getFileLocalNames(),
+                    worker.getFileTypeSources(), event);
+        }
+        return new TransformedFile(source, worker.getNewFileName(fileName), output, null, null, null, null, event);
+    }
+
+    // Буфер результата возвращается в пул: sink и кэш не держат его после возврата
+    private Path write(TransformedFile transformed, Path inputDir, OutputSink sink) throws ObfuscationException {
+        Path relativePath = relativeOutputPath(transformed.source().path(), inputDir, transformed.newFileName());
+        try {
+            Path outputPath;
+            FileProcessedEvent event = transformed.event();
+            try {
+                long start = event.now();
+                outputPath = writeOutput(sink, relativePath, transformed.output().contents());
+                event.writeTime = event.now() - start;
+                event.outputSize = transformed.output().size();
+            } catch (IOException e) {
+                throw new ObfuscationException("Failed to write file: " + relativePath, e);
             }
 
-            @Override
-            public FileVisitResult visitFileFailed(Path file, IOException exc) {
-                logger.warn("Cannot access file: {} - {}", file, exc.getMessage());
-                return FileVisitResult.CONTINUE;
+            ObfuscationCache currentCache = cache;
+            if (currentCache != null && transformed.declarations() != null) {
+                currentCache.store(transformed.source().key(), transformed.newFileName(),
+                        transformed.output().contents(), transformed.declarations(), transformed.references(),
+                        transformed.localNames(), transformed.typeSources());
             }
+            return outputPath;
+        } finally {
+            outputBuffers.release(transformed.output());
+        }
+    }
+
+    private Path writeOutput(OutputSink sink, Path relativePath, ByteBuffer content) throws IOException {
+        Metrics metrics = obfuscator.getMetrics();
+        long bytes = content.remaining();
+        long start = metrics.start();
+        Path outputPath = sink.write(relativePath, content);
+        metrics.stop(Metrics.Phase.WRITE, start);
+        metrics.addFileWritten(bytes);
+        return outputPath;
+    }
+
+    // Путь строится заново в файловой системе по умолчанию: исходник может лежать в архиве,
+    // а пути разных файловых систем не совмещаются
+    private static Path relativeOutputPath(Path javaFile, Path inputDir, String newFileName) {
+        Path relativePath = Path.of("");
+        for (Path part : inputDir.relativize(javaFile.getParent())) {
+            relativePath = relativePath.resolve(part.toString());
+        }
+        return relativePath.resolve(newFileName);
+    }
 
-            @Override
-            public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-                String dirName = dir.getFileName().toString();
-                if (dirName.startsWith(".") ||
-                        dirName.equals("node_modules") ||
-                        dirName.equals("target") ||
-                        dirName.equals("build")) {
-                    logger.debug("Skipping directory: {}", dirName);
-                    return FileVisitResult.SKIP_SUBTREE;
+    // Большой файл не копируется в кучу: страницы отображения подгружает ОС по мере
+    // декодирования, поэтому в замер READ входит только отображение. Буфер освобождается
+    // вместе с SourceContent
+    private ByteBuffer readContent(Path javaFile) throws ObfuscationException {
+        Metrics metrics = obfuscator.getMetrics();
+        long start = metrics.start();
+        try (FileChannel channel = FileChannel.open(javaFile, StandardOpenOption.READ)) {
+            long size = channel.size();
+            ByteBuffer content;
+            // Записи архива отображать нельзя: их содержимое сжато
+            if (size >= mappingThreshold && javaFile.getFileSystem() == FileSystems.getDefault()) {
+                content = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } else {
+                content = ByteBuffer.allocate((int) size);
+                while (content.hasRemaining()) {
+                    if (channel.read(content) < 0) {
+                        break;
+                    }
                 }
-                return FileVisitResult.CONTINUE;
+                content.flip();
             }
-        });
-
-        return javaFiles;
+            metrics.stop(Metrics.Phase.READ, start);
+            metrics.addBytesRead(content.remaining());
+            return content;
+        } catch (IOException e) {
+            throw new ObfuscationException("Failed to read file: " + javaFile, e);
+        }
     }
 
     public String getStatistics() {
@@ -167,6 +754,18 @@ public class FileProcessor {
         );
     }
 
+    public int getFilesProcessed() {
+        return filesProcessed.get();
+    }
+
+    public int getFilesFailed() {
+        return filesFailed.get();
+    }
+
+    public int getFilesSkipped() {
+        return filesSkipped.get();
+    }
+
     public void resetStatistics() {
         filesProcessed.set(0);
         filesFailed.set(0);
@@ -0,0 +1,218 @@
+package com.obfuscator.fileprocessor;
+
+import com.obfuscator.util.LatencyHistogram;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAdder;
+
+// Отчёт по файлам: строка на файл пишется из потока записи сразу, как файл готов,
+// поэтому отчёт длинного прогона можно читать по ходу работы. Формат - JSON Lines
+// или CSV (по расширению .csv). Итоги копятся в LongAdder и гистограмме без блокировок;
+// JSON Lines при закрытии завершается строкой итогов, у CSV итоги только в getSummary
+public final class FileReport implements Closeable {
+
+    private static final Logger logger = LogManager.getLogger(FileReport.class);
+
+    public enum Format {
+        JSON_LINES,
+        CSV;
+
+        public static Format forPath(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".csv") ? CSV : JSON_LINES;
+        }
+    }
+
+    // Состояние файла в строке отчёта
+    static final String OK = "ok";
+    static final String CACHED = "cached";
+    static final String DUPLICATE = "duplicate";
+    static final String FAILED = "failed";
+    static final String SKIPPED = "skipped";
+
+    private static final String CSV_HEADER = "path,status,inputBytes,outputBytes,classesRenamed,methodsRenamed,"
+            + "variablesRenamed,renames,readMs,parseMs,transformMs,writeMs,totalMs";
+
+    // Задержка файла - чтение, преобразование и запись без ожидания в очередях конвейера
+    public record Summary(long files, long failed, long inputBytes, long outputBytes,
+                          long classesRenamed, long methodsRenamed, long variablesRenamed,
+                          long p50Nanos, long p95Nanos, long p99Nanos, long maxNanos) {
+    }
+
+    private final Writer writer;
+    private final Format format;
+    private boolean broken;
+
+    private final LongAdder files = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder inputBytes = new LongAdder();
+    private final LongAdder outputBytes = new LongAdder();
+    private final LongAdder classesRenamed = new LongAdder();
+    private final LongAdder methodsRenamed = new LongAdder();
+    private final LongAdder variablesRenamed = new LongAdder();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    public FileReport(Writer writer, Format format) throws IOException {
+        this.writer = writer;
+        this.format = format;
+        if (format == Format.CSV) {
+            writer.write(CSV_HEADER);
+            writer.write('\n');
+            writer.flush();
+        }
+    }
+
+    public static FileReport open(Path file) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        return new FileReport(Files.newBufferedWriter(file, StandardCharsets.UTF_8), Format.forPath(file));
+    }
+
+    // Вызывается из потоков записи; event - данные файла, собранные по стадиям конвейера
+    void fileDone(Path javaFile, String status, FileProcessedEvent event) {
+        long total = event.serviceTime();
+        files.increment();
+        inputBytes.add(event.inputSize);
+        outputBytes.add(event.outputSize);
+        classesRenamed.add(event.classesRenamed);
+        methodsRenamed.add(event.methodsRenamed);
+        variablesRenamed.add(event.variablesRenamed);
+        latency.record(total);
+        writeRow(javaFile, status, event.inputSize, event.outputSize, event.classesRenamed, event.methodsRenamed,
+                event.variablesRenamed, event.renames, event.readTime, event.parseTime, event.transformTime,
+                event.writeTime, total);
+    }
+
+    void fileFailed(Path javaFile, String status) {
+        failed.increment();
+        writeRow(javaFile, status, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0);
+    }
+
+    public Summary getSummary() {
+        LatencyHistogram.Snapshot snapshot = latency.snapshot();
+        return new Summary(files.sum(), failed.sum(), inputBytes.sum(), outputBytes.sum(),
+                classesRenamed.sum(), methodsRenamed.sum(), variablesRenamed.sum(),
+                snapshot.percentile(0.50), snapshot.percentile(0.95), snapshot.percentile(0.99), snapshot.max());
+    }
+
+    public String describe() {
+        Summary summary = getSummary();
+        return String.format(Locale.ROOT,
+                "File Report:%n  Files: %d, failed: %d%n  Bytes in: %d, out: %d%n"
+                        + "  Renamed: classes %d, methods %d, variables %d%n"
+                        + "  Per-file latency: p50 %.3f ms, p95 %.3f ms, p99 %.3f ms, max %.3f ms",
+                summary.files(), summary.failed(), summary.inputBytes(), summary.outputBytes(),
+                summary.classesRenamed(), summary.methodsRenamed(), summary.variablesRenamed(),
+                millis(summary.p50Nanos()), millis(summary.p95Nanos()), millis(summary.p99Nanos()),
+                millis(summary.maxNanos()));
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (format == Format.JSON_LINES) {
+                Summary summary = getSummary();
+                write(String.format(Locale.ROOT,
+                        "{\"type\":\"summary\",\"files\":%d,\"failed\":%d,\"inputBytes\":%d,\"outputBytes\":%d,"
+                                + "\"classesRenamed\":%d,\"methodsRenamed\":%d,\"variablesRenamed\":%d,"
+                                + "\"p50Ms\":%.3f,\"p95Ms\":%.3f,\"p99Ms\":%.3f,\"maxMs\":%.3f}%n",
+                        summary.files(), summary.failed(), summary.inputBytes(), summary.outputBytes(),
+                        summary.classesRenamed(), summary.methodsRenamed(), summary.variablesRenamed(),
+                        millis(summary.p50Nanos()), millis(summary.p95Nanos()), millis(summary.p99Nanos()),
+                        millis(summary.maxNanos())));
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void writeRow(Path javaFile, String status, long input, long output, int classes, int methods,
+                          int variables, int renames, long read, long parse, long transform, long write, long total) {
+        String path = javaFile.toString();
+        String row;
+        if (format == Format.CSV) {
+            row = String.format(Locale.ROOT, "%s,%s,%d,%d,%d,%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f%n",
+                    csv(path), status, input, output, classes, methods, variables, renames,
+                    millis(read), millis(parse), millis(transform), millis(write), millis(total));
+        } else {
+            row = String.format(Locale.ROOT,
+                    "{\"type\":\"file\",\"path\":%s,\"status\":\"%s\",\"inputBytes\":%d,\"outputBytes\":%d,"
+                            + "\"classesRenamed\":%d,\"methodsRenamed\":%d,\"variablesRenamed\":%d,\"renames\":%d,"
+                            + "\"readMs\":%.3f,\"parseMs\":%.3f,\"transformMs\":%.3f,\"writeMs\":%.3f,\"totalMs\":%.3f}%n",
+                    json(path), status, input, output, classes, methods, variables, renames,
+                    millis(read), millis(parse), millis(transform), millis(write), millis(total));
+        }
+        try {
+            write(row);
+        } catch (IOException e) {
+            logger.error("Failed to write file report: {}", e.getMessage());
+        }
+    }
+
+    // Строка целиком и сразу в файл: отчёт читается по ходу работы.
+    // После первой ошибки записи строки отбрасываются, обработка файлов не прерывается
+    private synchronized void write(String row) throws IOException {
+        if (broken) {
+            return;
+        }
+        try {
+            writer.write(row);
+            writer.flush();
+        } catch (IOException e) {
+            broken = true;
+            throw e;
+        }
+    }
+
+    private static double millis(long nanos) {
+        return nanos / 1e6;
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String json(String value) {
+        StringBuilder out = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        return out.append('"').toString();
+    }
+}
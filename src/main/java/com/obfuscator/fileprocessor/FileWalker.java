@@ -1,57 +1,220 @@
 package com.obfuscator.fileprocessor;
 
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
 import java.io.IOException;
-import java.nio.file.*;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystem;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
 import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.Consumer;
 
+// Поиск исходников: каталоги обходятся параллельно на ForkJoinPool, найденные файлы
+// сразу отдаются получателю, так что обработка начинается до конца обхода.
+// Шаблоны - glob'ы в духе .gitignore: шаблон без '/' сравнивается с именем файла или
+// каталога на любой глубине, шаблон с '/' - с путём от корня обхода. Исключённый каталог
+// не обходится целиком; корень обхода не исключается никогда
 public class FileWalker {
 
+    private static final Logger logger = LogManager.getLogger(FileWalker.class);
+
+    // Как раньше: расширение .java в любом регистре, скрытые только каталоги, не файлы
+    public static final List<String> DEFAULT_INCLUDES = List.of("*.[jJ][aA][vV][aA]");
+    public static final List<String> DEFAULT_EXCLUDES = List.of(".*/", "node_modules", "target", "build");
+
+    private static final String GITIGNORE = ".gitignore";
+    private static final int WALK_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private static final FileWalker DEFAULTS = new FileWalker(DEFAULT_INCLUDES, DEFAULT_EXCLUDES, false);
+
+    private final List<Pattern> includes;
+    private final List<Pattern> excludes;
+    private final boolean useGitignore;
+
+    // Шаблон, скомпилированный один раз. anchored - сравнивается с путём от base, иначе с именем
+    private record Pattern(PathMatcher matcher, boolean anchored, boolean directoryOnly, boolean negated) {
+
+        boolean matches(Path relativePath, boolean directory) {
+            if (directoryOnly && !directory) {
+                return false;
+            }
+            return matcher.matches(anchored ? relativePath : relativePath.getFileName());
+        }
+    }
+
+    // Правила .gitignore одного каталога и всех выше него
+    private record IgnoreRules(Path base, List<Pattern> patterns, IgnoreRules parent) {
+
+        // Ближний .gitignore важнее дальних
+        boolean ignores(Path path, boolean directory) {
+            Path relativePath = base.relativize(path);
+            for (int i = patterns.size() - 1; i >= 0; i--) {
+                Pattern pattern = patterns.get(i);
+                if (pattern.matches(relativePath, directory)) {
+                    return !pattern.negated();
+                }
+            }
+            return parent != null && parent.ignores(path, directory);
+        }
+    }
+
+    public FileWalker(List<String> includes, List<String> excludes, boolean useGitignore) {
+        FileSystem fileSystem = FileSystems.getDefault();
+        this.includes = compile(fileSystem, includes);
+        this.excludes = compile(fileSystem, excludes);
+        this.useGitignore = useGitignore;
+        logger.debug("FileWalker initialized: {} includes, {} excludes, gitignore={}",
+                includes.size(), excludes.size(), useGitignore);
+    }
+
+    public static FileWalker defaults() {
+        return DEFAULTS;
+    }
+
     public static List<Path> findJavaFiles(Path startDir) throws IOException {
-        List<Path> javaFiles = new ArrayList<>();
-        JavaFileVisitor visitor = new JavaFileVisitor(javaFiles);
-        Files.walkFileTree(startDir, visitor);
-        return javaFiles;
+        return DEFAULTS.findFiles(startDir);
     }
 
-    private static class JavaFileVisitor extends SimpleFileVisitor<Path> {
-        private final List<Path> javaFiles;
+    // Все найденные файлы в отсортированном порядке
+    public List<Path> findFiles(Path root) throws IOException {
+        List<Path> files = Collections.synchronizedList(new ArrayList<>());
+        walk(root, files::add);
+        Collections.sort(files);
+        return files;
+    }
 
-        public JavaFileVisitor(List<Path> javaFiles) {
-            this.javaFiles = javaFiles;
+    // sink вызывается из потоков обхода и может блокировать их: так конвейер
+    // обработки сдерживает обход
+    public void walk(Path root, Consumer<Path> sink) throws IOException {
+        if (!Files.isDirectory(root)) {
+            throw new IOException("Not a directory: " + root);
+        }
+        ForkJoinPool pool = new ForkJoinPool(Math.max(1, WALK_THREADS));
+        try {
+            pool.invoke(new DirectoryTask(root, root, loadIgnoreRules(root, null), sink));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private final class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final Path root;
+        private final Path directory;
+        private final IgnoreRules ignoreRules;
+        private final Consumer<Path> sink;
+
+        private DirectoryTask(Path root, Path directory, IgnoreRules ignoreRules, Consumer<Path> sink) {
+            this.root = root;
+            this.directory = directory;
+            this.ignoreRules = ignoreRules;
+            this.sink = sink;
         }
 
         @Override
-        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-            if (isJavaFile(file)) {
-                javaFiles.add(file);
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    BasicFileAttributes attributes;
+                    try {
+                        attributes = Files.readAttributes(entry, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    } catch (IOException e) {
+                        logger.warn("Cannot access file: {} - {}", entry, e.getMessage());
+                        continue;
+                    }
+
+                    boolean isDirectory = attributes.isDirectory();
+                    if (isExcluded(root.relativize(entry), entry, isDirectory)) {
+                        if (isDirectory) {
+                            logger.debug("Skipping directory: {}", entry.getFileName());
+                        }
+                        continue;
+                    }
+
+                    if (isDirectory) {
+                        subdirectories.add(new DirectoryTask(root, entry, loadIgnoreRules(entry, ignoreRules), sink));
+                    } else if (isIncluded(root.relativize(entry))) {
+                        sink.accept(entry);
+                    }
+                }
+            } catch (IOException e) {
+                logger.warn("Cannot access directory: {} - {}", directory, e.getMessage());
             }
-            return FileVisitResult.CONTINUE;
+            invokeAll(subdirectories);
         }
 
-        @Override
-        public FileVisitResult visitFileFailed(Path file, IOException exc) {
-            return FileVisitResult.CONTINUE;
+        private boolean isExcluded(Path relativePath, Path path, boolean directory) {
+            return lastMatch(excludes, relativePath, directory)
+                    || ignoreRules != null && ignoreRules.ignores(path, directory);
         }
+    }
 
-        @Override
-        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
-            String dirName = dir.getFileName().toString();
-            if (dirName.startsWith(".") ||
-                    dirName.equals("target") ||
-                    dirName.equals("build") ||
-                    dirName.equals("node_modules") ||
-                    dirName.equals(".git") ||
-                    dirName.equals(".idea")) {
-                return FileVisitResult.SKIP_SUBTREE;
+    private boolean isIncluded(Path relativePath) {
+        return lastMatch(includes, relativePath, false);
+    }
+
+    // Как в .gitignore: решает последний совпавший шаблон, '!' отменяет совпадение
+    private static boolean lastMatch(List<Pattern> patterns, Path relativePath, boolean directory) {
+        for (int i = patterns.size() - 1; i >= 0; i--) {
+            Pattern pattern = patterns.get(i);
+            if (pattern.matches(relativePath, directory)) {
+                return !pattern.negated();
+            }
+        }
+        return false;
+    }
+
+    private IgnoreRules loadIgnoreRules(Path directory, IgnoreRules parent) {
+        if (!useGitignore) {
+            return null;
+        }
+        Path gitignore = directory.resolve(GITIGNORE);
+        if (!Files.isRegularFile(gitignore)) {
+            return parent;
+        }
+        try {
+            List<String> lines = new ArrayList<>();
+            for (String line : Files.readAllLines(gitignore)) {
+                String trimmed = line.strip();
+                if (!trimmed.isEmpty() && !trimmed.startsWith("#")) {
+                    lines.add(trimmed);
+                }
             }
-            return FileVisitResult.CONTINUE;
+            logger.debug("Loaded {} rules from {}", lines.size(), gitignore);
+            return new IgnoreRules(directory, compile(directory.getFileSystem(), lines), parent);
+        } catch (IOException e) {
+            logger.warn("Cannot read {}: {}", gitignore, e.getMessage());
+            return parent;
         }
+    }
 
-        private boolean isJavaFile(Path file) {
-            String fileName = file.getFileName().toString();
-            return fileName.toLowerCase().endsWith(".java");
+    private static List<Pattern> compile(FileSystem fileSystem, List<String> globs) {
+        List<Pattern> patterns = new ArrayList<>(globs.size());
+        for (String glob : globs) {
+            boolean negated = glob.startsWith("!");
+            String pattern = negated ? glob.substring(1) : glob;
+            boolean directoryOnly = pattern.endsWith("/");
+            if (directoryOnly) {
+                pattern = pattern.substring(0, pattern.length() - 1);
+            }
+            boolean anchored = pattern.contains("/");
+            if (pattern.startsWith("/")) {
+                pattern = pattern.substring(1);
+            }
+            patterns.add(new Pattern(fileSystem.getPathMatcher("glob:" + pattern), anchored, directoryOnly, negated));
         }
+        return List.copyOf(patterns);
     }
 }
@@ -0,0 +1,35 @@
+package com.obfuscator.fileprocessor;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Вывод в память для встраивания обфускатора: результаты доступны по относительным путям
+public class MemorySink implements OutputSink {
+
+    private final ConcurrentSkipListMap<Path, byte[]> outputs = new ConcurrentSkipListMap<>();
+
+    @Override
+    public Path write(Path relativePath, ByteBuffer content) {
+        // Буфер вызывающего переиспользуется, поэтому содержимое копируется
+        byte[] bytes = new byte[content.remaining()];
+        content.duplicate().get(bytes);
+        outputs.put(relativePath, bytes);
+        return relativePath;
+    }
+
+    public byte[] getOutput(Path relativePath) {
+        return outputs.get(relativePath);
+    }
+
+    // Упорядочено по пути
+    public SortedMap<Path, byte[]> getOutputs() {
+        return Collections.unmodifiableSortedMap(outputs);
+    }
+
+    public int size() {
+        return outputs.size();
+    }
+}
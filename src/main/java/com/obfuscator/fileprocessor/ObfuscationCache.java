@@ -0,0 +1,253 @@
+package com.obfuscator.fileprocessor;
+
+import com.obfuscator.obfuscator.ObfuscationException;
+import com.obfuscator.obfuscator.SymbolIndex;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Кэш результатов обфускации на диске. Ключ - хэш исходника, имени файла и настроек.
+// Для каждого ключа хранятся вывод (.out) и метаданные (.meta): новое имя файла,
+// объявления файла, его обращения к индексу проекта, имена локальных переменных
+// и типы проекта из других файлов, по исходникам которых разрешались его обращения
+public class ObfuscationCache {
+
+    private static final Logger logger = LogManager.getLogger(ObfuscationCache.class);
+
+    private static final int FORMAT_VERSION = 3;
+    private static final String META_SUFFIX = ".meta";
+    private static final String OUTPUT_SUFFIX = ".out";
+
+    private final Path cacheDir;
+
+    private final AtomicInteger hits = new AtomicInteger(0);
+    private final AtomicInteger misses = new AtomicInteger(0);
+    private final AtomicInteger stores = new AtomicInteger(0);
+
+    public record Entry(String outputFileName,
+                        List<SymbolIndex.Declaration> declarations,
+                        List<SymbolIndex.Reference> references,
+                        List<String> localNames,
+                        List<SymbolIndex.TypeSource> typeSources) {
+    }
+
+    public ObfuscationCache(Path cacheDir) {
+        this.cacheDir = cacheDir;
+        logger.debug("ObfuscationCache initialized: {}", cacheDir);
+    }
+
+    public Path getCacheDir() {
+        return cacheDir;
+    }
+
+    public static String computeKey(byte[] content, String fileName, String settingsFingerprint) {
+        return computeKey(ByteBuffer.wrap(content), fileName, settingsFingerprint);
+    }
+
+    // Позиция content не меняется: буфер (в том числе отображённый файл) читается дальше
+    public static String computeKey(ByteBuffer content, String fileName, String settingsFingerprint) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(settingsFingerprint.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(fileName.getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(content.duplicate());
+            return HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new ObfuscationException("SHA-256 is not available", e);
+        }
+    }
+
+    public Entry load(String key) {
+        Entry entry = read(key);
+        (entry != null ? hits : misses).incrementAndGet();
+        return entry;
+    }
+
+    // Повторное чтение записи, уже посчитанной в load: статистика не меняется
+    Entry reload(String key) {
+        return read(key);
+    }
+
+    private Entry read(String key) {
+        Path metaFile = resolve(key, META_SUFFIX);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(metaFile)))) {
+            if (in.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+
+            String outputFileName = in.readUTF();
+
+            int declarationCount = in.readInt();
+            List<SymbolIndex.Declaration> declarations = new ArrayList<>(declarationCount);
+            for (int i = 0; i < declarationCount; i++) {
+                SymbolIndex.Kind kind = SymbolIndex.Kind.values()[in.readByte()];
+                declarations.add(new SymbolIndex.Declaration(kind, in.readUTF(), in.readUTF(), in.readBoolean()));
+            }
+
+            int referenceCount = in.readInt();
+            List<SymbolIndex.Reference> references = new ArrayList<>(referenceCount);
+            for (int i = 0; i < referenceCount; i++) {
+                SymbolIndex.Kind kind = SymbolIndex.Kind.values()[in.readByte()];
+                String name = in.readUTF();
+                String newName = in.readBoolean() ? in.readUTF() : null;
+                references.add(new SymbolIndex.Reference(kind, name, newName));
+            }
+
+            int localNameCount = in.readInt();
+            List<String> localNames = new ArrayList<>(localNameCount);
+            for (int i = 0; i < localNameCount; i++) {
+                localNames.add(in.readUTF());
+            }
+
+            int typeSourceCount = in.readInt();
+            List<SymbolIndex.TypeSource> typeSources = new ArrayList<>(typeSourceCount);
+            for (int i = 0; i < typeSourceCount; i++) {
+                String type = in.readUTF();
+                typeSources.add(new SymbolIndex.TypeSource(type, in.readBoolean() ? in.readUTF() : null));
+            }
+
+            return new Entry(outputFileName, declarations, references, localNames, typeSources);
+
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            // Повреждённая запись - просто обрабатываем файл заново
+            logger.warn("Ignoring unreadable cache entry {}: {}", key, e.getMessage());
+            return null;
+        }
+    }
+
+    public byte[] readOutput(String key) throws IOException {
+        return Files.readAllBytes(resolve(key, OUTPUT_SUFFIX));
+    }
+
+    public void store(String key, String outputFileName, ByteBuffer output,
+                      Collection<SymbolIndex.Declaration> declarations,
+                      Collection<SymbolIndex.Reference> references,
+                      Collection<String> localNames,
+                      Collection<SymbolIndex.TypeSource> typeSources) {
+        try {
+            Path metaFile = resolve(key, META_SUFFIX);
+            Files.createDirectories(metaFile.getParent());
+
+            // Сначала вывод, потом метаданные: запись без .meta считается отсутствующей
+            writeAtomically(output, resolve(key, OUTPUT_SUFFIX));
+
+            Path tempMeta = Files.createTempFile(metaFile.getParent(), key, ".tmp");
+            try {
+                writeMeta(tempMeta, outputFileName, declarations, references, localNames, typeSources);
+                Files.move(tempMeta, metaFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Недописанные .tmp иначе копятся в каталоге кэша
+                Files.deleteIfExists(tempMeta);
+                throw e;
+            }
+
+            stores.incrementAndGet();
+            logger.trace("Cache entry stored: {}", key);
+
+        } catch (IOException e) {
+            // Кэш - только ускорение, ошибка записи не должна ронять обработку
+            logger.warn("Failed to store cache entry {}: {}", key, e.getMessage());
+        }
+    }
+
+    private void writeMeta(Path file, String outputFileName,
+                           Collection<SymbolIndex.Declaration> declarations,
+                           Collection<SymbolIndex.Reference> references,
+                           Collection<String> localNames,
+                           Collection<SymbolIndex.TypeSource> typeSources) throws IOException {
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(FORMAT_VERSION);
+            out.writeUTF(outputFileName);
+
+            out.writeInt(declarations.size());
+            for (SymbolIndex.Declaration declaration : declarations) {
+                out.writeByte(declaration.kind().ordinal());
+                out.writeUTF(declaration.name());
+                out.writeUTF(declaration.owner());
+                out.writeBoolean(declaration.kept());
+            }
+
+            out.writeInt(references.size());
+            for (SymbolIndex.Reference reference : references) {
+                out.writeByte(reference.kind().ordinal());
+                out.writeUTF(reference.name());
+                out.writeBoolean(reference.newName() != null);
+                if (reference.newName() != null) {
+                    out.writeUTF(reference.newName());
+                }
+            }
+
+            out.writeInt(localNames.size());
+            for (String localName : localNames) {
+                out.writeUTF(localName);
+            }
+
+            out.writeInt(typeSources.size());
+            for (SymbolIndex.TypeSource typeSource : typeSources) {
+                out.writeUTF(typeSource.type());
+                out.writeBoolean(typeSource.key() != null);
+                if (typeSource.key() != null) {
+                    out.writeUTF(typeSource.key());
+                }
+            }
+        }
+    }
+
+    private void writeAtomically(ByteBuffer content, Path target) throws IOException {
+        Path temp = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer bytes = content.duplicate();
+                while (bytes.hasRemaining()) {
+                    channel.write(bytes);
+                }
+            }
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private Path resolve(String key, String suffix) {
+        return cacheDir.resolve(key.substring(0, 2)).resolve(key + suffix);
+    }
+
+    public String getStatistics() {
+        return String.format(
+                "Cache Statistics:%n  Hits: %d%n  Misses: %d%n  Stored: %d",
+                hits.get(), misses.get(), stores.get()
+        );
+    }
+
+    public void resetStatistics() {
+        hits.set(0);
+        misses.set(0);
+        stores.set(0);
+    }
+}
@@ -0,0 +1,47 @@
+package com.obfuscator.fileprocessor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Locale;
+
+// Куда попадают результаты обфускации: дерево каталогов, архив, память или поток.
+// write вызывается одновременно из нескольких потоков записи конвейера; content
+// принадлежит вызывающему и переиспользуется сразу после возврата из write
+public interface OutputSink extends Closeable {
+
+    int DEFAULT_WRITE_THREADS = 2;
+
+    // relativePath - путь результата от корня вывода. Возвращает, где оказался файл:
+    // путь на диске или путь внутри архива
+    Path write(Path relativePath, ByteBuffer content) throws IOException;
+
+    // Сколько потоков записи может загрузить sink: архиву нужен поток на ядро для сжатия
+    default int writeThreads() {
+        return DEFAULT_WRITE_THREADS;
+    }
+
+    @Override
+    default void close() throws IOException {
+    }
+
+    // Запуск не удался: незаконченный вывод не должен оказаться на месте результата.
+    // После abort close ничего не делает
+    default void abort() throws IOException {
+    }
+
+    // .zip и .jar - архив, всё остальное - каталог
+    static OutputSink forPath(Path output) throws IOException {
+        return isArchive(output) ? new ZipSink(output) : new DirectorySink(output);
+    }
+
+    static boolean isArchive(Path output) {
+        Path fileName = output.getFileName();
+        if (fileName == null) {
+            return false;
+        }
+        String name = fileName.toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".zip") || name.endsWith(".jar");
+    }
+}
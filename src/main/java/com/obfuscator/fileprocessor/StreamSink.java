@@ -0,0 +1,38 @@
+package com.obfuscator.fileprocessor;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+// Вывод в поток (stdout CLI). Файлы идут целиком, один за другим; перед каждым -
+// строка-комментарий с путём, так что поток из одного файла остаётся корректным Java.
+// Поток не закрывается: им владеет вызывающий
+public class StreamSink implements OutputSink {
+
+    private final OutputStream out;
+
+    public StreamSink(OutputStream out) {
+        this.out = out;
+    }
+
+    @Override
+    public synchronized Path write(Path relativePath, ByteBuffer content) throws IOException {
+        out.write(("// " + relativePath + "\n").getBytes(StandardCharsets.UTF_8));
+        if (content.hasArray()) {
+            out.write(content.array(), content.arrayOffset() + content.position(), content.remaining());
+        } else {
+            byte[] bytes = new byte[content.remaining()];
+            content.duplicate().get(bytes);
+            out.write(bytes);
+        }
+        out.flush();
+        return relativePath;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        out.flush();
+    }
+}
@@ -0,0 +1,156 @@
+package com.obfuscator.fileprocessor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Общий ограниченный пул потоков для нескольких одновременных задач обфускации.
+// У каждой задачи своя очередь (Lane); свободный поток берёт следующий файл по кругу
+// из очередей, причём интерактивные очереди обслуживаются раньше пакетных. Так файл,
+// открытый пользователем, ждёт только завершения уже начатых файлов, а две пакетные
+// задачи делят потоки поровну, а не в порядке поступления.
+// Очередь исполнителя хранит только «жетоны» - по одному на поставленный файл,
+// а какой файл взять, решает runNext
+public final class WorkerPool {
+
+    private static final Logger logger = LogManager.getLogger(WorkerPool.class);
+
+    private static final long IDLE_TIMEOUT_SECONDS = 30;
+    private static final AtomicInteger POOL_COUNTER = new AtomicInteger();
+
+    public enum Priority {
+        INTERACTIVE,
+        BATCH
+    }
+
+    private final ThreadPoolExecutor executor;
+    private final Object lock = new Object();
+    // Очереди с ожидающими файлами в порядке обслуживания
+    private final ArrayDeque<Lane> interactiveLanes = new ArrayDeque<>();
+    private final ArrayDeque<Lane> batchLanes = new ArrayDeque<>();
+
+    public WorkerPool(int threads) {
+        int poolId = POOL_COUNTER.incrementAndGet();
+        AtomicInteger threadCounter = new AtomicInteger();
+        int size = normalize(threads);
+        // Простаивающие потоки завершаются: пул не держит ресурсы между задачами
+        this.executor = new ThreadPoolExecutor(size, size, IDLE_TIMEOUT_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable,
+                    "obfuscation-worker-" + poolId + "-" + threadCounter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        logger.debug("WorkerPool initialized ({} threads)", size);
+    }
+
+    public void setThreads(int threads) {
+        int size = normalize(threads);
+        // Порядок важен: ThreadPoolExecutor требует core <= max в каждый момент
+        if (size > executor.getMaximumPoolSize()) {
+            executor.setMaximumPoolSize(size);
+            executor.setCorePoolSize(size);
+        } else {
+            executor.setCorePoolSize(size);
+            executor.setMaximumPoolSize(size);
+        }
+    }
+
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    public Lane openLane(Priority priority, String name) {
+        return new Lane(priority, name);
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+
+    private static int normalize(int threads) {
+        // 0 и меньше - по числу доступных ядер
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private ArrayDeque<Lane> lanesFor(Priority priority) {
+        return priority == Priority.INTERACTIVE ? interactiveLanes : batchLanes;
+    }
+
+    private void runNext() {
+        FutureTask<?> task;
+        synchronized (lock) {
+            Lane lane = interactiveLanes.poll();
+            if (lane == null) {
+                lane = batchLanes.poll();
+            }
+            if (lane == null) {
+                // Жетон отменённой очереди
+                return;
+            }
+            task = lane.tasks.poll();
+            if (!lane.tasks.isEmpty()) {
+                lanesFor(lane.priority).add(lane);
+            }
+        }
+        task.run();
+    }
+
+    // Очередь одной задачи. Файлы внутри очереди выполняются в порядке постановки
+    public final class Lane {
+        private final Priority priority;
+        private final String name;
+        private final ArrayDeque<FutureTask<?>> tasks = new ArrayDeque<>();
+
+        private Lane(Priority priority, String name) {
+            this.priority = priority;
+            this.name = name;
+        }
+
+        public Priority getPriority() {
+            return priority;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public <T> Future<T> submit(Callable<T> callable) {
+            FutureTask<T> task = new FutureTask<>(callable);
+            synchronized (lock) {
+                if (tasks.isEmpty()) {
+                    lanesFor(priority).add(this);
+                }
+                tasks.add(task);
+            }
+            executor.execute(WorkerPool.this::runNext);
+            return task;
+        }
+
+        // Снимает ещё не начатые файлы очереди; уже выполняющиеся дорабатывают
+        public void cancel() {
+            synchronized (lock) {
+                if (tasks.isEmpty()) {
+                    return;
+                }
+                tasks.forEach(task -> task.cancel(false));
+                tasks.clear();
+                lanesFor(priority).remove(this);
+            }
+            logger.debug("Lane {} cancelled", name);
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.obfuscator.fileprocessor;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+// Вывод сразу в ZIP/JAR, без промежуточного дерева на диске. ZipOutputStream сжимает
+// записи по одной под общей блокировкой, поэтому архив пишется вручную: каждый поток
+// записи сжимает свой файл сам, а под блокировкой только дописывает готовые байты.
+// Архив собирается во временном файле и появляется под своим именем при close;
+// abort удаляет временный файл, и недописанный архив на место результата не попадает.
+// Формат - обычный ZIP без ZIP64: до 65535 записей и 4 ГБ
+public class ZipSink implements OutputSink {
+
+    private static final Logger logger = LogManager.getLogger(ZipSink.class);
+
+    private static final int LOCAL_HEADER_SIGNATURE = 0x04034b50;
+    private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int LOCAL_HEADER_SIZE = 30;
+    private static final int CENTRAL_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final short VERSION = 20;
+    // Бит 11: имена записей в UTF-8
+    private static final short UTF8_NAMES = 0x0800;
+    private static final short STORED = 0;
+    private static final short DEFLATED = 8;
+    private static final int MAX_ENTRIES = 0xFFFF;
+    private static final long MAX_OFFSET = 0xFFFFFFFFL;
+    private static final int DEFLATE_CHUNK = 64 * 1024;
+
+    private static final String MANIFEST = "Manifest-Version: 1.0\r\nCreated-By: Java Obfuscator\r\n\r\n";
+
+    private final Path archive;
+    private final Path tempFile;
+    private final FileChannel channel;
+    private final int dosTime;
+    private final List<CentralEntry> entries = new ArrayList<>();
+    private final Set<String> entryNames = new HashSet<>();
+    private final ConcurrentLinkedQueue<Compressor> compressors = new ConcurrentLinkedQueue<>();
+    private final BufferPool compressedBuffers = new BufferPool();
+    private long offset;
+    private boolean closed;
+
+    private record CentralEntry(byte[] name, short method, int crc, long compressedSize, long size, long offset) {
+    }
+
+    // Deflater с буфером порции; у каждого одновременно сжимающего потока свой
+    private static final class Compressor {
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final byte[] chunk = new byte[DEFLATE_CHUNK];
+    }
+
+    public ZipSink(Path archive) throws IOException {
+        this.archive = archive;
+        Path directory = archive.toAbsolutePath().getParent();
+        Files.createDirectories(directory);
+        this.tempFile = Files.createTempFile(directory, archive.getFileName().toString(), ".tmp");
+        this.channel = FileChannel.open(tempFile, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.dosTime = dosTime(LocalDateTime.now());
+        logger.debug("ZipSink initialized: {}", archive);
+
+        if (archive.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".jar")) {
+            // Манифест - первая запись JAR
+            write(Path.of("META-INF", "MANIFEST.MF"), ByteBuffer.wrap(MANIFEST.getBytes(StandardCharsets.UTF_8)));
+        }
+    }
+
+    public Path getArchive() {
+        return archive;
+    }
+
+    @Override
+    public int writeThreads() {
+        return Math.max(DEFAULT_WRITE_THREADS, Runtime.getRuntime().availableProcessors());
+    }
+
+    @Override
+    public Path write(Path relativePath, ByteBuffer content) throws IOException {
+        String entryName = entryName(relativePath);
+        byte[] name = entryName.getBytes(StandardCharsets.UTF_8);
+        long size = content.remaining();
+
+        CRC32 crc = new CRC32();
+        crc.update(content.duplicate());
+
+        // Сжатие - вне блокировки, параллельно в потоках записи
+        Compressor compressor = compressors.poll();
+        if (compressor == null) {
+            compressor = new Compressor();
+        }
+        BufferPool.Buffer compressed = compressedBuffers.acquire((int) (size / 4) + 64);
+        try {
+            Deflater deflater = compressor.deflater;
+            deflater.reset();
+            deflater.setInput(content.duplicate());
+            deflater.finish();
+            while (!deflater.finished()) {
+                int length = deflater.deflate(compressor.chunk);
+                compressed.write(compressor.chunk, 0, length);
+            }
+            compressors.offer(compressor);
+
+            // Короткие файлы сжатие только увеличивает
+            boolean stored = compressed.size() >= size;
+            ByteBuffer data = stored ? content.duplicate() : compressed.contents();
+            append(entryName, new CentralEntry(name, stored ? STORED : DEFLATED, (int) crc.getValue(),
+                    data.remaining(), size, 0), data);
+        } finally {
+            compressedBuffers.release(compressed);
+        }
+        return Path.of(entryName);
+    }
+
+    private synchronized void append(String entryName, CentralEntry entry, ByteBuffer data) throws IOException {
+        if (closed) {
+            throw new IOException("Archive is closed: " + archive);
+        }
+        if (!entryNames.add(entryName)) {
+            throw new IOException("Duplicate archive entry: " + entryName);
+        }
+        long end = offset + LOCAL_HEADER_SIZE + entry.name().length + entry.compressedSize();
+        if (entries.size() >= MAX_ENTRIES || end > MAX_OFFSET) {
+            throw new IOException("Archive exceeds ZIP limits (ZIP64 is not supported): " + archive);
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(LOCAL_HEADER_SIZE + entry.name().length).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOCAL_HEADER_SIGNATURE)
+                .putShort(VERSION)
+                .putShort(UTF8_NAMES)
+                .putShort(entry.method())
+                .putInt(dosTime)
+                .putInt(entry.crc())
+                .putInt((int) entry.compressedSize())
+                .putInt((int) entry.size())
+                .putShort((short) entry.name().length)
+                .putShort((short) 0)
+                .put(entry.name())
+                .flip();
+        writeFully(header);
+        writeFully(data);
+
+        entries.add(new CentralEntry(entry.name(), entry.method(), entry.crc(), entry.compressedSize(),
+                entry.size(), offset));
+        offset = end;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            long centralDirectoryOffset = offset;
+            for (CentralEntry entry : entries) {
+                ByteBuffer header = ByteBuffer.allocate(CENTRAL_HEADER_SIZE + entry.name().length)
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                header.putInt(CENTRAL_HEADER_SIGNATURE)
+                        .putShort(VERSION)
+                        .putShort(VERSION)
+                        .putShort(UTF8_NAMES)
+                        .putShort(entry.method())
+                        .putInt(dosTime)
+                        .putInt(entry.crc())
+                        .putInt((int) entry.compressedSize())
+                        .putInt((int) entry.size())
+                        .putShort((short) entry.name().length)
+                        .putShort((short) 0)
+                        .putShort((short) 0)
+                        .putShort((short) 0)
+                        .putShort((short) 0)
+                        .putInt(0)
+                        .putInt((int) entry.offset())
+                        .put(entry.name())
+                        .flip();
+                writeFully(header);
+                offset += header.limit();
+            }
+
+            ByteBuffer end = ByteBuffer.allocate(END_OF_CENTRAL_DIRECTORY_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            end.putInt(END_OF_CENTRAL_DIRECTORY_SIGNATURE)
+                    .putShort((short) 0)
+                    .putShort((short) 0)
+                    .putShort((short) entries.size())
+                    .putShort((short) entries.size())
+                    .putInt((int) (offset - centralDirectoryOffset))
+                    .putInt((int) centralDirectoryOffset)
+                    .putShort((short) 0)
+                    .flip();
+            writeFully(end);
+            channel.close();
+            Files.move(tempFile, archive, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Archive written: {} ({} entries)", archive, entries.size());
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(tempFile);
+            throw e;
+        } finally {
+            releaseCompressors();
+        }
+    }
+
+    @Override
+    public synchronized void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+            Files.deleteIfExists(tempFile);
+            logger.info("Archive discarded: {}", archive);
+        } finally {
+            releaseCompressors();
+        }
+    }
+
+    private void releaseCompressors() {
+        for (Compressor compressor; (compressor = compressors.poll()) != null; ) {
+            compressor.deflater.end();
+        }
+    }
+
+    private void writeFully(ByteBuffer bytes) throws IOException {
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+    }
+
+    // Разделитель в ZIP - всегда '/', независимо от ОС
+    private static String entryName(Path relativePath) {
+        StringBuilder name = new StringBuilder();
+        for (Path part : relativePath) {
+            if (name.length() > 0) {
+                name.append('/');
+            }
+            name.append(part);
+        }
+        return name.toString();
+    }
+
+    private static int dosTime(LocalDateTime time) {
+        return (time.getYear() - 1980) << 25 | time.getMonthValue() << 21 | time.getDayOfMonth() << 16
+                | time.getHour() << 11 | time.getMinute() << 5 | time.getSecond() >> 1;
+    }
+}
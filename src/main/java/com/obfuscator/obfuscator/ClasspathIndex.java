@@ -0,0 +1,478 @@
+package com.obfuscator.obfuscator;
+
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.javassistmodel.JavassistFactory;
+import javassist.ClassPath;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.LoaderClassPath;
+import javassist.NotFoundException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.MalformedURLException;
+import java.net.URI;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+// Индекс классов библиотечных JAR для разрешения символов. JarTypeSolver при каждом
+// запуске заново читает оглавление каждого архива; здесь архив разбирается один раз:
+// его классы складываются в файл индекса, имя которого - SHA-256 содержимого JAR.
+// При следующих запусках файл только отображается в память, и поиск типа - одна
+// проба в хэш-таблице. Изменённый JAR даёт другой хэш и новый индекс. Сам хэш
+// запоминается рядом с индексами вместе с размером и временем изменения JAR
+// и пересчитывается, только если они изменились.
+//
+// Формат файла: заголовок (MAGIC, FORMAT_VERSION, число слотов, число классов),
+// таблица слотов (хэш имени, смещение записи; 0 - пусто) с открытой адресацией,
+// затем записи: длина имени, имя в UTF-8, длина class-файла, class-файл.
+// Ключ - двоичное имя (a.b.Outer$Inner): каноническое склеило бы вложенный класс
+// с классом, в имени которого есть '$', или с классом пакета a.b.Outer
+public final class ClasspathIndex {
+
+    private static final Logger logger = LogManager.getLogger(ClasspathIndex.class);
+
+    public static final Path DEFAULT_DIRECTORY =
+            Path.of(System.getProperty("user.home"), ".java-obfuscator", "classpath");
+
+    private static final int MAGIC = 0x4f42434c;
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 16;
+    private static final int SLOT_SIZE = 8;
+    private static final String INDEX_SUFFIX = ".idx";
+    private static final String STAMP_SUFFIX = ".sha";
+
+    private final List<JarIndex> jars;
+    private final String fingerprint;
+    private final int builtCount;
+    private final int hashedCount;
+
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder found = new LongAdder();
+
+    // Отображённый индекс одного JAR. Буфер только читается абсолютными get,
+    // поэтому общий для всех потоков
+    private record JarIndex(Path jar, String hash, ByteBuffer buffer, int slots, int classes) {
+
+        ByteBuffer find(String name) {
+            byte[] key = name.getBytes(StandardCharsets.UTF_8);
+            int hash = nameHash(name);
+            int mask = slots - 1;
+            for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+                int position = HEADER_SIZE + slot * SLOT_SIZE;
+                int offset = buffer.getInt(position + 4);
+                if (offset == 0) {
+                    return null;
+                }
+                if (buffer.getInt(position) == hash && matches(offset, key)) {
+                    int classOffset = offset + 2 + key.length;
+                    return buffer.slice(classOffset + 4, buffer.getInt(classOffset));
+                }
+            }
+        }
+
+        private boolean matches(int offset, byte[] key) {
+            if (Short.toUnsignedInt(buffer.getShort(offset)) != key.length) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (buffer.get(offset + 2 + i) != key[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+
+    private ClasspathIndex(List<JarIndex> jars, String fingerprint, int builtCount, int hashedCount) {
+        this.jars = jars;
+        this.fingerprint = fingerprint;
+        this.builtCount = builtCount;
+        this.hashedCount = hashedCount;
+    }
+
+    // Элементы classpath - JAR или каталоги, из которых берутся все *.jar.
+    // Индекс отсутствующего или устаревшего формата строится заново в indexDir
+    public static ClasspathIndex open(List<Path> classpath, Path indexDir) throws IOException {
+        List<JarIndex> jars = new ArrayList<>();
+        MessageDigest fingerprint = sha256();
+        int built = 0;
+        int hashed = 0;
+        for (Path jar : expand(classpath)) {
+            BasicFileAttributes attributes = Files.readAttributes(jar, BasicFileAttributes.class);
+            Path stampFile = indexDir.resolve(pathHash(jar) + STAMP_SUFFIX);
+            String hash = readStamp(stampFile, attributes);
+            if (hash == null) {
+                hash = contentHash(jar);
+                writeStamp(stampFile, attributes, hash);
+                hashed++;
+            }
+            Path indexFile = indexDir.resolve(hash + INDEX_SUFFIX);
+            JarIndex index = Files.exists(indexFile) ? map(jar, hash, indexFile) : null;
+            if (index == null) {
+                Files.createDirectories(indexDir);
+                build(jar, indexFile);
+                index = map(jar, hash, indexFile);
+                if (index == null) {
+                    throw new IOException("Cannot read classpath index just built: " + indexFile);
+                }
+                built++;
+            }
+            jars.add(index);
+            fingerprint.update(hash.getBytes(StandardCharsets.US_ASCII));
+        }
+        ClasspathIndex classpathIndex = new ClasspathIndex(List.copyOf(jars),
+                HexFormat.of().formatHex(fingerprint.digest()).substring(0, 16), built, hashed);
+        logger.info("Classpath index: {} JARs, {} classes ({} hashed, {} indexed now)",
+                jars.size(), classpathIndex.getClassCount(), hashed, built);
+        return classpathIndex;
+    }
+
+    private static List<Path> expand(List<Path> classpath) throws IOException {
+        List<Path> jars = new ArrayList<>();
+        for (Path element : classpath) {
+            if (Files.isDirectory(element)) {
+                try (Stream<Path> files = Files.list(element)) {
+                    files.filter(file -> file.getFileName().toString().endsWith(".jar") && Files.isRegularFile(file))
+                            .sorted()
+                            .forEach(jars::add);
+                }
+            } else if (Files.isRegularFile(element)) {
+                jars.add(element);
+            } else {
+                throw new IOException("Classpath entry not found: " + element);
+            }
+        }
+        return jars;
+    }
+
+    // Имя файла с хэшем содержимого JAR - по полному пути JAR
+    private static String pathHash(Path jar) {
+        byte[] path = jar.toAbsolutePath().normalize().toString().getBytes(StandardCharsets.UTF_8);
+        return HexFormat.of().formatHex(sha256().digest(path));
+    }
+
+    // Хэш содержимого, запомненный при прошлом запуске; null - его нет
+    // или JAR с тех пор изменился (другие размер или время изменения)
+    private static String readStamp(Path stampFile, BasicFileAttributes attributes) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(stampFile)))) {
+            if (in.readLong() != attributes.size()
+                    || in.readLong() != attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS)) {
+                return null;
+            }
+            return in.readUTF();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // Без записанного хэша следующий запуск просто прочитает JAR заново
+    private static void writeStamp(Path stampFile, BasicFileAttributes attributes, String hash) {
+        Path tempFile = null;
+        try {
+            Files.createDirectories(stampFile.getParent());
+            tempFile = Files.createTempFile(stampFile.getParent(), stampFile.getFileName().toString(), ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempFile)))) {
+                out.writeLong(attributes.size());
+                out.writeLong(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+                out.writeUTF(hash);
+            }
+            Files.move(tempFile, stampFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            logger.warn("Failed to store classpath hash {}: {}", stampFile, e.getMessage());
+            try {
+                if (tempFile != null) {
+                    Files.deleteIfExists(tempFile);
+                }
+            } catch (IOException ignored) {
+                // Недописанный файл не мешает: читаются только файлы с суффиксом STAMP_SUFFIX
+            }
+        }
+    }
+
+    private static String contentHash(Path jar) throws IOException {
+        MessageDigest digest = sha256();
+        ByteBuffer chunk = ByteBuffer.allocate(64 * 1024);
+        try (FileChannel channel = FileChannel.open(jar, StandardOpenOption.READ)) {
+            while (channel.read(chunk.clear()) >= 0) {
+                digest.update(chunk.flip());
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    // null - файл не индекс или другого формата
+    private static JarIndex map(Path jar, String hash, Path indexFile) throws IOException {
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(indexFile, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) {
+                logger.warn("Rebuilding invalid classpath index {}", indexFile);
+                return null;
+            }
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        int slots = buffer.getInt(8);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != FORMAT_VERSION || Integer.bitCount(slots) != 1
+                || HEADER_SIZE + (long) slots * SLOT_SIZE > buffer.capacity()) {
+            logger.warn("Rebuilding outdated classpath index {}", indexFile);
+            return null;
+        }
+        logger.debug("Classpath index mapped: {} -> {}", jar, indexFile);
+        return new JarIndex(jar, hash, buffer, slots, buffer.getInt(12));
+    }
+
+    private static void build(Path jar, Path indexFile) throws IOException {
+        long start = System.nanoTime();
+        Path tempFile = Files.createTempFile(indexFile.getParent(), indexFile.getFileName().toString(), ".tmp");
+        try (ZipFile zip = new ZipFile(jar.toFile());
+             FileChannel channel = FileChannel.open(tempFile, StandardOpenOption.WRITE)) {
+            int classes = (int) zip.stream().filter(ClasspathIndex::isClassEntry).count();
+            // Заполнение не больше половины: в таблице всегда есть пустой слот
+            int slots = Integer.highestOneBit(Math.max(classes, 1) * 2 - 1) << 1;
+            int[] hashes = new int[slots];
+            int[] offsets = new int[slots];
+            long recordsStart = HEADER_SIZE + (long) slots * SLOT_SIZE;
+
+            channel.position(recordsStart);
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+            for (Enumeration<? extends ZipEntry> entries = zip.entries(); entries.hasMoreElements(); ) {
+                ZipEntry entry = entries.nextElement();
+                if (!isClassEntry(entry)) {
+                    continue;
+                }
+                String name = binaryName(entry.getName());
+                byte[] nameBytes = name.getBytes(StandardCharsets.UTF_8);
+                byte[] classFile;
+                try (InputStream in = zip.getInputStream(entry)) {
+                    classFile = in.readAllBytes();
+                }
+                long offset = recordsStart + out.size();
+                if (offset + 6 + nameBytes.length + classFile.length > Integer.MAX_VALUE) {
+                    throw new IOException("Classpath index exceeds 2 GB: " + jar);
+                }
+
+                int hash = nameHash(name);
+                int slot = hash & (slots - 1);
+                while (offsets[slot] != 0) {
+                    slot = (slot + 1) & (slots - 1);
+                }
+                hashes[slot] = hash;
+                offsets[slot] = (int) offset;
+
+                out.writeShort(nameBytes.length);
+                out.write(nameBytes);
+                out.writeInt(classFile.length);
+                out.write(classFile);
+            }
+            out.flush();
+
+            ByteBuffer table = ByteBuffer.allocate((int) recordsStart);
+            table.putInt(MAGIC).putInt(FORMAT_VERSION).putInt(slots).putInt(classes);
+            for (int slot = 0; slot < slots; slot++) {
+                table.putInt(hashes[slot]).putInt(offsets[slot]);
+            }
+            table.flip();
+            while (table.hasRemaining()) {
+                channel.write(table, table.position());
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(tempFile);
+            throw e;
+        }
+        Files.move(tempFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        logger.info("Classpath index built for {} in {} ms", jar, (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // Версии multi-release JAR и служебные классы в разрешении имён не участвуют
+    private static boolean isClassEntry(ZipEntry entry) {
+        String name = entry.getName();
+        return !entry.isDirectory() && name.endsWith(".class") && !name.startsWith("META-INF/")
+                && !name.endsWith("module-info.class") && !name.endsWith("package-info.class");
+    }
+
+    private static String binaryName(String entryName) {
+        return entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+    }
+
+    // Symbol solver спрашивает каноническое имя (a.b.Outer.Inner). Если такого двоичного
+    // нет, последняя точка заменяется на '$', как в JarTypeSolver; null - вариантов больше нет
+    private static String nextBinaryName(String name) {
+        int dot = name.lastIndexOf('.');
+        return dot < 0 ? null : name.substring(0, dot) + '$' + name.substring(dot + 1);
+    }
+
+    private static int nameHash(String name) {
+        int hash = name.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new ObfuscationException("SHA-256 is not available", e);
+        }
+    }
+
+    // Class-файл типа с двоичным (a.b.Outer$Inner) или каноническим именем; null - такого нет
+    public ByteBuffer findClass(String name) {
+        lookups.increment();
+        for (String key = name; key != null; key = nextBinaryName(key)) {
+            for (JarIndex jar : jars) {
+                ByteBuffer classFile = jar.find(key);
+                if (classFile != null) {
+                    found.increment();
+                    return classFile;
+                }
+            }
+        }
+        return null;
+    }
+
+    private JarIndex findJar(String name) {
+        for (String key = name; key != null; key = nextBinaryName(key)) {
+            for (JarIndex jar : jars) {
+                if (jar.find(key) != null) {
+                    return jar;
+                }
+            }
+        }
+        return null;
+    }
+
+    // Новое представление индекса для CombinedTypeSolver. У TypeSolver один родитель,
+    // поэтому каждому SymbolResolver нужно своё; сами данные индекса общие
+    public TypeSolver newTypeSolver() {
+        return new IndexTypeSolver();
+    }
+
+    public int getJarCount() {
+        return jars.size();
+    }
+
+    public int getClassCount() {
+        return jars.stream().mapToInt(JarIndex::classes).sum();
+    }
+
+    public int getBuiltCount() {
+        return builtCount;
+    }
+
+    // Сколько JAR пришлось прочитать целиком ради хэша содержимого
+    public int getHashedCount() {
+        return hashedCount;
+    }
+
+    // Хэш содержимого всех JAR по порядку - для отпечатка настроек кэша обфускации
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public String getStatistics() {
+        return String.format("Classpath index: %d JARs, %d classes (%d hashed, %d indexed this run), %d lookups, %d found",
+                jars.size(), getClassCount(), hashedCount, builtCount, lookups.sum(), found.sum());
+    }
+
+    // Типы из индекса в виде javassist-классов. Супертипы из JDK javassist
+    // читает через платформенный загрузчик - классы приложения туда не попадают
+    private final class IndexTypeSolver implements TypeSolver, ClassPath {
+
+        private final ClassPool classPool = new ClassPool(false);
+        private TypeSolver parent;
+
+        private IndexTypeSolver() {
+            classPool.appendClassPath(this);
+            classPool.appendClassPath(new LoaderClassPath(ClassLoader.getPlatformClassLoader()));
+        }
+
+        @Override
+        public TypeSolver getParent() {
+            return parent;
+        }
+
+        @Override
+        public void setParent(TypeSolver parent) {
+            Objects.requireNonNull(parent);
+            if (this.parent != null) {
+                throw new IllegalStateException("This TypeSolver already has a parent.");
+            }
+            if (parent == this) {
+                throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+            }
+            this.parent = parent;
+        }
+
+        @Override
+        public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+            ByteBuffer classFile = findClass(name);
+            if (classFile == null) {
+                return SymbolReference.unsolved();
+            }
+            try {
+                CtClass ctClass;
+                // ClassPool не рассчитан на одновременное добавление классов
+                synchronized (classPool) {
+                    ctClass = classPool.makeClassIfNew(new ByteArrayInputStream(bytes(classFile)));
+                }
+                return SymbolReference.solved(JavassistFactory.toTypeDeclaration(ctClass, getRoot()));
+            } catch (IOException e) {
+                throw new IllegalStateException("Corrupt class in classpath index: " + name, e);
+            }
+        }
+
+        @Override
+        public InputStream openClassfile(String classname) throws NotFoundException {
+            ByteBuffer classFile = findClass(classname);
+            return classFile != null ? new ByteArrayInputStream(bytes(classFile)) : null;
+        }
+
+        // ClassPool считает класс существующим, только если для него есть URL
+        @Override
+        public URL find(String classname) {
+            JarIndex jar = findJar(classname);
+            if (jar == null) {
+                return null;
+            }
+            try {
+                return URI.create("jar:" + jar.jar().toUri() + "!/" + classname.replace('.', '/') + ".class").toURL();
+            } catch (MalformedURLException | IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static byte[] bytes(ByteBuffer classFile) {
+        byte[] bytes = new byte[classFile.remaining()];
+        classFile.duplicate().get(bytes);
+        return bytes;
+    }
+}
@@ -1,66 +1,476 @@
 package com.obfuscator.obfuscator;
 
-import com.github.javaparser.JavaParser;
 import com.github.javaparser.ParseResult;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.visitor.ModifierVisitor;
-import com.github.javaparser.ast.visitor.Visitable;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.nodeTypes.NodeWithAnnotations;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
+import com.github.javaparser.printer.configuration.DefaultConfigurationOption;
+import com.github.javaparser.printer.configuration.DefaultPrinterConfiguration;
+import com.github.javaparser.printer.configuration.DefaultPrinterConfiguration.ConfigOption;
+import com.github.javaparser.printer.configuration.PrinterConfiguration;
+import com.github.javaparser.utils.LineSeparator;
+import com.obfuscator.util.Metrics;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
 
 public class CodeObfuscator {
 
     private static final Logger logger = LogManager.getLogger(CodeObfuscator.class);
 
-    private final JavaParser javaParser;
+    private static final int ENCODE_BUFFER_SIZE = 64 * 1024;
+    private static final int DEFAULT_TOKEN_STREAM_THRESHOLD = 4 * 1024 * 1024;
+    private static final int GENERATED_MARKER_SCAN = 64 * 1024;
+
+    private volatile ParserFactory parserFactory = ParserFactory.defaults();
+    // Кэши разрешения общие для процесса, статистика - своя у каждого обфускатора
+    private volatile SymbolResolver symbolResolver = SymbolResolver.defaults().forJob();
+    // Резолвер с исходниками проекта для воркеров второй фазы и индекс, по которому он создан
+    private SymbolResolver sourceResolver;
+    private SymbolIndex sourceResolverIndex;
+    private volatile Metrics metrics = Metrics.DISABLED;
+    private volatile boolean fileTiming;
+    private final PrinterConfiguration commentlessConfiguration;
     private final NameGenerator nameGenerator;
+    private NameSource names;
+    private volatile KeepRules keepRules;
     private final Map<String, String> symbolTable;
     private final Map<String, String> classRenames;
+    private final Map<String, String> fileClassRenames;
+    private final SymbolIndex symbolIndex;
+    private final List<SymbolIndex.Declaration> fileDeclarations;
+    private final Set<SymbolIndex.Reference> fileReferences;
+    // Типы проекта из других файлов, о которых спрашивало разрешение символов файла
+    private final Set<String> fileProjectTypes;
+    // Движок, разобравший последний файл потоком токенов: обращения берутся из него
+    private TokenStreamObfuscator fileTokenEngine;
+    private final List<String> fileLocalNames;
+    // Разрешённые обращения файла; остальные сопоставляются с объявлениями по имени
+    private Map<com.github.javaparser.ast.Node, SymbolResolver.Binding> fileBindings = Map.of();
+    private int fileRenameCount;
+    private int fileClassesRenamed;
+    private int fileMethodsRenamed;
+    private int fileVariablesRenamed;
+    // Длительности этапов текущего файла для метрик, события JFR и отчёта. Время измеряется,
+    // только если включены метрики, событие ObfuscateCodeEvent или setFileTiming
+    private final long[] phaseNanos = new long[Metrics.Phase.values().length];
+    private boolean timingPhases;
 
-    private final AtomicInteger classesRenamed = new AtomicInteger(0);
-    private final AtomicInteger methodsRenamed = new AtomicInteger(0);
-    private final AtomicInteger variablesRenamed = new AtomicInteger(0);
-
-    private static final Set<String> EXCLUDED_CLASSES = Set.of(
-            "String", "Integer", "Long", "Double", "Float", "Boolean",
-            "List", "Map", "Set", "ArrayList", "HashMap", "HashSet"
-    );
+    private final CharsetEncoder encoder;
+    private final ByteBuffer encodeBuffer;
+    private final char[] encodeChars;
+    private final CharsetDecoder decoder;
+    // Буфер воркера для декодирования отображённых файлов; растёт до самого большого файла
+    private CharBuffer sourceChars;
 
-    private static final Set<String> EXCLUDED_METHODS = Set.of(
-            "main", "toString", "equals", "hashCode", "clone",
-            "compareTo", "wait", "notify", "notifyAll"
-    );
+    private int tokenStreamThreshold = DEFAULT_TOKEN_STREAM_THRESHOLD;
+    private TokenStreamObfuscator indexTokenEngine;
 
-    private static final Set<String> EXCLUDED_VARIABLES = Set.of(
-            "args", "this", "super", "out", "err", "in",
-            "class", "length", "size"
-    );
+    // Итоги всех файлов задачи, общие для воркеров; счётчики последнего файла - fileClassesRenamed и др.
+    private final LongAdder classesRenamed;
+    private final LongAdder methodsRenamed;
+    private final LongAdder variablesRenamed;
 
     public CodeObfuscator() {
-        this.javaParser = new JavaParser();
-        this.nameGenerator = new NameGenerator();
-        this.symbolTable = new HashMap<>();
-        this.classRenames = new HashMap<>();
+        this(new NameGenerator());
+    }
+
+    public CodeObfuscator(NameGenerator nameGenerator) {
+        this(nameGenerator, KeepRules.defaults());
+    }
+
+    public CodeObfuscator(NameGenerator nameGenerator, KeepRules keepRules) {
+        this(nameGenerator, keepRules, new ConcurrentHashMap<>(), null,
+                new LongAdder(), new LongAdder(), new LongAdder());
         logger.debug("CodeObfuscator initialized");
     }
 
-    public String obfuscateCode(String sourceCode, String originalFileName) throws ObfuscationException {
+    private CodeObfuscator(NameGenerator nameGenerator, KeepRules keepRules, Map<String, String> classRenames,
+                           SymbolIndex symbolIndex, LongAdder classesRenamed, LongAdder methodsRenamed,
+                           LongAdder variablesRenamed) {
+        this.commentlessConfiguration = new DefaultPrinterConfiguration()
+                .removeOption(new DefaultConfigurationOption(ConfigOption.PRINT_COMMENTS));
+        this.nameGenerator = nameGenerator;
+        this.names = nameGenerator;
+        this.keepRules = keepRules;
+        this.symbolTable = new HashMap<>();
+        this.classRenames = classRenames;
+        this.fileClassRenames = new HashMap<>();
+        this.symbolIndex = symbolIndex;
+        this.fileDeclarations = new ArrayList<>();
+        this.fileReferences = new HashSet<>();
+        this.fileProjectTypes = new HashSet<>();
+        this.fileLocalNames = new ArrayList<>();
+        this.encoder = StandardCharsets.UTF_8.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.encodeBuffer = ByteBuffer.allocate(ENCODE_BUFFER_SIZE);
+        this.encodeChars = new char[ENCODE_BUFFER_SIZE / 4];
+        this.decoder = StandardCharsets.UTF_8.newDecoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.classesRenamed = classesRenamed;
+        this.methodsRenamed = methodsRenamed;
+        this.variablesRenamed = variablesRenamed;
+    }
+
+    // Обфускатор для отдельного потока: своя таблица символов файла (парсер - из пула потока),
+    // но общие генератор имён, переименования классов и счётчики
+    public CodeObfuscator createWorker() {
+        return createWorker(null);
+    }
+
+    // Воркер второй фазы: объявления классов, методов и полей переименовываются
+    // по общему индексу проекта, локальные переменные - как раньше, в пределах файла
+    public CodeObfuscator createWorker(SymbolIndex symbolIndex) {
+        logger.debug("Creating CodeObfuscator worker (symbol index: {})", symbolIndex != null);
+        CodeObfuscator worker = new CodeObfuscator(nameGenerator, keepRules, classRenames, symbolIndex,
+                classesRenamed, methodsRenamed, variablesRenamed);
+        worker.tokenStreamThreshold = tokenStreamThreshold;
+        worker.parserFactory = parserFactory;
+        worker.symbolResolver = symbolIndex != null ? sourceResolver(symbolIndex) : symbolResolver;
+        worker.metrics = metrics;
+        worker.fileTiming = fileTiming;
+        return worker;
+    }
+
+    // Воркеры второй фазы делят один резолвер с исходниками проекта: разобранные
+    // файлы других классов кэшируются на весь проход, у каждого потока - свои
+    private synchronized SymbolResolver sourceResolver(SymbolIndex symbolIndex) {
+        SymbolResolver resolver = symbolResolver;
+        if (resolver == null) {
+            return null;
+        }
+        if (sourceResolverIndex != symbolIndex) {
+            sourceResolver = resolver.withSources(symbolIndex, parserFactory);
+            sourceResolverIndex = symbolIndex;
+        }
+        return sourceResolver;
+    }
+
+    // Правила действуют на воркеры, созданные после вызова
+    public void setKeepRules(KeepRules keepRules) {
+        this.keepRules = keepRules;
+        logger.debug("Keep rules set: {} class patterns", keepRules.size());
+    }
+
+    public KeepRules getKeepRules() {
+        return keepRules;
+    }
+
+    // Фабрика действует на воркеры, созданные после вызова
+    public void setParserFactory(ParserFactory parserFactory) {
+        this.parserFactory = parserFactory;
+        logger.debug("Parser factory set: {}", parserFactory.describe());
+    }
+
+    public ParserFactory getParserFactory() {
+        return parserFactory;
+    }
+
+    // Действует на воркеры, созданные после вызова. null - ссылки сопоставляются
+    // с объявлениями только по имени, как в потоковом движке
+    public void setSymbolResolver(SymbolResolver symbolResolver) {
+        this.symbolResolver = symbolResolver;
+        logger.debug("Symbol resolver set: {}", symbolResolver != null ? symbolResolver.describe() : "none");
+    }
+
+    public SymbolResolver getSymbolResolver() {
+        return symbolResolver;
+    }
+
+    // Замеры этапов обработки; воркеры, созданные после вызова, пишут в те же метрики
+    public void setMetrics(Metrics metrics) {
+        this.metrics = metrics != null ? metrics : Metrics.DISABLED;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    // Время этапов каждого файла (getFilePhaseNanos) без общих метрик, например для
+    // отчёта по файлам; наследуется воркерами, созданными после вызова
+    public void setFileTiming(boolean fileTiming) {
+        this.fileTiming = fileTiming;
+    }
+
+    // Файлы от threshold символов и помеченные @Generated обрабатываются потоковым движком
+    public void setTokenStreamThreshold(int threshold) {
+        this.tokenStreamThreshold = threshold;
+    }
+
+    public int getTokenStreamThreshold() {
+        return tokenStreamThreshold;
+    }
+
+    // Исходник из содержимого файла в UTF-8. Буфер в куче (маленький файл, прочитанный целиком)
+    // становится строкой, а отображённый файл декодируется в переиспользуемый буфер воркера
+    // без промежуточных копий. Такой результат действителен до следующего decode этого воркера
+    public CharSequence decode(ByteBuffer content) {
+        if (content.hasArray()) {
+            return new String(content.array(), content.arrayOffset() + content.position(), content.remaining(),
+                    StandardCharsets.UTF_8);
+        }
+
+        // В UTF-8 байт даёт не больше одного символа, поэтому переполнения не бывает
+        int capacity = content.remaining();
+        if (sourceChars == null || sourceChars.capacity() < capacity) {
+            sourceChars = CharBuffer.allocate(capacity);
+        }
+        sourceChars.clear();
+        decoder.reset();
+        decoder.decode(content.duplicate(), sourceChars, true);
+        decoder.flush(sourceChars);
+        return sourceChars.flip();
+    }
+
+    public boolean usesTokenStream(CharSequence sourceCode) {
+        return sourceCode.length() >= tokenStreamThreshold || isMarkedGenerated(sourceCode);
+    }
+
+    // Новые имена следующих файлов берутся из потока stream, а не из общего генератора.
+    // Разные файлы должны получать разные номера потоков
+    public void useNameStream(long stream) {
+        this.names = nameGenerator.newStream(stream);
+    }
+
+    public void collectDeclarations(CharSequence sourceCode, String originalFileName, SymbolIndex.Builder builder)
+            throws ObfuscationException {
+        String originalClassName = getClassNameFromFileName(originalFileName);
+        long start = metrics.start();
+
+        if (usesTokenStream(sourceCode)) {
+            TokenStreamObfuscator.TypeHeader header = TokenStreamObfuscator.findType(sourceCode, originalClassName);
+            if (header != null) {
+                builder.add(declarationOf(header, originalClassName));
+            }
+            metrics.stop(Metrics.Phase.INDEX, start);
+            return;
+        }
+
+        ParseResult<CompilationUnit> parseResult = parseSource(sourceCode);
+
+        if (!parseResult.isSuccessful() || !parseResult.getResult().isPresent()) {
+            throw new ObfuscationException("Failed to parse Java code from file: " + originalFileName);
+        }
+
+        parseResult.getResult().get().accept(new DeclarationCollector(originalClassName, builder::add), null);
+        metrics.stop(Metrics.Phase.INDEX, start);
+    }
+
+    // Файл - источник своего основного типа: по нему во второй фазе разрешаются обращения
+    // из других файлов. key - ключ кэша файла, от него зависят записи кэша этих файлов
+    public void collectSource(CharSequence sourceCode, String originalFileName, Path sourceFile, String key,
+                              SymbolIndex.Builder builder) {
+        TokenStreamObfuscator.TypeHeader header =
+                TokenStreamObfuscator.findType(sourceCode, getClassNameFromFileName(originalFileName));
+        if (header != null) {
+            builder.addSource(header.qualifiedName(), sourceFile, key);
+        }
+    }
+
+    public SymbolIndex buildSymbolIndex(SymbolIndex.Builder builder) {
+        return builder.build(nameGenerator);
+    }
+
+    public String obfuscateCode(CharSequence sourceCode, String originalFileName) throws ObfuscationException {
+        ObfuscateCodeEvent event = beginFile();
+        boolean tokenStream = usesTokenStream(sourceCode);
         try {
-            logger.debug("Obfuscating file: {}", originalFileName);
+            if (tokenStream) {
+                StringBuilder output = new StringBuilder(sourceCode.length() + 1024);
+                try {
+                    obfuscateTokens(sourceCode, originalFileName, output);
+                } catch (IOException e) {
+                    throw new ObfuscationException("Obfuscation failed: " + e.getMessage(), e);
+                }
+                return output.toString();
+            }
+            return print(transform(sourceCode, originalFileName));
+        } finally {
+            endFile(event, originalFileName, sourceCode, tokenStream);
+        }
+    }
 
-            ParseResult<CompilationUnit> parseResult = javaParser.parse(sourceCode);
+    // Печать сразу в канал через переиспользуемый буфер кодировщика, без копии вывода в byte[].
+    // Возвращает число переименований в файле: 0 - код файла не изменился
+    public int obfuscateCode(CharSequence sourceCode, String originalFileName, WritableByteChannel out)
+            throws IOException, ObfuscationException {
+        ObfuscateCodeEvent event = beginFile();
+        boolean tokenStream = usesTokenStream(sourceCode);
+        try {
+            ChannelAppender appender = new ChannelAppender(out);
+            if (tokenStream) {
+                obfuscateTokens(sourceCode, originalFileName, appender);
+            } else {
+                print(transform(sourceCode, originalFileName), appender);
+            }
+            appender.finish();
+            return fileRenameCount;
+        } finally {
+            endFile(event, originalFileName, sourceCode, tokenStream);
+        }
+    }
 
-            if (!parseResult.isSuccessful() || !parseResult.getResult().isPresent()) {
-                logger.error("Failed to parse Java code from file: {}", originalFileName);
-                throw new ObfuscationException("Failed to parse Java code");
+    public int obfuscateCode(CharSequence sourceCode, String originalFileName, Writer out)
+            throws IOException, ObfuscationException {
+        ObfuscateCodeEvent event = beginFile();
+        boolean tokenStream = usesTokenStream(sourceCode);
+        try {
+            if (tokenStream) {
+                obfuscateTokens(sourceCode, originalFileName, out);
+            } else {
+                print(transform(sourceCode, originalFileName), out);
             }
+            return fileRenameCount;
+        } finally {
+            endFile(event, originalFileName, sourceCode, tokenStream);
+        }
+    }
 
-            CompilationUnit compilationUnit = parseResult.getResult().get();
+    private ObfuscateCodeEvent beginFile() {
+        ObfuscateCodeEvent event = new ObfuscateCodeEvent();
+        timingPhases = fileTiming || metrics.isEnabled() || event.isEnabled();
+        Arrays.fill(phaseNanos, 0);
+        event.begin();
+        return event;
+    }
+
+    // Поля заполняются только у события выше порога: быстрый файл стоит одной проверки
+    private void endFile(ObfuscateCodeEvent event, String originalFileName, CharSequence sourceCode,
+                         boolean tokenStream) {
+        event.end();
+        if (!event.shouldCommit()) {
+            return;
+        }
+        event.file = originalFileName;
+        event.sourceChars = sourceCode.length();
+        event.tokenStream = tokenStream;
+        event.classesRenamed = fileClassesRenamed;
+        event.methodsRenamed = fileMethodsRenamed;
+        event.variablesRenamed = fileVariablesRenamed;
+        event.renames = fileRenameCount;
+        event.parse = phaseNanos[Metrics.Phase.PARSE.ordinal()];
+        event.bindReferences = phaseNanos[Metrics.Phase.BIND.ordinal()];
+        event.classVisitor = phaseNanos[Metrics.Phase.CLASSES.ordinal()];
+        event.methodVisitor = phaseNanos[Metrics.Phase.METHODS.ordinal()];
+        event.variableVisitor = phaseNanos[Metrics.Phase.VARIABLES.ordinal()];
+        event.updateReferences = phaseNanos[Metrics.Phase.REFERENCES.ordinal()];
+        event.updateImports = phaseNanos[Metrics.Phase.IMPORTS.ordinal()];
+        event.print = phaseNanos[Metrics.Phase.PRINT.ordinal()];
+        event.tokenStreamRename = phaseNanos[Metrics.Phase.TOKEN_STREAM.ordinal()];
+        event.commit();
+    }
+
+    private long phaseStart() {
+        return timingPhases ? System.nanoTime() : 0;
+    }
+
+    // Возвращает момент окончания этапа: он же начало следующего
+    private long phaseEnd(Metrics.Phase phase, long start) {
+        if (!timingPhases) {
+            return 0;
+        }
+        long end = System.nanoTime();
+        phaseNanos[phase.ordinal()] += end - start;
+        metrics.record(phase, start, end);
+        return end;
+    }
+
+    private void obfuscateTokens(CharSequence sourceCode, String originalFileName, Appendable out) throws IOException {
+        logger.debug("Obfuscating file with token stream: {} ({} chars)", originalFileName, sourceCode.length());
+
+        resetFileStatistics();
+
+        String originalClassName = getClassNameFromFileName(originalFileName);
+        TokenStreamObfuscator.TypeHeader header = TokenStreamObfuscator.findType(sourceCode, originalClassName);
+
+        String newClassName = null;
+        TokenStreamObfuscator engine;
+        if (symbolIndex != null) {
+            if (header != null) {
+                fileDeclarations.add(declarationOf(header, originalClassName));
+                newClassName = symbolIndex.getRename(SymbolIndex.Kind.CLASS, originalClassName);
+            }
+            if (indexTokenEngine == null) {
+                indexTokenEngine = new TokenStreamObfuscator(symbolIndex.getRenames(SymbolIndex.Kind.CLASS),
+                        symbolIndex.getRenames(SymbolIndex.Kind.METHOD), symbolIndex.getRenames(SymbolIndex.Kind.FIELD),
+                        this::isProjectType);
+            }
+            engine = indexTokenEngine;
+        } else {
+            if (header != null && !declarationOf(header, originalClassName).kept()) {
+                newClassName = names.generateClassName();
+                classRenames.put(originalClassName, newClassName);
+            }
+            engine = new TokenStreamObfuscator(new HashMap<>(classRenames), Map.of(), Map.of(), null);
+        }
+
+        if (newClassName != null) {
+            fileClassRenames.put(originalClassName, newClassName);
+            fileClassesRenamed++;
+            classesRenamed.increment();
+            logger.debug("Renamed class: {} -> {}", originalClassName, newClassName);
+        }
+
+        long start = phaseStart();
+        fileRenameCount = engine.rename(sourceCode, out, symbolIndex != null);
+        phaseEnd(Metrics.Phase.TOKEN_STREAM, start);
+        if (symbolIndex != null) {
+            fileTokenEngine = engine;
+        }
+        logger.debug("Token stream obfuscation complete for: {} ({} renames)", originalFileName, fileRenameCount);
+    }
+
+    // Тип проекта по полному имени. Как и вопросы solver'а, имя попадает в зависимости файла
+    private boolean isProjectType(String type) {
+        fileProjectTypes.add(type);
+        return symbolIndex.getSourceFile(type) != null;
+    }
+
+    private SymbolIndex.Declaration declarationOf(TokenStreamObfuscator.TypeHeader header, String className) {
+        return new SymbolIndex.Declaration(SymbolIndex.Kind.CLASS, className, header.qualifiedName(),
+                keepRules.keepsClass(header.qualifiedName(), header.annotations()));
+    }
+
+    private static boolean isMarkedGenerated(CharSequence sourceCode) {
+        // Аннотация стоит перед объявлением типа, поэтому достаточно начала файла
+        return TokenStreamObfuscator.isMarkedGenerated(sourceCode, GENERATED_MARKER_SCAN);
+    }
+
+    private CompilationUnit transform(CharSequence sourceCode, String originalFileName) throws ObfuscationException {
+        try {
+            logger.debug("Obfuscating file: {}", originalFileName);
+
+            long time = phaseStart();
+            CompilationUnit compilationUnit = parse(sourceCode, originalFileName);
+            phaseEnd(Metrics.Phase.PARSE, time);
 
             resetFileStatistics();
 
@@ -68,26 +478,32 @@ public class CodeObfuscator {
 
             String originalClassName = getClassNameFromFileName(originalFileName);
 
-            ClassObfuscatorVisitor classVisitor = new ClassObfuscatorVisitor(originalClassName);
-            classVisitor.visit(compilationUnit, null);
+            if (symbolIndex != null) {
+                compilationUnit.accept(new DeclarationCollector(originalClassName, fileDeclarations::add), null);
+            }
 
-            MethodObfuscatorVisitor methodVisitor = new MethodObfuscatorVisitor();
-            methodVisitor.visit(compilationUnit, null);
+            time = phaseStart();
+            bindReferences(compilationUnit);
+            time = phaseEnd(Metrics.Phase.BIND, time);
 
-            VariableObfuscatorVisitor variableVisitor = new VariableObfuscatorVisitor();
-            variableVisitor.visit(compilationUnit, null);
+            renameClasses(compilationUnit, originalClassName);
+            time = phaseEnd(Metrics.Phase.CLASSES, time);
+            renameMethods(compilationUnit);
+            time = phaseEnd(Metrics.Phase.METHODS, time);
+            renameVariables(compilationUnit);
+            time = phaseEnd(Metrics.Phase.VARIABLES, time);
 
             updateReferences(compilationUnit);
+            time = phaseEnd(Metrics.Phase.REFERENCES, time);
 
             updateImports(compilationUnit);
-
-            String obfuscatedCode = compilationUnit.toString();
+            phaseEnd(Metrics.Phase.IMPORTS, time);
 
             logger.debug("Obfuscation complete for: {}", originalFileName);
             logger.debug("Statistics: classes={}, methods={}, variables={}",
-                    classesRenamed.get(), methodsRenamed.get(), variablesRenamed.get());
+                    fileClassesRenamed, fileMethodsRenamed, fileVariablesRenamed);
 
-            return obfuscatedCode;
+            return compilationUnit;
 
         } catch (Exception e) {
             logger.error("Error during obfuscation of {}: {}", originalFileName, e.getMessage(), e);
@@ -95,13 +511,160 @@ public class CodeObfuscator {
         }
     }
 
+    // Этапы transform открыты пакету по отдельности, чтобы их можно было измерять (src/jmh)
+    CompilationUnit parse(CharSequence sourceCode, String originalFileName) throws ObfuscationException {
+        ParseResult<CompilationUnit> parseResult = parseSource(sourceCode);
+
+        if (!parseResult.isSuccessful() || !parseResult.getResult().isPresent()) {
+            logger.error("Failed to parse Java code from file: {}", originalFileName);
+            throw new ObfuscationException("Failed to parse Java code");
+        }
+
+        return parseResult.getResult().get();
+    }
+
+    private ParseResult<CompilationUnit> parseSource(CharSequence sourceCode) {
+        return parserFactory.parse(sourceCode);
+    }
+
+    // До переименования: solver ищет объявления по исходным именам
+    void bindReferences(CompilationUnit compilationUnit) {
+        SymbolResolver resolver = symbolResolver;
+        if (resolver == null) {
+            return;
+        }
+        fileBindings = resolver.bind(compilationUnit,
+                name -> symbolIndex != null && symbolIndex.getRename(SymbolIndex.Kind.FIELD, name) != null,
+                name -> symbolIndex != null && symbolIndex.getRename(SymbolIndex.Kind.METHOD, name) != null,
+                name -> symbolIndex != null
+                        ? symbolIndex.getRename(SymbolIndex.Kind.CLASS, name) != null
+                        : classRenames.containsKey(name),
+                fileProjectTypes);
+    }
+
+    void renameClasses(CompilationUnit compilationUnit, String originalClassName) {
+        new ClassObfuscatorVisitor(originalClassName).visit(compilationUnit, null);
+    }
+
+    void renameMethods(CompilationUnit compilationUnit) {
+        new MethodObfuscatorVisitor().visit(compilationUnit, null);
+    }
+
+    void renameVariables(CompilationUnit compilationUnit) {
+        new VariableObfuscatorVisitor().visit(compilationUnit, null);
+    }
+
+    String print(CompilationUnit compilationUnit) {
+        StringBuilder output = new StringBuilder();
+        try {
+            print(compilationUnit, output);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toString();
+    }
+
+    // Дерево печатается прямо в out по классам верхнего уровня, без строки со всем исходником
+    void print(CompilationUnit compilationUnit, Appendable out) throws IOException {
+        long start = phaseStart();
+        PrinterConfiguration configuration;
+        // Поиск orphan-комментариев в принтере квадратичен по числу членов класса,
+        // поэтому без комментариев печатаем без них
+        if (compilationUnit.getAllContainedComments().isEmpty()) {
+            configuration = commentlessConfiguration;
+        } else {
+            // Как в Node.toString: переводы строк - как в исходном файле
+            configuration = new DefaultPrinterConfiguration();
+            if (compilationUnit.containsData(Node.LINE_SEPARATOR_KEY)) {
+                configuration.addOption(new DefaultConfigurationOption(ConfigOption.END_OF_LINE_CHARACTER,
+                        compilationUnit.getLineEndingStyleOrDefault(LineSeparator.SYSTEM).asRawString()));
+            }
+        }
+        StreamingPrinterVisitor printer = new StreamingPrinterVisitor(configuration, out);
+        try {
+            compilationUnit.accept(printer, null);
+            printer.flush();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        phaseEnd(Metrics.Phase.PRINT, start);
+    }
+
+    // Appendable поверх канала: символы кодируются в UTF-8 через общий буфер воркера
+    private final class ChannelAppender implements Appendable {
+        private final WritableByteChannel channel;
+
+        private ChannelAppender(WritableByteChannel channel) {
+            this.channel = channel;
+            encoder.reset();
+        }
+
+        @Override
+        public Appendable append(CharSequence text) throws IOException {
+            return append(text, 0, text.length());
+        }
+
+        @Override
+        public Appendable append(CharSequence text, int start, int end) throws IOException {
+            if (text instanceof CharBuffer chars && chars.hasArray()) {
+                encode(CharBuffer.wrap(chars.array(), chars.arrayOffset() + chars.position() + start, end - start),
+                        false);
+                return this;
+            }
+            if (!(text instanceof String) && !(text instanceof StringBuilder)) {
+                encode(CharBuffer.wrap(text, start, end), false);
+                return this;
+            }
+            // Кодировщик быстрее всего работает с буфером поверх массива: участки строки
+            // (и буфера принтера) копируются порциями в массив воркера
+            while (start < end) {
+                int count = Math.min(end - start, encodeChars.length);
+                if (text instanceof String string) {
+                    string.getChars(start, start + count, encodeChars, 0);
+                } else {
+                    ((StringBuilder) text).getChars(start, start + count, encodeChars, 0);
+                }
+                encode(CharBuffer.wrap(encodeChars, 0, count), false);
+                start += count;
+            }
+            return this;
+        }
+
+        @Override
+        public Appendable append(char c) throws IOException {
+            return append(String.valueOf(c));
+        }
+
+        private void encode(CharBuffer chars, boolean endOfInput) throws IOException {
+            while (encoder.encode(chars, encodeBuffer, endOfInput).isOverflow()) {
+                drainEncodeBuffer(channel);
+            }
+        }
+
+        private void finish() throws IOException {
+            encode(CharBuffer.wrap(""), true);
+            while (encoder.flush(encodeBuffer).isOverflow()) {
+                drainEncodeBuffer(channel);
+            }
+            drainEncodeBuffer(channel);
+        }
+    }
+
+    private void drainEncodeBuffer(WritableByteChannel out) throws IOException {
+        encodeBuffer.flip();
+        while (encodeBuffer.hasRemaining()) {
+            out.write(encodeBuffer);
+        }
+        encodeBuffer.clear();
+    }
+
     private String getClassNameFromFileName(String fileName) {
         return fileName.replace(".java", "");
     }
 
     public String getNewFileName(String originalFileName) {
         String className = getClassNameFromFileName(originalFileName);
-        String newClassName = classRenames.get(className);
+        String newClassName = fileClassRenames.get(className);
 
         if (newClassName != null) {
             logger.debug("File rename: {} -> {}", originalFileName, newClassName + ".java");
@@ -112,7 +675,7 @@ public class CodeObfuscator {
         return originalFileName;
     }
 
-    private class ClassObfuscatorVisitor extends ModifierVisitor<Void> {
+    private class ClassObfuscatorVisitor extends VoidVisitorAdapter<Void> {
         private final String fileNameClassName;
 
         public ClassObfuscatorVisitor(String fileNameClassName) {
@@ -120,195 +683,503 @@ public class CodeObfuscator {
         }
 
         @Override
-        public Visitable visit(com.github.javaparser.ast.body.ClassOrInterfaceDeclaration n, Void arg) {
+        public void visit(com.github.javaparser.ast.body.ClassOrInterfaceDeclaration n, Void arg) {
             String originalName = n.getNameAsString();
 
             logger.trace("Processing class: {}", originalName);
 
-            boolean shouldRename = false;
-            String classNameToCheck = originalName;
+            boolean shouldRename = originalName.equals(fileNameClassName);
 
-            if (originalName.equals(fileNameClassName)) {
-                shouldRename = true;
+            String newName = null;
+            if (symbolIndex != null) {
+                newName = lookupIndex(SymbolIndex.Kind.CLASS, originalName);
+            } else if (!originalName.isEmpty() && shouldRename && !isExcludedClass(n)) {
+                newName = names.generateClassName();
             }
 
-            if (!originalName.isEmpty() && !isExcludedClass(originalName) && shouldRename) {
-                String newName = nameGenerator.generateClassName();
+            if (newName != null) {
                 classRenames.put(originalName, newName);
+                if (shouldRename) {
+                    fileClassRenames.put(originalName, newName);
+                }
                 n.setName(newName);
-                classesRenamed.incrementAndGet();
+                fileRenameCount++;
+                fileClassesRenamed++;
+                classesRenamed.increment();
                 logger.debug("Renamed class: {} -> {}", originalName, newName);
             } else {
-                if (isExcludedClass(originalName)) {
-                    logger.trace("Class '{}' is excluded", originalName);
-                } else if (!shouldRename) {
+                if (!shouldRename) {
                     logger.trace("Class '{}' doesn't match filename '{}'", originalName, fileNameClassName);
+                } else {
+                    logger.trace("Class '{}' is excluded", originalName);
                 }
             }
-            return super.visit(n, arg);
-        }
-
-        private boolean isExcludedClass(String className) {
-            boolean excluded = EXCLUDED_CLASSES.contains(className) ||
-                    className.length() <= 2 ||
-                    className.startsWith("Test") ||
-                    className.endsWith("Test");
-
-            return excluded;
+            super.visit(n, arg);
         }
     }
 
-    private class MethodObfuscatorVisitor extends ModifierVisitor<Void> {
+    private class MethodObfuscatorVisitor extends VoidVisitorAdapter<Void> {
         @Override
-        public Visitable visit(com.github.javaparser.ast.body.MethodDeclaration n, Void arg) {
+        public void visit(com.github.javaparser.ast.body.MethodDeclaration n, Void arg) {
             String methodName = n.getNameAsString();
 
             logger.trace("Processing method: {}", methodName);
 
-            if (!methodName.isEmpty() && !isExcludedMethod(methodName)) {
-                String newName = nameGenerator.generateMethodName();
-                symbolTable.put(methodName, newName);
+            // В режиме индекса сохраняемые имена в индекс не попадают
+            String newName = null;
+            if (!methodName.isEmpty() && symbolIndex != null) {
+                newName = lookupIndex(SymbolIndex.Kind.METHOD, methodName);
+            } else if (!methodName.isEmpty() && !isExcludedMethod(n)) {
+                newName = names.generateMethodName();
+            }
+
+            if (newName != null) {
+                if (symbolIndex == null) {
+                    symbolTable.put(methodName, newName);
+                }
                 n.setName(newName);
-                methodsRenamed.incrementAndGet();
+                fileRenameCount++;
+                fileMethodsRenamed++;
+                methodsRenamed.increment();
                 logger.debug("Renamed method: {} -> {}", methodName, newName);
             } else {
                 logger.trace("Method excluded from renaming: {}", methodName);
             }
-            return super.visit(n, arg);
-        }
-
-        private boolean isExcludedMethod(String methodName) {
-            boolean excluded = EXCLUDED_METHODS.contains(methodName) ||
-                    methodName.length() <= 2 ||
-                    methodName.startsWith("get") ||
-                    methodName.startsWith("set") ||
-                    methodName.startsWith("is");
-
-            return excluded;
+            super.visit(n, arg);
         }
     }
 
-    private class VariableObfuscatorVisitor extends ModifierVisitor<Void> {
+    private class VariableObfuscatorVisitor extends VoidVisitorAdapter<Void> {
         @Override
-        public Visitable visit(com.github.javaparser.ast.body.VariableDeclarator n, Void arg) {
+        public void visit(com.github.javaparser.ast.body.VariableDeclarator n, Void arg) {
             String varName = n.getNameAsString();
 
             logger.trace("Processing variable: {}", varName);
 
-            if (!varName.isEmpty() && !isExcludedVariable(varName)) {
-                String newName = nameGenerator.generateVariableName();
-                symbolTable.put(varName, newName);
+            boolean indexedField = symbolIndex != null && isField(n);
+            String newName = null;
+            if (!varName.isEmpty() && indexedField) {
+                newName = lookupIndex(SymbolIndex.Kind.FIELD, varName);
+            } else if (!varName.isEmpty() && !isExcludedVariable(n)) {
+                newName = names.generateVariableName();
+            }
+
+            if (newName != null) {
+                if (!indexedField) {
+                    symbolTable.put(varName, newName);
+                    fileLocalNames.add(newName);
+                }
                 n.setName(newName);
-                variablesRenamed.incrementAndGet();
+                fileRenameCount++;
+                fileVariablesRenamed++;
+                variablesRenamed.increment();
                 logger.debug("Renamed variable: {} -> {}", varName, newName);
             } else {
                 logger.trace("Variable excluded from renaming: {}", varName);
             }
-            return super.visit(n, arg);
+            super.visit(n, arg);
         }
+    }
 
-        private boolean isExcludedVariable(String varName) {
-            boolean excluded = EXCLUDED_VARIABLES.contains(varName) ||
-                    varName.length() <= 1 ||
-                    varName.matches("[ijklm]");
+    private class DeclarationCollector extends VoidVisitorAdapter<Void> {
+        private final String fileNameClassName;
+        private final Consumer<SymbolIndex.Declaration> sink;
 
-            return excluded;
+        public DeclarationCollector(String fileNameClassName, Consumer<SymbolIndex.Declaration> sink) {
+            this.fileNameClassName = fileNameClassName;
+            this.sink = sink;
         }
-    }
 
-    private void updateReferences(CompilationUnit compilationUnit) {
-        symbolTable.forEach((oldName, newName) -> {
-            compilationUnit.accept(new ModifierVisitor<Void>() {
-                @Override
-                public Visitable visit(com.github.javaparser.ast.expr.NameExpr n, Void arg) {
-                    if (n.getNameAsString().equals(oldName)) {
-                        n.setName(newName);
-                        logger.trace("Updated variable reference: {} -> {}", oldName, newName);
-                    }
-                    return super.visit(n, arg);
-                }
+        @Override
+        public void visit(com.github.javaparser.ast.body.ClassOrInterfaceDeclaration n, Void arg) {
+            String className = n.getNameAsString();
+            if (className.equals(fileNameClassName)) {
+                sink.accept(new SymbolIndex.Declaration(SymbolIndex.Kind.CLASS, className,
+                        n.getFullyQualifiedName().orElse(className), isExcludedClass(n)));
+            }
+            super.visit(n, arg);
+        }
 
-                @Override
-                public Visitable visit(com.github.javaparser.ast.expr.FieldAccessExpr n, Void arg) {
-                    if (n.getNameAsString().equals(oldName)) {
-                        n.setName(newName);
-                        logger.trace("Updated field access: {} -> {}", oldName, newName);
-                    }
-                    return super.visit(n, arg);
-                }
-            }, null);
-        });
+        @Override
+        public void visit(com.github.javaparser.ast.body.MethodDeclaration n, Void arg) {
+            String methodName = n.getNameAsString();
+            if (!methodName.isEmpty()) {
+                sink.accept(new SymbolIndex.Declaration(SymbolIndex.Kind.METHOD, methodName,
+                        getOwnerName(getOwningType(n)), isExcludedMethod(n)));
+            }
+            super.visit(n, arg);
+        }
 
-        symbolTable.forEach((oldName, newName) -> {
-            compilationUnit.accept(new ModifierVisitor<Void>() {
-                @Override
-                public Visitable visit(com.github.javaparser.ast.expr.MethodCallExpr n, Void arg) {
-                    if (n.getNameAsString().equals(oldName)) {
-                        n.setName(newName);
-                        logger.trace("Updated method call: {} -> {}", oldName, newName);
-                    }
-                    return super.visit(n, arg);
+        @Override
+        public void visit(FieldDeclaration n, Void arg) {
+            n.getVariables().forEach(variable -> {
+                String fieldName = variable.getNameAsString();
+                if (!fieldName.isEmpty()) {
+                    sink.accept(new SymbolIndex.Declaration(SymbolIndex.Kind.FIELD, fieldName,
+                            getOwnerName(getOwningType(n)), isExcludedVariable(variable)));
                 }
-            }, null);
-        });
+            });
+            super.visit(n, arg);
+        }
+    }
 
-        classRenames.forEach((oldClass, newClass) -> {
-            compilationUnit.accept(new ModifierVisitor<Void>() {
-                @Override
-                public Visitable visit(com.github.javaparser.ast.expr.ObjectCreationExpr n, Void arg) {
-                    if (n.getType().toString().equals(oldClass)) {
-                        n.setType(newClass);
-                        logger.trace("Updated object creation: {} -> {}", oldClass, newClass);
-                    }
-                    return super.visit(n, arg);
-                }
+    // Решения о сохранении имён принимают правила KeepRules; им нужны владелец и аннотации
+    private boolean isExcludedClass(TypeDeclaration<?> type) {
+        return keepRules.keepsClass(getOwnerName(type), getAnnotationNames(type));
+    }
 
-                @Override
-                public Visitable visit(com.github.javaparser.ast.type.ClassOrInterfaceType n, Void arg) {
-                    if (n.getNameAsString().equals(oldClass)) {
-                        n.setName(newClass);
-                        logger.trace("Updated type reference: {} -> {}", oldClass, newClass);
-                    }
-                    return super.visit(n, arg);
-                }
-            }, null);
-        });
+    private boolean isExcludedMethod(com.github.javaparser.ast.body.MethodDeclaration method) {
+        TypeDeclaration<?> owner = getOwningType(method);
+        return keepRules.keepsMethod(getOwnerName(owner), getAnnotationNames(owner),
+                method.getNameAsString(), getAnnotationNames(method));
+    }
+
+    private boolean isExcludedVariable(com.github.javaparser.ast.body.VariableDeclarator variable) {
+        TypeDeclaration<?> owner = getOwningType(variable);
+        com.github.javaparser.ast.Node declaration = variable.getParentNode().orElse(null);
+        List<String> annotations = declaration instanceof NodeWithAnnotations
+                ? getAnnotationNames((NodeWithAnnotations<?>) declaration)
+                : List.of();
+        return keepRules.keepsField(getOwnerName(owner), getAnnotationNames(owner),
+                variable.getNameAsString(), annotations);
+    }
+
+    private TypeDeclaration<?> getOwningType(com.github.javaparser.ast.Node node) {
+        com.github.javaparser.ast.Node parent = node.getParentNode().orElse(null);
+        while (parent != null && !(parent instanceof TypeDeclaration)) {
+            parent = parent.getParentNode().orElse(null);
+        }
+        return (TypeDeclaration<?>) parent;
+    }
+
+    private String getOwnerName(TypeDeclaration<?> type) {
+        return type != null ? type.getFullyQualifiedName().orElse(type.getNameAsString()) : "";
+    }
+
+    private List<String> getAnnotationNames(NodeWithAnnotations<?> node) {
+        if (node == null || node.getAnnotations().isEmpty()) {
+            return List.of();
+        }
+        List<String> names = new ArrayList<>(node.getAnnotations().size());
+        node.getAnnotations().forEach(annotation -> names.add(annotation.getNameAsString()));
+        return names;
+    }
+
+    private boolean isField(com.github.javaparser.ast.body.VariableDeclarator variable) {
+        return variable.getParentNode().filter(FieldDeclaration.class::isInstance).isPresent();
+    }
+
+    private String lookupIndex(SymbolIndex.Kind kind, String name) {
+        String newName = symbolIndex.getRename(kind, name);
+        fileReferences.add(new SymbolIndex.Reference(kind, name, newName));
+        return newName;
+    }
+
+    // Объявление из другого файла проекта переименовывается по индексу
+    private String rename(SymbolResolver.Binding binding, SymbolIndex.Kind kind, String name) {
+        if (binding.isIndexed()) {
+            return symbolIndex != null ? lookupIndex(kind, name, binding.owner()) : null;
+        }
+        return binding.rename(name);
+    }
+
+    // Член известного типа: новое имя из индекса, только если этот тип объявляет член
+    // с таким именем. В обращения файла записывается ответ индекса по имени - состав
+    // владельцев проверяет ключ файла типа в зависимостях (getFileTypeSources)
+    private String lookupIndex(SymbolIndex.Kind kind, String name, String owner) {
+        String newName = lookupIndex(kind, name);
+        return newName != null && symbolIndex.getOwners(kind, name).contains(owner) ? newName : null;
+    }
+
+    private String lookupVariable(String name) {
+        String newName = symbolTable.get(name);
+        if (newName == null && symbolIndex != null) {
+            newName = lookupIndex(SymbolIndex.Kind.FIELD, name);
+        }
+        return newName;
+    }
+
+    private String lookupField(String name) {
+        if (symbolIndex != null) {
+            String newName = lookupIndex(SymbolIndex.Kind.FIELD, name);
+            if (newName != null) {
+                return newName;
+            }
+        }
+        return symbolTable.get(name);
+    }
+
+    private String lookupMethod(String name) {
+        return symbolIndex != null
+                ? lookupIndex(SymbolIndex.Kind.METHOD, name)
+                : symbolTable.get(name);
     }
 
-    private void updateImports(CompilationUnit compilationUnit) {
+    private String lookupClass(String name) {
+        return symbolIndex != null
+                ? lookupIndex(SymbolIndex.Kind.CLASS, name)
+                : classRenames.get(name);
+    }
+
+    void updateReferences(CompilationUnit compilationUnit) {
+        if (symbolIndex == null && symbolTable.isEmpty() && classRenames.isEmpty()) {
+            return;
+        }
+        compilationUnit.accept(new ReferenceUpdateVisitor(foreignImports(compilationUnit)), null);
+    }
+
+    // Простые имена классов проекта, которые файл импортирует из библиотек (import java.util.Map.Entry):
+    // в этом файле такое имя без области - не класс проекта
+    private Set<String> foreignImports(CompilationUnit compilationUnit) {
+        Set<String> names = new HashSet<>();
+        for (com.github.javaparser.ast.ImportDeclaration importDecl : compilationUnit.getImports()) {
+            if (!importDecl.isAsterisk() && !importDecl.isStatic() && !isProjectImport(importDecl)) {
+                names.add(importDecl.getName().getIdentifier());
+            }
+        }
+        return names;
+    }
+
+    // Импорт класса проекта: по разрешению, а если его нет - по области имени
+    private boolean isProjectImport(com.github.javaparser.ast.ImportDeclaration importDecl) {
+        com.github.javaparser.ast.expr.Name name = importDecl.getName();
+        if (lookupClass(name.getIdentifier()) == null || name.getQualifier().isEmpty()) {
+            return false;
+        }
+        SymbolResolver.Binding binding = fileBindings.get(importDecl);
+        if (binding != null) {
+            return binding.isIndexed();
+        }
+        return isProjectScope(name.getQualifier().get().asString(), name.asString());
+    }
+
+    // Тип в коде: с областью - по разрешению или по области имени, без области - если
+    // файл не импортирует одноимённый класс из библиотек
+    private boolean isProjectType(com.github.javaparser.ast.type.ClassOrInterfaceType type, Set<String> foreignImports) {
+        SymbolResolver.Binding binding = fileBindings.get(type);
+        if (binding != null) {
+            return binding.isIndexed();
+        }
+        if (type.getScope().isEmpty()) {
+            return !foreignImports.contains(type.getNameAsString());
+        }
+        return isProjectScope(type.getScope().get().getNameWithScope(), type.getNameWithScope());
+    }
+
+    // Область, которую не удалось разрешить. a.b.Foo - тип проекта, если проект объявляет его
+    // в пакете a.b (без индекса - в любом пакете); Outer.Inner - только внутри класса проекта.
+    // Map.Entry и другие вложенные типы библиотек не переименовываются
+    private boolean isProjectScope(String scope, String qualifiedName) {
+        String scopeName = scope.substring(scope.lastIndexOf('.') + 1);
+        if (Character.isUpperCase(scopeName.charAt(0))) {
+            return lookupClass(scopeName) != null || symbolIndex != null && isProjectType(scope);
+        }
+        return symbolIndex == null || isProjectType(qualifiedName);
+    }
+
+    private class ReferenceUpdateVisitor extends VoidVisitorAdapter<Void> {
+        private final Set<String> foreignImports;
+
+        private ReferenceUpdateVisitor(Set<String> foreignImports) {
+            this.foreignImports = foreignImports;
+        }
+
+        @Override
+        public void visit(com.github.javaparser.ast.expr.NameExpr n, Void arg) {
+            SymbolResolver.Binding binding = fileBindings.get(n);
+            String newName = binding != null
+                    ? rename(binding, SymbolIndex.Kind.FIELD, n.getNameAsString())
+                    : lookupVariable(n.getNameAsString());
+            if (newName != null) {
+                logger.trace("Updated variable reference: {} -> {}", n.getNameAsString(), newName);
+                n.setName(newName);
+                fileRenameCount++;
+            }
+            super.visit(n, arg);
+        }
+
+        @Override
+        public void visit(com.github.javaparser.ast.expr.FieldAccessExpr n, Void arg) {
+            SymbolResolver.Binding binding = fileBindings.get(n);
+            String newName = binding != null
+                    ? rename(binding, SymbolIndex.Kind.FIELD, n.getNameAsString())
+                    : lookupField(n.getNameAsString());
+            if (newName != null) {
+                logger.trace("Updated field access: {} -> {}", n.getNameAsString(), newName);
+                n.setName(newName);
+                fileRenameCount++;
+            }
+            super.visit(n, arg);
+        }
+
+        @Override
+        public void visit(com.github.javaparser.ast.expr.MethodCallExpr n, Void arg) {
+            SymbolResolver.Binding binding = fileBindings.get(n);
+            String newName = binding != null
+                    ? rename(binding, SymbolIndex.Kind.METHOD, n.getNameAsString())
+                    : lookupMethod(n.getNameAsString());
+            if (newName != null) {
+                logger.trace("Updated method call: {} -> {}", n.getNameAsString(), newName);
+                n.setName(newName);
+                fileRenameCount++;
+            }
+            super.visit(n, arg);
+        }
+
+        @Override
+        public void visit(com.github.javaparser.ast.expr.ObjectCreationExpr n, Void arg) {
+            String oldClass = n.getType().toString();
+            String newClass = lookupClass(oldClass);
+            if (newClass != null && isProjectType(n.getType(), foreignImports)) {
+                n.setType(newClass);
+                fileRenameCount++;
+                logger.trace("Updated object creation: {} -> {}", oldClass, newClass);
+            }
+            super.visit(n, arg);
+        }
+
+        @Override
+        public void visit(com.github.javaparser.ast.type.ClassOrInterfaceType n, Void arg) {
+            String newClass = lookupClass(n.getNameAsString());
+            if (newClass != null && isProjectType(n, foreignImports)) {
+                logger.trace("Updated type reference: {} -> {}", n.getNameAsString(), newClass);
+                n.setName(newClass);
+                fileRenameCount++;
+            }
+            super.visit(n, arg);
+        }
+    }
+
+    void updateImports(CompilationUnit compilationUnit) {
+        if (symbolIndex == null && classRenames.isEmpty()) {
+            return;
+        }
         compilationUnit.getImports().forEach(importDecl -> {
-            String importName = importDecl.getNameAsString();
-            classRenames.forEach((oldName, newName) -> {
-                if (importName.endsWith("." + oldName)) {
-                    String newImport = importName.substring(0, importName.length() - oldName.length()) + newName;
-                    importDecl.setName(newImport);
-                    logger.debug("Updated import: {} -> {}", importName, newImport);
-                }
-            });
+            com.github.javaparser.ast.expr.Name name = importDecl.getName();
+            String newName = lookupClass(name.getIdentifier());
+            if (newName != null && isProjectImport(importDecl)) {
+                String importName = name.asString();
+                String newImport = name.getQualifier().get().asString() + "." + newName;
+                importDecl.setName(newImport);
+                fileRenameCount++;
+                logger.debug("Updated import: {} -> {}", importName, newImport);
+            }
         });
     }
 
-    private void resetFileStatistics() {
+    // Число переименованных имён и ссылок в последнем обработанном файле
+    public int getFileRenameCount() {
+        return fileRenameCount;
+    }
+
+    // Объявления последнего обработанного файла (только при работе по индексу проекта)
+    public List<SymbolIndex.Declaration> getFileDeclarations() {
+        return List.copyOf(fileDeclarations);
+    }
+
+    // Все обращения последнего файла к индексу проекта: по ним проверяется актуальность кэша
+    public Collection<SymbolIndex.Reference> getFileReferences() {
+        if (fileTokenEngine != null) {
+            // Движок записывает каждое имя один раз, проверка на повторы не нужна
+            List<SymbolIndex.Reference> references = new ArrayList<>();
+            fileTokenEngine.collectReferences(references);
+            return Collections.unmodifiableList(references);
+        }
+        return Set.copyOf(fileReferences);
+    }
+
+    // Типы проекта, от которых зависит разрешение символов последнего файла, с ключами
+    // кэша их файлов: запись кэша актуальна, пока ключи не изменились
+    public List<SymbolIndex.TypeSource> getFileTypeSources() {
+        if (fileProjectTypes.isEmpty() || symbolIndex == null) {
+            return List.of();
+        }
+        List<SymbolIndex.TypeSource> typeSources = new ArrayList<>(fileProjectTypes.size());
+        for (String type : fileProjectTypes) {
+            typeSources.add(new SymbolIndex.TypeSource(type, symbolIndex.getSourceKey(type)));
+        }
+        return typeSources;
+    }
+
+    // Имена, сгенерированные для локальных переменных последнего файла
+    public List<String> getFileLocalNames() {
+        return List.copyOf(fileLocalNames);
+    }
+
+    // Переименования последнего файла по видам
+    public int getFileClassesRenamed() {
+        return fileClassesRenamed;
+    }
+
+    public int getFileMethodsRenamed() {
+        return fileMethodsRenamed;
+    }
+
+    public int getFileVariablesRenamed() {
+        return fileVariablesRenamed;
+    }
+
+    // Время этапа последнего файла; 0, если время не измерялось (setFileTiming)
+    public long getFilePhaseNanos(Metrics.Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+
+    // Всё, что кроме исходного текста влияет на результат обфускации
+    public String getSettingsFingerprint() {
+        return String.join("|",
+                "v2",
+                nameGenerator.describe(),
+                parserFactory.describe(),
+                symbolResolver != null ? symbolResolver.describe() : "names",
+                keepRules.getFingerprint());
+    }
+
+    void resetFileStatistics() {
         symbolTable.clear();
+        fileDeclarations.clear();
+        fileReferences.clear();
+        fileProjectTypes.clear();
+        if (fileTokenEngine != null) {
+            fileTokenEngine.releaseSource();
+            fileTokenEngine = null;
+        }
+        fileLocalNames.clear();
+        fileBindings = Map.of();
+        fileRenameCount = 0;
+        fileClassesRenamed = 0;
+        fileMethodsRenamed = 0;
+        fileVariablesRenamed = 0;
     }
 
+    // Итоги задачи по всем файлам и воркерам; таблица символов последнего файла в них не входит
     public String getStatistics() {
-        return String.format(
-                "Obfuscation Statistics:%n  Classes renamed: %d%n  Methods renamed: %d%n  Variables renamed: %d%n  Total symbols: %d",
-                classesRenamed.get(),
-                methodsRenamed.get(),
-                variablesRenamed.get(),
-                symbolTable.size() + classRenames.size()
+        long classes = classesRenamed.sum();
+        long methods = methodsRenamed.sum();
+        long variables = variablesRenamed.sum();
+        String statistics = String.format(
+                "Obfuscation Statistics:%n  Classes renamed: %d%n  Methods renamed: %d%n  Variables renamed: %d%n  Total renamed: %d",
+                classes,
+                methods,
+                variables,
+                classes + methods + variables
         );
+        SymbolResolver resolver = symbolResolver;
+        return resolver != null ? statistics + System.lineSeparator() + resolver.getStatistics() : statistics;
     }
 
     public void reset() {
         nameGenerator.reset();
+        names = nameGenerator;
         symbolTable.clear();
         classRenames.clear();
-        classesRenamed.set(0);
-        methodsRenamed.set(0);
-        variablesRenamed.set(0);
+        fileClassRenames.clear();
+        classesRenamed.reset();
+        methodsRenamed.reset();
+        variablesRenamed.reset();
+        SymbolResolver resolver = symbolResolver;
+        if (resolver != null) {
+            symbolResolver = resolver.forJob();
+        }
         logger.debug("CodeObfuscator reset");
     }
 }
\ No newline at end of file
@@ -0,0 +1,371 @@
+package com.obfuscator.obfuscator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+
+// Правила сохранения имён в стиле ProGuard. Поддерживаются директивы
+//   -keep [@Аннотация] class <шаблон>[, <шаблон>...] [{ члены }]
+//   -keepclassmembers [@Аннотация] class <шаблон> { члены }
+// (-keepnames и -keepclassmembernames - синонимы, удаления кода здесь нет).
+// Шаблон класса с точкой сверяется с полным именем, без точки - с простым.
+// Член: [@Аннотация] [модификаторы тип] <шаблон имени>[(...)]; а также *; <methods>; <fields>;
+// Правила для полей относятся и к локальным переменным внутри класса.
+// Правила компилируются один раз в индексы по аннотации и литеральному префиксу шаблона
+public final class KeepRules {
+
+    private static final Logger logger = LogManager.getLogger(KeepRules.class);
+
+    private static final String DEFAULT_RULES_RESOURCE = "/keep-rules.pro";
+    private static final String NO_ANNOTATION = "";
+
+    private static final Set<String> TYPE_KEYWORDS = Set.of("class", "interface", "enum", "@interface");
+    private static final Set<String> CLASS_MODIFIERS = Set.of("public", "final", "abstract", "static");
+
+    private enum MemberKind {
+        METHOD, FIELD, ANY
+    }
+
+    private static final class Rule {
+        private final boolean keepClass;
+        private final Map<String, PatternIndex<MemberKind>> members = new HashMap<>();
+
+        private Rule(boolean keepClass) {
+            this.keepClass = keepClass;
+        }
+
+        private boolean keepsMember(String name, Collection<String> annotations, MemberKind kind) {
+            if (members.isEmpty()) {
+                return false;
+            }
+            Predicate<MemberKind> kindMatches = memberKind -> memberKind == MemberKind.ANY || memberKind == kind;
+
+            PatternIndex<MemberKind> plain = members.get(NO_ANNOTATION);
+            if (plain != null && plain.anyMatch(name, kindMatches)) {
+                return true;
+            }
+            for (String annotation : annotations) {
+                PatternIndex<MemberKind> annotated = members.get(simpleName(annotation));
+                if (annotated != null && annotated.anyMatch(name, kindMatches)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private record Token(String text, int line) {
+    }
+
+    // Индексы правил по аннотации-условию ("" - без условия)
+    private final Map<String, PatternIndex<Rule>> qualifiedRules = new HashMap<>();
+    private final Map<String, PatternIndex<Rule>> simpleRules = new HashMap<>();
+    private final String fingerprint;
+    private int ruleCount;
+
+    private static final class Defaults {
+        private static final String SOURCE = readDefaultRules();
+        private static final KeepRules RULES = new KeepRules(SOURCE);
+    }
+
+    private KeepRules(String source) {
+        this.fingerprint = computeFingerprint(source);
+        new Parser(tokenize(source)).parseAll();
+        logger.debug("Keep rules compiled: {} class patterns", ruleCount);
+    }
+
+    public static KeepRules defaults() {
+        return Defaults.RULES;
+    }
+
+    // Правила только из переданного текста, без правил по умолчанию
+    public static KeepRules parse(String rules) throws ObfuscationException {
+        return new KeepRules(rules);
+    }
+
+    // Правила из файла добавляются к правилам по умолчанию
+    public static KeepRules load(Path rulesFile) throws IOException, ObfuscationException {
+        String rules = Files.readString(rulesFile, StandardCharsets.UTF_8);
+        logger.info("Loading keep rules from {}", rulesFile);
+        return new KeepRules(Defaults.SOURCE + "\n" + rules);
+    }
+
+    public boolean keepsClass(String className, Collection<String> annotations) {
+        return anyRule(className, annotations, rule -> rule.keepClass);
+    }
+
+    public boolean keepsMethod(String ownerName, Collection<String> ownerAnnotations,
+                               String methodName, Collection<String> annotations) {
+        return anyRule(ownerName, ownerAnnotations,
+                rule -> rule.keepsMember(methodName, annotations, MemberKind.METHOD));
+    }
+
+    public boolean keepsField(String ownerName, Collection<String> ownerAnnotations,
+                              String fieldName, Collection<String> annotations) {
+        return anyRule(ownerName, ownerAnnotations,
+                rule -> rule.keepsMember(fieldName, annotations, MemberKind.FIELD));
+    }
+
+    public int size() {
+        return ruleCount;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    private boolean anyRule(String className, Collection<String> annotations, Predicate<Rule> condition) {
+        String simpleName = className.substring(className.lastIndexOf('.') + 1);
+        if (anyRule(NO_ANNOTATION, className, simpleName, condition)) {
+            return true;
+        }
+        for (String annotation : annotations) {
+            if (anyRule(simpleName(annotation), className, simpleName, condition)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean anyRule(String annotation, String className, String simpleName, Predicate<Rule> condition) {
+        PatternIndex<Rule> qualified = qualifiedRules.get(annotation);
+        if (qualified != null && qualified.anyMatch(className, condition)) {
+            return true;
+        }
+        PatternIndex<Rule> simple = simpleRules.get(annotation);
+        return simple != null && simple.anyMatch(simpleName, condition);
+    }
+
+    private void addRule(String annotation, String classPattern, Rule rule) {
+        Map<String, PatternIndex<Rule>> rules = classPattern.indexOf('.') >= 0 ? qualifiedRules : simpleRules;
+        rules.computeIfAbsent(annotation, key -> new PatternIndex<>(true)).add(classPattern, rule);
+        ruleCount++;
+    }
+
+    private class Parser {
+        private final List<Token> tokens;
+        private int position;
+
+        private Parser(List<Token> tokens) {
+            this.tokens = tokens;
+        }
+
+        private void parseAll() {
+            while (position < tokens.size()) {
+                parseRule();
+            }
+        }
+
+        private void parseRule() {
+            Token directive = next();
+            boolean keepClass;
+            switch (directive.text()) {
+                case "-keep":
+                case "-keepnames":
+                    keepClass = true;
+                    break;
+                case "-keepclassmembers":
+                case "-keepclassmembernames":
+                    keepClass = false;
+                    break;
+                default:
+                    throw error(directive, "unknown directive '" + directive.text() + "'");
+            }
+
+            String annotation = NO_ANNOTATION;
+            if (peek().startsWith("@") && !peek().equals("@interface")) {
+                annotation = simpleName(next().text().substring(1));
+            }
+
+            Token type = next();
+            while (CLASS_MODIFIERS.contains(type.text())) {
+                type = next();
+            }
+            if (!TYPE_KEYWORDS.contains(type.text())) {
+                throw error(type, "expected 'class', got '" + type.text() + "'");
+            }
+
+            List<String> classPatterns = new ArrayList<>();
+            classPatterns.add(next().text());
+            while (peek().equals(",")) {
+                next();
+                classPatterns.add(next().text());
+            }
+
+            // extends/implements не проверяются
+            while (position < tokens.size() && !peek().equals("{") && !peek().startsWith("-")) {
+                next();
+            }
+
+            Rule rule = new Rule(keepClass);
+            if (peek().equals("{")) {
+                next();
+                parseMembers(rule);
+            } else if (!keepClass) {
+                throw error(directive, directive.text() + " requires a member list");
+            }
+
+            for (String classPattern : classPatterns) {
+                addRule(annotation, classPattern, rule);
+            }
+        }
+
+        private void parseMembers(Rule rule) {
+            List<Token> spec = new ArrayList<>();
+            while (true) {
+                Token token = next();
+                if (token.text().equals("}")) {
+                    if (!spec.isEmpty()) {
+                        throw error(token, "missing ';' after member");
+                    }
+                    return;
+                }
+                if (token.text().equals(";")) {
+                    addMember(rule, spec);
+                    spec.clear();
+                } else {
+                    spec.add(token);
+                }
+            }
+        }
+
+        private void addMember(Rule rule, List<Token> spec) {
+            if (spec.isEmpty()) {
+                return;
+            }
+
+            String annotation = NO_ANNOTATION;
+            boolean method = false;
+            String name = null;
+            int typeTokens = 0;
+            for (Token token : spec) {
+                if (token.text().startsWith("@")) {
+                    annotation = simpleName(token.text().substring(1));
+                } else if (token.text().startsWith("(")) {
+                    method = true;
+                } else if (!method) {
+                    name = token.text();
+                    typeTokens++;
+                }
+            }
+            if (name == null) {
+                throw error(spec.get(0), "missing member name");
+            }
+
+            MemberKind kind;
+            switch (name) {
+                case "<init>":
+                case "<clinit>":
+                    // Конструкторы не переименовываются
+                    return;
+                case "<methods>":
+                    name = "*";
+                    kind = MemberKind.METHOD;
+                    break;
+                case "<fields>":
+                    name = "*";
+                    kind = MemberKind.FIELD;
+                    break;
+                default:
+                    kind = method ? MemberKind.METHOD
+                            : name.equals("*") && typeTokens == 1 ? MemberKind.ANY : MemberKind.FIELD;
+            }
+
+            rule.members.computeIfAbsent(annotation, key -> new PatternIndex<>(false)).add(name, kind);
+        }
+
+        private Token next() {
+            if (position >= tokens.size()) {
+                Token last = tokens.isEmpty() ? new Token("", 1) : tokens.get(tokens.size() - 1);
+                throw error(last, "unexpected end of rules");
+            }
+            return tokens.get(position++);
+        }
+
+        private String peek() {
+            return position < tokens.size() ? tokens.get(position).text() : "";
+        }
+    }
+
+    private static List<Token> tokenize(String rules) {
+        List<Token> tokens = new ArrayList<>();
+        String[] lines = rules.split("\n", -1);
+
+        for (int lineNumber = 1; lineNumber <= lines.length; lineNumber++) {
+            String line = lines[lineNumber - 1];
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+
+            int i = 0;
+            while (i < line.length()) {
+                char c = line.charAt(i);
+                if (Character.isWhitespace(c)) {
+                    i++;
+                } else if (c == '{' || c == '}' || c == ';' || c == ',') {
+                    tokens.add(new Token(String.valueOf(c), lineNumber));
+                    i++;
+                } else if (c == '(') {
+                    int end = line.indexOf(')', i);
+                    if (end < 0) {
+                        throw error(new Token("(", lineNumber), "missing ')'");
+                    }
+                    tokens.add(new Token(line.substring(i, end + 1), lineNumber));
+                    i = end + 1;
+                } else {
+                    int start = i;
+                    while (i < line.length() && !Character.isWhitespace(line.charAt(i))
+                            && "{};,(".indexOf(line.charAt(i)) < 0) {
+                        i++;
+                    }
+                    tokens.add(new Token(line.substring(start, i), lineNumber));
+                }
+            }
+        }
+        return tokens;
+    }
+
+    private static ObfuscationException error(Token token, String message) {
+        return new ObfuscationException("Invalid keep rules at line " + token.line() + ": " + message);
+    }
+
+    private static String simpleName(String name) {
+        return name.substring(name.lastIndexOf('.') + 1);
+    }
+
+    private static String computeFingerprint(String source) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new ObfuscationException("SHA-256 is not available", e);
+        }
+    }
+
+    private static String readDefaultRules() {
+        try (InputStream in = KeepRules.class.getResourceAsStream(DEFAULT_RULES_RESOURCE)) {
+            if (in == null) {
+                throw new ObfuscationException("Default keep rules not found: " + DEFAULT_RULES_RESOURCE);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new ObfuscationException("Failed to read default keep rules", e);
+        }
+    }
+}
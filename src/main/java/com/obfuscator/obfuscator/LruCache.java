@@ -0,0 +1,144 @@
+package com.obfuscator.obfuscator;
+
+import com.github.javaparser.symbolsolver.cache.Cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// Потокобезопасный LRU-кэш ограниченного размера. Ключи разбиты по сегментам
+// со своей блокировкой, поэтому потоки обфускации почти не ждут друг друга;
+// вытесняется самый давно использованный ключ своего сегмента.
+// Реализует Cache из symbol solver и подставляется в CombinedTypeSolver
+final class LruCache<K, V> implements Cache<K, V> {
+
+    private static final int SEGMENTS = 16;
+
+    private final List<Segment<K, V>> segments;
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private static final class Segment<K, V> extends LinkedHashMap<K, V> {
+        private static final long serialVersionUID = 1L;
+
+        private final int capacity;
+
+        private Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > capacity;
+        }
+    }
+
+    LruCache(int capacity) {
+        if (capacity < SEGMENTS) {
+            throw new IllegalArgumentException("Cache capacity must be at least " + SEGMENTS + ": " + capacity);
+        }
+        this.capacity = capacity;
+        List<Segment<K, V>> segments = new ArrayList<>(SEGMENTS);
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments.add(new Segment<>((capacity + SEGMENTS - 1) / SEGMENTS));
+        }
+        this.segments = List.copyOf(segments);
+    }
+
+    private Segment<K, V> segment(K key) {
+        int hash = key.hashCode();
+        return segments.get((hash ^ (hash >>> 16)) & (SEGMENTS - 1));
+    }
+
+    @Override
+    public Optional<V> get(K key) {
+        Segment<K, V> segment = segment(key);
+        V value;
+        synchronized (segment) {
+            value = segment.get(key);
+        }
+        (value != null ? hits : misses).increment();
+        return Optional.ofNullable(value);
+    }
+
+    // Значение вычисляется вне блокировки: два потока могут посчитать его одновременно,
+    // зато медленное разрешение символа не держит сегмент
+    V get(K key, Function<K, V> loader) {
+        Optional<V> cached = get(key);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+        V value = loader.apply(key);
+        if (value != null) {
+            put(key, value);
+        }
+        return value;
+    }
+
+    @Override
+    public void put(K key, V value) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.put(key, value);
+        }
+    }
+
+    @Override
+    public void remove(K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            segment.remove(key);
+        }
+    }
+
+    @Override
+    public void removeAll() {
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public boolean contains(K key) {
+        Segment<K, V> segment = segment(key);
+        synchronized (segment) {
+            return segment.containsKey(key);
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment<K, V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    int capacity() {
+        return capacity;
+    }
+
+    long hits() {
+        return hits.sum();
+    }
+
+    long misses() {
+        return misses.sum();
+    }
+}
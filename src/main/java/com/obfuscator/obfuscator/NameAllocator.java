@@ -0,0 +1,44 @@
+package com.obfuscator.obfuscator;
+
+// Поток имён одного файла. Имена берутся блоками из области генератора, адрес блока
+// зависит только от номера потока и номера блока в нём, поэтому потоки не делят
+// ни счётчик, ни блокировку, а результат не зависит от числа и порядка воркеров
+final class NameAllocator implements NameSource {
+
+    private static final String[] PREFIXES = {"C", "m", "v"};
+
+    private final NameGenerator nameGenerator;
+    private final long stream;
+
+    private final long[] next = new long[PREFIXES.length];
+    private final long[] end = new long[PREFIXES.length];
+    private final long[] blocksUsed = new long[PREFIXES.length];
+
+    NameAllocator(NameGenerator nameGenerator, long stream) {
+        this.nameGenerator = nameGenerator;
+        this.stream = stream;
+    }
+
+    @Override
+    public String generateClassName() {
+        return nextName(0);
+    }
+
+    @Override
+    public String generateMethodName() {
+        return nextName(1);
+    }
+
+    @Override
+    public String generateVariableName() {
+        return nextName(2);
+    }
+
+    private String nextName(int prefix) {
+        if (next[prefix] == end[prefix]) {
+            next[prefix] = nameGenerator.streamBlockStart(stream, blocksUsed[prefix]++);
+            end[prefix] = next[prefix] + NameGenerator.STREAM_BLOCK_SIZE;
+        }
+        return nameGenerator.encode(PREFIXES[prefix], next[prefix]++);
+    }
+}
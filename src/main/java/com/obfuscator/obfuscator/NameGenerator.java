@@ -3,16 +3,29 @@ package com.obfuscator.obfuscator;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.util.HashSet;
+import java.util.Arrays;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class NameGenerator {
+public class NameGenerator implements NameSource {
 
     private static final Logger logger = LogManager.getLogger(NameGenerator.class);
 
     private final Set<String> usedNames;
-    private final Random random;
+
+    // Детерминированный режим: счётчик на префикс -> биективная запись в base-62
+    // по перемешанному от seed алфавиту. Имена уникальны по построению, множество не нужно.
+    // В случайном режиме алфавит перемешан от случайного seed: по нему пишутся имена потоков
+    private final Long seed;
+    private final char[] alphabet;
+    private final int[] alphabetIndex;
+    private final long streamRegion;
+    private final AtomicLong classCounter = new AtomicLong(0);
+    private final AtomicLong methodCounter = new AtomicLong(0);
+    private final AtomicLong variableCounter = new AtomicLong(0);
 
     private static final String CLASS_PREFIX = "C";
     private static final String METHOD_PREFIX = "m";
@@ -26,25 +39,95 @@ public class NameGenerator {
     private static final int MIN_SUFFIX_LENGTH = 4;
     private static final int MAX_SUFFIX_LENGTH = 8;
 
+    private static final int BASE = ALL_CHARS.length();
+    // Количество биективных строк короче MIN_SUFFIX_LENGTH: с него начинается счётчик,
+    // чтобы суффиксы были не короче, чем в случайном режиме
+    private static final long SHORT_SUFFIX_COUNT = (long) BASE + (long) BASE * BASE + (long) BASE * BASE * BASE;
+
+    // Номера от STREAM_REGION и выше отданы потокам имён (newStream), общий счётчик до них не доходит
+    static final long STREAM_REGION = 1L << 40;
+    static final int STREAM_BLOCK_SIZE = 64;
+    // В случайном режиме потоки начинают с первого номера, суффикс которого длиннее
+    // MAX_SUFFIX_LENGTH: случайные имена общего генератора (4-8 символов) с ними не совпадут
+    static final long RANDOM_STREAM_REGION = firstIndexOfLength(MAX_SUFFIX_LENGTH + 1);
+    // Начало области потоков сдвигается на случайное число в пределах суффиксов этой длины:
+    // иначе первые имена потоков у разных генераторов различаются только первой буквой алфавита
+    private static final long RANDOM_STREAM_SPREAD = firstIndexOfLength(MAX_SUFFIX_LENGTH + 2) - RANDOM_STREAM_REGION;
+
     public NameGenerator() {
-        this.usedNames = new HashSet<>();
-        this.random = new Random();
+        // Генератор общий для всех потоков FileProcessor, поэтому множество конкурентное
+        this.usedNames = ConcurrentHashMap.newKeySet();
+        this.seed = null;
+        this.alphabet = shuffleAlphabet(ThreadLocalRandom.current().nextLong());
+        this.alphabetIndex = indexOf(alphabet);
+        this.streamRegion = RANDOM_STREAM_REGION + ThreadLocalRandom.current().nextLong(RANDOM_STREAM_SPREAD);
         logger.debug("NameGenerator initialized");
     }
 
+    public NameGenerator(long seed) {
+        this.usedNames = null;
+        this.seed = seed;
+        this.alphabet = shuffleAlphabet(seed);
+        this.alphabetIndex = indexOf(alphabet);
+        this.streamRegion = STREAM_REGION;
+        logger.debug("NameGenerator initialized (deterministic, seed={})", seed);
+    }
+
+    private static int[] indexOf(char[] alphabet) {
+        int[] index = new int[128];
+        Arrays.fill(index, -1);
+        for (int i = 0; i < alphabet.length; i++) {
+            index[alphabet[i]] = i;
+        }
+        return index;
+    }
+
+    // Номер первого имени с суффиксом длины length (обратное к подсчёту длины в encode)
+    private static long firstIndexOfLength(int length) {
+        long shorter = 0;
+        long count = 1;
+        for (int i = 1; i < length; i++) {
+            count *= BASE;
+            shorter += count;
+        }
+        return shorter - SHORT_SUFFIX_COUNT;
+    }
+
+    public boolean isDeterministic() {
+        return seed != null;
+    }
+
+    // Описание режима для отпечатка настроек кэша
+    public String describe() {
+        return isDeterministic() ? "counter:" + seed : "random";
+    }
+
+    // Поток имён для отдельного файла: без обращений к общему состоянию генератора
+    // в обоих режимах. В детерминированном режиме имена зависят только от seed и номера потока
+    public NameSource newStream(long stream) {
+        return new NameAllocator(this, stream);
+    }
+
+    @Override
     public String generateClassName() {
         return generateUniqueName(CLASS_PREFIX);
     }
 
+    @Override
     public String generateMethodName() {
         return generateUniqueName(METHOD_PREFIX);
     }
 
+    @Override
     public String generateVariableName() {
         return generateUniqueName(VARIABLE_PREFIX);
     }
 
     private String generateUniqueName(String prefix) {
+        if (isDeterministic()) {
+            return encode(prefix, counterFor(prefix).getAndIncrement());
+        }
+
         String name;
         int attempts = 0;
         final int MAX_ATTEMPTS = 100;
@@ -54,14 +137,14 @@ public class NameGenerator {
                 throw new ObfuscationException("Failed to generate unique name after " + MAX_ATTEMPTS + " attempts");
             }
             name = prefix + generateRandomSuffix();
-        } while (usedNames.contains(name));
+        } while (!usedNames.add(name));
 
-        usedNames.add(name);
         logger.trace("Generated name: {}", name);
         return name;
     }
 
     private String generateRandomSuffix() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
         int length = MIN_SUFFIX_LENGTH + random.nextInt(MAX_SUFFIX_LENGTH - MIN_SUFFIX_LENGTH + 1);
         StringBuilder suffix = new StringBuilder(length);
 
@@ -72,16 +155,122 @@ public class NameGenerator {
         return suffix.toString();
     }
 
+    // Блоки нумеруются парой (поток, блок) по Szudzik: пара однозначно задаёт номер
+    long streamBlockStart(long stream, long block) {
+        long pair = stream >= block ? stream * stream + stream + block : block * block + stream;
+        return streamRegion + pair * STREAM_BLOCK_SIZE;
+    }
+
+    String encode(String prefix, long index) {
+        long value = index + SHORT_SUFFIX_COUNT + 1;
+
+        int length = 0;
+        for (long rest = value; rest > 0; rest = (rest - 1) / BASE) {
+            length++;
+        }
+
+        char[] name = new char[prefix.length() + length];
+        prefix.getChars(0, prefix.length(), name, 0);
+        for (int position = name.length - 1; value > 0; position--) {
+            value--;
+            name[position] = alphabet[(int) (value % BASE)];
+            value /= BASE;
+        }
+
+        return new String(name);
+    }
+
+    // Обратное к encode: номер имени для префикса или -1, если имя не из этого генератора
+    long decode(String prefix, String name) {
+        if (!name.startsWith(prefix) || name.length() - prefix.length() < MIN_SUFFIX_LENGTH) {
+            return -1;
+        }
+
+        long value = 0;
+        for (int i = prefix.length(); i < name.length(); i++) {
+            char c = name.charAt(i);
+            int digit = c < alphabetIndex.length ? alphabetIndex[c] : -1;
+            if (digit < 0 || value > (Long.MAX_VALUE - BASE) / BASE) {
+                return -1;
+            }
+            value = value * BASE + digit + 1;
+        }
+
+        return value - SHORT_SUFFIX_COUNT - 1;
+    }
+
+    private AtomicLong counterFor(String prefix) {
+        switch (prefix) {
+            case CLASS_PREFIX:
+                return classCounter;
+            case METHOD_PREFIX:
+                return methodCounter;
+            default:
+                return variableCounter;
+        }
+    }
+
+    private static String prefixOf(String name) {
+        if (name.startsWith(CLASS_PREFIX)) {
+            return CLASS_PREFIX;
+        }
+        if (name.startsWith(METHOD_PREFIX)) {
+            return METHOD_PREFIX;
+        }
+        return name.startsWith(VARIABLE_PREFIX) ? VARIABLE_PREFIX : null;
+    }
+
+    private static char[] shuffleAlphabet(long seed) {
+        char[] chars = ALL_CHARS.toCharArray();
+        Random random = new Random(seed);
+        for (int i = chars.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            char tmp = chars[i];
+            chars[i] = chars[j];
+            chars[j] = tmp;
+        }
+        return chars;
+    }
+
+    public void reserveName(String name) {
+        if (!isDeterministic()) {
+            usedNames.add(name);
+            return;
+        }
+
+        // Вместо множества сдвигаем счётчик за зарезервированное имя
+        String prefix = prefixOf(name);
+        long index = prefix != null ? decode(prefix, name) : -1;
+        if (index >= 0 && index < STREAM_REGION) {
+            counterFor(prefix).accumulateAndGet(index + 1, Math::max);
+        }
+    }
+
     public boolean isNameUsed(String name) {
-        return usedNames.contains(name);
+        if (!isDeterministic()) {
+            return usedNames.contains(name);
+        }
+
+        String prefix = prefixOf(name);
+        long index = prefix != null ? decode(prefix, name) : -1;
+        return index >= 0 && index < counterFor(prefix).get();
     }
 
     public int getGeneratedNamesCount() {
-        return usedNames.size();
+        if (!isDeterministic()) {
+            return usedNames.size();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, classCounter.get() + methodCounter.get() + variableCounter.get());
     }
 
     public void reset() {
-        usedNames.clear();
+        if (isDeterministic()) {
+            classCounter.set(0);
+            methodCounter.set(0);
+            variableCounter.set(0);
+        } else {
+            usedNames.clear();
+        }
         logger.debug("NameGenerator reset");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,11 @@
+package com.obfuscator.obfuscator;
+
+// Источник новых имён: общий NameGenerator или поток имён отдельного файла
+public interface NameSource {
+
+    String generateClassName();
+
+    String generateMethodName();
+
+    String generateVariableName();
+}
@@ -0,0 +1,84 @@
+package com.obfuscator.obfuscator;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+import jdk.jfr.Timespan;
+
+// Событие JFR на обфускацию одного исходника (CodeObfuscator.obfuscateCode): сколько
+// имён переименовано и сколько занял каждый этап. Быстрые файлы отсекаются порогом,
+// а поля заполняются только для событий, которые будут записаны
+@Name(ObfuscateCodeEvent.NAME)
+@Label("Obfuscate Code")
+@Category("Obfuscator")
+@Description("Obfuscation of one source file with the time spent in each pass")
+@StackTrace(false)
+@Threshold(ObfuscateCodeEvent.DEFAULT_THRESHOLD)
+public final class ObfuscateCodeEvent extends Event {
+
+    public static final String NAME = "com.obfuscator.ObfuscateCode";
+    public static final String DEFAULT_THRESHOLD = "20 ms";
+
+    @Label("File")
+    String file;
+
+    @Label("Source Characters")
+    long sourceChars;
+
+    @Label("Token Stream")
+    @Description("File was too large or generated and was renamed on the token stream")
+    boolean tokenStream;
+
+    @Label("Classes Renamed")
+    int classesRenamed;
+
+    @Label("Methods Renamed")
+    int methodsRenamed;
+
+    @Label("Variables Renamed")
+    int variablesRenamed;
+
+    @Label("Renames")
+    @Description("Renamed declarations and references in the file")
+    int renames;
+
+    @Label("Parse")
+    @Timespan
+    long parse;
+
+    @Label("Bind References")
+    @Timespan
+    long bindReferences;
+
+    @Label("Class Visitor")
+    @Timespan
+    long classVisitor;
+
+    @Label("Method Visitor")
+    @Timespan
+    long methodVisitor;
+
+    @Label("Variable Visitor")
+    @Timespan
+    long variableVisitor;
+
+    @Label("Update References")
+    @Timespan
+    long updateReferences;
+
+    @Label("Update Imports")
+    @Timespan
+    long updateImports;
+
+    @Label("Print")
+    @Timespan
+    long print;
+
+    @Label("Token Stream Rename")
+    @Timespan
+    long tokenStreamRename;
+}
@@ -0,0 +1,101 @@
+package com.obfuscator.obfuscator;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import com.github.javaparser.ast.CompilationUnit;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.CharArrayReader;
+import java.nio.CharBuffer;
+
+// Настроенные парсеры JavaParser для переименования. По умолчанию комментарии не
+// привязываются к узлам (и не попадают в результат), токены не хранятся - переименованию
+// не нужно ни то, ни другое, а оба шага занимают заметную часть разбора и памяти.
+// JavaParser не потокобезопасен, поэтому у каждого потока свой экземпляр
+public final class ParserFactory {
+
+    private static final Logger logger = LogManager.getLogger(ParserFactory.class);
+
+    public static final LanguageLevel DEFAULT_LANGUAGE_LEVEL = LanguageLevel.JAVA_17;
+
+    private final LanguageLevel languageLevel;
+    private final boolean keepComments;
+    private final boolean storeTokens;
+    private final ThreadLocal<JavaParser> parsers;
+    private final ThreadLocal<JavaParser> tokenParsers;
+
+    private static final class Defaults {
+        private static final ParserFactory FACTORY = new ParserFactory(DEFAULT_LANGUAGE_LEVEL, false, false);
+    }
+
+    // storeTokens нужен для LexicalPreservingPrinter; привязка комментариев
+    // тоже опирается на токены, поэтому с keepComments они хранятся всегда
+    public ParserFactory(LanguageLevel languageLevel, boolean keepComments, boolean storeTokens) {
+        this.languageLevel = languageLevel;
+        this.keepComments = keepComments;
+        this.storeTokens = storeTokens || keepComments;
+        this.parsers = ThreadLocal.withInitial(() -> createParser(this.storeTokens));
+        this.tokenParsers = this.storeTokens ? parsers : ThreadLocal.withInitial(() -> createParser(true));
+    }
+
+    public static ParserFactory defaults() {
+        return Defaults.FACTORY;
+    }
+
+    // Парсер текущего потока: создаётся при первом обращении и затем переиспользуется
+    public JavaParser parser() {
+        return parsers.get();
+    }
+
+    // Без токенов JavaParser 3.25 не строит часть узлов: диапазон стрелочной ветки switch
+    // берётся из токенов, и разбор такого файла падает. Неудачный разбор повторяется
+    // парсером с токенами - платят только файлы с такими конструкциями и файлы с ошибками
+    public ParseResult<CompilationUnit> parse(CharSequence source) {
+        ParseResult<CompilationUnit> result = parse(parser(), source);
+        if (!result.isSuccessful() && !storeTokens) {
+            logger.debug("Parsing again with tokens stored: {}", result.getProblems());
+            result = parse(tokenParsers.get(), source);
+        }
+        return result;
+    }
+
+    // Декодированный буфер читается парсером напрямую, без копии в String
+    private static ParseResult<CompilationUnit> parse(JavaParser parser, CharSequence source) {
+        if (source instanceof CharBuffer chars && chars.hasArray()) {
+            return parser.parse(new CharArrayReader(chars.array(), chars.arrayOffset() + chars.position(),
+                    chars.remaining()));
+        }
+        return parser.parse(source.toString());
+    }
+
+    public LanguageLevel getLanguageLevel() {
+        return languageLevel;
+    }
+
+    public boolean isKeepComments() {
+        return keepComments;
+    }
+
+    public boolean isStoreTokens() {
+        return storeTokens;
+    }
+
+    // Описание настроек для отпечатка кэша: от них зависит вывод
+    public String describe() {
+        return languageLevel + (keepComments ? ":comments" : "");
+    }
+
+    private JavaParser createParser(boolean tokens) {
+        ParserConfiguration configuration = new ParserConfiguration()
+                .setLanguageLevel(languageLevel)
+                .setAttributeComments(keepComments)
+                .setStoreTokens(tokens)
+                .setLexicalPreservationEnabled(false);
+        logger.debug("JavaParser created for thread {} ({}{})", Thread.currentThread().getName(), describe(),
+                tokens ? ", tokens" : "");
+        return new JavaParser(configuration);
+    }
+}
@@ -0,0 +1,142 @@
+package com.obfuscator.obfuscator;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// Индекс шаблонов с '*', '**' и '?'. Шаблоны без масок лежат в хэш-таблице,
+// остальные - в префиксном дереве по литеральному началу шаблона. Проверка имени
+// проходит по дереву вдоль символов имени и сверяет только шаблоны с подходящим
+// префиксом, поэтому её стоимость почти не зависит от общего числа шаблонов
+final class PatternIndex<T> {
+
+    // qualified: '*' и '?' не проходят через '.', '**' - проходит (как в ProGuard)
+    private final boolean qualified;
+    private final Map<String, List<T>> exact = new HashMap<>();
+    private final Node<T> root = new Node<>();
+
+    // Узлы хранят переходы в маленьких массивах: у большинства узлов один-два потомка,
+    // и линейный поиск по char[] дешевле хэш-таблицы с упаковкой символов
+    private static final class Node<T> {
+        private char[] keys = new char[0];
+        private Node<T>[] children = newChildren(0);
+        private final List<Entry<T>> entries = new ArrayList<>();
+
+        private Node<T> child(char key) {
+            for (int i = 0; i < keys.length; i++) {
+                if (keys[i] == key) {
+                    return children[i];
+                }
+            }
+            return null;
+        }
+
+        private Node<T> addChild(char key) {
+            Node<T> existing = child(key);
+            if (existing != null) {
+                return existing;
+            }
+            Node<T> node = new Node<>();
+            keys = Arrays.copyOf(keys, keys.length + 1);
+            children = Arrays.copyOf(children, children.length + 1);
+            keys[keys.length - 1] = key;
+            children[children.length - 1] = node;
+            return node;
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> Node<T>[] newChildren(int size) {
+            return (Node<T>[]) new Node<?>[size];
+        }
+    }
+
+    private record Entry<T>(String pattern, T value) {
+    }
+
+    PatternIndex(boolean qualified) {
+        this.qualified = qualified;
+    }
+
+    void add(String pattern, T value) {
+        int wildcard = firstWildcard(pattern);
+        if (wildcard < 0) {
+            exact.computeIfAbsent(pattern, key -> new ArrayList<>()).add(value);
+            return;
+        }
+
+        Node<T> node = root;
+        for (int i = 0; i < wildcard; i++) {
+            node = node.addChild(pattern.charAt(i));
+        }
+        node.entries.add(new Entry<>(pattern, value));
+    }
+
+    boolean anyMatch(String text, Predicate<T> condition) {
+        List<T> exactValues = exact.get(text);
+        if (exactValues != null) {
+            for (T value : exactValues) {
+                if (condition.test(value)) {
+                    return true;
+                }
+            }
+        }
+
+        Node<T> node = root;
+        for (int depth = 0; node != null; depth++) {
+            for (Entry<T> entry : node.entries) {
+                // Первые depth символов шаблона - литерал, уже совпавший с именем
+                if (matches(entry.pattern(), depth, text, depth, qualified) && condition.test(entry.value())) {
+                    return true;
+                }
+            }
+            node = depth < text.length() ? node.child(text.charAt(depth)) : null;
+        }
+        return false;
+    }
+
+    static boolean matches(String pattern, int p, String text, int t, boolean qualified) {
+        while (p < pattern.length()) {
+            char c = pattern.charAt(p);
+
+            if (c == '*') {
+                boolean doubleStar = p + 1 < pattern.length() && pattern.charAt(p + 1) == '*';
+                boolean crossDots = !qualified || doubleStar;
+                int next = doubleStar ? p + 2 : p + 1;
+
+                for (int i = t; i <= text.length(); i++) {
+                    if (matches(pattern, next, text, i, qualified)) {
+                        return true;
+                    }
+                    if (i < text.length() && !crossDots && text.charAt(i) == '.') {
+                        return false;
+                    }
+                }
+                return false;
+            }
+
+            if (t >= text.length()) {
+                return false;
+            }
+            char d = text.charAt(t);
+            if (c == '?' ? qualified && d == '.' : c != d) {
+                return false;
+            }
+            p++;
+            t++;
+        }
+        return t == text.length();
+    }
+
+    private static int firstWildcard(String pattern) {
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '*' || c == '?') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
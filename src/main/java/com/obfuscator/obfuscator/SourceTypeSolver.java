@@ -0,0 +1,115 @@
+package com.obfuscator.obfuscator;
+
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.resolution.Navigator;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+
+// Типы проекта по исходникам: файл типа берётся из индекса первой фазы и разбирается
+// при первом обращении. Разобранные файлы держит LRU-кэш, поэтому память не растёт
+// с размером проекта. Кэш у каждого потока свой: solver хранит результаты разрешения
+// в данных узлов дерева (IdentityHashMap без синхронизации), и два воркера не должны
+// разрешать через одно и то же дерево. Имена типов, о которых спрашивали при разрешении
+// файла, пишутся в набор текущего потока (track): от них зависит вывод файла и актуальность
+// его записи в кэше
+final class SourceTypeSolver implements TypeSolver {
+
+    private static final Logger logger = LogManager.getLogger(SourceTypeSolver.class);
+
+    private final SymbolIndex index;
+    private final ParserFactory parserFactory;
+    private final ThreadLocal<LruCache<Path, Optional<CompilationUnit>>> units;
+    private final ThreadLocal<Set<String>> tracked = new ThreadLocal<>();
+    private TypeSolver parent;
+
+    SourceTypeSolver(SymbolIndex index, ParserFactory parserFactory, int cacheSize) {
+        this.index = index;
+        this.parserFactory = parserFactory;
+        this.units = ThreadLocal.withInitial(() -> new LruCache<>(cacheSize));
+    }
+
+    // types == null - обращения потока больше не записываются
+    void track(Set<String> types) {
+        if (types != null) {
+            tracked.set(types);
+        } else {
+            tracked.remove();
+        }
+    }
+
+    @Override
+    public TypeSolver getParent() {
+        return parent;
+    }
+
+    @Override
+    public void setParent(TypeSolver parent) {
+        Objects.requireNonNull(parent);
+        if (this.parent != null) {
+            throw new IllegalStateException("This TypeSolver already has a parent.");
+        }
+        if (parent == this) {
+            throw new IllegalStateException("The parent of this TypeSolver cannot be itself.");
+        }
+        this.parent = parent;
+    }
+
+    // Вложенный тип a.b.Outer.Inner лежит в файле типа a.b.Outer: префиксы имени
+    // перебираются от длинного к короткому. Записываются все проверенные префиксы:
+    // если такой тип появится в проекте, результат файла изменится
+    @Override
+    public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+        Set<String> types = tracked.get();
+        for (String type = name; ; ) {
+            if (types != null) {
+                types.add(type);
+            }
+            Path file = index.getSourceFile(type);
+            if (file != null) {
+                String nestedName = type.substring(type.lastIndexOf('.') + 1) + name.substring(type.length());
+                Optional<TypeDeclaration<?>> declaration = parse(file).flatMap(unit -> Navigator.findType(unit, nestedName));
+                if (declaration.isEmpty()) {
+                    return SymbolReference.unsolved();
+                }
+                return SymbolReference.solved(JavaParserFacade.get(getRoot()).getTypeDeclaration(declaration.get()));
+            }
+            int dot = type.lastIndexOf('.');
+            if (dot < 0) {
+                return SymbolReference.unsolved();
+            }
+            type = type.substring(0, dot);
+        }
+    }
+
+    // Файл, который не удалось прочитать или разобрать, тоже запоминается: второй раз его не разбираем
+    private Optional<CompilationUnit> parse(Path file) {
+        return units.get().get(file, path -> {
+            try {
+                ParseResult<CompilationUnit> result = parserFactory
+                        .parse(new String(Files.readAllBytes(path), StandardCharsets.UTF_8));
+                Optional<CompilationUnit> unit = result.getResult().filter(parsed -> result.isSuccessful());
+                unit.ifPresent(parsed -> parsed.setData(Node.SYMBOL_RESOLVER_KEY, new JavaSymbolSolver(getRoot())));
+                return unit;
+            } catch (IOException e) {
+                logger.debug("Cannot read source of project type {}: {}", path, e.getMessage());
+                return Optional.empty();
+            }
+        });
+    }
+}
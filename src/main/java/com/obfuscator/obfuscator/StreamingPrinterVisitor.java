@@ -0,0 +1,94 @@
+package com.obfuscator.obfuscator;
+
+import com.github.javaparser.ast.body.AnnotationDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.RecordDeclaration;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.printer.DefaultPrettyPrinterVisitor;
+import com.github.javaparser.printer.configuration.PrinterConfiguration;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+// Печать без строки со всем исходником: заголовок файла (package, imports) копится
+// в своём принтере, а каждый класс верхнего уровня печатается отдельным
+// DefaultPrettyPrinterVisitor и сразу уходит в out. Используется только открытый
+// API принтера JavaParser. Ошибка записи в out приходит как UncheckedIOException
+final class StreamingPrinterVisitor extends DefaultPrettyPrinterVisitor {
+
+    private final Appendable out;
+    // Сколько символов своего принтера уже отдано в out
+    private int flushed;
+
+    StreamingPrinterVisitor(PrinterConfiguration configuration, Appendable out) {
+        super(configuration);
+        this.out = out;
+    }
+
+    @Override
+    public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+        if (n.isTopLevelType()) {
+            stream(n);
+        } else {
+            super.visit(n, arg);
+        }
+    }
+
+    @Override
+    public void visit(EnumDeclaration n, Void arg) {
+        if (n.isTopLevelType()) {
+            stream(n);
+        } else {
+            super.visit(n, arg);
+        }
+    }
+
+    @Override
+    public void visit(RecordDeclaration n, Void arg) {
+        if (n.isTopLevelType()) {
+            stream(n);
+        } else {
+            super.visit(n, arg);
+        }
+    }
+
+    @Override
+    public void visit(AnnotationDeclaration n, Void arg) {
+        if (n.isTopLevelType()) {
+            stream(n);
+        } else {
+            super.visit(n, arg);
+        }
+    }
+
+    // Класс начинается с новой строки без отступа, поэтому отдельный принтер
+    // печатает его так же, как общий
+    private void stream(TypeDeclaration<?> type) {
+        flush();
+        DefaultPrettyPrinterVisitor typePrinter = new DefaultPrettyPrinterVisitor(configuration);
+        type.accept(typePrinter, null);
+        append(typePrinter.toString());
+    }
+
+    // Остаток своего принтера в out; вызывается после печати дерева
+    void flush() {
+        String source = printer.toString();
+        if (flushed < source.length()) {
+            try {
+                out.append(source, flushed, source.length());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            flushed = source.length();
+        }
+    }
+
+    private void append(String text) {
+        try {
+            out.append(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.obfuscator.obfuscator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Индекс объявлений всего проекта: собирается параллельно в первой фазе,
+// после build() не изменяется и читается потоками второй фазы без блокировок
+public final class SymbolIndex {
+
+    private static final Logger logger = LogManager.getLogger(SymbolIndex.class);
+
+    public enum Kind {
+        CLASS, METHOD, FIELD
+    }
+
+    // kept - имя защищено правилами KeepRules: такое имя не переименовывается во всём проекте
+    public record Declaration(Kind kind, String name, String owner, boolean kept) {
+    }
+
+    // Результат обращения к индексу при обфускации файла; newName == null - имя в индексе не найдено
+    public record Reference(Kind kind, String name, String newName) {
+    }
+
+    // Тип проекта, о котором спрашивало разрешение символов файла: key - ключ кэша файла,
+    // где тип объявлен, null - такого типа в проекте нет
+    public record TypeSource(String type, String key) {
+    }
+
+    // Файл с объявлением типа проекта и его ключ кэша
+    private record SourceFile(Path path, String key) {
+    }
+
+    private final Map<Kind, Map<String, String>> renames;
+    private final Map<Kind, Map<String, Set<String>>> owners;
+    private final Map<String, SourceFile> sources;
+
+    private SymbolIndex(Map<Kind, Map<String, String>> renames, Map<Kind, Map<String, Set<String>>> owners,
+                        Map<String, SourceFile> sources) {
+        this.renames = renames;
+        this.owners = owners;
+        this.sources = sources;
+    }
+
+    public String getRename(Kind kind, String name) {
+        return renames.get(kind).get(name);
+    }
+
+    // Вывод файла зависит только от ответов индекса, поэтому кэшированный вывод
+    // актуален, пока индекс отвечает на все его обращения так же, как раньше
+    public boolean matches(Collection<Reference> references) {
+        for (Reference reference : references) {
+            if (!Objects.equals(getRename(reference.kind(), reference.name()), reference.newName())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Вывод файла, разрешённого по исходникам других файлов, актуален, пока типы,
+    // о которых он спрашивал, объявлены в тех же файлах с тем же содержимым
+    public boolean matchesSources(Collection<TypeSource> typeSources) {
+        for (TypeSource typeSource : typeSources) {
+            if (!Objects.equals(getSourceKey(typeSource.type()), typeSource.key())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Файл, где объявлен тип проекта с данным полным именем; null - такого типа нет
+    public Path getSourceFile(String type) {
+        SourceFile source = sources.get(type);
+        return source != null ? source.path() : null;
+    }
+
+    public String getSourceKey(String type) {
+        SourceFile source = sources.get(type);
+        return source != null ? source.key() : null;
+    }
+
+    public Map<String, String> getRenames(Kind kind) {
+        return renames.get(kind);
+    }
+
+    // Полные имена типов, объявляющих член kind с этим именем
+    public Set<String> getOwners(Kind kind, String name) {
+        return owners.get(kind).getOrDefault(name, Set.of());
+    }
+
+    public int size(Kind kind) {
+        return renames.get(kind).size();
+    }
+
+    public int size() {
+        int total = 0;
+        for (Map<String, String> kindRenames : renames.values()) {
+            total += kindRenames.size();
+        }
+        return total;
+    }
+
+    public static class Builder {
+
+        private final Map<Kind, ConcurrentHashMap<String, Set<String>>> declarations = new EnumMap<>(Kind.class);
+        private final Map<Kind, ConcurrentHashMap<String, String>> pinnedRenames = new EnumMap<>(Kind.class);
+        private final Map<Kind, Set<String>> keptNames = new EnumMap<>(Kind.class);
+        private final Set<String> reservedNames = ConcurrentHashMap.newKeySet();
+        private final ConcurrentHashMap<String, SourceFile> sources = new ConcurrentHashMap<>();
+
+        public Builder() {
+            for (Kind kind : Kind.values()) {
+                declarations.put(kind, new ConcurrentHashMap<>());
+                pinnedRenames.put(kind, new ConcurrentHashMap<>());
+                keptNames.put(kind, ConcurrentHashMap.newKeySet());
+            }
+        }
+
+        public void add(Declaration declaration) {
+            if (declaration.kept()) {
+                keptNames.get(declaration.kind()).add(declaration.name());
+            }
+            declarations.get(declaration.kind())
+                    .computeIfAbsent(declaration.name(), key -> ConcurrentHashMap.newKeySet())
+                    .add(declaration.owner());
+        }
+
+        // Имя из прошлого запуска (например, из кэша): если символ снова объявлен, он получит то же имя
+        public void pin(Kind kind, String name, String newName) {
+            pinnedRenames.get(kind).putIfAbsent(name, newName);
+        }
+
+        // Имя, уже занятое в выводе из кэша (например, локальная переменная) - новым символам его не выдаём
+        public void reserve(String newName) {
+            reservedNames.add(newName);
+        }
+
+        // Файл объявляет тип type. Если тип объявлен в нескольких файлах, берётся первый
+        // по пути - чтобы индекс не зависел от порядка потоков
+        public void addSource(String type, Path file, String key) {
+            sources.merge(type, new SourceFile(file, key),
+                    (first, second) -> first.path().compareTo(second.path()) <= 0 ? first : second);
+        }
+
+        public int size() {
+            int total = 0;
+            for (Map<String, Set<String>> kindDeclarations : declarations.values()) {
+                total += kindDeclarations.size();
+            }
+            return total;
+        }
+
+        SymbolIndex build(NameGenerator nameGenerator) {
+            Map<Kind, Map<String, String>> renames = new EnumMap<>(Kind.class);
+            Map<Kind, Map<String, Set<String>>> owners = new EnumMap<>(Kind.class);
+
+            reservedNames.forEach(nameGenerator::reserveName);
+            pinnedRenames.values().forEach(pinned -> pinned.values().forEach(nameGenerator::reserveName));
+            Set<String> assignedNames = new HashSet<>();
+
+            for (Kind kind : Kind.values()) {
+                ConcurrentHashMap<String, Set<String>> kindDeclarations = declarations.get(kind);
+                ConcurrentHashMap<String, String> kindPinned = pinnedRenames.get(kind);
+
+                // Имена раздаём в отсортированном порядке, чтобы результат не зависел от порядка потоков
+                List<String> names = new ArrayList<>(kindDeclarations.keySet());
+                names.removeAll(keptNames.get(kind));
+                Collections.sort(names);
+
+                Map<String, String> kindRenames = new HashMap<>(names.size() * 4 / 3 + 1);
+                Map<String, Set<String>> kindOwners = new HashMap<>(names.size() * 4 / 3 + 1);
+                for (String name : names) {
+                    // Закреплённые имена из разных прошлых запусков могут совпасть - второе получает новое
+                    String pinned = kindPinned.get(name);
+                    String newName = pinned != null && assignedNames.add(pinned)
+                            ? pinned
+                            : generateName(nameGenerator, kind);
+                    kindRenames.put(name, newName);
+                    kindOwners.put(name, Set.copyOf(kindDeclarations.get(name)));
+                }
+
+                renames.put(kind, Collections.unmodifiableMap(kindRenames));
+                owners.put(kind, Collections.unmodifiableMap(kindOwners));
+            }
+
+            logger.info("Symbol index built: {} classes, {} methods, {} fields",
+                    renames.get(Kind.CLASS).size(), renames.get(Kind.METHOD).size(), renames.get(Kind.FIELD).size());
+
+            return new SymbolIndex(renames, owners, Map.copyOf(sources));
+        }
+
+        private static String generateName(NameGenerator nameGenerator, Kind kind) {
+            switch (kind) {
+                case CLASS:
+                    return nameGenerator.generateClassName();
+                case METHOD:
+                    return nameGenerator.generateMethodName();
+                default:
+                    return nameGenerator.generateVariableName();
+            }
+        }
+    }
+}
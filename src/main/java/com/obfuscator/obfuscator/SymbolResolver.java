@@ -0,0 +1,674 @@
+package com.obfuscator.obfuscator;
+
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.ImportDeclaration;
+import com.github.javaparser.ast.Node;
+import com.github.javaparser.ast.body.EnumConstantDeclaration;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.Parameter;
+import com.github.javaparser.ast.body.TypeDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.Expression;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.MethodCallExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.expr.PatternExpr;
+import com.github.javaparser.ast.expr.VariableDeclarationExpr;
+import com.github.javaparser.ast.nodeTypes.NodeWithSimpleName;
+import com.github.javaparser.ast.stmt.BlockStmt;
+import com.github.javaparser.ast.stmt.ForEachStmt;
+import com.github.javaparser.ast.stmt.ForStmt;
+import com.github.javaparser.ast.stmt.SwitchStmt;
+import com.github.javaparser.ast.stmt.TryStmt;
+import com.github.javaparser.ast.type.ClassOrInterfaceType;
+import com.github.javaparser.resolution.TypeSolver;
+import com.github.javaparser.resolution.UnsolvedSymbolException;
+import com.github.javaparser.resolution.declarations.ResolvedMethodDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedReferenceTypeDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedTypeDeclaration;
+import com.github.javaparser.resolution.declarations.ResolvedValueDeclaration;
+import com.github.javaparser.resolution.model.SymbolReference;
+import com.github.javaparser.resolution.types.ResolvedReferenceType;
+import com.github.javaparser.resolution.types.ResolvedType;
+import com.github.javaparser.symbolsolver.JavaSymbolSolver;
+import com.github.javaparser.symbolsolver.cache.NoCache;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFacade;
+import com.github.javaparser.symbolsolver.javaparsermodel.JavaParserFactory;
+import com.github.javaparser.symbolsolver.javaparsermodel.declarations.JavaParserFieldDeclaration;
+import com.github.javaparser.symbolsolver.javaparsermodel.declarations.JavaParserVariableDeclaration;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.CombinedTypeSolver;
+import com.github.javaparser.symbolsolver.resolution.typesolvers.ReflectionTypeSolver;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Разрешение обращений через symbol solver: к какому объявлению ведёт имя. По одному имени
+// list.size() не отличить от вызова своего метода size, а count из другого метода - от поля
+// count. Solver библиотек общий для всех файлов и потоков; найденные типы и члены
+// библиотечных типов запоминаются в LRU-кэшах, поэтому JDK разбирается один раз за запуск.
+// Типы проекта ищутся в исходниках (withSources) и между задачами не кэшируются
+public final class SymbolResolver {
+
+    private static final Logger logger = LogManager.getLogger(SymbolResolver.class);
+
+    public static final int DEFAULT_TYPE_CACHE_SIZE = 4096;
+    public static final int DEFAULT_MEMBER_CACHE_SIZE = 2048;
+    // Разобранных файлов проекта на поток второй фазы
+    public static final int DEFAULT_SOURCE_CACHE_SIZE = 256;
+
+    private final CombinedTypeSolver librarySolver;
+    private final LruCache<String, SymbolReference<ResolvedReferenceTypeDeclaration>> types;
+    private final LruCache<String, LibraryMembers> members;
+    private final ClasspathIndex classpath;
+    // Solver, по которому разрешаются файлы: библиотеки или библиотеки и исходники проекта
+    private final TypeSolver typeSolver;
+    private final JavaSymbolSolver symbolSolver;
+    private final JavaParserFacade facade;
+    private final SourceTypeSolver sources;
+    private final Counters counters;
+
+    // Счётчики одной задачи. Кэши общие для всех задач процесса, поэтому их попадания
+    // считаются от значений на момент создания счётчиков
+    private static final class Counters {
+        private final LongAdder resolved = new LongAdder();
+        private final LongAdder boundByScope = new LongAdder();
+        private final LongAdder unresolvedKept = new LongAdder();
+        private final LongAdder unresolvedMatched = new LongAdder();
+        private final LongAdder resolveNanos = new LongAdder();
+        private final long typeHits;
+        private final long typeMisses;
+        private final long memberHits;
+        private final long memberMisses;
+
+        private Counters(LruCache<?, ?> types, LruCache<?, ?> members) {
+            this.typeHits = types.hits();
+            this.typeMisses = types.misses();
+            this.memberHits = members.hits();
+            this.memberMisses = members.misses();
+        }
+    }
+
+    private static final class Defaults {
+        private static final SymbolResolver RESOLVER = new SymbolResolver();
+    }
+
+    // Чем оказалось обращение. declaration - объявление в этом же файле: новое имя берётся
+    // у него после переименования. owner - объявление в другом файле проекта, в типе owner:
+    // имя переименовывается по индексу. Оба null - объявление не наше (библиотека, параметр,
+    // длина массива) или не найдено, и имя обращения не меняется
+    record Binding(NodeWithSimpleName<?> declaration, String owner) {
+        static final Binding KEEP = new Binding(null, null);
+
+        Binding(NodeWithSimpleName<?> declaration) {
+            this(declaration, null);
+        }
+
+        static Binding indexed(String owner) {
+            return new Binding(null, owner);
+        }
+
+        boolean isIndexed() {
+            return owner != null;
+        }
+
+        String rename(String name) {
+            if (declaration == null || declaration.getNameAsString().equals(name)) {
+                return null;
+            }
+            return declaration.getNameAsString();
+        }
+    }
+
+    // Где объявлены методы с данным именем и числом аргументов, видимые в типе
+    private enum Origin {
+        PROJECT, LIBRARY, MIXED, NONE;
+
+        Origin with(Origin other) {
+            if (this == NONE || this == other) {
+                return other;
+            }
+            return other == NONE ? this : MIXED;
+        }
+    }
+
+    // Методы библиотечного типа вместе с унаследованными: имя/число параметров,
+    // для varargs - имя и наименьшее число аргументов
+    private record LibraryMembers(Set<String> methods, Map<String, Integer> variadicMethods) {
+        boolean hasMethod(String name, int arity) {
+            return methods.contains(name + '/' + arity) || variadicMethods.getOrDefault(name, Integer.MAX_VALUE) <= arity;
+        }
+    }
+
+    public SymbolResolver() {
+        this(DEFAULT_TYPE_CACHE_SIZE, DEFAULT_MEMBER_CACHE_SIZE);
+    }
+
+    public SymbolResolver(int typeCacheSize, int memberCacheSize) {
+        this(typeCacheSize, memberCacheSize, null);
+    }
+
+    // classpath - библиотеки проекта: обращения к их типам и членам не переименовываются
+    public SymbolResolver(ClasspathIndex classpath) {
+        this(DEFAULT_TYPE_CACHE_SIZE, DEFAULT_MEMBER_CACHE_SIZE, classpath);
+    }
+
+    public SymbolResolver(int typeCacheSize, int memberCacheSize, ClasspathIndex classpath) {
+        this.types = new LruCache<>(typeCacheSize);
+        this.members = new LruCache<>(memberCacheSize);
+        this.classpath = classpath;
+        // Только JDK и индекс библиотек: классы самого обфускатора не должны подменять классы проекта
+        List<TypeSolver> solvers = classpath != null
+                ? List.of(new ReflectionTypeSolver(), classpath.newTypeSolver())
+                : List.of(new ReflectionTypeSolver());
+        this.librarySolver = new CombinedTypeSolver(CombinedTypeSolver.ExceptionHandlers.IGNORE_NONE, solvers, types);
+        this.typeSolver = librarySolver;
+        this.symbolSolver = new JavaSymbolSolver(typeSolver);
+        this.facade = JavaParserFacade.get(typeSolver);
+        this.sources = null;
+        this.counters = new Counters(types, members);
+        logger.debug("SymbolResolver initialized: type cache {}, member cache {}, classpath {}",
+                typeCacheSize, memberCacheSize, classpath != null ? classpath.getJarCount() + " JARs" : "none");
+    }
+
+    // Вид резолвера shared: solver библиотек и его кэши общие. С sources у вида свой
+    // CombinedTypeSolver без кэша - каждое обращение к типу проекта доходит до sources
+    // и попадает в зависимости файла; библиотечные типы кэширует общий solver
+    private SymbolResolver(SymbolResolver shared, SourceTypeSolver sources, Counters counters) {
+        this.librarySolver = shared.librarySolver;
+        this.types = shared.types;
+        this.members = shared.members;
+        this.classpath = shared.classpath;
+        this.sources = sources;
+        this.counters = counters;
+        if (sources != null) {
+            this.typeSolver = new CombinedTypeSolver(CombinedTypeSolver.ExceptionHandlers.IGNORE_NONE,
+                    List.of(new LibraryTypeSolver(librarySolver), sources), NoCache.create());
+            this.symbolSolver = new JavaSymbolSolver(typeSolver);
+            this.facade = JavaParserFacade.get(typeSolver);
+        } else {
+            this.typeSolver = shared.typeSolver;
+            this.symbolSolver = shared.symbolSolver;
+            this.facade = shared.facade;
+        }
+    }
+
+    public static SymbolResolver defaults() {
+        return Defaults.RESOLVER;
+    }
+
+    // Резолвер для одной задачи: кэши общие с этим резолвером, статистика - только своя
+    public SymbolResolver forJob() {
+        return new SymbolResolver(this, sources, new Counters(types, members));
+    }
+
+    // Резолвер второй фазы: типы проекта ищутся в исходниках, файлы которых записаны в индексе,
+    // поэтому разрешаются и обращения через объекты классов из других файлов. Счётчики общие
+    SymbolResolver withSources(SymbolIndex index, ParserFactory parserFactory) {
+        return new SymbolResolver(this, new SourceTypeSolver(index, parserFactory, DEFAULT_SOURCE_CACHE_SIZE),
+                counters);
+    }
+
+    // Разрешает в дереве обращения к именам, которые могут быть переименованы: объявленным
+    // в этом файле и тем, что переименовываются по индексу проекта (indexedVariables,
+    // indexedMethods). Вызывается до переименования: solver ищет объявления по исходным именам.
+    // В projectTypes добавляются полные имена типов проекта, о которых спрашивал solver.
+    // Обращение, которое разрешить не удалось, сохраняет имя: иначе вызов библиотечного метода
+    // переименовался бы вслед за одноимённым методом проекта. Исключение - неквалифицированные
+    // имена, объявленные в этом же файле: они в результат не попадают и сопоставляются
+    // с объявлениями файла по имени. Типы с областью (Map.Entry) и импорты с простым именем
+    // из indexedClasses разрешаются до типа; неразрешённые тоже не попадают в результат
+    Map<Node, Binding> bind(CompilationUnit compilationUnit, Predicate<String> indexedVariables,
+                            Predicate<String> indexedMethods, Predicate<String> indexedClasses,
+                            Set<String> projectTypes) {
+        long start = System.nanoTime();
+        if (sources != null) {
+            sources.track(projectTypes);
+        }
+        try {
+            return bindTracked(compilationUnit, indexedVariables, indexedMethods, indexedClasses);
+        } finally {
+            if (sources != null) {
+                sources.track(null);
+            }
+            counters.resolveNanos.add(System.nanoTime() - start);
+        }
+    }
+
+    private Map<Node, Binding> bindTracked(CompilationUnit compilationUnit, Predicate<String> indexedVariables,
+                                           Predicate<String> indexedMethods, Predicate<String> indexedClasses) {
+        Map<Node, Binding> bindings = new IdentityHashMap<>();
+        compilationUnit.setData(Node.SYMBOL_RESOLVER_KEY, symbolSolver);
+
+        // Объявления переменных по областям видимости: узел-область -> имя -> объявление.
+        // Имена, область которых так не описать (переменные шаблонов), разрешает только solver
+        Map<Node, Map<String, Node>> scopes = new IdentityHashMap<>();
+        Set<String> variables = new HashSet<>();
+        Set<String> unscoped = new HashSet<>();
+        Set<String> methods = new HashSet<>();
+        compilationUnit.walk(node -> {
+            if (node instanceof VariableDeclarator || node instanceof Parameter
+                    || node instanceof EnumConstantDeclaration || node instanceof PatternExpr) {
+                String name = ((NodeWithSimpleName<?>) node).getNameAsString();
+                variables.add(name);
+                Node scope = scopeOf(node);
+                if (scope == null || scopes.computeIfAbsent(scope, key -> new HashMap<>()).putIfAbsent(name, node) != null) {
+                    unscoped.add(name);
+                }
+            } else if (node instanceof MethodDeclaration method) {
+                methods.add(method.getNameAsString());
+            }
+        });
+
+        compilationUnit.walk(node -> {
+            if (node instanceof NameExpr name) {
+                String identifier = name.getNameAsString();
+                Binding binding = variables.contains(identifier) && !unscoped.contains(identifier)
+                        ? bindByScope(scopes, name)
+                        : null;
+                if (binding != null) {
+                    bindings.put(name, binding);
+                    counters.boundByScope.increment();
+                } else if (variables.contains(identifier) || indexedVariables.test(identifier)) {
+                    bind(bindings, name, () -> bindValue(compilationUnit, facade.solve(name)),
+                            variables.contains(identifier));
+                }
+            } else if (node instanceof FieldAccessExpr field && (variables.contains(field.getNameAsString())
+                    || indexedVariables.test(field.getNameAsString()))) {
+                bind(bindings, field, () -> bindFieldAccess(compilationUnit, field), false);
+            } else if (node instanceof MethodCallExpr call && (methods.contains(call.getNameAsString())
+                    || indexedMethods.test(call.getNameAsString()))) {
+                bind(bindings, call, () -> bindCall(compilationUnit, call),
+                        call.getScope().isEmpty() && methods.contains(call.getNameAsString()));
+            } else if (node instanceof ClassOrInterfaceType type && type.getScope().isPresent()
+                    && indexedClasses.test(type.getNameAsString())) {
+                bind(bindings, type, () -> bindType(type), true);
+            } else if (node instanceof ImportDeclaration importDeclaration && !importDeclaration.isAsterisk()
+                    && indexedClasses.test(importDeclaration.getName().getIdentifier())) {
+                bind(bindings, importDeclaration, () -> bindImport(importDeclaration), true);
+            }
+        });
+        return bindings;
+    }
+
+    // Ближайшее объявление имени в объемлющих областях файла - то, к которому ведёт обращение.
+    // На границе вложенного или анонимного класса поиск прекращается: дальше имя может
+    // оказаться унаследованным полем, и тогда решает solver
+    private static Binding bindByScope(Map<Node, Map<String, Node>> scopes, NameExpr reference) {
+        String name = reference.getNameAsString();
+        Node child = reference;
+        for (Node node = reference.getParentNode().orElse(null); node != null; node = node.getParentNode().orElse(null)) {
+            Map<String, Node> declared = scopes.get(node);
+            Node declaration = declared != null ? declared.get(name) : null;
+            if (declaration != null) {
+                Boolean visible = isVisibleAt(declaration, node, child);
+                if (visible == null) {
+                    return null;
+                }
+                if (visible) {
+                    return declaration instanceof VariableDeclarator declarator ? new Binding(declarator) : Binding.KEEP;
+                }
+            }
+            if (node instanceof TypeDeclaration || node instanceof ObjectCreationExpr creation
+                    && creation.getAnonymousClassBody().isPresent()) {
+                return null;
+            }
+            child = node;
+        }
+        return null;
+    }
+
+    // Видно ли объявление из child - прямого потомка области scope, внутри которого обращение.
+    // Локальная переменная видна только в следующих за объявлением операторах (позиций
+    // в дереве нет: парсер не хранит токены). null - порядок не определить, решает solver
+    private static Boolean isVisibleAt(Node declaration, Node scope, Node child) {
+        if (!(declaration.getParentNode().orElse(null) instanceof VariableDeclarationExpr)) {
+            return true;
+        }
+        if (scope instanceof BlockStmt block) {
+            Node declarationChild = declaration;
+            while (declarationChild.getParentNode().orElse(null) != scope) {
+                declarationChild = declarationChild.getParentNode().orElseThrow();
+            }
+            int declared = -1;
+            int referenced = -1;
+            for (int i = 0; i < block.getStatements().size(); i++) {
+                Node statement = block.getStatements().get(i);
+                if (statement == declarationChild) {
+                    declared = i;
+                }
+                if (statement == child) {
+                    referenced = i;
+                }
+            }
+            return declared >= 0 && referenced >= declared;
+        }
+        if (scope instanceof ForStmt) {
+            return true;
+        }
+        if (scope instanceof ForEachStmt forEach) {
+            return child == forEach.getBody();
+        }
+        if (scope instanceof TryStmt tryStmt) {
+            // Ресурс виден в блоке try, но не в catch и finally
+            return child == tryStmt.getTryBlock() || tryStmt.getResources().stream().anyMatch(resource -> resource == child);
+        }
+        return null;
+    }
+
+    private static Node scopeOf(Node declaration) {
+        Node parent = declaration.getParentNode().orElse(null);
+        if (declaration instanceof Parameter || declaration instanceof EnumConstantDeclaration) {
+            // Метод, конструктор, лямбда, catch, запись или перечисление
+            return parent;
+        }
+        if (!(declaration instanceof VariableDeclarator)) {
+            return null;
+        }
+        if (parent instanceof FieldDeclaration) {
+            return parent.getParentNode().orElse(null);
+        }
+        // Локальная переменная видна до конца блока, цикла, try с ресурсами или switch
+        for (Node node = parent; node != null; node = node.getParentNode().orElse(null)) {
+            if (node instanceof BlockStmt || node instanceof ForStmt || node instanceof ForEachStmt
+                    || node instanceof TryStmt || node instanceof SwitchStmt) {
+                return node;
+            }
+            if (node instanceof TypeDeclaration) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    // matchByName - неразрешённое обращение остаётся без привязки и сопоставляется по имени
+    private void bind(Map<Node, Binding> bindings, Node reference, Supplier<Binding> resolution,
+                      boolean matchByName) {
+        Binding binding;
+        try {
+            binding = resolution.get();
+        } catch (RuntimeException | StackOverflowError e) {
+            logger.trace("Unresolved reference {}: {}", reference, e.toString());
+            binding = null;
+        }
+        if (binding != null) {
+            bindings.put(reference, binding);
+            counters.resolved.increment();
+        } else if (matchByName) {
+            counters.unresolvedMatched.increment();
+        } else {
+            bindings.put(reference, Binding.KEEP);
+            counters.unresolvedKept.increment();
+        }
+    }
+
+    private Binding bindValue(CompilationUnit compilationUnit, SymbolReference<? extends ResolvedValueDeclaration> reference) {
+        if (!reference.isSolved()) {
+            return null;
+        }
+        ResolvedValueDeclaration declaration = reference.getCorrespondingDeclaration();
+        if (declaration instanceof JavaParserFieldDeclaration field) {
+            VariableDeclarator declarator = field.getVariableDeclarator();
+            return inFile(compilationUnit, declarator)
+                    ? new Binding(declarator)
+                    : Binding.indexed(field.declaringType().getQualifiedName());
+        }
+        if (declaration instanceof JavaParserVariableDeclaration variable
+                && inFile(compilationUnit, variable.getVariableDeclarator())) {
+            return new Binding(variable.getVariableDeclarator());
+        }
+        // Параметр, константа перечисления, поле библиотеки - такие имена не переименовываются
+        return Binding.KEEP;
+    }
+
+    private Binding bindFieldAccess(CompilationUnit compilationUnit, FieldAccessExpr field) {
+        ResolvedType scopeType = typeOf(field.getScope());
+        if (scopeType != null && scopeType.isArray()) {
+            return Binding.KEEP;
+        }
+        ResolvedReferenceTypeDeclaration scope = typeDeclaration(scopeType);
+        if (scope != null && !isProject(scope)) {
+            return Binding.KEEP;
+        }
+        return bindValue(compilationUnit, facade.solve(field));
+    }
+
+    private Binding bindCall(CompilationUnit compilationUnit, MethodCallExpr call) {
+        String name = call.getNameAsString();
+        int arity = call.getArguments().size();
+
+        ResolvedReferenceTypeDeclaration receiver;
+        if (call.getScope().isPresent()) {
+            Expression scope = call.getScope().get();
+            ResolvedType scopeType = typeOf(scope);
+            if (scopeType != null && scopeType.isArray()) {
+                return Binding.KEEP;
+            }
+            receiver = scopeType != null ? typeDeclaration(scopeType) : staticScope(scope);
+            if (receiver == null) {
+                // Тип области не найден ни в библиотеках, ни в исходниках проекта
+                return null;
+            }
+            if (!isProject(receiver)) {
+                return Binding.KEEP;
+            }
+        } else {
+            receiver = enclosingType(call);
+        }
+
+        // Метод только унаследован от библиотеки - точный выбор перегрузки не нужен
+        if (receiver != null && methodOrigin(receiver, name, arity) == Origin.LIBRARY) {
+            return Binding.KEEP;
+        }
+
+        SymbolReference<ResolvedMethodDeclaration> reference = facade.solve(call);
+        if (!reference.isSolved()) {
+            return null;
+        }
+        Optional<MethodDeclaration> declaration = reference.getCorrespondingDeclaration().toAst(MethodDeclaration.class);
+        if (declaration.isEmpty()) {
+            return Binding.KEEP;
+        }
+        return inFile(compilationUnit, declaration.get())
+                ? new Binding(declaration.get())
+                : Binding.indexed(reference.getCorrespondingDeclaration().declaringType().getQualifiedName());
+    }
+
+    // Map.Entry, a.b.Foo: тип проекта переименовывается по индексу, библиотечный - нет
+    private Binding bindType(ClassOrInterfaceType type) {
+        return bindTypeDeclaration(typeDeclaration(facade.convertToUsage(type)));
+    }
+
+    private Binding bindImport(ImportDeclaration importDeclaration) {
+        SymbolReference<ResolvedReferenceTypeDeclaration> reference =
+                typeSolver.tryToSolveType(importDeclaration.getNameAsString());
+        return reference.isSolved() ? bindTypeDeclaration(reference.getCorrespondingDeclaration()) : null;
+    }
+
+    private static Binding bindTypeDeclaration(ResolvedReferenceTypeDeclaration type) {
+        if (type == null) {
+            return null;
+        }
+        return isProject(type) ? Binding.indexed(type.getQualifiedName()) : Binding.KEEP;
+    }
+
+    private ResolvedType typeOf(Expression expression) {
+        try {
+            return facade.getType(expression);
+        } catch (UnsolvedSymbolException e) {
+            // Область - имя типа, а не значение (Math.max): разрешается отдельно
+            return null;
+        }
+    }
+
+    private ResolvedReferenceTypeDeclaration staticScope(Expression scope) {
+        if (!(scope instanceof NameExpr) && !(scope instanceof FieldAccessExpr)) {
+            return null;
+        }
+        SymbolReference<ResolvedTypeDeclaration> reference =
+                JavaParserFactory.getContext(scope, typeSolver).solveType(scope.toString(), List.of());
+        if (!reference.isSolved() || !reference.getCorrespondingDeclaration().isReferenceType()) {
+            return null;
+        }
+        return reference.getCorrespondingDeclaration().asReferenceType();
+    }
+
+    private static ResolvedReferenceTypeDeclaration typeDeclaration(ResolvedType type) {
+        if (type == null || !type.isReferenceType()) {
+            return null;
+        }
+        return type.asReferenceType().getTypeDeclaration().orElse(null);
+    }
+
+    // Неквалифицированный вызов ищется сначала в ближайшем объявлении типа. В анонимном
+    // классе или теле константы перечисления тип другой - там разрешается весь вызов
+    private static ResolvedReferenceTypeDeclaration enclosingType(Node node) {
+        for (Node parent = node.getParentNode().orElse(null); parent != null; parent = parent.getParentNode().orElse(null)) {
+            if (parent instanceof TypeDeclaration<?> type) {
+                return type.resolve();
+            }
+            if (parent instanceof ObjectCreationExpr || parent instanceof EnumConstantDeclaration) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private Origin methodOrigin(ResolvedReferenceTypeDeclaration type, String name, int arity) {
+        if (!isProject(type)) {
+            return libraryMembers(type).hasMethod(name, arity) ? Origin.LIBRARY : Origin.NONE;
+        }
+        Origin origin = Origin.NONE;
+        for (ResolvedMethodDeclaration method : type.getDeclaredMethods()) {
+            if (method.getName().equals(name) && accepts(method, arity)) {
+                origin = Origin.PROJECT;
+                break;
+            }
+        }
+        for (ResolvedReferenceType ancestor : type.getAncestors()) {
+            ResolvedReferenceTypeDeclaration ancestorType = ancestor.getTypeDeclaration()
+                    .orElseThrow(() -> new UnsolvedSymbolException(ancestor.describe()));
+            origin = origin.with(methodOrigin(ancestorType, name, arity));
+        }
+        return origin;
+    }
+
+    private LibraryMembers libraryMembers(ResolvedReferenceTypeDeclaration type) {
+        return members.get(type.getQualifiedName(), qualifiedName -> {
+            Set<String> methods = new HashSet<>();
+            Map<String, Integer> variadicMethods = new HashMap<>();
+            type.getAllMethods().forEach(usage -> {
+                ResolvedMethodDeclaration method = usage.getDeclaration();
+                if (method.hasVariadicParameter()) {
+                    variadicMethods.merge(method.getName(), method.getNumberOfParams() - 1, Math::min);
+                } else {
+                    methods.add(method.getName() + '/' + method.getNumberOfParams());
+                }
+            });
+            return new LibraryMembers(methods, variadicMethods);
+        });
+    }
+
+    // Общий solver библиотек в составе вида с исходниками: у TypeSolver может быть
+    // только один родитель, поэтому в CombinedTypeSolver вида входит эта обёртка
+    private static final class LibraryTypeSolver implements TypeSolver {
+        private final TypeSolver libraries;
+        private TypeSolver parent;
+
+        private LibraryTypeSolver(TypeSolver libraries) {
+            this.libraries = libraries;
+        }
+
+        @Override
+        public TypeSolver getParent() {
+            return parent;
+        }
+
+        @Override
+        public void setParent(TypeSolver parent) {
+            this.parent = parent;
+        }
+
+        @Override
+        public SymbolReference<ResolvedReferenceTypeDeclaration> tryToSolveType(String name) {
+            return libraries.tryToSolveType(name);
+        }
+    }
+
+    private static boolean accepts(ResolvedMethodDeclaration method, int arity) {
+        int parameters = method.getNumberOfParams();
+        return parameters == arity || method.hasVariadicParameter() && arity >= parameters - 1;
+    }
+
+    // Объявления проекта построены по исходному тексту, библиотечные - по классам
+    private static boolean isProject(ResolvedReferenceTypeDeclaration type) {
+        return type.toAst().isPresent();
+    }
+
+    private static boolean inFile(CompilationUnit compilationUnit, Node declaration) {
+        return declaration.findCompilationUnit().filter(unit -> unit == compilationUnit).isPresent();
+    }
+
+    public long getResolvedCount() {
+        return counters.resolved.sum();
+    }
+
+    public long getBoundByScopeCount() {
+        return counters.boundByScope.sum();
+    }
+
+    public long getUnresolvedCount() {
+        return counters.unresolvedKept.sum() + counters.unresolvedMatched.sum();
+    }
+
+    public long getResolveTimeMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(counters.resolveNanos.sum());
+    }
+
+    public double getTypeCacheHitRate() {
+        return hitRate(types.hits() - counters.typeHits, types.misses() - counters.typeMisses);
+    }
+
+    public double getMemberCacheHitRate() {
+        return hitRate(members.hits() - counters.memberHits, members.misses() - counters.memberMisses);
+    }
+
+    private static double hitRate(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    // Всё, что влияет на результат разрешения, для отпечатка кэша
+    public String describe() {
+        String jdk = "resolve:jdk" + Runtime.version().feature();
+        return classpath != null ? jdk + "+cp:" + classpath.getFingerprint() : jdk;
+    }
+
+    public ClasspathIndex getClasspath() {
+        return classpath;
+    }
+
+    public String getStatistics() {
+        return String.format(
+                "Symbol Resolution Statistics:%n  References resolved: %d%n  Bound by scope: %d%n" +
+                        "  Unresolved (kept): %d%n  Unresolved (matched in file): %d%n" +
+                        "  Time resolving (all threads): %d ms%n  Type cache hit rate: %.1f%% (%d types)%n" +
+                        "  Member cache hit rate: %.1f%% (%d types)",
+                counters.resolved.sum(), counters.boundByScope.sum(), counters.unresolvedKept.sum(),
+                counters.unresolvedMatched.sum(), getResolveTimeMillis(),
+                getTypeCacheHitRate() * 100, types.size(), getMemberCacheHitRate() * 100, members.size())
+                + (classpath != null ? String.format("%n  ") + classpath.getStatistics() : "");
+    }
+}
@@ -0,0 +1,751 @@
+package com.obfuscator.obfuscator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+// Быстрый движок для больших и сгенерированных файлов: исходник разбирается только
+// на токены, имена заменяются по карте переименований прямо в потоке, всё остальное
+// (пробелы, комментарии, литералы) копируется без изменений. Дерево не строится.
+// Вид имени определяется по контексту токена: после new и @ - класс, перед '(' и после
+// '::' - метод, иначе поле (или класс, если имя с заглавной буквы). Член через область
+// (x.run()) меняется, только если область - this, класс проекта или переменная, объявленная
+// в файле с типом проекта: иначе это может быть член библиотечного типа. Локальные
+// переменные и собственные члены файла не переименовываются - файл только потребляет индекс проекта
+final class TokenStreamObfuscator {
+
+    private static final int EOF = 0;
+    private static final int IDENTIFIER = 1;
+    private static final int SYMBOL = 2;
+    private static final int LITERAL = 3;
+
+    // Объявление типа, найденное без разбора файла
+    record TypeHeader(String qualifiedName, List<String> annotations) {
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final String classRename;
+        private final String methodRename;
+        private final String fieldRename;
+        private int recordedIn;
+        // Файл, где имя импортировано не из проекта: там простое имя - не класс проекта
+        private int shadowedIn;
+
+        private Entry(String name, String classRename, String methodRename, String fieldRename) {
+            this.name = name;
+            this.classRename = classRename;
+            this.methodRename = methodRename;
+            this.fieldRename = fieldRename;
+        }
+    }
+
+    // Ключевые слова не могут быть объявлены, поэтому промахи по ним не записываются
+    private static final IdentifierTable<String> KEYWORDS = new IdentifierTable<>();
+
+    static {
+        for (String keyword : new String[]{
+                "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const",
+                "continue", "default", "do", "double", "else", "enum", "extends", "final", "finally", "float",
+                "for", "goto", "if", "implements", "import", "instanceof", "int", "interface", "long", "native",
+                "new", "package", "private", "protected", "public", "return", "short", "static", "strictfp",
+                "super", "switch", "synchronized", "this", "throw", "throws", "transient", "try", "void",
+                "volatile", "while", "true", "false", "null"}) {
+            KEYWORDS.put(keyword, keyword.hashCode(), keyword);
+        }
+    }
+
+    // Что стоит слева от последней '.' или '::': от этого зависит, к чему относится имя справа
+    private static final class Scope {
+        private boolean identifier;
+        // Начало цепочки имён a.b.c; -1 - цепочка начинается не с имени (foo().bar)
+        private int chainStart = -1;
+        private int start;
+        private int end;
+        private int hash;
+        private boolean projectClass;
+        // Имя без области или через this: может быть переменной этого файла
+        private boolean own;
+
+        private boolean isSelf(CharSequence source) {
+            return identifier && regionEquals(source, start, end, "this");
+        }
+    }
+
+    private final IdentifierTable<Entry> renames = new IdentifierTable<>();
+    // Полные имена типов проекта; null - известны только переименования
+    private final Predicate<String> projectTypes;
+    // Переменные файла: true - объявлены только с типами проекта
+    private final IdentifierTable<Boolean> variables = new IdentifierTable<>();
+    private final MissTable misses = new MissTable();
+    private final List<Entry> hits = new ArrayList<>();
+    private int fileStamp;
+    // Исходник последнего файла: промахи хранятся как участки в нём
+    private CharSequence lastSource;
+
+    TokenStreamObfuscator(Map<String, String> classRenames, Map<String, String> methodRenames,
+                          Map<String, String> fieldRenames, Predicate<String> projectTypes) {
+        this.projectTypes = projectTypes;
+        addAll(classRenames, classRenames, methodRenames, fieldRenames);
+        addAll(methodRenames, classRenames, methodRenames, fieldRenames);
+        addAll(fieldRenames, classRenames, methodRenames, fieldRenames);
+    }
+
+    private void addAll(Map<String, String> names, Map<String, String> classRenames,
+                        Map<String, String> methodRenames, Map<String, String> fieldRenames) {
+        for (String name : names.keySet()) {
+            if (renames.get(name, 0, name.length(), name.hashCode()) == null) {
+                renames.put(name, name.hashCode(), new Entry(name,
+                        classRenames.get(name), methodRenames.get(name), fieldRenames.get(name)));
+            }
+        }
+    }
+
+    // Переписывает source в out и возвращает число замен. При recordReferences запоминаются
+    // ответы индекса на каждое встреченное имя, включая промахи: от них зависит вывод файла.
+    // Сами записи Reference создаются только в collectReferences - если они нужны кэшу
+    int rename(CharSequence source, Appendable out, boolean recordReferences) throws IOException {
+        int stamp = ++fileStamp;
+        misses.clear();
+        hits.clear();
+        variables.clear();
+        lastSource = recordReferences ? source : null;
+
+        Lexer lexer = new Lexer(source);
+        Scope scope = new Scope();
+        int copied = 0;
+        int renamed = 0;
+
+        char previousSymbol = 0;
+        int previousEnd = -1;
+        boolean afterIdentifier = false;
+        boolean afterNew = false;
+        boolean afterDoubleColon = false;
+        // 0 - код, 1 - import (меняется только последний идентификатор), 2 - package (не меняется)
+        int statement = 0;
+
+        // Предыдущее имя: начало его цепочки a.b.c (-1 - цепочка начинается не с имени, как
+        // в foo().bar), ключевое ли это слово, переименован ли он как класс проекта и может ли
+        // быть переменной этого файла (без области или через this)
+        int identifierChain = -1;
+        int identifierStart = -1;
+        int identifierEnd = -1;
+        int identifierHash = 0;
+        boolean identifierKeyword = false;
+        boolean identifierProjectClass = false;
+        boolean identifierOwn = false;
+
+        for (int token = lexer.next(); token != EOF; token = lexer.next()) {
+            int start = lexer.tokenStart;
+            int end = lexer.tokenEnd;
+
+            if (token == IDENTIFIER) {
+                boolean qualified = !afterIdentifier && (previousSymbol == '.' || afterDoubleColon);
+                Entry entry = renames.get(source, start, end, lexer.hash);
+                boolean keyword = entry == null && KEYWORDS.get(source, start, end, lexer.hash) != null;
+                boolean projectClass = false;
+
+                if (afterIdentifier && !identifierKeyword && !keyword && statement == 0) {
+                    // Тип и имя подряд - объявление переменной, параметра или поля этого файла
+                    declareVariable(source, start, end, lexer.hash, identifierProjectClass);
+                }
+
+                if (entry == null) {
+                    if (recordReferences && !keyword) {
+                        misses.add(source, start, end, lexer.hash);
+                    }
+                    if (statement == 0 && !afterIdentifier) {
+                        if (regionEquals(source, start, end, "import")) {
+                            statement = 1;
+                        } else if (regionEquals(source, start, end, "package")) {
+                            statement = 2;
+                        }
+                    }
+                    afterNew = regionEquals(source, start, end, "new");
+                } else {
+                    if (recordReferences && entry.recordedIn != stamp) {
+                        entry.recordedIn = stamp;
+                        hits.add(entry);
+                    }
+
+                    char next = lexer.peekSignificant();
+                    boolean classReference;
+                    String newName;
+                    if (statement == 2) {
+                        classReference = false;
+                        newName = null;
+                    } else if (statement == 1) {
+                        classReference = next == ';';
+                        newName = classReference ? entry.classRename : null;
+                    } else if (afterNew || previousSymbol == '@' && !afterIdentifier) {
+                        classReference = true;
+                        newName = entry.classRename;
+                    } else if (next == '(' || afterDoubleColon) {
+                        classReference = Character.isUpperCase(source.charAt(start)) && entry.classRename != null;
+                        newName = classReference ? entry.classRename : entry.methodRename;
+                    } else if (Character.isUpperCase(source.charAt(start))) {
+                        classReference = entry.classRename != null;
+                        newName = classReference ? entry.classRename : entry.fieldRename;
+                    } else {
+                        classReference = entry.fieldRename == null && entry.classRename != null;
+                        newName = classReference ? entry.classRename : entry.fieldRename;
+                    }
+
+                    if (newName != null && classReference) {
+                        if (qualified ? !isProjectClass(source, scope, end) : entry.shadowedIn == stamp) {
+                            if (statement == 1) {
+                                // import java.util.Map.Entry: дальше Entry в файле - не класс проекта
+                                entry.shadowedIn = stamp;
+                            }
+                            newName = null;
+                        }
+                        projectClass = newName != null;
+                    } else if (newName != null && qualified && !isProjectMember(source, scope)) {
+                        // t.run(), list.size(): член может быть библиотечным, имя не меняется
+                        newName = null;
+                    }
+
+                    if (newName != null) {
+                        out.append(source, copied, start).append(newName);
+                        copied = end;
+                        renamed++;
+                    }
+                    afterNew = false;
+                }
+
+                identifierChain = !qualified ? start : scope.identifier ? scope.chainStart : -1;
+                identifierStart = start;
+                identifierEnd = end;
+                identifierHash = lexer.hash;
+                identifierKeyword = keyword;
+                identifierProjectClass = projectClass;
+                identifierOwn = !qualified || scope.isSelf(source);
+                afterIdentifier = true;
+                afterDoubleColon = false;
+
+            } else if (token == SYMBOL) {
+                char symbol = source.charAt(start);
+                boolean doubleColon = symbol == ':' && previousSymbol == ':' && previousEnd == start && !afterIdentifier;
+                if (symbol == '.' || symbol == ':' && !doubleColon) {
+                    // Область имени после '.' или '::' - то, что стоит перед ними
+                    scope.identifier = afterIdentifier;
+                    scope.chainStart = afterIdentifier ? identifierChain : -1;
+                    scope.start = identifierStart;
+                    scope.end = identifierEnd;
+                    scope.hash = identifierHash;
+                    scope.projectClass = afterIdentifier && identifierProjectClass;
+                    scope.own = afterIdentifier && identifierOwn;
+                }
+                afterDoubleColon = doubleColon;
+                if (symbol == ';') {
+                    statement = 0;
+                }
+                previousSymbol = symbol;
+                previousEnd = end;
+                afterIdentifier = false;
+                afterNew = false;
+
+            } else {
+                previousSymbol = '"';
+                afterIdentifier = false;
+                afterNew = false;
+                afterDoubleColon = false;
+            }
+        }
+
+        out.append(source, copied, source.length());
+        return renamed;
+    }
+
+    // Переменная, объявленная в файле с типом проекта, - область, через которую члены
+    // переименовываются. Если то же имя объявлено и с другим типом, область неизвестна
+    private void declareVariable(CharSequence source, int start, int end, int hash, boolean projectType) {
+        Boolean declared = variables.get(source, start, end, hash);
+        if (declared == null) {
+            variables.set(source, start, end, hash, projectType);
+        } else if (declared && !projectType) {
+            variables.set(source, start, end, hash, false);
+        }
+    }
+
+    // Член через область: свой (this.x), статический член класса проекта (Util.helper())
+    // или член переменной, объявленной с типом проекта
+    private boolean isProjectMember(CharSequence source, Scope scope) {
+        return scope.projectClass || scope.isSelf(source) || isProjectVariable(source, scope)
+                || isProjectTypeName(source, scope);
+    }
+
+    private boolean isProjectVariable(CharSequence source, Scope scope) {
+        return scope.own && Boolean.TRUE.equals(variables.get(source, scope.start, scope.end, scope.hash));
+    }
+
+    // Тип через область: Outer.Inner - вложенный тип класса проекта, a.b.Foo - тип, который
+    // проект объявляет в пакете a.b. Map.Entry и другие вложенные типы библиотек не меняются
+    private boolean isProjectClass(CharSequence source, Scope scope, int end) {
+        if (!scope.identifier || scope.chainStart < 0) {
+            return false;
+        }
+        if (Character.isUpperCase(source.charAt(scope.start))) {
+            return scope.projectClass || isProjectTypeName(source, scope);
+        }
+        return projectTypes == null || projectTypes.test(qualifiedName(source, scope.chainStart, end));
+    }
+
+    // Область - полное имя типа проекта (com.example.Util); без projectTypes не проверить
+    private boolean isProjectTypeName(CharSequence source, Scope scope) {
+        return projectTypes != null && scope.identifier && scope.chainStart >= 0
+                && Character.isUpperCase(source.charAt(scope.start))
+                && projectTypes.test(qualifiedName(source, scope.chainStart, scope.end));
+    }
+
+    // Имя a.b.C из участка исходника без пробелов и комментариев между частями
+    private static String qualifiedName(CharSequence source, int start, int end) {
+        CharSequence region = source.subSequence(start, end);
+        Lexer lexer = new Lexer(region);
+        StringBuilder name = new StringBuilder(end - start);
+        for (int token = lexer.next(); token != EOF; token = lexer.next()) {
+            name.append(region, lexer.tokenStart, lexer.tokenEnd);
+        }
+        return name.toString();
+    }
+
+    // Обращения последнего файла к индексу, по три на имя (класс, метод, поле)
+    void collectReferences(Collection<SymbolIndex.Reference> references) {
+        for (Entry entry : hits) {
+            references.add(new SymbolIndex.Reference(SymbolIndex.Kind.CLASS, entry.name, entry.classRename));
+            references.add(new SymbolIndex.Reference(SymbolIndex.Kind.METHOD, entry.name, entry.methodRename));
+            references.add(new SymbolIndex.Reference(SymbolIndex.Kind.FIELD, entry.name, entry.fieldRename));
+        }
+        for (int i = 0; i < misses.size; i++) {
+            String name = lastSource.subSequence(misses.starts[i], misses.ends[i]).toString();
+            references.add(new SymbolIndex.Reference(SymbolIndex.Kind.CLASS, name, null));
+            references.add(new SymbolIndex.Reference(SymbolIndex.Kind.METHOD, name, null));
+            references.add(new SymbolIndex.Reference(SymbolIndex.Kind.FIELD, name, null));
+        }
+    }
+
+    void releaseSource() {
+        lastSource = null;
+        misses.clear();
+        hits.clear();
+    }
+
+    // Ищет объявление типа typeName: пакет и аннотации перед ним. null - тип не объявлен
+    static TypeHeader findType(CharSequence source, String typeName) {
+        Lexer lexer = new Lexer(source);
+        StringBuilder packageName = null;
+        boolean inPackage = false;
+        boolean afterTypeKeyword = false;
+        boolean afterAt = false;
+        List<String> annotations = new ArrayList<>();
+
+        for (int token = lexer.next(); token != EOF; token = lexer.next()) {
+            int start = lexer.tokenStart;
+            int end = lexer.tokenEnd;
+
+            if (token == IDENTIFIER) {
+                if (inPackage) {
+                    packageName.append(source, start, end);
+                } else if (afterTypeKeyword) {
+                    if (regionEquals(source, start, end, typeName)) {
+                        String qualifiedName = packageName != null ? packageName + "." + typeName : typeName;
+                        return new TypeHeader(qualifiedName, annotations);
+                    }
+                    afterTypeKeyword = false;
+                } else if (afterAt) {
+                    annotations.add(source.subSequence(start, end).toString());
+                } else if (regionEquals(source, start, end, "package")) {
+                    inPackage = true;
+                    packageName = new StringBuilder();
+                } else {
+                    afterTypeKeyword = regionEquals(source, start, end, "class")
+                            || regionEquals(source, start, end, "interface")
+                            || regionEquals(source, start, end, "enum")
+                            || regionEquals(source, start, end, "record");
+                }
+                afterAt = false;
+            } else if (token == SYMBOL) {
+                char symbol = source.charAt(start);
+                if (inPackage && symbol == '.') {
+                    packageName.append('.');
+                } else if (symbol == ';' || symbol == '{' || symbol == '}') {
+                    inPackage = false;
+                    annotations = new ArrayList<>();
+                }
+                // У @com.example.Keep остаётся простое имя: последний идентификатор после '@'
+                afterAt = symbol == '@' || afterAt && symbol == '.';
+                if (afterAt && symbol == '.' && !annotations.isEmpty()) {
+                    annotations.remove(annotations.size() - 1);
+                }
+                afterTypeKeyword = false;
+            } else {
+                afterTypeKeyword = false;
+                afterAt = false;
+            }
+        }
+        return null;
+    }
+
+    // Есть ли до limit аннотация @Generated (в том числе @javax.annotation.processing.Generated).
+    // Комментарии и строки лексер пропускает, поэтому "@Generated" в них не считается
+    static boolean isMarkedGenerated(CharSequence source, int limit) {
+        Lexer lexer = new Lexer(source);
+        boolean afterAt = false;
+        boolean afterName = false;
+
+        for (int token = lexer.next(); token != EOF && lexer.tokenStart < limit; token = lexer.next()) {
+            int start = lexer.tokenStart;
+            int end = lexer.tokenEnd;
+
+            if (token == IDENTIFIER && afterAt) {
+                afterName = true;
+                afterAt = false;
+                if (regionEquals(source, start, end, "Generated")) {
+                    // Generated должен быть последним именем цепочки, а не пакетом
+                    int next = lexer.next();
+                    if (next != SYMBOL || source.charAt(lexer.tokenStart) != '.') {
+                        return true;
+                    }
+                    afterAt = true;
+                    afterName = false;
+                }
+            } else if (token == SYMBOL) {
+                char symbol = source.charAt(start);
+                afterAt = symbol == '@' || afterName && symbol == '.';
+                afterName = false;
+            } else {
+                afterAt = false;
+                afterName = false;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionEquals(CharSequence source, int start, int end, String word) {
+        return end - start == word.length() && startsWith(source, word, start);
+    }
+
+    // Исходник - String или CharBuffer отображённого файла. Для String остаются
+    // встроенные методы: они заметно быстрее посимвольного сравнения
+    private static boolean startsWith(CharSequence source, String word, int offset) {
+        if (source instanceof String string) {
+            return string.startsWith(word, offset);
+        }
+        return regionMatches(source, offset, word, 0, word.length());
+    }
+
+    private static boolean regionMatches(CharSequence source, int offset, CharSequence other, int otherOffset,
+                                         int length) {
+        if (source instanceof String string && other instanceof String otherString) {
+            return string.regionMatches(offset, otherString, otherOffset, length);
+        }
+        if (offset < 0 || offset + length > source.length() || otherOffset + length > other.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (source.charAt(offset + i) != other.charAt(otherOffset + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(CharSequence source, char c, int from) {
+        if (source instanceof String string) {
+            return string.indexOf(c, from);
+        }
+        for (int i = from; i < source.length(); i++) {
+            if (source.charAt(i) == c) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int indexOf(CharSequence source, String word, int from) {
+        if (source instanceof String string) {
+            return string.indexOf(word, from);
+        }
+        for (int i = from; i + word.length() <= source.length(); i++) {
+            if (regionMatches(source, i, word, 0, word.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static final class Lexer {
+        private final CharSequence source;
+        private final int length;
+        private int position;
+        private int tokenStart;
+        private int tokenEnd;
+        private int hash;
+
+        private Lexer(CharSequence source) {
+            this.source = source;
+            this.length = source.length();
+        }
+
+        private int next() {
+            while (position < length) {
+                char c = source.charAt(position);
+
+                if (c == ' ' || c == '\t' || c == '\n' || c == '\r' || c == '\f') {
+                    position++;
+                    continue;
+                }
+
+                if (c == '/' && position + 1 < length) {
+                    char second = source.charAt(position + 1);
+                    if (second == '/') {
+                        int lineEnd = indexOf(source, '\n', position + 2);
+                        position = lineEnd < 0 ? length : lineEnd + 1;
+                        continue;
+                    }
+                    if (second == '*') {
+                        int commentEnd = indexOf(source, "*/", position + 2);
+                        position = commentEnd < 0 ? length : commentEnd + 2;
+                        continue;
+                    }
+                }
+
+                tokenStart = position;
+
+                if (isIdentifierStart(c)) {
+                    int h = c;
+                    position++;
+                    while (position < length) {
+                        char part = source.charAt(position);
+                        if (!isIdentifierPart(part)) {
+                            break;
+                        }
+                        h = 31 * h + part;
+                        position++;
+                    }
+                    hash = h;
+                    tokenEnd = position;
+                    return IDENTIFIER;
+                }
+
+                if (c == '"' || c == '\'') {
+                    position = skipQuoted(c);
+                    tokenEnd = position;
+                    return LITERAL;
+                }
+
+                if (c >= '0' && c <= '9') {
+                    // 1.5e10, 0x1F, 1_000L: точка и буквы входят в литерал
+                    position++;
+                    while (position < length) {
+                        char part = source.charAt(position);
+                        if (!isIdentifierPart(part) && part != '.') {
+                            break;
+                        }
+                        position++;
+                    }
+                    tokenEnd = position;
+                    return LITERAL;
+                }
+
+                if (Character.isWhitespace(c)) {
+                    position++;
+                    continue;
+                }
+
+                position++;
+                tokenEnd = position;
+                return SYMBOL;
+            }
+            return EOF;
+        }
+
+        private int skipQuoted(char quote) {
+            if (quote == '"' && startsWith(source, "\"\"\"", position)) {
+                // Текстовый блок: до закрывающих трёх кавычек
+                int i = position + 3;
+                while (i < length) {
+                    if (source.charAt(i) == '\\') {
+                        i += 2;
+                    } else if (startsWith(source, "\"\"\"", i)) {
+                        return i + 3;
+                    } else {
+                        i++;
+                    }
+                }
+                return length;
+            }
+
+            int i = position + 1;
+            while (i < length) {
+                char c = source.charAt(i);
+                if (c == '\\') {
+                    i += 2;
+                } else if (c == quote) {
+                    return i + 1;
+                } else if (c == '\n') {
+                    return i;
+                } else {
+                    i++;
+                }
+            }
+            return Math.min(i, length);
+        }
+
+        // Следующий значимый символ после текущего токена (пробелы пропускаются)
+        private char peekSignificant() {
+            for (int i = position; i < length; i++) {
+                char c = source.charAt(i);
+                if (!Character.isWhitespace(c)) {
+                    return c;
+                }
+            }
+            return 0;
+        }
+
+        private static boolean isIdentifierStart(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '_' || c == '$'
+                    || (c > 127 && Character.isJavaIdentifierStart(c));
+        }
+
+        private static boolean isIdentifierPart(char c) {
+            return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_' || c == '$'
+                    || (c > 127 && Character.isJavaIdentifierPart(c));
+        }
+    }
+
+    // Хэш-таблица с открытой адресацией, в которой ключ ищется по участку исходника
+    // без создания строки. Хэш совпадает со String.hashCode
+    private static final class IdentifierTable<V> {
+        private String[] keys = new String[64];
+        private Object[] values = new Object[64];
+        private int size;
+
+        @SuppressWarnings("unchecked")
+        private V get(CharSequence source, int start, int end, int hash) {
+            int mask = keys.length - 1;
+            int length = end - start;
+            for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == length && key.hashCode() == hash && regionMatches(source, start, key, 0, length)) {
+                    return (V) values[slot];
+                }
+            }
+            return null;
+        }
+
+        private void put(String key, int hash, V value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize();
+            }
+            int mask = keys.length - 1;
+            int slot = spread(hash) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+            size++;
+        }
+
+        // Заменяет значение ключа; строка ключа создаётся, только если его ещё нет
+        private void set(CharSequence source, int start, int end, int hash, V value) {
+            int mask = keys.length - 1;
+            int length = end - start;
+            for (int slot = spread(hash) & mask; keys[slot] != null; slot = (slot + 1) & mask) {
+                String key = keys[slot];
+                if (key.length() == length && key.hashCode() == hash && regionMatches(source, start, key, 0, length)) {
+                    values[slot] = value;
+                    return;
+                }
+            }
+            put(source.subSequence(start, end).toString(), hash, value);
+        }
+
+        private void clear() {
+            if (size > 0) {
+                Arrays.fill(keys, null);
+                Arrays.fill(values, null);
+                size = 0;
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private void resize() {
+            String[] oldKeys = keys;
+            Object[] oldValues = values;
+            keys = new String[oldKeys.length * 2];
+            values = new Object[oldKeys.length * 2];
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    put(oldKeys[i], oldKeys[i].hashCode(), (V) oldValues[i]);
+                }
+            }
+        }
+
+        private static int spread(int hash) {
+            return hash ^ (hash >>> 16);
+        }
+    }
+
+    // Множество промахов файла в виде участков исходника: строки не создаются,
+    // пока обращения не понадобятся. Слоты хранят номер участка + 1
+    private static final class MissTable {
+        private int[] slots = new int[1024];
+        private int[] starts = new int[512];
+        private int[] ends = new int[512];
+        private int[] hashes = new int[512];
+        private int size;
+
+        private void add(CharSequence source, int start, int end, int hash) {
+            int mask = slots.length - 1;
+            int length = end - start;
+            int slot = IdentifierTable.spread(hash) & mask;
+            for (; slots[slot] != 0; slot = (slot + 1) & mask) {
+                int i = slots[slot] - 1;
+                if (hashes[i] == hash && ends[i] - starts[i] == length
+                        && regionMatches(source, start, source, starts[i], length)) {
+                    return;
+                }
+            }
+
+            if (size == starts.length) {
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+                hashes = Arrays.copyOf(hashes, size * 2);
+            }
+            starts[size] = start;
+            ends[size] = end;
+            hashes[size] = hash;
+            slots[slot] = ++size;
+
+            if (size * 2 > slots.length) {
+                rehash();
+            }
+        }
+
+        private void rehash() {
+            slots = new int[slots.length * 2];
+            int mask = slots.length - 1;
+            for (int i = 0; i < size; i++) {
+                int slot = IdentifierTable.spread(hashes[i]) & mask;
+                while (slots[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                slots[slot] = i + 1;
+            }
+        }
+
+        private void clear() {
+            if (size > 0) {
+                Arrays.fill(slots, 0);
+                size = 0;
+            }
+        }
+    }
+}
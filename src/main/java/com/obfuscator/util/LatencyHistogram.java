@@ -0,0 +1,93 @@
+package com.obfuscator.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Гистограмма длительностей в наносекундах с логарифмическими корзинами: на каждую
+// степень двойки SUB_BUCKETS корзин, погрешность перцентиля не больше 1/SUB_BUCKETS.
+// Запись - одно атомарное увеличение счётчика корзины, без блокировок и выделения памяти
+public final class LatencyHistogram {
+
+    private static final int SUB_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int BUCKETS = (64 - SUB_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long nanos) {
+        if (nanos > max.get()) {
+            max.accumulateAndGet(nanos, Math::max);
+        }
+        buckets.incrementAndGet(bucket(nanos));
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    // Снимок счётчиков корзин: перцентили считаются по одному согласованному набору
+    public Snapshot snapshot() {
+        long[] counts = new long[BUCKETS];
+        long recorded = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            recorded += counts[i];
+        }
+        return new Snapshot(counts, recorded, max.get());
+    }
+
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.max = max;
+        }
+
+        public long count() {
+            return count;
+        }
+
+        public long max() {
+            return max;
+        }
+
+        // Верхняя граница корзины квантиля, не больше наибольшего замера
+        public long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(quantile * count);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBound(i), max);
+                }
+            }
+            return max;
+        }
+    }
+
+    private static int bucket(long nanos) {
+        if (nanos < SUB_BUCKETS) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound(int bucket) {
+        if (bucket < SUB_BUCKETS) {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+        long width = 1L << (exponent - SUB_BITS);
+        return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << (exponent - SUB_BITS)) + width - 1;
+    }
+}
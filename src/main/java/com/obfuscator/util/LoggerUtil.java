@@ -3,7 +3,8 @@ package com.obfuscator.util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.apache.logging.log4j.core.LoggerContext;
-import org.apache.logging.log4j.core.config.Configurator;
+import org.apache.logging.log4j.core.config.Configuration;
+import org.apache.logging.log4j.core.config.LoggerConfig;
 
 import java.io.IOException;
 import java.nio.file.Files;
@@ -14,6 +15,7 @@ public class LoggerUtil {
 
     private static final String LOG_DIR = "logs";
     private static final String LOG_FILE = "obfuscator.log";
+    private static final String CONSOLE_TARGET_PROPERTY = "log.console.target";
     private static boolean initialized = false;
 
     private LoggerUtil() {
@@ -33,8 +35,7 @@ public class LoggerUtil {
             System.setProperty("log.dir", LOG_DIR);
             System.setProperty("log.file", LOG_FILE);
 
-            LoggerContext context = (LoggerContext) LogManager.getContext(false);
-            context.reconfigure();
+            context().reconfigure();
 
             initialized = true;
             getLogger(LoggerUtil.class).info("Logging system initialized");
@@ -56,7 +57,33 @@ public class LoggerUtil {
     }
 
     public static void setLogLevel(String loggerName, org.apache.logging.log4j.Level level) {
-        Configurator.setLevel(loggerName, level);
+        LoggerContext context = context();
+        Configuration configuration = context.getConfiguration();
+        LoggerConfig loggerConfig = configuration.getLoggerConfig(loggerName);
+        if (loggerConfig.getName().equals(loggerName)) {
+            loggerConfig.setLevel(level);
+        } else {
+            LoggerConfig specificConfig = new LoggerConfig(loggerName, level, true);
+            specificConfig.setParent(loggerConfig);
+            configuration.addLogger(loggerName, specificConfig);
+        }
+        context.updateLoggers();
+    }
+
+    // Консольный лог - в stderr: stdout занят результатом (вывод CLI в "-").
+    // Вызывается до initialize, иначе конфигурация перечитывается заново
+    public static synchronized void redirectConsoleToStderr() {
+        System.setProperty(CONSOLE_TARGET_PROPERTY, "SYSTEM_ERR");
+        if (initialized) {
+            context().reconfigure();
+        }
+    }
+
+    // Контекст загрузчика классов приложения - тот же, что у LogManager.getLogger(Class).
+    // LogManager.getContext(false) определяет контекст по вызывающему классу и там, где
+    // JVM не даёт его узнать, возвращает отдельный контекст Default
+    private static LoggerContext context() {
+        return (LoggerContext) LogManager.getContext(LoggerUtil.class.getClassLoader(), false);
     }
 
     public static Path getLogFilePath() {
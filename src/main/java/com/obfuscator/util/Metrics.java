@@ -0,0 +1,172 @@
+package com.obfuscator.util;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Метрики обработки: время этапов в наносекундах с гистограммой, прочитанные
+// и записанные байты, файлы в секунду. Одна задача - один экземпляр, общий для
+// всех её потоков. Выключенные метрики - DISABLED: start не вызывает nanoTime,
+// stop сразу возвращается, поэтому замеры можно оставлять в горячем коде.
+//
+// Использование: long start = metrics.start(); ...; metrics.stop(Phase.PARSE, start)
+public final class Metrics {
+
+    public static final Metrics DISABLED = new Metrics(false);
+
+    public enum Phase {
+        INDEX("collectDeclarations"),
+        PARSE("parse"),
+        BIND("bindReferences"),
+        CLASSES("ClassObfuscatorVisitor"),
+        METHODS("MethodObfuscatorVisitor"),
+        VARIABLES("VariableObfuscatorVisitor"),
+        REFERENCES("updateReferences"),
+        IMPORTS("updateImports"),
+        PRINT("print"),
+        TOKEN_STREAM("tokenStream"),
+        READ("read"),
+        WRITE("write");
+
+        private final String label;
+
+        Phase(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    public record TimerSnapshot(long count, long totalNanos, long maxNanos,
+                                long p50Nanos, long p95Nanos, long p99Nanos) {
+        public long meanNanos() {
+            return count == 0 ? 0 : totalNanos / count;
+        }
+    }
+
+    // elapsedNanos - от начала первого замера до конца последнего
+    public record Snapshot(Map<Phase, TimerSnapshot> timers, long bytesRead, long bytesWritten,
+                           long files, long elapsedNanos) {
+        public TimerSnapshot timer(Phase phase) {
+            return timers.get(phase);
+        }
+
+        public double filesPerSecond() {
+            return elapsedNanos == 0 ? 0 : files * 1e9 / elapsedNanos;
+        }
+    }
+
+    private static final class Timer {
+        private final LongAdder total = new LongAdder();
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        void record(long nanos) {
+            total.add(nanos);
+            histogram.record(nanos);
+        }
+
+        TimerSnapshot snapshot() {
+            LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+            return new TimerSnapshot(snapshot.count(), total.sum(), snapshot.max(), snapshot.percentile(0.50),
+                    snapshot.percentile(0.95), snapshot.percentile(0.99));
+        }
+    }
+
+    private final boolean enabled;
+    private final Map<Phase, Timer> timers = new EnumMap<>(Phase.class);
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    private final LongAdder files = new LongAdder();
+    private final AtomicLong firstStart = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong lastStop = new AtomicLong(Long.MIN_VALUE);
+
+    public Metrics() {
+        this(true);
+    }
+
+    private Metrics(boolean enabled) {
+        this.enabled = enabled;
+        if (enabled) {
+            for (Phase phase : Phase.values()) {
+                timers.put(phase, new Timer());
+            }
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(Phase phase, long start) {
+        if (enabled) {
+            record(phase, start, System.nanoTime());
+        }
+    }
+
+    // Этап, измеренный вызывающим: start и stop - значения System.nanoTime()
+    public void record(Phase phase, long start, long stop) {
+        if (!enabled) {
+            return;
+        }
+        timers.get(phase).record(stop - start);
+        if (start < firstStart.get()) {
+            firstStart.accumulateAndGet(start, Math::min);
+        }
+        if (stop > lastStop.get()) {
+            lastStop.accumulateAndGet(stop, Math::max);
+        }
+    }
+
+    public void addBytesRead(long bytes) {
+        if (enabled) {
+            bytesRead.add(bytes);
+        }
+    }
+
+    // Записанный файл результата
+    public void addFileWritten(long bytes) {
+        if (enabled) {
+            bytesWritten.add(bytes);
+            files.increment();
+        }
+    }
+
+    public Snapshot snapshot() {
+        Map<Phase, TimerSnapshot> snapshots = new EnumMap<>(Phase.class);
+        timers.forEach((phase, timer) -> snapshots.put(phase, timer.snapshot()));
+        long first = firstStart.get();
+        long last = lastStop.get();
+        return new Snapshot(Collections.unmodifiableMap(snapshots), bytesRead.sum(), bytesWritten.sum(),
+                files.sum(), first < last ? last - first : 0);
+    }
+
+    public String dump() {
+        if (!enabled) {
+            return "Metrics: disabled";
+        }
+        Snapshot snapshot = snapshot();
+        StringBuilder out = new StringBuilder("Metrics:");
+        out.append(String.format("%n  %-26s %8s %10s %9s %9s %9s %9s %9s",
+                "Phase", "count", "total ms", "mean us", "p50 us", "p95 us", "p99 us", "max us"));
+        snapshot.timers().forEach((phase, timer) -> {
+            if (timer.count() > 0) {
+                out.append(String.format("%n  %-26s %8d %10.1f %9.1f %9.1f %9.1f %9.1f %9.1f",
+                        phase.label(), timer.count(), timer.totalNanos() / 1e6, timer.meanNanos() / 1e3,
+                        timer.p50Nanos() / 1e3, timer.p95Nanos() / 1e3, timer.p99Nanos() / 1e3,
+                        timer.maxNanos() / 1e3));
+            }
+        });
+        out.append(String.format("%n  Bytes read: %d, written: %d", snapshot.bytesRead(), snapshot.bytesWritten()));
+        out.append(String.format("%n  Files written: %d in %.1f ms (%.1f files/s)",
+                snapshot.files(), snapshot.elapsedNanos() / 1e6, snapshot.filesPerSecond()));
+        return out.toString();
+    }
+}
@@ -28,6 +28,22 @@ public class ValidationUtil {
         LoggerUtil.getLogger(ValidationUtil.class).debug("Input directory validated: {}", directory);
     }
 
+    public void validateInputArchive(Path archive) throws ObfuscationException {
+        if (archive == null) {
+            throw new ObfuscationException("Input archive cannot be null");
+        }
+
+        if (!Files.isRegularFile(archive)) {
+            throw new ObfuscationException("Input archive does not exist: " + archive);
+        }
+
+        if (!Files.isReadable(archive)) {
+            throw new ObfuscationException("No read permission for archive: " + archive);
+        }
+
+        LoggerUtil.getLogger(ValidationUtil.class).debug("Input archive validated: {}", archive);
+    }
+
     public void validateOutputDirectory(Path directory) throws ObfuscationException {
         if (directory == null) {
             throw new ObfuscationException("Output directory cannot be null");
@@ -0,0 +1,41 @@
+# Правила сохранения имён по умолчанию (синтаксис близок к ProGuard).
+# Правила из файла --keep-rules добавляются к этим.
+
+# Стандартные типы и коллекции
+-keep class String, Integer, Long, Double, Float, Boolean
+-keep class List, Map, Set, ArrayList, HashMap, HashSet
+
+# Тестовые классы и слишком короткие имена
+-keep class Test*, *Test, ?, ??
+
+-keepclassmembers class * {
+    # Точка входа и методы Object
+    main(...);
+    toString(...);
+    equals(...);
+    hashCode(...);
+    clone(...);
+    compareTo(...);
+    wait(...);
+    notify(...);
+    notifyAll(...);
+
+    # Аксессоры и короткие имена методов
+    get*(...);
+    set*(...);
+    is*(...);
+    ?(...);
+    ??(...);
+
+    # Поля и локальные переменные
+    args;
+    this;
+    super;
+    out;
+    err;
+    in;
+    class;
+    length;
+    size;
+    ?;
+}
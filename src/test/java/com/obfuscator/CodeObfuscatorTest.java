@@ -1,13 +1,40 @@
 package com.obfuscator;
 
+import com.github.javaparser.ParserConfiguration.LanguageLevel;
+import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.FieldDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
+import com.github.javaparser.ast.body.VariableDeclarator;
+import com.github.javaparser.ast.expr.FieldAccessExpr;
+import com.github.javaparser.ast.expr.NameExpr;
+import com.obfuscator.obfuscator.ClasspathIndex;
 import com.obfuscator.obfuscator.CodeObfuscator;
+import com.obfuscator.obfuscator.KeepRules;
+import com.obfuscator.obfuscator.NameGenerator;
 import com.obfuscator.obfuscator.ObfuscationException;
+import com.obfuscator.obfuscator.ParserFactory;
+import com.obfuscator.obfuscator.SymbolIndex;
+import com.obfuscator.obfuscator.SymbolResolver;
+import org.apache.logging.log4j.Logger;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -393,4 +420,645 @@ class CodeObfuscatorTest {
         assertTrue(obfuscated.contains("@Override"));
         assertTrue(obfuscated.contains("@SuppressWarnings"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldKeepNamesMatchedByKeepRules() {
+        obfuscator.setKeepRules(KeepRules.parse("""
+                -keep class com.example.api.*
+                -keepclassmembers class com.example.api.* {
+                    public void handle*(...);
+                    @Exposed *;
+                }
+                """));
+
+        String sourceCode = """
+                package com.example.api;
+
+                public class ReflectiveApi {
+                    @Exposed
+                    private int exposedCounter = 0;
+                    private int hiddenCounter = 0;
+
+                    public void handleRequest() {
+                        hiddenCounter++;
+                    }
+
+                    public void process() {
+                        exposedCounter++;
+                    }
+                }
+                """;
+
+        String obfuscated = obfuscator.obfuscateCode(sourceCode, "ReflectiveApi.java");
+
+        assertTrue(obfuscated.contains("class ReflectiveApi"));
+        assertTrue(obfuscated.contains("handleRequest()"));
+        assertTrue(obfuscated.contains("exposedCounter"));
+        assertFalse(obfuscated.contains("hiddenCounter"));
+        assertFalse(obfuscated.contains("process()"));
+        assertEquals("ReflectiveApi.java", obfuscator.getNewFileName("ReflectiveApi.java"));
+    }
+
+    @Test
+    void shouldStreamSameOutputAsString() throws IOException {
+        String sourceCode = """
+                public class Streamed {
+                    private String greeting = "Привет";
+
+                    public String greet(String person) {
+                        String message = greeting + ", " + person;
+                        return message;
+                    }
+                }
+                """;
+
+        String expected = new CodeObfuscator(new NameGenerator(42)).obfuscateCode(sourceCode, "Streamed.java");
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int renames = new CodeObfuscator(new NameGenerator(42))
+                .obfuscateCode(sourceCode, "Streamed.java", Channels.newChannel(bytes));
+        assertTrue(renames > 0);
+        assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+
+        StringWriter writer = new StringWriter();
+        new CodeObfuscator(new NameGenerator(42)).obfuscateCode(sourceCode, "Streamed.java", writer);
+        assertEquals(expected, writer.toString());
+    }
+
+    @Test
+    void shouldPrintLikeJavaParserPrinter() throws IOException {
+        StringBuilder source = new StringBuilder("""
+                package demo;
+
+                import java.util.List;
+                import java.util.function.Function;
+
+                /** Документация класса */
+                public class Printed {
+                    // комментарий поля
+                    private final String text = \"""
+                            первая строка
+                              вторая строка
+                            \""";
+
+                    record Pair<A, B>(A left, B right) {
+                    }
+
+                    int describe(int value) {
+                        Function<String, Integer> length = s -> s.length();
+                        switch (value) {
+                            case 0:
+                            case 1:
+                                return value + 1;
+                            default:
+                                return length.apply(String.valueOf(value));
+                        }
+                    }
+
+                    List<String> chain(List<String> items) {
+                        return items.stream()
+                                .map(item -> item.trim()) /* после map */
+                                .filter(item -> !item.isEmpty())
+                                .toList();
+                    }
+                """);
+        for (int i = 0; i < 200; i++) {
+            source.append("    int method").append(i).append("(int[] values) { return values.length + ")
+                    .append(i).append("; }\n");
+        }
+        // Несколько классов верхнего уровня: каждый уходит в канал отдельно
+        String sourceCode = source.append("""
+                }
+
+                // комментарий между классами
+                enum Mode {
+                    ON, OFF;
+
+                    interface Listener {
+                        void changed(Mode mode);
+                    }
+                }
+
+                @interface Marker {
+                    String value() default "";
+                }
+                """).toString();
+
+        for (boolean keepComments : new boolean[]{false, true}) {
+            ParserFactory parserFactory = new ParserFactory(LanguageLevel.JAVA_17, keepComments, false);
+            CodeObfuscator stringObfuscator = new CodeObfuscator(new NameGenerator(7));
+            stringObfuscator.setParserFactory(parserFactory);
+            String expected = stringObfuscator.obfuscateCode(sourceCode, "Printed.java");
+
+            // Печать JavaParser неподвижна на своём выводе: разбор и печать дают тот же текст
+            CompilationUnit reparsed = parserFactory.parser().parse(expected).getResult().orElseThrow();
+            assertEquals(reparsed.toString(), expected);
+            assertEquals(keepComments, expected.contains("после map"));
+
+            CodeObfuscator channelObfuscator = new CodeObfuscator(new NameGenerator(7));
+            channelObfuscator.setParserFactory(parserFactory);
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            channelObfuscator.obfuscateCode(sourceCode, "Printed.java", Channels.newChannel(bytes));
+            assertEquals(expected, bytes.toString(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void shouldReportNoRenamesForUnchangedFile() throws IOException {
+        String sourceCode = """
+                public class A {
+                    public String toString() {
+                        return "A";
+                    }
+                }
+                """;
+
+        int renames = obfuscator.obfuscateCode(sourceCode, "A.java", new StringWriter());
+
+        assertEquals(0, renames);
+        assertEquals(0, obfuscator.getFileRenameCount());
+    }
+
+    @Test
+    void shouldKeepFormattingOfGeneratedFiles() {
+        String sourceCode = """
+                package com.example.gen;
+
+                // Generated code - do not edit
+                @Generated("protoc")
+                public class GeneratedMessage   {
+                    /* keep   this   spacing */
+                    private   String   text = "GeneratedMessage";
+
+                    public static GeneratedMessage parse() { return new GeneratedMessage(); }
+                }
+                """;
+
+        assertTrue(obfuscator.usesTokenStream(sourceCode));
+
+        String obfuscated = obfuscator.obfuscateCode(sourceCode, "GeneratedMessage.java");
+        String newFileName = obfuscator.getNewFileName("GeneratedMessage.java");
+        String newClassName = newFileName.substring(0, newFileName.length() - ".java".length());
+
+        assertNotEquals("GeneratedMessage", newClassName);
+        assertEquals(sourceCode.replace("GeneratedMessage   {", newClassName + "   {")
+                .replace("static GeneratedMessage parse", "static " + newClassName + " parse")
+                .replace("new GeneratedMessage()", "new " + newClassName + "()"), obfuscated);
+    }
+
+    @Test
+    void shouldRenameTokenStreamCallsOnlyThroughProjectReceivers() {
+        String task = """
+                package com.example;
+
+                public class Task {
+                    public static int limit;
+
+                    public void run() {
+                    }
+
+                    public String name() {
+                        return "task";
+                    }
+
+                    public static Task create() {
+                        return new Task();
+                    }
+                }
+                """;
+        String generated = """
+                package com.example.gen;
+
+                import com.example.Task;
+
+                @Generated("tool")
+                public class Jobs {
+                    private Task task;
+
+                    void start(Thread t, Runnable r, Enum<?> x, Task other) {
+                        t.run();
+                        r.run();
+                        x.name();
+                        task.run();
+                        this.task.run();
+                        other.name();
+                        Task.create().run();
+                        run();
+                        int limit = Task.limit + com.example.Task.limit;
+                    }
+                }
+                """;
+
+        CodeObfuscator obfuscator = new CodeObfuscator(new NameGenerator(42L));
+        SymbolIndex.Builder builder = new SymbolIndex.Builder();
+        obfuscator.collectDeclarations(task, "Task.java", builder);
+        obfuscator.collectSource(task, "Task.java", Path.of("Task.java"), "task", builder);
+        SymbolIndex index = obfuscator.buildSymbolIndex(builder);
+        CodeObfuscator worker = obfuscator.createWorker(index);
+
+        assertTrue(worker.usesTokenStream(generated));
+        String obfuscated = worker.obfuscateCode(generated, "Jobs.java");
+
+        String taskName = index.getRename(SymbolIndex.Kind.CLASS, "Task");
+        String run = index.getRename(SymbolIndex.Kind.METHOD, "run");
+        String name = index.getRename(SymbolIndex.Kind.METHOD, "name");
+        String create = index.getRename(SymbolIndex.Kind.METHOD, "create");
+        String limit = index.getRename(SymbolIndex.Kind.FIELD, "limit");
+        assertTrue(obfuscated.contains("t.run();"), obfuscated);
+        assertTrue(obfuscated.contains("r.run();"), obfuscated);
+        assertTrue(obfuscated.contains("x.name();"), obfuscated);
+        assertTrue(obfuscated.contains("task." + run + "();"), obfuscated);
+        assertTrue(obfuscated.contains("this.task." + run + "();"), obfuscated);
+        assertTrue(obfuscated.contains("other." + name + "();"), obfuscated);
+        assertTrue(obfuscated.contains(taskName + "." + create + "().run();"), obfuscated);
+        assertTrue(obfuscated.contains("        " + run + "();"), obfuscated);
+        assertTrue(obfuscated.contains(taskName + "." + limit + " + com.example." + taskName + "." + limit),
+                obfuscated);
+    }
+
+    @Test
+    void shouldKeepLibraryNestedTypesNamedLikeProjectClasses() {
+        String entry = """
+                package com.example;
+
+                public class Entry {
+                }
+                """;
+        String scoped = """
+                package com.example.report;
+
+                import java.util.Map;
+
+                public class Totals {
+                    public int sum(Map<String, Integer> values, com.example.Entry first) {
+                        int total = 0;
+                        for (Map.Entry<String, Integer> e : values.entrySet()) {
+                            total += e.getValue();
+                        }
+                        return total;
+                    }
+                }
+                """;
+        String imported = """
+                package com.example.report;
+
+                import java.util.Map;
+                import java.util.Map.Entry;
+
+                public class Keys {
+                    public String first(Map<String, Integer> values) {
+                        Entry<String, Integer> e = values.entrySet().iterator().next();
+                        return e.getKey();
+                    }
+                }
+                """;
+
+        CodeObfuscator obfuscator = new CodeObfuscator(new NameGenerator(42L));
+        SymbolIndex.Builder builder = new SymbolIndex.Builder();
+        obfuscator.collectDeclarations(entry, "Entry.java", builder);
+        obfuscator.collectSource(entry, "Entry.java", Path.of("Entry.java"), "entry", builder);
+        SymbolIndex index = obfuscator.buildSymbolIndex(builder);
+        String entryName = index.getRename(SymbolIndex.Kind.CLASS, "Entry");
+
+        CodeObfuscator worker = obfuscator.createWorker(index);
+        String totals = worker.obfuscateCode(scoped, "Totals.java");
+        assertTrue(totals.contains("Map.Entry<String, Integer> e"), totals);
+        assertTrue(totals.contains("com.example." + entryName + " first"), totals);
+        String keys = worker.obfuscateCode(imported, "Keys.java");
+        assertTrue(keys.contains("import java.util.Map.Entry;"), keys);
+        assertTrue(keys.contains("Entry<String, Integer> e"), keys);
+
+        // Потоковый движок решает так же
+        CodeObfuscator tokenWorker = obfuscator.createWorker(index);
+        tokenWorker.setTokenStreamThreshold(1);
+        String tokenTotals = tokenWorker.obfuscateCode(scoped, "Totals.java");
+        assertTrue(tokenTotals.contains("Map.Entry<String, Integer> e"), tokenTotals);
+        assertTrue(tokenTotals.contains("com.example." + entryName + " first"), tokenTotals);
+        String tokenKeys = tokenWorker.obfuscateCode(imported, "Keys.java");
+        assertTrue(tokenKeys.contains("import java.util.Map.Entry;"), tokenKeys);
+        assertTrue(tokenKeys.contains("Entry<String, Integer> e"), tokenKeys);
+    }
+
+    @Test
+    void shouldResolveProjectSourcesFromManyWorkersAtOnce(@TempDir Path tempDir) throws Exception {
+        String task = """
+                package com.example;
+
+                public class Task {
+                    private int runs;
+
+                    public Task next() {
+                        return this;
+                    }
+
+                    public int run(int times) {
+                        runs += times;
+                        return runs;
+                    }
+                }
+                """;
+        StringBuilder client = new StringBuilder("""
+                package com.example;
+
+                import java.util.List;
+
+                public class Client {
+                    public int start(Task task, List<Task> tasks) {
+                        int total = 0;
+                """);
+        for (int i = 0; i < 40; i++) {
+            client.append("        total += task.next().run(").append(i).append(") + tasks.get(").append(i)
+                    .append(").run(total);\n");
+        }
+        client.append("        return total;\n    }\n}\n");
+
+        Path taskFile = tempDir.resolve("Task.java");
+        Files.writeString(taskFile, task);
+        CodeObfuscator obfuscator = new CodeObfuscator(new NameGenerator(42L));
+        SymbolIndex.Builder builder = new SymbolIndex.Builder();
+        obfuscator.collectDeclarations(task, "Task.java", builder);
+        obfuscator.collectSource(task, "Task.java", taskFile, "task", builder);
+        SymbolIndex index = obfuscator.buildSymbolIndex(builder);
+
+        CodeObfuscator first = obfuscator.createWorker(index);
+        String expected = withoutLocalNames(first.obfuscateCode(client, "Client.java"), first);
+        assertTrue(expected.contains("." + index.getRename(SymbolIndex.Kind.METHOD, "run") + "("), expected);
+
+        // Все воркеры сразу разрешают обращения через один и тот же тип проекта
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<CompletableFuture<List<String>>> results = new ArrayList<>();
+            for (int thread = 0; thread < 8; thread++) {
+                CodeObfuscator worker = obfuscator.createWorker(index);
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    List<String> outputs = new ArrayList<>();
+                    for (int run = 0; run < 10; run++) {
+                        outputs.add(withoutLocalNames(worker.obfuscateCode(client, "Client.java"), worker));
+                    }
+                    return outputs;
+                }, pool));
+            }
+            for (CompletableFuture<List<String>> result : results) {
+                for (String output : result.get()) {
+                    assertEquals(expected, output);
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    // Имена локальных переменных выдаёт общий генератор, у каждого прогона они свои
+    private static String withoutLocalNames(String output, CodeObfuscator worker) {
+        for (String name : worker.getFileLocalNames()) {
+            output = output.replace(name, "local");
+        }
+        return output;
+    }
+
+    @Test
+    void shouldIgnoreGeneratedMarkerInCommentsAndStrings() {
+        assertFalse(obfuscator.usesTokenStream("""
+                // Replaces the old @Generated("protoc") message
+                /* @javax.annotation.Generated */
+                public class Message {
+                    private String marker = "@Generated";
+                    private char at = '@'; private String name = "Generated";
+                }
+                """));
+        assertFalse(obfuscator.usesTokenStream("@Generated.Marker public class Message {}"));
+        assertTrue(obfuscator.usesTokenStream("@javax.annotation.processing.Generated(\"x\") public class Message {}"));
+        assertTrue(obfuscator.usesTokenStream("@ Generated public class Message {}"));
+    }
+
+    @Test
+    void shouldUseTokenStreamForLargeFiles() {
+        obfuscator.setTokenStreamThreshold(100);
+        String small = "public class Small {}";
+        String large = "public class Large {\n" + "    // padding\n".repeat(20) + "}\n";
+
+        assertFalse(obfuscator.usesTokenStream(small));
+        assertTrue(obfuscator.usesTokenStream(large));
+        assertTrue(obfuscator.obfuscateCode(large, "Large.java").contains("    // padding\n"));
+    }
+
+    @Test
+    void shouldDropCommentsUnlessParserKeepsThem() {
+        String sourceCode = """
+                public class Commented {
+                    // secret detail
+                    private int value = 1;
+                }
+                """;
+
+        assertFalse(obfuscator.obfuscateCode(sourceCode, "Commented.java").contains("secret detail"));
+
+        obfuscator.setParserFactory(new ParserFactory(LanguageLevel.JAVA_17, true, false));
+        assertTrue(obfuscator.obfuscateCode(sourceCode, "Commented.java").contains("secret detail"));
+    }
+
+    @Test
+    void shouldKeepLibraryMembersThatShareProjectNames() {
+        String sourceCode = """
+                import java.util.ArrayList;
+                import java.util.List;
+
+                public class Inventory {
+                    private final List<String> items = new ArrayList<>();
+                    private int length;
+
+                    public int size() {
+                        return items.size();
+                    }
+
+                    public int max(int left, int right) {
+                        return Math.max(left, right) + length;
+                    }
+
+                    public int count(String[] names) {
+                        return names.length + size();
+                    }
+                }
+                """;
+
+        String obfuscated = obfuscator.obfuscateCode(sourceCode, "Inventory.java");
+
+        assertTrue(obfuscated.contains(".size()"));
+        assertTrue(obfuscated.contains("Math.max("));
+        assertTrue(obfuscated.contains(".length"));
+        assertFalse(obfuscated.contains(" size()"));
+        assertFalse(obfuscated.contains(" max("));
+        assertTrue(obfuscator.getStatistics().contains("Symbol Resolution"));
+    }
+
+    @Test
+    void shouldCountSymbolResolutionPerObfuscator() {
+        String sourceCode = """
+                import java.util.List;
+
+                public class Catalog {
+                    private List<String> titles;
+
+                    public int count() {
+                        return titles.size() + count(titles);
+                    }
+
+                    private int count(List<String> values) {
+                        return values.size();
+                    }
+                }
+                """;
+
+        CodeObfuscator first = new CodeObfuscator(new NameGenerator(1L));
+        first.obfuscateCode(sourceCode, "Catalog.java");
+        CodeObfuscator second = new CodeObfuscator(new NameGenerator(1L));
+        second.obfuscateCode(sourceCode, "Catalog.java");
+
+        // Кэши общие, но второй обфускатор не видит счётчиков первого
+        assertTrue(first.getSymbolResolver().getResolvedCount() > 0);
+        assertEquals(first.getSymbolResolver().getResolvedCount(), second.getSymbolResolver().getResolvedCount());
+        assertEquals(first.getSymbolResolver().getBoundByScopeCount(),
+                second.getSymbolResolver().getBoundByScopeCount());
+    }
+
+    @Test
+    void shouldBindLocalsToTheirOwnDeclarations() {
+        String sourceCode = """
+                public class Counters {
+                    private int count = 10;
+
+                    public int first() {
+                        int count = 1;
+                        return count;
+                    }
+
+                    public int second() {
+                        int count = 2;
+                        return count + this.count;
+                    }
+
+                    public int third(int count) {
+                        return count;
+                    }
+                }
+                """;
+
+        CompilationUnit obfuscated = StaticJavaParser.parse(obfuscator.obfuscateCode(sourceCode, "Counters.java"));
+
+        String field = obfuscated.findFirst(FieldDeclaration.class).orElseThrow().getVariable(0).getNameAsString();
+        for (MethodDeclaration method : obfuscated.findAll(MethodDeclaration.class)) {
+            NameExpr returned = method.findFirst(NameExpr.class).orElseThrow();
+            String expected = method.findFirst(VariableDeclarator.class)
+                    .map(VariableDeclarator::getNameAsString)
+                    .orElse("count");
+            assertEquals(expected, returned.getNameAsString());
+            assertNotEquals(field, returned.getNameAsString());
+            method.findFirst(FieldAccessExpr.class)
+                    .ifPresent(access -> assertEquals(field, access.getNameAsString()));
+        }
+    }
+
+    @Test
+    void shouldKeepMembersOfClasspathLibraries() throws Exception {
+        String sourceCode = """
+                import org.apache.logging.log4j.LogManager;
+                import org.apache.logging.log4j.Logger;
+
+                public class Service {
+                    private static final Logger log = LogManager.getLogger(Service.class);
+
+                    public void info(String message) {
+                        log.info(message);
+                    }
+
+                    public void run() {
+                        info("started");
+                    }
+                }
+                """;
+        Path log4j = Path.of(Logger.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+        Path indexDir = tempDir.resolve("index");
+
+        ClasspathIndex index = ClasspathIndex.open(List.of(log4j), indexDir);
+        obfuscator.setSymbolResolver(new SymbolResolver(index));
+        String obfuscated = obfuscator.obfuscateCode(sourceCode, "Service.java");
+
+        assertEquals(1, index.getBuiltCount());
+        assertNotNull(index.findClass("org.apache.logging.log4j.Logger"));
+        assertTrue(obfuscated.contains(".info(message)"));
+        assertFalse(obfuscated.contains(" info("));
+        // Повторное открытие только отображает готовый индекс
+        assertEquals(0, ClasspathIndex.open(List.of(log4j), indexDir).getBuiltCount());
+    }
+
+    @Test
+    void shouldKeyClasspathIndexByBinaryNameAndRehashOnlyChangedJars() throws IOException {
+        Path jar = tempDir.resolve("names.jar");
+        writeJar(jar, "p/Outer$Inner.class", "nested", "p/Outer/Inner.class", "package");
+        Path indexDir = tempDir.resolve("binary-index");
+
+        ClasspathIndex index = ClasspathIndex.open(List.of(jar), indexDir);
+        assertEquals(2, index.getClassCount());
+        assertEquals(1, index.getHashedCount());
+        // Вложенный класс и класс пакета p.Outer не склеиваются
+        assertEquals("nested", StandardCharsets.UTF_8.decode(index.findClass("p.Outer$Inner")).toString());
+        assertEquals("package", StandardCharsets.UTF_8.decode(index.findClass("p.Outer.Inner")).toString());
+
+        // Неизменённый JAR не читается заново ради хэша
+        ClasspathIndex reopened = ClasspathIndex.open(List.of(jar), indexDir);
+        assertEquals(0, reopened.getHashedCount());
+        assertEquals(0, reopened.getBuiltCount());
+        assertEquals(index.getFingerprint(), reopened.getFingerprint());
+
+        // Каноническое имя вложенного класса находится через замену точек на '$'
+        writeJar(jar, "p/Outer$Inner.class", "changed", "p/Outer$Deep$Leaf.class", "leaf");
+        ClasspathIndex changed = ClasspathIndex.open(List.of(jar), indexDir);
+        assertEquals(1, changed.getHashedCount());
+        assertEquals(1, changed.getBuiltCount());
+        assertNotEquals(index.getFingerprint(), changed.getFingerprint());
+        assertEquals("changed", StandardCharsets.UTF_8.decode(changed.findClass("p.Outer.Inner")).toString());
+        assertEquals("leaf", StandardCharsets.UTF_8.decode(changed.findClass("p.Outer.Deep.Leaf")).toString());
+        assertNull(changed.findClass("p.Outer.Missing"));
+    }
+
+    private static void writeJar(Path jar, String... entries) throws IOException {
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(jar))) {
+            for (int i = 0; i < entries.length; i += 2) {
+                zip.putNextEntry(new ZipEntry(entries[i]));
+                zip.write(entries[i + 1].getBytes(StandardCharsets.UTF_8));
+                zip.closeEntry();
+            }
+        }
+    }
+
+    @Test
+    void shouldGiveEachThreadItsOwnParser() throws Exception {
+        ParserFactory factory = ParserFactory.defaults();
+
+        assertSame(factory.parser(), factory.parser());
+        assertNotSame(factory.parser(), CompletableFuture.supplyAsync(factory::parser).get());
+    }
+
+    @Test
+    void shouldParseArrowSwitchWithoutStoredTokens() {
+        String sourceCode = """
+                public class Arrows {
+                    int describe(int value) {
+                        return switch (value) {
+                            case 0, 1 -> value + 1;
+                            default -> {
+                                int doubled = value * 2;
+                                yield doubled;
+                            }
+                        };
+                    }
+                }
+                """;
+
+        assertTrue(ParserFactory.defaults().parse(sourceCode).isSuccessful());
+
+        String obfuscated = obfuscator.obfuscateCode(sourceCode, "Arrows.java");
+        assertTrue(obfuscated.contains("case 0, 1 ->"));
+        assertFalse(obfuscated.contains("doubled"));
+    }
+}
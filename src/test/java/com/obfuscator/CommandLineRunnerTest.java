@@ -0,0 +1,165 @@
+package com.obfuscator;
+
+import com.obfuscator.cli.CommandLineRunner;
+import com.obfuscator.fileprocessor.FileProcessedEvent;
+import com.obfuscator.obfuscator.ObfuscateCodeEvent;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommandLineRunnerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+    private CommandLineRunner runner;
+
+    @BeforeEach
+    void setUp() {
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        runner = new CommandLineRunner(new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void shouldProcessDirectoryAndPrintStatistics() throws IOException {
+        Path srcDir = tempDir.resolve("src");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Hello.java"), "public class Hello { void greet() {} }");
+
+        int exitCode = runner.run(new String[]{srcDir.toString(), tempDir.resolve("out").toString(),
+                "--threads", "2", "--seed", "7", "--stats"});
+
+        assertEquals(CommandLineRunner.EXIT_OK, exitCode);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("Processed 1 files"));
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("Elapsed:"));
+        try (var outputs = Files.list(tempDir.resolve("out"))) {
+            assertEquals(1, outputs.count());
+        }
+    }
+
+    @Test
+    void shouldWriteSingleFileToStdout() throws IOException {
+        Path source = tempDir.resolve("Hello.java");
+        Files.writeString(source, "public class Hello { void greet() {} }");
+
+        int exitCode = runner.run(new String[]{source.toString(), "-", "--seed", "7"});
+
+        assertEquals(CommandLineRunner.EXIT_OK, exitCode);
+        String code = out.toString(StandardCharsets.UTF_8);
+        assertTrue(code.startsWith("// "));
+        assertTrue(code.contains("void "));
+        assertFalse(code.contains("Hello"));
+        // Отчёт не смешивается с кодом
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Processed file:"));
+        try (var files = Files.list(tempDir)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    void shouldReturnUsageErrorForBadArguments() {
+        assertEquals(CommandLineRunner.EXIT_USAGE, runner.run(new String[]{"only-input"}));
+        assertEquals(CommandLineRunner.EXIT_USAGE, runner.run(new String[]{"a", "b", "--threads", "many"}));
+        assertEquals(CommandLineRunner.EXIT_USAGE, runner.run(new String[]{"a", "b", "--unknown"}));
+        assertEquals(CommandLineRunner.EXIT_USAGE,
+                runner.run(new String[]{tempDir.resolve("missing").toString(), tempDir.toString()}));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains(CommandLineRunner.USAGE));
+
+        assertEquals(CommandLineRunner.EXIT_OK, runner.run(new String[]{"--help"}));
+    }
+
+    @Test
+    void shouldReturnFailureCodeWhenFilesFail() throws IOException {
+        Path srcDir = tempDir.resolve("broken");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Good.java"), "public class Good {}");
+        Files.writeString(srcDir.resolve("Broken.java"), "public class Broken { void oops( }");
+
+        int exitCode = runner.run(new String[]{srcDir.toString(), tempDir.resolve("out").toString()});
+
+        assertEquals(CommandLineRunner.EXIT_FILES_FAILED, exitCode);
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Failed 1 files"));
+    }
+
+    @Test
+    void shouldSelectFilesWithGlobs() throws IOException {
+        Path srcDir = tempDir.resolve("globs");
+        Files.createDirectories(srcDir.resolve("gen"));
+        Files.writeString(srcDir.resolve("Good.java"), "public class Good {}");
+        Files.writeString(srcDir.resolve("GoodTest.java"), "public class GoodTest {}");
+        Files.writeString(srcDir.resolve("gen/Model.java"), "public class Model {}");
+
+        int exitCode = runner.run(new String[]{srcDir.toString(), tempDir.resolve("out").toString(),
+                "--exclude", "*Test.java", "--exclude", "gen/"});
+
+        assertEquals(CommandLineRunner.EXIT_OK, exitCode);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("Processed 1 files"));
+    }
+
+    @Test
+    void shouldRecordFlightRecorderEventsPerFile() throws IOException {
+        Path srcDir = tempDir.resolve("jfr");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Hello.java"), "public class Hello { void greet() { int count = 1; } }");
+        Path jfrFile = tempDir.resolve("run.jfr");
+
+        int exitCode = runner.run(new String[]{srcDir.toString(), tempDir.resolve("out").toString(),
+                "--jfr", jfrFile.toString(), "--jfr-threshold", "0"});
+
+        assertEquals(CommandLineRunner.EXIT_OK, exitCode);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains("Flight recording: " + jfrFile));
+        List<RecordedEvent> events = RecordingFile.readAllEvents(jfrFile);
+        RecordedEvent fileEvent = events.stream()
+                .filter(event -> event.getEventType().getName().equals(FileProcessedEvent.NAME))
+                .findFirst().orElseThrow();
+        assertTrue(fileEvent.getString("path").endsWith("Hello.java"));
+        assertTrue(fileEvent.getLong("inputSize") > 0);
+        assertTrue(fileEvent.getLong("outputSize") > 0);
+        RecordedEvent codeEvent = events.stream()
+                .filter(event -> event.getEventType().getName().equals(ObfuscateCodeEvent.NAME))
+                .findFirst().orElseThrow();
+        assertEquals("Hello.java", codeEvent.getString("file"));
+        assertEquals(1, codeEvent.getInt("classesRenamed"));
+        assertEquals(1, codeEvent.getInt("methodsRenamed"));
+        assertTrue(codeEvent.getDuration("parse").toNanos() > 0);
+    }
+
+    @Test
+    void shouldNotLoadJavaFxInBatchMode() throws IOException, InterruptedException {
+        Path srcDir = tempDir.resolve("headless");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Hello.java"), "public class Hello {}");
+
+        Path java = Paths.get(System.getProperty("java.home"), "bin", "java");
+        Process process = new ProcessBuilder(java.toString(), "-verbose:class",
+                "-cp", System.getProperty("java.class.path"), Launcher.class.getName(),
+                srcDir.toString(), tempDir.resolve("headless-out").toString())
+                .redirectErrorStream(true)
+                .start();
+        List<String> lines = new String(process.getInputStream().readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+        assertTrue(process.waitFor(60, TimeUnit.SECONDS));
+
+        assertEquals(CommandLineRunner.EXIT_OK, process.exitValue());
+        assertTrue(lines.stream().anyMatch(line -> line.contains("com.obfuscator.cli.CommandLineRunner")));
+        assertTrue(lines.stream().noneMatch(line -> line.contains("javafx.")),
+                "JavaFX classes were loaded in batch mode");
+    }
+}
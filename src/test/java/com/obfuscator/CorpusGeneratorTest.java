@@ -0,0 +1,66 @@
+package com.obfuscator;
+
+import com.obfuscator.corpus.CorpusGenerator;
+import com.obfuscator.corpus.CorpusShape;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CorpusGeneratorTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldGenerateSameProjectForSameSeed() throws IOException {
+        CorpusShape shape = CorpusShape.monorepo(50);
+        List<Path> first = new CorpusGenerator(7, shape).writeTo(tempDir.resolve("first"));
+        List<Path> second = new CorpusGenerator(7, shape).writeTo(tempDir.resolve("second"));
+
+        assertEquals(50, first.size());
+        for (int i = 0; i < first.size(); i++) {
+            assertEquals(tempDir.resolve("first").relativize(first.get(i)), tempDir.resolve("second").relativize(second.get(i)));
+            assertEquals(Files.readString(first.get(i)), Files.readString(second.get(i)));
+        }
+        assertNotEquals(new CorpusGenerator(7, shape).source(3), new CorpusGenerator(8, shape).source(3));
+    }
+
+    @Test
+    void shouldFollowShape() {
+        CorpusShape shape = new CorpusShape(100, 3, 2, 4, 0.5);
+        String source = new CorpusGenerator(1, shape).source(42);
+
+        assertTrue(source.startsWith("package com.synthetic.p"));
+        assertEquals(3, source.lines().findFirst().orElseThrow().split("\\.").length - 2);
+        assertTrue(source.contains("public class Type42 {"));
+        assertTrue(source.contains("class Type42Part1 {"));
+        assertTrue(source.contains("compute3(int input)"));
+        assertEquals(4, source.split("value \\+= new Type").length - 1);
+
+        String isolated = new CorpusGenerator(1, shape.withCrossReferenceDensity(0)).source(42);
+        assertFalse(isolated.contains("new Type"));
+        assertFalse(isolated.contains("import "));
+    }
+
+    @Test
+    void shouldProduceProjectThatObfuscatesWithoutFailures() throws IOException {
+        Path srcDir = tempDir.resolve("corpus");
+        new CorpusGenerator(3, CorpusShape.monorepo(40)).writeTo(srcDir);
+
+        List<Path> outputs = new ObfuscationService(4, 3L).processDirectory(srcDir, tempDir.resolve("output"));
+
+        assertEquals(40, outputs.size());
+        for (Path output : outputs) {
+            String obfuscated = Files.readString(output);
+            assertFalse(obfuscated.contains("public class Type"), "Unrenamed class in " + output);
+            assertFalse(obfuscated.contains("new Type"), "Unrenamed reference in " + output);
+            assertFalse(obfuscated.contains("compute"), "Unrenamed method in " + output);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.obfuscator;
+
+import com.obfuscator.corpus.CorpusGenerator;
+import com.obfuscator.corpus.CorpusShape;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("benchmark")
+class CorpusScalingBenchmarkTest {
+
+    private static final int[] FILE_COUNTS = {1_000, 3_000, 10_000};
+    private static final int THREADS = Runtime.getRuntime().availableProcessors();
+
+    @TempDir
+    Path tempDir;
+
+    @BeforeAll
+    static void quietLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.DEBUG);
+    }
+
+    @Test
+    void shouldScaleNearLinearlyWithProjectSize() throws IOException {
+        measure(FILE_COUNTS[0], "warmup");
+
+        double[] perFile = new double[FILE_COUNTS.length];
+        for (int i = 0; i < FILE_COUNTS.length; i++) {
+            long elapsed = measure(FILE_COUNTS[i], "run" + i);
+            perFile[i] = elapsed / 1e3 / FILE_COUNTS[i];
+            System.out.printf("files=%6d  threads=%2d  time=%9.1f ms  per file=%8.1f us%n",
+                    FILE_COUNTS[i], THREADS, elapsed / 1e6, perFile[i]);
+        }
+
+        // Стоимость файла не должна заметно расти с размером проекта
+        double ratio = perFile[FILE_COUNTS.length - 1] / perFile[0];
+        assertTrue(ratio < 3, "Expected near-linear scaling, per-file cost grew x" + ratio);
+    }
+
+    private long measure(int files, String name) throws IOException {
+        Path srcDir = tempDir.resolve(name + "-src");
+        new CorpusGenerator(42, CorpusShape.monorepo(files)).writeTo(srcDir);
+
+        ObfuscationService service = new ObfuscationService(THREADS, 42L);
+        long start = System.nanoTime();
+        List<Path> outputs = service.processDirectory(srcDir, tempDir.resolve(name + "-out"));
+        long elapsed = System.nanoTime() - start;
+
+        assertEquals(files, outputs.size());
+        return elapsed;
+    }
+}
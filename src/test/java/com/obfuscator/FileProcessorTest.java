@@ -1,16 +1,36 @@
 package com.obfuscator;
 
 import com.obfuscator.fileprocessor.FileProcessor;
+import com.obfuscator.fileprocessor.FileReport;
+import com.obfuscator.fileprocessor.MemorySink;
+import com.obfuscator.fileprocessor.ObfuscationCache;
 import com.obfuscator.obfuscator.CodeObfuscator;
+import com.obfuscator.obfuscator.NameGenerator;
 import com.obfuscator.obfuscator.ObfuscationException;
+import com.obfuscator.util.Metrics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.io.TempDir;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
@@ -201,4 +221,730 @@ class FileProcessorTest {
         assertTrue(processedFiles.size() >= 1);
         assertTrue(Files.exists(outputDir));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldProcessDirectoryInParallel() throws IOException {
+        Path srcDir = tempDir.resolve("parallel");
+        for (int i = 0; i < 40; i++) {
+            Path packageDir = srcDir.resolve("pkg" + (i % 4));
+            Files.createDirectories(packageDir);
+            Files.writeString(packageDir.resolve("Worker" + i + ".java"), """
+                public class Worker%d {
+                    private int counter = 0;
+
+                    public void increment() {
+                        counter++;
+                    }
+                }
+                """.formatted(i));
+        }
+        Files.writeString(srcDir.resolve("Broken.java"), "public class Broken {");
+
+        FileProcessor parallelProcessor = new FileProcessor(codeObfuscator, 4);
+        Path outputDir = tempDir.resolve("parallel-output");
+        List<Path> processedFiles = parallelProcessor.processDirectory(srcDir, outputDir);
+
+        assertEquals(40, processedFiles.size());
+        assertEquals(40, processedFiles.stream().map(Path::getFileName).distinct().count());
+        for (Path file : processedFiles) {
+            assertTrue(Files.exists(file));
+        }
+
+        String statistics = parallelProcessor.getStatistics();
+        assertTrue(statistics.contains("Files processed: 40"));
+        assertTrue(statistics.contains("Files failed: 1"));
+    }
+
+    @Test
+    void shouldRenameCrossFileReferencesConsistently() throws IOException {
+        Path srcDir = tempDir.resolve("crossfile");
+        Files.createDirectories(srcDir.resolve("model"));
+        Files.createDirectories(srcDir.resolve("service"));
+
+        Files.writeString(srcDir.resolve("model/Account.java"), """
+            package model;
+
+            public class Account {
+                public int balance = 0;
+
+                public void deposit(int amount) {
+                    balance += amount;
+                }
+            }
+            """);
+        Files.writeString(srcDir.resolve("service/Billing.java"), """
+            package service;
+
+            import model.Account;
+
+            public class Billing {
+                public void charge(Account account) {
+                    account.deposit(10);
+                    System.out.println(account.balance);
+                }
+            }
+            """);
+
+        Path outputDir = tempDir.resolve("crossfile-output");
+        List<Path> processedFiles = new FileProcessor(codeObfuscator, 2).processDirectory(srcDir, outputDir);
+        assertEquals(2, processedFiles.size());
+
+        Path accountFile = processedFiles.stream()
+                .filter(file -> file.getParent().endsWith("model")).findFirst().orElseThrow();
+        Path billingFile = processedFiles.stream()
+                .filter(file -> file.getParent().endsWith("service")).findFirst().orElseThrow();
+        String account = Files.readString(accountFile);
+        String billing = Files.readString(billingFile);
+
+        String newClassName = accountFile.getFileName().toString().replace(".java", "");
+        String newMethodName = account.replaceAll("(?s).*public void (\\w+)\\(int.*", "$1");
+        String newFieldName = account.replaceAll("(?s).*public int (\\w+) = 0.*", "$1");
+
+        assertFalse(billing.contains("Account"));
+        assertFalse(billing.contains("deposit"));
+        assertFalse(billing.contains("balance"));
+        assertTrue(billing.contains("import model." + newClassName + ";"));
+        assertTrue(billing.contains("." + newMethodName + "(10)"));
+        assertTrue(billing.contains("." + newFieldName + ")"));
+    }
+
+    @Test
+    void shouldKeepLibraryCallsOnReceiversFromOtherFiles() throws IOException {
+        Path srcDir = tempDir.resolve("receivers");
+        Files.createDirectories(srcDir.resolve("shop"));
+        Files.writeString(srcDir.resolve("shop/Repo.java"), """
+            package shop;
+
+            import java.util.List;
+
+            public class Repo {
+                public List<String> items() {
+                    return List.of("a");
+                }
+            }
+            """);
+        Files.writeString(srcDir.resolve("shop/Basket.java"), """
+            package shop;
+
+            public class Basket {
+                public int size() {
+                    return 0;
+                }
+            }
+            """);
+        Files.writeString(srcDir.resolve("shop/Client.java"), """
+            package shop;
+
+            public class Client {
+                public int count(Repo repo, Basket basket) {
+                    return repo.items().size() + basket.size();
+                }
+            }
+            """);
+        fileProcessor.setCache(new ObfuscationCache(tempDir.resolve("receivers-cache")));
+
+        Map<Path, String> outputs = readOutputs(fileProcessor, srcDir, tempDir.resolve("receivers-out"));
+        String repo = outputs.values().stream().filter(code -> code.contains("List.of")).findFirst().orElseThrow();
+        String basket = outputs.values().stream().filter(code -> code.contains("return 0;")).findFirst().orElseThrow();
+        String client = outputs.values().stream().filter(code -> code.contains(" + ")).findFirst().orElseThrow();
+        String newItemsName = repo.replaceAll("(?s).*List<String> (\\w+)\\(\\).*", "$1");
+        String newSizeName = basket.replaceAll("(?s).*public int (\\w+)\\(\\).*", "$1");
+
+        assertNotEquals("size", newSizeName);
+        assertTrue(client.contains("." + newItemsName + "().size() + "));
+        assertTrue(client.contains("." + newSizeName + "();"));
+
+        // Вывод Client зависит от типа, который возвращает Repo: запись кэша устаревает вместе с Repo.java
+        Files.writeString(srcDir.resolve("shop/Repo.java"), """
+            package shop;
+
+            public class Repo {
+                public Basket items() {
+                    return new Basket();
+                }
+            }
+            """);
+        outputs = readOutputs(fileProcessor, srcDir, tempDir.resolve("receivers-changed"));
+        client = outputs.values().stream().filter(code -> code.contains(" + ")).findFirst().orElseThrow();
+        assertFalse(client.contains(".size()"));
+    }
+
+    @Test
+    void shouldReuseCachedOutputOnWarmRun() throws IOException {
+        Path srcDir = tempDir.resolve("cached");
+        Files.createDirectories(srcDir.resolve("vendor/copy"));
+        String helperSource = """
+            public class Helper {
+                public int compute(int value) {
+                    int doubled = value * 2;
+                    return doubled;
+                }
+            }
+            """;
+        Files.writeString(srcDir.resolve("Helper.java"), helperSource);
+        Files.writeString(srcDir.resolve("vendor/copy/Helper.java"), helperSource);
+        Files.writeString(srcDir.resolve("Client.java"), """
+            public class Client {
+                public int run() {
+                    return new Helper().compute(21);
+                }
+            }
+            """);
+
+        ObfuscationCache cache = new ObfuscationCache(tempDir.resolve("cache"));
+        fileProcessor.setCache(cache);
+
+        Path coldDir = tempDir.resolve("cold");
+        List<Path> coldRun = fileProcessor.processDirectory(srcDir, coldDir);
+        assertEquals(3, coldRun.size());
+        assertTrue(cache.getStatistics().contains("Stored: 2"));
+
+        Path helperOutput = findOutput(coldRun, coldDir, " * 2;");
+        Path clientOutput = findOutput(coldRun, coldDir, "(21)");
+        Path copyOutput = coldDir.resolve("vendor/copy").resolve(helperOutput.getFileName());
+        assertEquals(Files.readString(helperOutput), Files.readString(copyOutput));
+
+        cache.resetStatistics();
+        Path warmDir = tempDir.resolve("warm");
+        fileProcessor.processDirectory(srcDir, warmDir);
+        assertTrue(cache.getStatistics().contains("Hits: 2"));
+        assertTrue(cache.getStatistics().contains("Stored: 0"));
+        for (Path coldOutput : List.of(helperOutput, clientOutput, copyOutput)) {
+            Path warmOutput = warmDir.resolve(coldDir.relativize(coldOutput));
+            assertEquals(Files.readString(coldOutput), Files.readString(warmOutput));
+        }
+
+        Files.writeString(srcDir.resolve("Client.java"), """
+            public class Client {
+                public int run() {
+                    return new Helper().compute(42);
+                }
+            }
+            """);
+        cache.resetStatistics();
+        Path changedDir = tempDir.resolve("changed");
+        List<Path> changedRun = fileProcessor.processDirectory(srcDir, changedDir);
+        assertTrue(cache.getStatistics().contains("Stored: 1"));
+
+        String helper = Files.readString(changedDir.resolve(coldDir.relativize(helperOutput)));
+        String newMethodName = helper.replaceAll("(?s).*public int (\\w+)\\(int.*", "$1");
+        assertEquals(Files.readString(helperOutput), helper);
+        assertTrue(Files.readString(findOutput(changedRun, changedDir, "(42)")).contains("." + newMethodName + "(42)"));
+    }
+
+    @Test
+    void shouldDeleteCacheTempFilesWhenStoreFails() throws IOException {
+        Path cacheDir = tempDir.resolve("failing-cache");
+        ObfuscationCache cache = new ObfuscationCache(cacheDir);
+        String key = ObfuscationCache.computeKey(new byte[]{1}, "A.java", "settings");
+        Path bucket = cacheDir.resolve(key.substring(0, 2));
+
+        // Непустой каталог на месте .out: перенос временного файла не удастся
+        Files.createDirectories(bucket.resolve(key + ".out").resolve("blocker"));
+        cache.store(key, "A.java", ByteBuffer.wrap(new byte[]{1}),
+                List.of(), List.of(), List.of(), List.of());
+        assertNull(cache.load(key));
+
+        // То же для .meta: вывод записан, метаданные - нет
+        Files.delete(bucket.resolve(key + ".out").resolve("blocker"));
+        Files.delete(bucket.resolve(key + ".out"));
+        Files.createDirectories(bucket.resolve(key + ".meta").resolve("blocker"));
+        cache.store(key, "A.java", ByteBuffer.wrap(new byte[]{1}),
+                List.of(), List.of(), List.of(), List.of());
+
+        try (var files = Files.list(bucket)) {
+            assertTrue(files.noneMatch(file -> file.getFileName().toString().endsWith(".tmp")));
+        }
+        assertTrue(cache.getStatistics().contains("Stored: 0"));
+    }
+
+    @Test
+    void shouldProduceSameOutputForAnyThreadCount() throws IOException {
+        Path srcDir = tempDir.resolve("deterministic");
+        for (int i = 0; i < 20; i++) {
+            Path packageDir = srcDir.resolve("pkg" + (i % 3));
+            Files.createDirectories(packageDir);
+            Files.writeString(packageDir.resolve("Task" + i + ".java"), """
+                public class Task%d {
+                    private int total = 0;
+
+                    public int run(int steps) {
+                        int sum = 0;
+                        for (int step = 0; step < steps; step++) {
+                            int value = step * %d;
+                            sum += value;
+                        }
+                        total += sum;
+                        return total;
+                    }
+                }
+                """.formatted(i, i));
+        }
+
+        Map<Path, String> sequential = readOutputs(
+                new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 1), srcDir, tempDir.resolve("out-1"));
+        Map<Path, String> parallel = readOutputs(
+                new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 4), srcDir, tempDir.resolve("out-4"));
+
+        assertEquals(20, sequential.size());
+        assertEquals(sequential, parallel);
+    }
+
+    @Test
+    void shouldRenameReferencesInGeneratedFiles() throws IOException {
+        Path srcDir = tempDir.resolve("generated");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Account.java"), """
+                public class Account {
+                    private int balance = 0;
+
+                    public void deposit(int amount) {
+                        balance += amount;
+                    }
+                }
+                """);
+        Files.writeString(srcDir.resolve("AccountStub.java"), """
+                // Generated by a stub compiler
+                @Generated("stubs")
+                public class AccountStub {
+                    public void    call(Account account) {
+                        account.deposit( 5 );   // keep this comment
+                    }
+                }
+                """);
+
+        List<Path> processedFiles = new FileProcessor(codeObfuscator, 2).processDirectory(srcDir, tempDir.resolve("generated-output"));
+        assertEquals(2, processedFiles.size());
+
+        String account = Files.readString(findOutput(processedFiles, tempDir.resolve("generated-output"), "+="));
+        String stub = Files.readString(findOutput(processedFiles, tempDir.resolve("generated-output"), "keep this comment"));
+
+        String newClassName = account.replaceAll("(?s).*public class (\\w+).*", "$1");
+        String newMethodName = account.replaceAll("(?s).*public void (\\w+)\\(int.*", "$1");
+        assertNotEquals("deposit", newMethodName);
+        assertTrue(stub.contains("public void    call(" + newClassName + " account) {"));
+        assertTrue(stub.contains("account." + newMethodName + "( 5 );   // keep this comment"));
+    }
+
+    @Test
+    void shouldInvalidateCachedGeneratedFileWhenMissedNameIsDeclared() throws IOException {
+        Path srcDir = tempDir.resolve("generated-cached");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Account.java"), """
+                public class Account {
+                    public void deposit(int amount) {
+                    }
+                }
+                """);
+        Files.writeString(srcDir.resolve("AccountStub.java"), """
+                @Generated("stubs")
+                public class AccountStub {
+                    public void call(Account account) {
+                        account.deposit(5);
+                    }
+                }
+                """);
+
+        ObfuscationCache cache = new ObfuscationCache(tempDir.resolve("generated-cache"));
+        fileProcessor.setCache(cache);
+        fileProcessor.processDirectory(srcDir, tempDir.resolve("generated-cold"));
+        assertTrue(cache.getStatistics().contains("Stored: 2"));
+
+        cache.resetStatistics();
+        fileProcessor.processDirectory(srcDir, tempDir.resolve("generated-warm"));
+        assertTrue(cache.getStatistics().contains("Hits: 2"));
+
+        // Поле account появляется в индексе: промах заглушки по этому имени больше не актуален
+        Files.writeString(srcDir.resolve("Ledger.java"), """
+                public class Ledger {
+                    private int account = 0;
+
+                    public int total() {
+                        return account;
+                    }
+                }
+                """);
+        cache.resetStatistics();
+        List<Path> changedRun = fileProcessor.processDirectory(srcDir, tempDir.resolve("generated-changed"));
+        // Заново обфусцированы Ledger и заглушка
+        assertTrue(cache.getStatistics().contains("Stored: 2"));
+
+        String stub = Files.readString(findOutput(changedRun, tempDir.resolve("generated-changed"), "(5)"));
+        assertFalse(stub.contains("account"));
+    }
+
+    @Test
+    void shouldStreamOutputsWithBoundedPipeline() throws Exception {
+        Path srcDir = tempDir.resolve("streaming");
+        Files.createDirectories(srcDir);
+        for (int i = 0; i < 60; i++) {
+            Files.writeString(srcDir.resolve("Stream" + i + ".java"),
+                    "public class Stream%d { int value = %d; int get() { return value; } }".formatted(i, i));
+        }
+        Path outputDir = tempDir.resolve("streaming-output");
+        FileProcessor processor = new FileProcessor(codeObfuscator, 2);
+
+        // Получатель результатов задерживает запись: конвейер не должен уходить вперёд
+        // дальше своей ёмкости, а значит, записанных файлов остаётся не больше потоков записи
+        CountDownLatch release = new CountDownLatch(1);
+        List<Path> streamed = Collections.synchronizedList(new ArrayList<>());
+        ExecutorService caller = Executors.newSingleThreadExecutor();
+        try {
+            Future<Integer> written = caller.submit(() -> processor.processDirectory(srcDir, outputDir, output -> {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                streamed.add(output);
+            }));
+
+            Thread.sleep(500);
+            try (var outputs = Files.list(outputDir)) {
+                assertTrue(outputs.filter(path -> path.toString().endsWith(".java")).count() <= 2);
+            }
+            assertTrue(streamed.isEmpty());
+
+            release.countDown();
+            assertEquals(60, written.get(30, TimeUnit.SECONDS));
+        } finally {
+            caller.shutdownNow();
+        }
+
+        assertEquals(60, streamed.size());
+        assertEquals(60, streamed.stream().distinct().count());
+        for (Path output : streamed) {
+            assertTrue(Files.exists(output));
+        }
+    }
+
+    @Test
+    void shouldProduceSameOutputWhenFileListSpillsToDisk() throws IOException {
+        Path srcDir = tempDir.resolve("spilled");
+        for (int i = 0; i < 12; i++) {
+            Path packageDir = srcDir.resolve("pkg" + (i % 3));
+            Files.createDirectories(packageDir);
+            Files.writeString(packageDir.resolve("Step" + i + ".java"), """
+                public class Step%d {
+                    public int apply(int input) {
+                        int shifted = input + %d;
+                        return shifted;
+                    }
+                }
+                """.formatted(i, i));
+        }
+        // Побайтно одинаковые копии в разных каталогах
+        String vendored = """
+                public class Vendored {
+                    public String label(String prefix) {
+                        String label = prefix + "-vendored";
+                        return label;
+                    }
+                }
+                """;
+        for (String copy : List.of("a", "b", "c")) {
+            Files.createDirectories(srcDir.resolve(copy));
+            Files.writeString(srcDir.resolve(copy).resolve("Vendored.java"), vendored);
+        }
+
+        FileProcessor inMemory = new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2);
+        FileProcessor spilled = new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2);
+        spilled.setFileListRunSize(2);
+
+        Map<Path, String> expected = readOutputs(inMemory, srcDir, tempDir.resolve("memory-output"));
+        Map<Path, String> actual = readOutputs(spilled, srcDir, tempDir.resolve("spilled-output"));
+
+        assertEquals(15, expected.size());
+        assertEquals(expected, actual);
+        assertEquals(15, spilled.getFilesProcessed());
+    }
+
+    @Test
+    void shouldProduceSameOutputForMappedFiles() throws IOException {
+        Path srcDir = tempDir.resolve("mapped");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Ledger.java"), """
+                public class Ledger {
+                    // Сумма в копейках
+                    private long total = 0;
+
+                    public String add(long amount) {
+                        total += amount;
+                        return "Итого: " + total;
+                    }
+                }
+                """);
+        Files.writeString(srcDir.resolve("LedgerStub.java"), """
+                // Сгенерировано: не редактировать
+                @Generated("stubs")
+                public class LedgerStub {
+                    public String call(Ledger ledger) {
+                        return ledger.add( 5 ) + "€";
+                    }
+                }
+                """);
+
+        FileProcessor inMemory = new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2);
+        FileProcessor mapped = new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2);
+        mapped.setMappingThreshold(0);
+
+        Map<Path, String> expected = readOutputs(inMemory, srcDir, tempDir.resolve("read-output"));
+        Map<Path, String> actual = readOutputs(mapped, srcDir, tempDir.resolve("mapped-output"));
+
+        assertEquals(2, expected.size());
+        assertEquals(expected, actual);
+        assertTrue(actual.values().stream().anyMatch(output -> output.contains("// Сумма в копейках")
+                || output.contains("\"Итого: \"")));
+        assertTrue(actual.values().stream().anyMatch(output -> output.contains("( 5 ) + \"€\"")));
+    }
+
+    @Test
+    void shouldWriteSameOutputsToArchiveAndMemory() throws IOException {
+        Path srcDir = tempDir.resolve("sinks");
+        for (int i = 0; i < 12; i++) {
+            Path packageDir = srcDir.resolve("pkg" + (i % 3));
+            Files.createDirectories(packageDir);
+            Files.writeString(packageDir.resolve("Part" + i + ".java"), """
+                    public class Part%d {
+                        private int weight = %d;
+
+                        public int scale(int factor) {
+                            int scaled = weight * factor;
+                            return scaled;
+                        }
+                    }
+                    """.formatted(i, i));
+        }
+        // Побайтно одинаковая копия берётся из результата оригинала
+        Files.createDirectories(srcDir.resolve("copy"));
+        Files.copy(srcDir.resolve("pkg0/Part0.java"), srcDir.resolve("copy/Part0.java"));
+
+        Map<Path, String> expected = readOutputs(
+                new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2), srcDir, tempDir.resolve("sinks-dir"));
+
+        Path archive = tempDir.resolve("archives/sinks.jar");
+        List<Path> entries = new ArrayList<>();
+        int archived = new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2)
+                .processDirectory(srcDir, archive, entries::add);
+        Map<Path, String> fromArchive = new HashMap<>();
+        try (JarFile jar = new JarFile(archive.toFile())) {
+            assertNotNull(jar.getManifest());
+            for (JarEntry entry : Collections.list(jar.entries())) {
+                if (!entry.getName().startsWith("META-INF/")) {
+                    fromArchive.put(Path.of(entry.getName()),
+                            new String(jar.getInputStream(entry).readAllBytes(), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        MemorySink memory = new MemorySink();
+        int inMemory = new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2)
+                .processDirectory(srcDir, memory, output -> { });
+        Map<Path, String> fromMemory = new HashMap<>();
+        memory.getOutputs().forEach((path, bytes) -> fromMemory.put(path, new String(bytes, StandardCharsets.UTF_8)));
+
+        assertEquals(13, expected.size());
+        assertEquals(13, archived);
+        assertEquals(13, entries.size());
+        assertEquals(13, inMemory);
+        assertEquals(expected, fromArchive);
+        assertEquals(expected, fromMemory);
+    }
+
+    @Test
+    void shouldNotLeaveArchiveWhenRunFails() throws IOException {
+        Path srcDir = tempDir.resolve("failing-src");
+        Files.createDirectories(srcDir);
+        for (int i = 0; i < 5; i++) {
+            Files.writeString(srcDir.resolve("Part" + i + ".java"),
+                    "public class Part" + i + " { int value() { return " + i + "; } }\n");
+        }
+
+        Path archive = tempDir.resolve("failing/out.zip");
+        FileProcessor failing = new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2);
+        assertThrows(ObfuscationException.class, () -> failing.processDirectory(srcDir, archive, output -> {
+            throw new IllegalStateException("consumer failed");
+        }));
+
+        // Ни обрезанного архива, ни временного файла
+        try (var files = Files.list(archive.getParent())) {
+            assertEquals(List.of(), files.toList());
+        }
+    }
+
+    @Test
+    void shouldReadSourcesFromArchiveWithoutExtraction() throws IOException {
+        Path srcDir = tempDir.resolve("archived");
+        Path sources = tempDir.resolve("library-sources.jar");
+        try (ZipOutputStream zip = new ZipOutputStream(Files.newOutputStream(sources))) {
+            zip.putNextEntry(new ZipEntry("META-INF/MANIFEST.MF"));
+            zip.write("Manifest-Version: 1.0\r\n".getBytes(StandardCharsets.UTF_8));
+            for (int i = 0; i < 6; i++) {
+                String entryName = "com/example/pkg" + (i % 2) + "/Item" + i + ".java";
+                byte[] source = """
+                        package com.example.pkg%d;
+
+                        public class Item%d {
+                            private int count = %d;
+
+                            public int total(int extra) {
+                                int sum = count + extra;
+                                return sum;
+                            }
+                        }
+                        """.formatted(i % 2, i, i).getBytes(StandardCharsets.UTF_8);
+                zip.putNextEntry(new ZipEntry(entryName));
+                zip.write(source);
+                Files.createDirectories(srcDir.resolve(entryName).getParent());
+                Files.write(srcDir.resolve(entryName), source);
+            }
+        }
+
+        Map<Path, String> expected = readOutputs(
+                new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2), srcDir, tempDir.resolve("extracted-out"));
+        Map<Path, String> actual = readOutputs(
+                new FileProcessor(new CodeObfuscator(new NameGenerator(42)), 2), sources, tempDir.resolve("archive-out"));
+
+        assertTrue(FileProcessor.isSourceArchive(sources));
+        assertFalse(FileProcessor.isSourceArchive(srcDir));
+        assertEquals(6, actual.size());
+        assertEquals(expected, actual);
+        assertTrue(actual.keySet().stream().allMatch(path -> path.startsWith(Path.of("com", "example"))));
+    }
+
+    @Test
+    void shouldRecordPhaseMetricsWhenEnabled() throws IOException {
+        Path srcDir = tempDir.resolve("measured");
+        Files.createDirectories(srcDir);
+        long sourceBytes = 0;
+        for (int i = 0; i < 3; i++) {
+            String source = """
+                    public class Measured%d {
+                        private int total;
+
+                        public int add(int value) {
+                            total += value;
+                            return total;
+                        }
+                    }
+                    """.formatted(i);
+            Files.writeString(srcDir.resolve("Measured" + i + ".java"), source);
+            sourceBytes += source.getBytes(StandardCharsets.UTF_8).length;
+        }
+
+        Metrics metrics = new Metrics();
+        codeObfuscator.setMetrics(metrics);
+        fileProcessor.processDirectory(srcDir, tempDir.resolve("measured-out"));
+
+        Metrics.Snapshot snapshot = metrics.snapshot();
+        // Каждый файл разбирается дважды: сбор объявлений и переписывание
+        assertEquals(3, snapshot.timer(Metrics.Phase.INDEX).count());
+        assertEquals(3, snapshot.timer(Metrics.Phase.PARSE).count());
+        assertEquals(3, snapshot.timer(Metrics.Phase.PRINT).count());
+        assertEquals(6, snapshot.timer(Metrics.Phase.READ).count());
+        assertEquals(2 * sourceBytes, snapshot.bytesRead());
+        assertEquals(3, snapshot.files());
+        assertTrue(snapshot.timer(Metrics.Phase.PARSE).p99Nanos() <= snapshot.timer(Metrics.Phase.PARSE).maxNanos());
+        assertTrue(snapshot.filesPerSecond() > 0);
+        assertTrue(metrics.dump().contains("MethodObfuscatorVisitor"));
+
+        assertFalse(Metrics.DISABLED.isEnabled());
+        assertTrue(Metrics.DISABLED.snapshot().timers().isEmpty());
+    }
+
+    @Test
+    void shouldWriteReportRowPerFileWithRenamesByKind() throws IOException {
+        Path srcDir = tempDir.resolve("reported");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Small.java"), """
+                public class Small {
+                    private int count;
+                }
+                """);
+        Files.writeString(srcDir.resolve("Large.java"), """
+                public class Large {
+                    private int first;
+                    private int second;
+
+                    public int sum(int value) {
+                        int result = first + second + value;
+                        return result;
+                    }
+
+                    public void clear() {
+                        first = 0;
+                    }
+                }
+                """);
+        Files.writeString(srcDir.resolve("Broken.java"), "public class Broken { void oops( }");
+
+        Path reportFile = tempDir.resolve("report.csv");
+        FileProcessor parallelProcessor = new FileProcessor(codeObfuscator, 2);
+        try (FileReport report = FileReport.open(reportFile)) {
+            parallelProcessor.setReport(report);
+            parallelProcessor.processDirectory(srcDir, tempDir.resolve("reported-out"));
+
+            FileReport.Summary summary = report.getSummary();
+            assertEquals(2, summary.files());
+            assertEquals(1, summary.failed());
+            assertEquals(2, summary.classesRenamed());
+            assertEquals(2, summary.methodsRenamed());
+            // Поля count, first, second и локальная result; параметры - не переменные
+            assertEquals(4, summary.variablesRenamed());
+            assertTrue(summary.p50Nanos() > 0);
+            assertTrue(summary.p50Nanos() <= summary.p95Nanos());
+            assertTrue(summary.p99Nanos() <= summary.maxNanos());
+        }
+
+        List<String> lines = Files.readAllLines(reportFile);
+        assertEquals(4, lines.size());
+        assertTrue(lines.get(0).startsWith("path,status,inputBytes,outputBytes,classesRenamed"));
+        // Счётчики строки - только этого файла, без итогов предыдущих
+        String small = lines.stream().filter(line -> line.contains("Small.java")).findFirst().orElseThrow();
+        assertTrue(small.contains(",ok," + Files.size(srcDir.resolve("Small.java")) + ","));
+        assertTrue(small.contains(",1,0,1,2,"));
+        String large = lines.stream().filter(line -> line.contains("Large.java")).findFirst().orElseThrow();
+        assertTrue(large.contains(",1,2,3,"));
+        assertTrue(lines.stream().anyMatch(line -> line.contains("Broken.java,failed,")));
+        // Итоги задачи не смешиваются с таблицей символов последнего файла
+        assertTrue(codeObfuscator.getStatistics().contains("Total renamed: 8"));
+    }
+
+    @Test
+    void shouldEndJsonLinesReportWithSummary() throws IOException {
+        Path srcDir = tempDir.resolve("json");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Quoted.java"), "public class Quoted { void run() {} }");
+
+        Path reportFile = tempDir.resolve("report.jsonl");
+        try (FileReport report = FileReport.open(reportFile)) {
+            fileProcessor.setReport(report);
+            fileProcessor.processDirectory(srcDir, tempDir.resolve("json-out"));
+        }
+
+        List<String> lines = Files.readAllLines(reportFile);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).startsWith("{\"type\":\"file\",\"path\":\""));
+        assertTrue(lines.get(0).contains("\"status\":\"ok\""));
+        assertTrue(lines.get(0).contains("\"methodsRenamed\":1"));
+        assertTrue(lines.get(1).startsWith("{\"type\":\"summary\",\"files\":1,\"failed\":0"));
+        assertTrue(lines.get(1).contains("\"p99Ms\":"));
+    }
+
+    private Map<Path, String> readOutputs(FileProcessor processor, Path srcDir, Path outputDir) throws IOException {
+        Map<Path, String> outputs = new HashMap<>();
+        for (Path output : processor.processDirectory(srcDir, outputDir)) {
+            outputs.put(outputDir.relativize(output), Files.readString(output));
+        }
+        return outputs;
+    }
+
+    private Path findOutput(List<Path> outputs, Path outputRoot, String marker) throws IOException {
+        for (Path output : outputs) {
+            if (output.getParent().equals(outputRoot) && Files.readString(output).contains(marker)) {
+                return output;
+            }
+        }
+        throw new AssertionError("No output containing " + marker);
+    }
+}
@@ -0,0 +1,100 @@
+package com.obfuscator;
+
+import com.obfuscator.fileprocessor.FileWalker;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileWalkerTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldFindJavaFilesAndSkipDefaultDirectories() throws IOException {
+        touch("src/com/example/App.java");
+        touch("src/com/example/deep/nested/Util.java");
+        touch("src/com/example/README.md");
+        touch(".git/objects/Packed.java");
+        touch(".idea/Workspace.java");
+        touch("build/generated/Generated.java");
+        touch("target/classes/Compiled.java");
+        touch("web/node_modules/lib/Vendored.java");
+
+        assertEquals(List.of("src/com/example/App.java", "src/com/example/deep/nested/Util.java"),
+                relative(FileWalker.findJavaFiles(tempDir)));
+    }
+
+    @Test
+    void shouldKeepBaselineDefaultsForExtensionCaseAndDotFiles() throws IOException {
+        touch("src/Upper.JAVA");
+        touch("src/Mixed.Java");
+        touch("src/.Hidden.java");
+        touch("src/.hidden/Skipped.java");
+        touch("src/Notes.javax");
+
+        assertEquals(List.of("src/.Hidden.java", "src/Mixed.Java", "src/Upper.JAVA"),
+                relative(FileWalker.findJavaFiles(tempDir)));
+    }
+
+    @Test
+    void shouldApplyIncludeAndExcludeGlobs() throws IOException {
+        touch("app/Main.java");
+        touch("app/MainTest.java");
+        touch("app/generated/Model.java");
+        touch("lib/Helper.java");
+        touch("lib/Helper.kt");
+
+        FileWalker walker = new FileWalker(List.of("*.java", "*.kt"), List.of("*Test.java", "app/generated"), false);
+
+        assertEquals(List.of("app/Main.java", "lib/Helper.java", "lib/Helper.kt"),
+                relative(walker.findFiles(tempDir)));
+    }
+
+    @Test
+    void shouldRespectNestedGitignoreFiles() throws IOException {
+        Files.writeString(tempDir.resolve(".gitignore"), """
+                # сгенерированный код
+                gen/
+                *Stub.java
+                !KeepStub.java
+                /Root.java
+                """);
+        touch("Root.java");
+        touch("module/Root.java");
+        touch("module/gen/Model.java");
+        touch("module/ApiStub.java");
+        touch("module/KeepStub.java");
+        Files.writeString(tempDir.resolve("module/.gitignore"), "Local.java\n");
+        touch("module/Local.java");
+        touch("other/Local.java");
+
+        FileWalker walker = new FileWalker(FileWalker.DEFAULT_INCLUDES, FileWalker.DEFAULT_EXCLUDES, true);
+
+        assertEquals(List.of("module/KeepStub.java", "module/Root.java", "other/Local.java"),
+                relative(walker.findFiles(tempDir)));
+        // Без --gitignore те же файлы находятся
+        assertEquals(7, FileWalker.findJavaFiles(tempDir).size());
+    }
+
+    private void touch(String path) throws IOException {
+        Path file = tempDir.resolve(path);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, "class X {}");
+    }
+
+    private List<String> relative(List<Path> files) {
+        List<String> names = new ArrayList<>();
+        for (Path file : files) {
+            names.add(tempDir.relativize(file).toString().replace('\\', '/'));
+        }
+        return names;
+    }
+}
@@ -0,0 +1,96 @@
+package com.obfuscator;
+
+import com.obfuscator.obfuscator.KeepRules;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("benchmark")
+class KeepRulesBenchmarkTest {
+
+    private static final int LOOKUPS = 1_000_000;
+    private static final int RUNS = 3;
+
+    @BeforeAll
+    static void quietLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.DEBUG);
+    }
+
+    @Test
+    void shouldCheckNamesIndependentlyOfRuleCount() {
+        KeepRules small = KeepRules.parse(generateRules(10));
+        KeepRules large = KeepRules.parse(generateRules(5_000));
+        measure(small);
+        measure(large);
+
+        long smallTime = measure(small);
+        long largeTime = measure(large);
+
+        System.out.printf("rules=%5d  %6.1f ns/check%n", small.size(), (double) smallTime / LOOKUPS);
+        System.out.printf("rules=%5d  %6.1f ns/check%n", large.size(), (double) largeTime / LOOKUPS);
+
+        // 500x больше правил не должно заметно замедлять проверку
+        double ratio = (double) largeTime / smallTime;
+        assertTrue(ratio < 5, "Expected rule-count independent checks, got x" + ratio);
+    }
+
+    private long measure(KeepRules rules) {
+        String[] owners = new String[112];
+        for (int i = 0; i < owners.length; i++) {
+            owners[i] = "com.example.module" + (i % 16) + ".Service" + (i % 7);
+        }
+        String[] methods = {"handle0", "handle1", "handle2", "handle3", "handle4"};
+        long best = Long.MAX_VALUE;
+
+        for (int run = 0; run < RUNS; run++) {
+            int kept = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < LOOKUPS; i++) {
+                String owner = owners[i % owners.length];
+                if (rules.keepsClass(owner, List.of())) {
+                    kept++;
+                }
+                if (rules.keepsMethod(owner, List.of(), methods[i % methods.length], List.of())) {
+                    kept++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+            assertTrue(kept > 0);
+        }
+        return best;
+    }
+
+    // Смесь точных имён, пакетных масок, правил для членов и правил с аннотациями
+    private String generateRules(int count) {
+        StringBuilder rules = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            switch (i % 4) {
+                case 0:
+                    rules.append("-keep class com.example.module").append(i).append(".Api").append(i).append('\n');
+                    break;
+                case 1:
+                    rules.append("-keep class com.example.module").append(i).append(".internal.**\n");
+                    break;
+                case 2:
+                    rules.append("-keepclassmembers class com.example.module").append(i)
+                            .append(".* { void handle").append(i).append("*(...); }\n");
+                    break;
+                default:
+                    rules.append("-keep @com.example.Keep").append(i).append(" class com.example.**\n");
+            }
+        }
+        return rules.toString();
+    }
+}
@@ -0,0 +1,90 @@
+package com.obfuscator;
+
+import com.obfuscator.obfuscator.KeepRules;
+import com.obfuscator.obfuscator.ObfuscationException;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeepRulesTest {
+
+    @Test
+    void shouldKeepDefaultNames() {
+        KeepRules rules = KeepRules.defaults();
+
+        assertTrue(rules.keepsClass("com.example.UserServiceTest", List.of()));
+        assertTrue(rules.keepsClass("String", List.of()));
+        assertFalse(rules.keepsClass("com.example.UserService", List.of()));
+
+        assertTrue(rules.keepsMethod("com.example.App", List.of(), "main", List.of()));
+        assertTrue(rules.keepsMethod("com.example.App", List.of(), "getName", List.of()));
+        assertFalse(rules.keepsMethod("com.example.App", List.of(), "calculate", List.of()));
+
+        assertTrue(rules.keepsField("com.example.App", List.of(), "i", List.of()));
+        assertTrue(rules.keepsField("com.example.App", List.of(), "args", List.of()));
+        assertFalse(rules.keepsField("com.example.App", List.of(), "total", List.of()));
+    }
+
+    @Test
+    void shouldMatchPackageWildcards() {
+        KeepRules rules = KeepRules.parse("""
+                -keep class com.example.api.*
+                -keep class com.example.spi.**
+                """);
+
+        assertTrue(rules.keepsClass("com.example.api.Client", List.of()));
+        assertFalse(rules.keepsClass("com.example.api.internal.Client", List.of()));
+        assertTrue(rules.keepsClass("com.example.spi.internal.Provider", List.of()));
+        assertFalse(rules.keepsClass("com.example.core.Engine", List.of()));
+    }
+
+    @Test
+    void shouldKeepMembersOfMatchingClasses() {
+        KeepRules rules = KeepRules.parse("""
+                -keepclassmembers class com.example.** {
+                    public void on*(...);
+                    int count;
+                }
+                -keep class com.example.Plugin { *; }
+                """);
+
+        assertFalse(rules.keepsClass("com.example.Handler", List.of()));
+        assertTrue(rules.keepsMethod("com.example.Handler", List.of(), "onClick", List.of()));
+        assertFalse(rules.keepsField("com.example.Handler", List.of(), "onClick", List.of()));
+        assertTrue(rules.keepsField("com.example.Handler", List.of(), "count", List.of()));
+        assertFalse(rules.keepsMethod("org.other.Handler", List.of(), "onClick", List.of()));
+
+        assertTrue(rules.keepsClass("com.example.Plugin", List.of()));
+        assertTrue(rules.keepsMethod("com.example.Plugin", List.of(), "anything", List.of()));
+        assertTrue(rules.keepsField("com.example.Plugin", List.of(), "state", List.of()));
+    }
+
+    @Test
+    void shouldApplyAnnotationConditions() {
+        KeepRules rules = KeepRules.parse("""
+                -keep @com.example.Keep class *
+                -keepclassmembers class * {
+                    @com.fasterxml.jackson.annotation.JsonProperty *;
+                }
+                """);
+
+        assertTrue(rules.keepsClass("com.example.Dto", List.of("Keep")));
+        assertTrue(rules.keepsClass("com.example.Dto", List.of("com.example.Keep")));
+        assertFalse(rules.keepsClass("com.example.Dto", List.of()));
+
+        assertTrue(rules.keepsField("com.example.Dto", List.of(), "userName", List.of("JsonProperty")));
+        assertFalse(rules.keepsField("com.example.Dto", List.of(), "userName", List.of()));
+    }
+
+    @Test
+    void shouldRejectInvalidRules() {
+        ObfuscationException unknown = assertThrows(ObfuscationException.class,
+                () -> KeepRules.parse("-keep class Foo\n-dontobfuscate"));
+        assertTrue(unknown.getMessage().contains("line 2"));
+
+        assertThrows(ObfuscationException.class, () -> KeepRules.parse("-keepclassmembers class Foo"));
+        assertThrows(ObfuscationException.class, () -> KeepRules.parse("-keep class Foo { int count }"));
+    }
+}
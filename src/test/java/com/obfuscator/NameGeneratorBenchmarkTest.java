@@ -0,0 +1,61 @@
+package com.obfuscator;
+
+import com.obfuscator.obfuscator.NameGenerator;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("benchmark")
+class NameGeneratorBenchmarkTest {
+
+    private static final int NAMES = 1_000_000;
+    private static final int RUNS = 3;
+
+    @BeforeAll
+    static void quietLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.DEBUG);
+    }
+
+    @Test
+    void shouldGenerateNamesFasterWithCounter() {
+        measure(NameGenerator::new);
+        measure(() -> new NameGenerator(42));
+
+        long random = measure(NameGenerator::new);
+        long counter = measure(() -> new NameGenerator(42));
+
+        System.out.printf("random:  %8.2f ms  (%6.1f ns/name)%n", random / 1e6, (double) random / NAMES);
+        System.out.printf("counter: %8.2f ms  (%6.1f ns/name)%n", counter / 1e6, (double) counter / NAMES);
+
+        // Счётчику не нужны множество занятых имён и повторные попытки
+        assertTrue(counter < random, "Expected counter mode to be faster: " + counter + " vs " + random);
+    }
+
+    private long measure(Supplier<NameGenerator> factory) {
+        long best = Long.MAX_VALUE;
+
+        for (int run = 0; run < RUNS; run++) {
+            NameGenerator generator = factory.get();
+            long start = System.nanoTime();
+            for (int i = 0; i < NAMES; i++) {
+                generator.generateVariableName();
+            }
+            best = Math.min(best, System.nanoTime() - start);
+
+            assertEquals(NAMES, generator.getGeneratedNamesCount());
+        }
+        return best;
+    }
+}
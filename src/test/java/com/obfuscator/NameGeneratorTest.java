@@ -1,10 +1,17 @@
 package com.obfuscator;
 
 import com.obfuscator.obfuscator.NameGenerator;
+import com.obfuscator.obfuscator.NameSource;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.RepeatedTest;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static org.junit.jupiter.api.Assertions.*;
 
 class NameGeneratorTest {
@@ -100,4 +107,141 @@ class NameGeneratorTest {
         assertTrue(methodName.startsWith("m"));
         assertTrue(variableName.startsWith("v"));
     }
-}
\ No newline at end of file
+
+    @Test
+    void shouldGenerateSameNamesForSameSeed() {
+        NameGenerator first = new NameGenerator(42);
+        NameGenerator second = new NameGenerator(42);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(first.generateClassName(), second.generateClassName());
+            assertEquals(first.generateMethodName(), second.generateMethodName());
+            assertEquals(first.generateVariableName(), second.generateVariableName());
+        }
+    }
+
+    @Test
+    void shouldGenerateDifferentNamesForDifferentSeeds() {
+        NameGenerator first = new NameGenerator(1);
+        NameGenerator second = new NameGenerator(2);
+
+        assertNotEquals(first.generateClassName(), second.generateClassName());
+    }
+
+    @Test
+    void shouldGenerateUniqueNamesWithSeed() {
+        NameGenerator seeded = new NameGenerator(7);
+        Set<String> names = new HashSet<>();
+
+        for (int i = 0; i < 100_000; i++) {
+            String name = seeded.generateVariableName();
+            assertTrue(name.startsWith("v"));
+            assertTrue(name.length() > 4);
+            assertTrue(names.add(name), "Duplicate name: " + name);
+        }
+        assertEquals(100_000, seeded.getGeneratedNamesCount());
+    }
+
+    @Test
+    void shouldSkipReservedNamesWithSeed() {
+        NameGenerator seeded = new NameGenerator(3);
+        String first = seeded.generateMethodName();
+        String second = seeded.generateMethodName();
+
+        NameGenerator restarted = new NameGenerator(3);
+        restarted.reserveName(second);
+
+        assertTrue(restarted.isNameUsed(first));
+        assertTrue(restarted.isNameUsed(second));
+        assertFalse(restarted.isNameUsed("NonExistentName"));
+        assertNotEquals(first, restarted.generateMethodName());
+        assertNotEquals(second, restarted.generateMethodName());
+    }
+
+    @Test
+    void shouldResetSeededGenerator() {
+        NameGenerator seeded = new NameGenerator(5);
+        String first = seeded.generateClassName();
+        seeded.generateClassName();
+
+        seeded.reset();
+
+        assertEquals(0, seeded.getGeneratedNamesCount());
+        assertEquals(first, seeded.generateClassName());
+    }
+
+    @Test
+    void shouldGenerateUniqueNamesAcrossStreams() throws InterruptedException {
+        NameGenerator seeded = new NameGenerator(11);
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        String indexName = seeded.generateVariableName();
+        names.add(indexName);
+
+        List<Thread> threads = new ArrayList<>();
+        for (int stream = 0; stream < 8; stream++) {
+            final int id = stream;
+            threads.add(new Thread(() -> {
+                NameSource source = seeded.newStream(id);
+                for (int i = 0; i < 10_000; i++) {
+                    assertTrue(names.add(source.generateVariableName()));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(80_001, names.size());
+        assertNotEquals(indexName, seeded.generateVariableName());
+    }
+
+    @Test
+    void shouldGenerateSameStreamNamesForSameSeed() {
+        NameSource first = new NameGenerator(9).newStream(5);
+        NameSource second = new NameGenerator(9).newStream(5);
+
+        for (int i = 0; i < 200; i++) {
+            assertEquals(first.generateMethodName(), second.generateMethodName());
+        }
+    }
+
+    @Test
+    void shouldGenerateUniqueNamesAcrossStreamsWithoutSeed() throws InterruptedException {
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        List<Thread> threads = new ArrayList<>();
+        for (int stream = 0; stream < 8; stream++) {
+            final int id = stream;
+            threads.add(new Thread(() -> {
+                NameSource source = nameGenerator.newStream(id);
+                for (int i = 0; i < 10_000; i++) {
+                    String name = source.generateVariableName();
+                    assertTrue(name.length() > 9, name);
+                    assertTrue(names.add(name));
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // Случайные имена общего генератора короче имён потоков и с ними не совпадают
+        for (int i = 0; i < 10_000; i++) {
+            String name = nameGenerator.generateVariableName();
+            assertTrue(name.length() <= 9, name);
+            assertTrue(names.add(name));
+        }
+        assertEquals(90_000, names.size());
+        assertNotSame(nameGenerator, nameGenerator.newStream(0));
+        assertNotEquals(new NameGenerator().newStream(0).generateClassName(),
+                new NameGenerator().newStream(0).generateClassName());
+
+        // Первые имена потоков у разных генераторов не совпадают (раньше - с вероятностью 1/62 на пару)
+        Set<String> firstNames = new HashSet<>();
+        for (int i = 0; i < 50; i++) {
+            firstNames.add(new NameGenerator().newStream(0).generateClassName());
+        }
+        assertEquals(50, firstNames.size());
+    }
+}
@@ -0,0 +1,170 @@
+package com.obfuscator;
+
+import com.obfuscator.cli.CommandLineRunner;
+import com.obfuscator.cli.DaemonClient;
+import com.obfuscator.cli.ObfuscationDaemon;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObfuscationDaemonTest {
+
+    @TempDir
+    Path tempDir;
+
+    private ObfuscationDaemon daemon;
+    private ByteArrayOutputStream out;
+    private ByteArrayOutputStream err;
+    private DaemonClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path tokenDir = tempDir.resolve("tokens");
+        daemon = new ObfuscationDaemon(0, tokenDir);
+        daemon.start();
+        out = new ByteArrayOutputStream();
+        err = new ByteArrayOutputStream();
+        client = new DaemonClient(new PrintStream(out, true, StandardCharsets.UTF_8),
+                new PrintStream(err, true, StandardCharsets.UTF_8), tokenDir);
+    }
+
+    @AfterEach
+    void tearDown() {
+        daemon.close();
+    }
+
+    @Test
+    void shouldRunJobsOnWarmServiceAndStreamResults() throws IOException {
+        Path srcDir = tempDir.resolve("src");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Hello.java"), "public class Hello { void greet() {} }");
+        String port = String.valueOf(daemon.getPort());
+
+        int first = client.run(new String[]{"--connect", port, srcDir.toString(),
+                tempDir.resolve("out1").toString(), "--seed", "7"});
+        int second = client.run(new String[]{"--connect", port, srcDir.toString(),
+                tempDir.resolve("out2").toString(), "--seed", "7"});
+
+        assertEquals(CommandLineRunner.EXIT_OK, first, err.toString(StandardCharsets.UTF_8));
+        assertEquals(CommandLineRunner.EXIT_OK, second, err.toString(StandardCharsets.UTF_8));
+        String printed = out.toString(StandardCharsets.UTF_8);
+        assertTrue(printed.contains("Processed file: "));
+        assertTrue(printed.contains("Processed 1 files"));
+        assertEquals(2, daemon.getCompletedJobs());
+
+        // Сервис сбрасывается между задачами: с тем же зерном результат тот же
+        try (var first1 = Files.list(tempDir.resolve("out1")); var second1 = Files.list(tempDir.resolve("out2"))) {
+            Path a = first1.findFirst().orElseThrow();
+            Path b = second1.findFirst().orElseThrow();
+            assertEquals(a.getFileName(), b.getFileName());
+            assertEquals(Files.readString(a), Files.readString(b));
+        }
+
+        String status = new String(URI.create("http://127.0.0.1:" + port + "/status").toURL()
+                .openStream().readAllBytes(), StandardCharsets.UTF_8);
+        assertEquals("ok jobs=2 services=1", status.trim());
+    }
+
+    @Test
+    void shouldResolveRelativePathsAndReportUsageErrors() {
+        String port = String.valueOf(daemon.getPort());
+
+        assertEquals(CommandLineRunner.EXIT_USAGE, client.run(new String[]{"--connect", port, "only-input"}));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("Usage:"));
+        assertEquals(CommandLineRunner.EXIT_USAGE,
+                client.run(new String[]{"--connect", port, "missing-dir", tempDir.toString()}));
+        assertTrue(err.toString(StandardCharsets.UTF_8)
+                .contains(Path.of("missing-dir").toAbsolutePath().toString()));
+    }
+
+    @Test
+    void shouldFailWhenDaemonIsNotRunning() {
+        String port = String.valueOf(daemon.getPort());
+        daemon.close();
+
+        assertEquals(CommandLineRunner.EXIT_ERROR,
+                client.run(new String[]{"--connect", port, "a", "b"}));
+        assertTrue(err.toString(StandardCharsets.UTF_8).contains("not running"));
+    }
+
+    @Test
+    void shouldRejectJobsAndShutdownWithoutToken() throws IOException {
+        String base = "http://127.0.0.1:" + daemon.getPort();
+        Path tokenFile = daemon.getTokenFile();
+        assertTrue(Files.exists(tokenFile));
+        if (Files.getFileStore(tokenFile).supportsFileAttributeView("posix")) {
+            assertEquals(EnumSet.of(PosixFilePermission.OWNER_READ, PosixFilePermission.OWNER_WRITE),
+                    Files.getPosixFilePermissions(tokenFile));
+        }
+
+        assertEquals(401, post(base + "/jobs", null));
+        assertEquals(401, post(base + "/shutdown", "Bearer wrong"));
+        assertEquals(0, daemon.getCompletedJobs());
+
+        // Демон продолжает работать; с токеном из файла остановка принимается
+        assertEquals(200, post(base + "/shutdown", "Bearer " + Files.readString(tokenFile).trim()));
+    }
+
+    @Test
+    void shouldShutDownEvictedServices() throws Exception {
+        Path srcDir = tempDir.resolve("src");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Hello.java"), "public class Hello { void greet() {} }");
+        String port = String.valueOf(daemon.getPort());
+
+        Set<Thread> before = workerThreads();
+        assertEquals(CommandLineRunner.EXIT_OK, client.run(new String[]{"--connect", port, srcDir.toString(),
+                tempDir.resolve("out0").toString(), "--seed", "0"}));
+        Set<Thread> firstService = workerThreads();
+        firstService.removeAll(before);
+        assertFalse(firstService.isEmpty());
+
+        // Девятый сервис вытесняет первый: его потоки завершаются сразу,
+        // а не через 30 секунд простоя
+        for (int seed = 1; seed <= 8; seed++) {
+            assertEquals(CommandLineRunner.EXIT_OK, client.run(new String[]{"--connect", port, srcDir.toString(),
+                    tempDir.resolve("out" + seed).toString(), "--seed", String.valueOf(seed)}));
+        }
+        for (Thread thread : firstService) {
+            thread.join(5000);
+            assertFalse(thread.isAlive(), thread.getName());
+        }
+    }
+
+    private static Set<Thread> workerThreads() {
+        Set<Thread> threads = new HashSet<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("obfuscation-worker-")) {
+                threads.add(thread);
+            }
+        }
+        return threads;
+    }
+
+    private static int post(String url, String authorization) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        if (authorization != null) {
+            connection.setRequestProperty("Authorization", authorization);
+        }
+        connection.getOutputStream().close();
+        return connection.getResponseCode();
+    }
+}
@@ -0,0 +1,165 @@
+package com.obfuscator;
+
+import com.obfuscator.corpus.CorpusGenerator;
+import com.obfuscator.corpus.CorpusShape;
+import com.obfuscator.fileprocessor.WorkerPool;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ObfuscationServiceTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    void shouldIsolateConcurrentJobs() throws Exception {
+        Path first = tempDir.resolve("first");
+        Path second = tempDir.resolve("second");
+        new CorpusGenerator(1L, CorpusShape.monorepo(30)).writeTo(first);
+        new CorpusGenerator(2L, CorpusShape.monorepo(30)).writeTo(second);
+
+        // Эталон - те же задачи по очереди на отдельных сервисах
+        new ObfuscationService(2, 5L).processDirectory(first, tempDir.resolve("expected-first"));
+        new ObfuscationService(2, 5L).processDirectory(second, tempDir.resolve("expected-second"));
+
+        ObfuscationService service = new ObfuscationService(2, 5L);
+        ExecutorService callers = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> jobs = new ArrayList<>();
+            for (int round = 0; round < 2; round++) {
+                Path firstOut = tempDir.resolve("first-" + round);
+                Path secondOut = tempDir.resolve("second-" + round);
+                jobs.add(callers.submit(() -> service.processDirectory(first, firstOut)));
+                jobs.add(callers.submit(() -> service.processDirectory(second, secondOut)));
+            }
+            for (Future<?> job : jobs) {
+                job.get();
+            }
+        } finally {
+            callers.shutdownNow();
+        }
+
+        for (int round = 0; round < 2; round++) {
+            assertEquals(readTree(tempDir.resolve("expected-first")), readTree(tempDir.resolve("first-" + round)));
+            assertEquals(readTree(tempDir.resolve("expected-second")), readTree(tempDir.resolve("second-" + round)));
+        }
+    }
+
+    @Test
+    void shouldKeepStatisticsPerJob() throws IOException {
+        Path srcDir = tempDir.resolve("src");
+        Files.createDirectories(srcDir);
+        Files.writeString(srcDir.resolve("Hello.java"), "public class Hello { void greet() { int count = 1; } }");
+        ObfuscationService service = new ObfuscationService(2, 1L);
+
+        ObfuscationJob directoryJob = service.newJob();
+        ObfuscationJob fileJob = service.newJob();
+        directoryJob.processDirectory(srcDir, tempDir.resolve("out1"));
+        fileJob.processSingleFile(srcDir.resolve("Hello.java"), tempDir.resolve("out2"));
+
+        assertTrue(directoryJob.getFileStatistics().contains("Files processed: 1"));
+        assertTrue(fileJob.getFileStatistics().contains("Files processed: 0"));
+        // Счётчики не складываются между задачами
+        assertTrue(directoryJob.getStatistics().contains("Classes renamed: 1"));
+        assertTrue(fileJob.getStatistics().contains("Classes renamed: 1"));
+        assertTrue(service.getStatistics().contains("Classes renamed: 0"));
+    }
+
+    @Test
+    void shouldRunInteractiveTasksBeforeQueuedBatchTasks() throws Exception {
+        WorkerPool pool = new WorkerPool(1);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+            WorkerPool.Lane batch = pool.openLane(WorkerPool.Priority.BATCH, "batch");
+            List<Future<?>> futures = new ArrayList<>();
+            futures.add(batch.submit(() -> {
+                started.countDown();
+                release.await();
+                return order.add("batch-0");
+            }));
+            started.await();
+            for (int i = 1; i <= 3; i++) {
+                String name = "batch-" + i;
+                futures.add(batch.submit(() -> order.add(name)));
+            }
+            futures.add(pool.openLane(WorkerPool.Priority.INTERACTIVE, "file")
+                    .submit(() -> order.add("file")));
+
+            release.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertEquals(List.of("batch-0", "file", "batch-1", "batch-2", "batch-3"), order);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    void shouldShareThreadsFairlyBetweenBatchJobs() throws Exception {
+        WorkerPool pool = new WorkerPool(1);
+        try {
+            CountDownLatch release = new CountDownLatch(1);
+            List<String> order = Collections.synchronizedList(new ArrayList<>());
+
+            WorkerPool.Lane blocker = pool.openLane(WorkerPool.Priority.BATCH, "blocker");
+            Future<?> blocked = blocker.submit(() -> {
+                release.await();
+                return null;
+            });
+
+            // Большая задача поставлена целиком раньше маленькой, но не занимает пул до конца
+            WorkerPool.Lane large = pool.openLane(WorkerPool.Priority.BATCH, "large");
+            WorkerPool.Lane small = pool.openLane(WorkerPool.Priority.BATCH, "small");
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) {
+                String name = "large-" + i;
+                futures.add(large.submit(() -> order.add(name)));
+            }
+            for (int i = 0; i < 2; i++) {
+                String name = "small-" + i;
+                futures.add(small.submit(() -> order.add(name)));
+            }
+
+            release.countDown();
+            blocked.get();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            assertEquals(List.of("large-0", "small-0", "large-1", "small-1", "large-2", "large-3"), order);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static Map<String, String> readTree(Path root) throws IOException {
+        Map<String, String> files = new TreeMap<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : (Iterable<Path>) paths.filter(Files::isRegularFile)::iterator) {
+                files.put(root.relativize(path).toString(), Files.readString(path));
+            }
+        }
+        return files;
+    }
+}
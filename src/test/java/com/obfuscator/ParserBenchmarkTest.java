@@ -0,0 +1,81 @@
+package com.obfuscator;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ast.CompilationUnit;
+import com.obfuscator.obfuscator.ParserFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("benchmark")
+class ParserBenchmarkTest {
+
+    private static final Path CORPUS = Paths.get("test_files/input");
+    private static final int WARMUP_ROUNDS = 200;
+    private static final int ROUNDS = 500;
+
+    @Test
+    void shouldParseCorpusFasterWithTunedParser() throws IOException {
+        List<String> sources = readCorpus();
+        assertFalse(sources.isEmpty(), "Corpus is empty: " + CORPUS.toAbsolutePath());
+
+        JavaParser defaultParser = new JavaParser();
+        ParserFactory factory = ParserFactory.defaults();
+
+        measure(sources, () -> defaultParser, WARMUP_ROUNDS);
+        measure(sources, factory::parser, WARMUP_ROUNDS);
+
+        long[] baseline = measure(sources, () -> defaultParser, ROUNDS);
+        long[] tuned = measure(sources, factory::parser, ROUNDS);
+
+        int files = sources.size() * ROUNDS;
+        System.out.printf("default: %8.1f us/file  %8.1f KB/file%n", baseline[0] / 1e3 / files, baseline[1] / 1024.0 / files);
+        System.out.printf("tuned:   %8.1f us/file  %8.1f KB/file%n", tuned[0] / 1e3 / files, tuned[1] / 1024.0 / files);
+
+        assertTrue(tuned[1] < baseline[1], "Tuned parser should allocate less per file");
+    }
+
+    // {время в нс, выделено байт в потоке}
+    private long[] measure(List<String> sources, Supplier<JavaParser> parser, int rounds) {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int round = 0; round < rounds; round++) {
+            for (String source : sources) {
+                ParseResult<CompilationUnit> result = parser.get().parse(source);
+                assertTrue(result.isSuccessful());
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        return new long[]{elapsed, threads.getThreadAllocatedBytes(threadId) - allocatedBefore};
+    }
+
+    private List<String> readCorpus() throws IOException {
+        try (Stream<Path> files = Files.list(CORPUS)) {
+            return files.filter(file -> file.toString().endsWith(".java"))
+                    .sorted()
+                    .map(file -> {
+                        try {
+                            return Files.readString(file);
+                        } catch (IOException e) {
+                            throw new IllegalStateException(e);
+                        }
+                    })
+                    .toList();
+        }
+    }
+}
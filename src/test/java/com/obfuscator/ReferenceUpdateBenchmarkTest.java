@@ -0,0 +1,85 @@
+package com.obfuscator;
+
+import com.obfuscator.obfuscator.CodeObfuscator;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("benchmark")
+class ReferenceUpdateBenchmarkTest {
+
+    private static final int[] SYMBOL_COUNTS = {10, 100, 1_000, 10_000};
+    private static final int RUNS = 3;
+
+    @BeforeAll
+    static void quietLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.DEBUG);
+    }
+
+    @Test
+    void shouldScaleNearLinearlyWithSymbolCount() {
+        measure(SYMBOL_COUNTS[1]);
+
+        long[] timings = new long[SYMBOL_COUNTS.length];
+        for (int i = 0; i < SYMBOL_COUNTS.length; i++) {
+            timings[i] = measure(SYMBOL_COUNTS[i]);
+            System.out.printf("symbols=%6d  time=%8.2f ms  per symbol=%8.2f us%n",
+                    SYMBOL_COUNTS[i], timings[i] / 1e6, timings[i] / 1e3 / SYMBOL_COUNTS[i]);
+        }
+
+        // 10x больше символов должно стоить около 10x, а не 100x как при обходе на каждый символ
+        double ratio = (double) timings[3] / timings[2];
+        assertTrue(ratio < 30, "Expected near-linear scaling, got x" + ratio + " for 10x symbols");
+    }
+
+    private long measure(int symbols) {
+        String source = generateSource(symbols);
+        long best = Long.MAX_VALUE;
+
+        for (int run = 0; run < RUNS; run++) {
+            CodeObfuscator obfuscator = new CodeObfuscator();
+            long start = System.nanoTime();
+            String obfuscated = obfuscator.obfuscateCode(source, "Generated.java");
+            best = Math.min(best, System.nanoTime() - start);
+
+            assertFalse(obfuscated.contains("field0 "));
+            assertFalse(obfuscated.contains("operation0("));
+        }
+        return best;
+    }
+
+    private String generateSource(int symbols) {
+        int members = Math.max(1, symbols / 2);
+        StringBuilder source = new StringBuilder();
+        source.append("import java.util.List;\n\n");
+        source.append("public class Generated {\n");
+
+        for (int i = 0; i < members; i++) {
+            source.append("    private int field").append(i).append(" = ").append(i).append(";\n");
+        }
+
+        for (int i = 0; i < members; i++) {
+            source.append("    public int operation").append(i).append("() {\n");
+            source.append("        Generated other = new Generated();\n");
+            source.append("        int result = field").append(i).append(" + other.field").append(i).append(";\n");
+            if (i > 0) {
+                source.append("        result += operation").append(i - 1).append("();\n");
+            }
+            source.append("        return result;\n");
+            source.append("    }\n");
+        }
+
+        source.append("}\n");
+        return source.toString();
+    }
+}
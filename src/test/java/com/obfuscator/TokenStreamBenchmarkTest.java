@@ -0,0 +1,91 @@
+package com.obfuscator;
+
+import com.obfuscator.obfuscator.CodeObfuscator;
+import com.obfuscator.obfuscator.NameGenerator;
+import com.obfuscator.obfuscator.SymbolIndex;
+import com.obfuscator.util.LoggerUtil;
+import org.apache.logging.log4j.Level;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@Tag("benchmark")
+class TokenStreamBenchmarkTest {
+
+    private static final int TARGET_SIZE = 20 * 1024 * 1024;
+    private static final int RUNS = 3;
+
+    @BeforeAll
+    static void quietLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.WARN);
+    }
+
+    @AfterAll
+    static void restoreLogging() {
+        LoggerUtil.setLogLevel("com.obfuscator", Level.DEBUG);
+    }
+
+    @Test
+    void shouldRewriteLargeGeneratedFilesQuickly() throws IOException {
+        CodeObfuscator obfuscator = new CodeObfuscator(new NameGenerator(42));
+        SymbolIndex.Builder builder = new SymbolIndex.Builder();
+        obfuscator.collectDeclarations("""
+                public class Registry {
+                    public static int version = 1;
+
+                    public int lookup(int key) {
+                        return key * version;
+                    }
+                }
+                """, "Registry.java", builder);
+        CodeObfuscator worker = obfuscator.createWorker(obfuscator.buildSymbolIndex(builder));
+
+        String source = generateSource();
+        assertTrue(worker.usesTokenStream(source));
+
+        WritableByteChannel discard = Channels.newChannel(OutputStream.nullOutputStream());
+        long best = Long.MAX_VALUE;
+        int renames = 0;
+        for (int run = 0; run < RUNS + 1; run++) {
+            long start = System.nanoTime();
+            renames = worker.obfuscateCode(source, "BigMessage.java", discard);
+            best = Math.min(best, System.nanoTime() - start);
+        }
+
+        double megabytes = source.length() / (1024.0 * 1024.0);
+        double throughput = megabytes / (best / 1e9);
+        System.out.printf("size=%.1f MB  time=%.1f ms  throughput=%.0f MB/s  renames=%d%n",
+                megabytes, best / 1e6, throughput, renames);
+
+        assertTrue(renames > 0);
+        assertTrue(throughput > 100, "Expected at least 100 MB/s, got " + throughput);
+    }
+
+    // Исходник в стиле protobuf: много полей, аксессоров, комментариев и строк
+    private String generateSource() {
+        StringBuilder source = new StringBuilder(TARGET_SIZE + 1024);
+        source.append("package com.example.gen;\n\n");
+        source.append("import java.util.List;\n\n");
+        source.append("@javax.annotation.Generated(\"protoc\")\n");
+        source.append("public final class BigMessage {\n");
+
+        for (int i = 0; source.length() < TARGET_SIZE; i++) {
+            source.append("    /** Field number ").append(i).append(" of the message. */\n");
+            source.append("    private int field").append(i).append("_ = 0;\n");
+            source.append("    public int getField").append(i).append("(Registry registry) {\n");
+            source.append("        return registry.lookup(field").append(i).append("_) + Registry.version; // \"x\"\n");
+            source.append("    }\n");
+        }
+
+        source.append("}\n");
+        return source.toString();
+    }
+}
@@ -0,0 +1,132 @@
+package com.obfuscator.corpus;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+// Синтетический Java-проект для замеров масштабирования. Одинаковые seed и форма
+// дают побайтно одинаковые файлы. В каждом файле публичный класс TypeN и
+// package-private классы TypeNPartK; методы вызывают публичные классы других файлов
+// (чаще - из того же пакета), поля и локальные переменные используются в выражениях
+public final class CorpusGenerator {
+
+    private static final String ROOT_PACKAGE = "com.synthetic";
+    private static final int FILES_PER_PACKAGE = 32;
+    private static final double SAME_PACKAGE_SHARE = 0.7;
+
+    private final long seed;
+    private final CorpusShape shape;
+    private final int packageCount;
+    private final int packageBranching;
+
+    public CorpusGenerator(long seed, CorpusShape shape) {
+        this.seed = seed;
+        this.shape = shape;
+        this.packageCount = Math.max(1, (shape.files() + FILES_PER_PACKAGE - 1) / FILES_PER_PACKAGE);
+        this.packageBranching = Math.max(2, (int) Math.ceil(Math.pow(packageCount, 1.0 / shape.packageDepth())));
+    }
+
+    // Пишет проект в root и возвращает пути файлов в порядке их номеров
+    public List<Path> writeTo(Path root) throws IOException {
+        List<Path> files = new ArrayList<>(shape.files());
+        for (int file = 0; file < shape.files(); file++) {
+            Path directory = root.resolve(packageName(packageOf(file)).replace('.', '/'));
+            Files.createDirectories(directory);
+            Path path = directory.resolve(className(file) + ".java");
+            Files.writeString(path, source(file), StandardCharsets.UTF_8);
+            files.add(path);
+        }
+        return files;
+    }
+
+    // Исходник файла номер file; зависит только от seed, формы и номера
+    public String source(int file) {
+        Random random = new Random(seed * 31 + file);
+        int packageIndex = packageOf(file);
+        String className = className(file);
+
+        // Классы других файлов, на которые ссылается этот: определяются заранее ради импортов
+        int references = (int) Math.round(shape.crossReferenceDensity() * shape.classesPerFile() * shape.methodsPerClass());
+        int[] targets = new int[references];
+        for (int i = 0; i < references; i++) {
+            targets[i] = pickTarget(file, packageIndex, random);
+        }
+
+        StringBuilder source = new StringBuilder(1024);
+        source.append("package ").append(packageName(packageIndex)).append(";\n\n");
+        Set<Integer> imported = new HashSet<>();
+        for (int target : targets) {
+            if (target != file && packageOf(target) != packageIndex && imported.add(target)) {
+                source.append("import ").append(packageName(packageOf(target))).append('.')
+                        .append(className(target)).append(";\n");
+            }
+        }
+        source.append('\n');
+
+        int slots = shape.classesPerFile() * shape.methodsPerClass();
+        for (int part = 0; part < shape.classesPerFile(); part++) {
+            String name = part == 0 ? className : className + "Part" + part;
+            source.append(part == 0 ? "public class " : "class ").append(name).append(" {\n");
+            source.append("    private int state").append(part).append(" = ").append(random.nextInt(100)).append(";\n");
+            source.append("    private String label").append(part).append(" = \"item-").append(random.nextInt(1000))
+                    .append("\";\n\n");
+
+            for (int method = 0; method < shape.methodsPerClass(); method++) {
+                source.append("    public int compute").append(method).append("(int input) {\n");
+                source.append("        int value = input + state").append(part).append(";\n");
+                // Вызовы распределены по методам файла по кругу
+                for (int target = part * shape.methodsPerClass() + method; target < references; target += slots) {
+                    source.append("        value += new ").append(className(targets[target])).append("().compute")
+                            .append(random.nextInt(shape.methodsPerClass())).append("(value);\n");
+                }
+                if (method > 0) {
+                    source.append("        value += compute").append(method - 1).append("(value) + label")
+                            .append(part).append(".length();\n");
+                }
+                source.append("        return value;\n");
+                source.append("    }\n\n");
+            }
+            source.append("}\n");
+            if (part + 1 < shape.classesPerFile()) {
+                source.append('\n');
+            }
+        }
+        return source.toString();
+    }
+
+    private int pickTarget(int file, int packageIndex, Random random) {
+        if (shape.files() == 1) {
+            return file;
+        }
+        if (random.nextDouble() < SAME_PACKAGE_SHARE) {
+            // Файлы пакета: номера packageIndex, packageIndex + packageCount, ...
+            int inPackage = (shape.files() - 1 - packageIndex) / packageCount + 1;
+            return packageIndex + random.nextInt(inPackage) * packageCount;
+        }
+        return random.nextInt(shape.files());
+    }
+
+    private int packageOf(int file) {
+        return file % packageCount;
+    }
+
+    private String packageName(int packageIndex) {
+        StringBuilder name = new StringBuilder(ROOT_PACKAGE);
+        int rest = packageIndex;
+        for (int level = 0; level < shape.packageDepth(); level++) {
+            name.append(".p").append(rest % packageBranching);
+            rest /= packageBranching;
+        }
+        return name.toString();
+    }
+
+    private static String className(int file) {
+        return "Type" + file;
+    }
+}
@@ -0,0 +1,31 @@
+package com.obfuscator.corpus;
+
+// Форма синтетического проекта. crossReferenceDensity - среднее число вызовов
+// методов других файлов на один метод (0 - файлы независимы)
+public record CorpusShape(int files, int packageDepth, int classesPerFile, int methodsPerClass,
+                          double crossReferenceDensity) {
+
+    public CorpusShape {
+        if (files < 1 || packageDepth < 1 || classesPerFile < 1 || methodsPerClass < 1) {
+            throw new IllegalArgumentException("Corpus shape values must be positive: files=" + files
+                    + ", packageDepth=" + packageDepth + ", classesPerFile=" + classesPerFile
+                    + ", methodsPerClass=" + methodsPerClass);
+        }
+        if (crossReferenceDensity < 0) {
+            throw new IllegalArgumentException("Cross reference density must not be negative: " + crossReferenceDensity);
+        }
+    }
+
+    // Похоже на монорепозиторий: глубокие пакеты, пара классов в файле, плотные связи
+    public static CorpusShape monorepo(int files) {
+        return new CorpusShape(files, 4, 2, 6, 1.5);
+    }
+
+    public CorpusShape withFiles(int files) {
+        return new CorpusShape(files, packageDepth, classesPerFile, methodsPerClass, crossReferenceDensity);
+    }
+
+    public CorpusShape withCrossReferenceDensity(double density) {
+        return new CorpusShape(files, packageDepth, classesPerFile, methodsPerClass, density);
+    }
+}